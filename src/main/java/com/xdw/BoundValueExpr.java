@@ -0,0 +1,53 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLExprImpl;
+import com.alibaba.druid.sql.ast.expr.SQLValuableExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitor;
+
+import java.util.Objects;
+
+/**
+ * 绑定到占位符上的值
+ *
+ * PreparedCondition 在应用时用它替换 :name 和 ? 占位符，值原样作为参数，
+ * 不经过字面量的文本表示，因此 Date、BigDecimal 等类型都能保持不变。
+ */
+final class BoundValueExpr extends SQLExprImpl implements SQLValuableExpr {
+
+    private final Object value;
+
+    BoundValueExpr(Object value) {
+        this.value = value;
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    protected void accept0(SQLASTVisitor visitor) {
+        // 叶子节点，没有需要访问的子节点
+    }
+
+    @Override
+    public SQLExpr clone() {
+        return new BoundValueExpr(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BoundValueExpr && Objects.equals(value, ((BoundValueExpr) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
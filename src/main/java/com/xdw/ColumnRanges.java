@@ -0,0 +1,130 @@
+package com.xdw;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 范围分析结果：每个字段允许取值的区间集合
+ *
+ * 没有出现在结果中的字段不受条件约束。对 OR 两侧约束不同字段的条件，
+ * 结果是每个字段上的投影（可能比真实条件更宽），但永远不会漏掉能匹配的值。
+ *
+ * 如果条件恰好等价于"每个受约束字段都落在各自区间内"的合取，结果被标记为精确（exact），
+ * 此时可以用区间包含关系判断另一个条件是否蕴含它。
+ */
+public final class ColumnRanges {
+
+    static final ColumnRanges UNCONSTRAINED = new ColumnRanges(Collections.emptyMap(), false);
+
+    // 空条件：匹配所有行，精确地不约束任何字段
+    static final ColumnRanges ALL_ROWS = new ColumnRanges(Collections.emptyMap(), true);
+
+    private final Map<String, RangeSet> ranges;
+    private final boolean exact;
+
+    ColumnRanges(Map<String, RangeSet> ranges, boolean exact) {
+        this.ranges = ranges;
+        this.exact = exact;
+    }
+
+    /**
+     * 获取字段允许取值的区间集合，字段名不区分大小写，不受约束的字段返回全集
+     */
+    public RangeSet get(String column) {
+        RangeSet range = ranges.get(ConditionParser.normalizeColumnName(column));
+        return range == null ? RangeSet.all() : range;
+    }
+
+    /**
+     * 受约束的字段及其区间集合（字段名已规范化为小写）
+     */
+    public Map<String, RangeSet> asMap() {
+        return Collections.unmodifiableMap(ranges);
+    }
+
+    /**
+     * 条件是否不可能被任何行满足（某个字段的区间集合为空）
+     */
+    public boolean isUnsatisfiable() {
+        for (RangeSet range : ranges.values()) {
+            if (range.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 条件是否与各字段区间约束的合取完全等价
+     * LIKE、IS NULL 等无法表示为区间的条件，以及约束多个字段的 OR 都会使结果不精确
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * 判断满足 this 的行是否一定满足 other（this 蕴含 other）
+     * 只有 other 是精确的区间合取时才能做出肯定判断，否则保守地返回 false
+     */
+    public boolean implies(ColumnRanges other) {
+        if (isUnsatisfiable()) {
+            return true;
+        }
+        if (!other.exact || other.isUnsatisfiable()) {
+            return false;
+        }
+        for (Map.Entry<String, RangeSet> entry : other.ranges.entrySet()) {
+            RangeSet range = ranges.get(entry.getKey());
+            // 当前条件不约束该字段时，它可能取任意值（包括 NULL）
+            if (range == null || !range.isSubsetOf(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ColumnRanges and(ColumnRanges other) {
+        if (isUnsatisfiable()) {
+            return this;
+        }
+        if (other.isUnsatisfiable()) {
+            return other;
+        }
+        Map<String, RangeSet> result = new LinkedHashMap<>(ranges);
+        for (Map.Entry<String, RangeSet> entry : other.ranges.entrySet()) {
+            result.merge(entry.getKey(), entry.getValue(), RangeSet::intersect);
+        }
+        return new ColumnRanges(result, exact && other.exact);
+    }
+
+    ColumnRanges or(ColumnRanges other) {
+        // 不可满足的一侧对 OR 没有贡献
+        if (isUnsatisfiable()) {
+            return other;
+        }
+        if (other.isUnsatisfiable()) {
+            return this;
+        }
+        // 只有两侧都精确地约束同一个字段时，OR 的结果才是精确的
+        boolean sameSingleColumn = ranges.size() == 1 && other.ranges.size() == 1
+                && ranges.keySet().equals(other.ranges.keySet());
+        Map<String, RangeSet> result = new LinkedHashMap<>();
+        for (Map.Entry<String, RangeSet> entry : ranges.entrySet()) {
+            RangeSet otherRange = other.ranges.get(entry.getKey());
+            // 只有两侧都约束的字段才能保留约束
+            if (otherRange != null) {
+                RangeSet union = entry.getValue().union(otherRange);
+                if (!union.isAll()) {
+                    result.put(entry.getKey(), union);
+                }
+            }
+        }
+        return new ColumnRanges(result, exact && other.exact && sameSingleColumn && !result.isEmpty());
+    }
+
+    @Override
+    public String toString() {
+        return ranges.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package com.xdw;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 单个字段的统计信息：不同值个数（NDV）、NULL 比例和等深直方图
+ *
+ * 等深直方图由 k + 1 个边界组成，相邻边界之间的每个桶包含同样多（1/k）的非 NULL 行。
+ * 桶内按线性插值估算：数值和日期按距离插值，字符串去掉边界的公共前缀后按字符编码插值。
+ * 高频值会占据多个连续的桶，表现为重复的边界，等值估算时据此修正 1/NDV 的均匀假设。
+ *
+ * 所有比例都是相对于非 NULL 行的，调用方需要自己乘以 (1 - nullFraction)。
+ */
+public final class ColumnStatistics {
+
+    private final String column;
+    private final long distinctCount;
+    private final double nullFraction;
+    // 规范化后的边界值（数值为 BigDecimal），升序排列
+    private final List<Object> histogram;
+
+    /**
+     * @param column       字段名
+     * @param distinctCount 非 NULL 值的不同值个数
+     * @param nullFraction NULL 值所占的比例，0 到 1
+     * @param histogram    等深直方图的边界，升序排列；为空表示没有直方图
+     */
+    public ColumnStatistics(String column, long distinctCount, double nullFraction, List<?> histogram) {
+        if (distinctCount < 0) {
+            throw new IllegalArgumentException("Distinct count must not be negative: " + distinctCount);
+        }
+        if (nullFraction < 0 || nullFraction > 1) {
+            throw new IllegalArgumentException("Null fraction must be between 0 and 1: " + nullFraction);
+        }
+        if (histogram.size() == 1) {
+            throw new IllegalArgumentException("Histogram needs at least two bounds");
+        }
+        List<Object> bounds = new ArrayList<>(histogram.size());
+        for (Object bound : histogram) {
+            if (bound == null) {
+                throw new IllegalArgumentException("Histogram bound must not be null");
+            }
+            Object normalized = RangeSet.normalize(bound);
+            if (!bounds.isEmpty() && RangeSet.compareValues(bounds.get(bounds.size() - 1), normalized) > 0) {
+                throw new IllegalArgumentException("Histogram bounds must be in ascending order: " + histogram);
+            }
+            bounds.add(normalized);
+        }
+        this.column = ConditionParser.normalizeColumnName(column);
+        this.distinctCount = distinctCount;
+        this.nullFraction = nullFraction;
+        this.histogram = Collections.unmodifiableList(bounds);
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    public double getNullFraction() {
+        return nullFraction;
+    }
+
+    public List<Object> getHistogram() {
+        return histogram;
+    }
+
+    private int buckets() {
+        return histogram.size() - 1;
+    }
+
+    /**
+     * 等于 value 的非 NULL 行比例
+     * 取 1/NDV 与 value 独占的桶所占比例中较大的一个，直方图范围之外的值视为不存在
+     */
+    public double equalFraction(Object value) {
+        Object v = coerce(value);
+        if (buckets() > 0 && (RangeSet.compareValues(v, histogram.get(0)) < 0
+                || RangeSet.compareValues(v, histogram.get(buckets())) > 0)) {
+            return 0;
+        }
+        double uniform = distinctCount > 0 ? 1.0 / distinctCount : 0;
+        int fullBuckets = 0;
+        for (int i = 0; i < buckets(); i++) {
+            if (RangeSet.compareValues(histogram.get(i), v) == 0 && RangeSet.compareValues(histogram.get(i + 1), v) == 0) {
+                fullBuckets++;
+            }
+        }
+        return Math.max(uniform, (double) fullBuckets / buckets());
+    }
+
+    /**
+     * 小于 value 的非 NULL 行比例，没有直方图时返回 -1
+     */
+    public double lessThanFraction(Object value) {
+        if (buckets() <= 0) {
+            return -1;
+        }
+        Object v = coerce(value);
+        if (RangeSet.compareValues(v, histogram.get(0)) <= 0) {
+            return 0;
+        }
+        if (RangeSet.compareValues(v, histogram.get(buckets())) > 0) {
+            return 1;
+        }
+        // 第一个不小于 value 的边界，value 落在它左侧的桶里
+        int upper = 1;
+        while (RangeSet.compareValues(histogram.get(upper), v) < 0) {
+            upper++;
+        }
+        double position = interpolate(histogram.get(upper - 1), histogram.get(upper), v);
+        return (upper - 1 + position) / buckets();
+    }
+
+    /**
+     * 小于等于 value 的非 NULL 行比例，没有直方图时返回 -1
+     */
+    public double atMostFraction(Object value) {
+        double less = lessThanFraction(value);
+        return less < 0 ? -1 : Math.min(1, less + equalFraction(value));
+    }
+
+    /**
+     * 把条件中的值转换成与直方图边界相同的类型，如日期字段上的 '2024-06-01'
+     */
+    private Object coerce(Object value) {
+        Object v = RangeSet.normalize(value);
+        if (v instanceof String && !histogram.isEmpty() && !(histogram.get(0) instanceof String)) {
+            Object converted = RangeSet.convertString((String) v, histogram.get(0));
+            return converted != null ? converted : v;
+        }
+        return v;
+    }
+
+    /**
+     * value 在桶 [lower, upper] 中的相对位置，0 到 1
+     */
+    private static double interpolate(Object lower, Object upper, Object value) {
+        if (lower instanceof String && upper instanceof String && value instanceof String) {
+            return interpolateStrings((String) lower, (String) upper, (String) value);
+        }
+        double lo = toDouble(lower);
+        double hi = toDouble(upper);
+        double v = toDouble(value);
+        if (Double.isNaN(lo) || Double.isNaN(hi) || Double.isNaN(v)) {
+            return 0.5;
+        }
+        if (hi <= lo) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (v - lo) / (hi - lo)));
+    }
+
+    /**
+     * 去掉两个边界的公共前缀后，把随后的几个字符看作一个小数来插值
+     */
+    private static double interpolateStrings(String lower, String upper, String value) {
+        int prefix = 0;
+        while (prefix < lower.length() && prefix < upper.length() && lower.charAt(prefix) == upper.charAt(prefix)) {
+            prefix++;
+        }
+        if (!value.startsWith(lower.substring(0, prefix))) {
+            return 0.5;
+        }
+        double lo = scalar(lower, prefix);
+        double hi = scalar(upper, prefix);
+        if (hi <= lo) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (scalar(value, prefix) - lo) / (hi - lo)));
+    }
+
+    private static double scalar(String s, int from) {
+        double result = 0;
+        double scale = 1;
+        for (int i = from; i < from + 4; i++) {
+            scale /= 65536;
+            if (i < s.length()) {
+                result += s.charAt(i) * scale;
+            }
+        }
+        return result;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).doubleValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return column + "{ndv=" + distinctCount + ", nullFraction=" + nullFraction + ", buckets=" + Math.max(0, buckets()) + "}";
+    }
+}
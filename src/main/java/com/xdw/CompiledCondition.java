@@ -0,0 +1,288 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLCurrentTimeExpr;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 编译后的条件
+ *
+ * 条件只解析一次，渲染出的 SQL 片段被缓存，之后应用到 QueryWrapper 或拼接进更大的条件时
+ * 都不再解析。对象不可变，可以在线程间共享。
+ *
+ * 编译后的条件可以用 and/or/not 组合，组合只拼接各部分缓存的片段，不会重新解析。
+ * 典型用法是在启动时编译固定的租户条件和行级权限条件，每个请求只编译用户条件：
+ * <pre>
+ * CompiledCondition condition = TENANT.and(SECURITY).and(CompiledCondition.compile(userFilter, options));
+ * condition.apply(queryWrapper);
+ * </pre>
+ *
+ * JVM_CLOCK 策略下含时间函数的条件每次渲染都重新求值，不缓存片段，避免把编译时刻的时间固定下来。
+ */
+public final class CompiledCondition {
+
+    private enum Kind {
+        LEAF, AND, OR, NOT
+    }
+
+    private static final CompiledCondition EMPTY = new CompiledCondition("", null, ParserOptions.defaults());
+
+    private final Kind kind;
+    private final String condition;
+    private final SQLExpr expr;
+    private final ParserOptions options;
+    // AND/OR 的各个部分，或 NOT 的唯一部分
+    private final List<CompiledCondition> children;
+    private final boolean cacheable;
+    private final SqlFragment fragment;
+    // 首次使用时计算；String 不可变，并发计算得到的结果相同
+    private String fingerprint;
+
+    private CompiledCondition(String condition, SQLExpr expr, ParserOptions options) {
+        this.kind = Kind.LEAF;
+        this.condition = condition;
+        this.expr = expr;
+        this.options = options;
+        this.children = Collections.emptyList();
+        this.cacheable = options.getTimeFunctionPolicy() == TimeFunctionPolicy.PUSH_DOWN || !containsTimeFunction(expr);
+        // 立即渲染一次，不支持的条件在编译时就报错
+        SqlFragment rendered = render();
+        this.fragment = cacheable ? rendered : null;
+    }
+
+    private CompiledCondition(Kind kind, List<CompiledCondition> children) {
+        this.kind = kind;
+        this.condition = null;
+        this.expr = null;
+        this.options = children.get(0).options;
+        this.children = children;
+        boolean allCacheable = true;
+        for (CompiledCondition child : children) {
+            allCacheable &= child.cacheable;
+        }
+        this.cacheable = allCacheable;
+        this.fragment = cacheable ? render() : null;
+    }
+
+    /**
+     * 编译条件字符串
+     * @throws IllegalArgumentException 条件无法解析
+     */
+    public static CompiledCondition compile(String condition, ParserOptions options) {
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, options);
+        return new CompiledCondition(condition.trim(), expr, options);
+    }
+
+    /**
+     * 使用已解析的子表达式，condition 为其文本形式
+     */
+    static CompiledCondition of(String condition, SQLExpr expr, ParserOptions options) {
+        return new CompiledCondition(condition, expr, options);
+    }
+
+    /**
+     * 不限制任何行的空条件，是 and 的单位元
+     */
+    public static CompiledCondition empty() {
+        return EMPTY;
+    }
+
+    /**
+     * this AND other
+     * 连续的 and 合并为同一层，已有的部分被新对象共享
+     */
+    public CompiledCondition and(CompiledCondition other) {
+        return combine(Kind.AND, other);
+    }
+
+    /**
+     * this OR other
+     * 空条件不限制任何行，与任何条件 OR 的结果都是空条件
+     */
+    public CompiledCondition or(CompiledCondition other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return combine(Kind.OR, other);
+    }
+
+    /**
+     * NOT this，对 NOT 取反得到原条件
+     * @throws IllegalStateException 空条件不能取反
+     */
+    public CompiledCondition not() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Cannot negate an empty condition");
+        }
+        if (kind == Kind.NOT) {
+            return children.get(0);
+        }
+        return new CompiledCondition(Kind.NOT, Collections.singletonList(this));
+    }
+
+    private CompiledCondition combine(Kind connective, CompiledCondition other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        List<CompiledCondition> parts = new ArrayList<>();
+        addFlattened(connective, this, parts);
+        addFlattened(connective, other, parts);
+        return new CompiledCondition(connective, Collections.unmodifiableList(parts));
+    }
+
+    private static void addFlattened(Kind connective, CompiledCondition condition, List<CompiledCondition> parts) {
+        if (condition.kind == connective) {
+            parts.addAll(condition.children);
+        } else {
+            parts.add(condition);
+        }
+    }
+
+    /**
+     * 取得 SQL 片段
+     */
+    public SqlFragment toSqlFragment() {
+        return fragment != null ? fragment : render();
+    }
+
+    /**
+     * 把条件作为一个整体追加到 QueryWrapper，与已有条件之间是 AND 关系
+     */
+    public <T> QueryWrapper<T> apply(QueryWrapper<T> queryWrapper) {
+        toSqlFragment().applyTo(queryWrapper);
+        if (options.isFingerprintComment() && !isEmpty()) {
+            ConditionFingerprint.tag(queryWrapper, getFingerprint());
+        }
+        return queryWrapper;
+    }
+
+    /**
+     * 条件形状的指纹，组合条件的指纹由各部分的指纹组合而成，与各部分的顺序无关
+     * @see ConditionFingerprint
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            result = computeFingerprint();
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    private String computeFingerprint() {
+        if (kind == Kind.LEAF) {
+            return ConditionFingerprint.of(expr, options.getDbType());
+        }
+        List<String> parts = new ArrayList<>(children.size());
+        for (CompiledCondition child : children) {
+            parts.add(child.getFingerprint());
+        }
+        return ConditionFingerprint.combine(kind.name(), parts);
+    }
+
+    public boolean isEmpty() {
+        return kind == Kind.LEAF && expr == null;
+    }
+
+    boolean isCacheable() {
+        return cacheable;
+    }
+
+    public ParserOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @param likeRewrites 为 false 时按 ParserOptions.withoutLikeRewrites 重新渲染，用于 NOT 和 OR 的部分
+     */
+    private SqlFragment toSqlFragment(boolean likeRewrites) {
+        if (likeRewrites || options.withoutLikeRewrites() == options) {
+            return toSqlFragment();
+        }
+        return render(false);
+    }
+
+    private SqlFragment render() {
+        return render(true);
+    }
+
+    private SqlFragment render(boolean likeRewrites) {
+        switch (kind) {
+            case AND:
+            case OR: {
+                // 与 ConditionParser 一致，LIKE 只在顶层和 AND 的部分中改写
+                boolean childRewrites = likeRewrites && kind == Kind.AND;
+                List<SqlFragment> parts = new ArrayList<>(children.size());
+                for (CompiledCondition child : children) {
+                    parts.add(child.toSqlFragment(childRewrites));
+                }
+                return SqlFragment.join(parts, kind == Kind.OR);
+            }
+            case NOT:
+                return SqlFragment.not(children.get(0).toSqlFragment(false));
+            default:
+                break;
+        }
+        if (expr == null) {
+            return SqlFragment.EMPTY;
+        }
+        try {
+            QueryWrapper<Object> wrapper = new QueryWrapper<>();
+            ConditionParser.parseSQLExpr(expr, wrapper, likeRewrites ? options : options.withoutLikeRewrites());
+            return SqlFragment.of(wrapper);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
+        }
+    }
+
+    static boolean containsTimeFunction(SQLExpr expr) {
+        if (expr == null) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLMethodInvokeExpr x) {
+                found[0] |= ConditionParser.isTimeFunction(x.getMethodName().toLowerCase());
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLCurrentTimeExpr x) {
+                found[0] = true;
+                return false;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * 条件的文本形式
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case AND:
+            case OR: {
+                List<String> texts = new ArrayList<>(children.size());
+                for (CompiledCondition child : children) {
+                    texts.add("(" + child + ")");
+                }
+                return String.join(kind == Kind.OR ? " OR " : " AND ", texts);
+            }
+            case NOT:
+                return "NOT (" + children.get(0) + ")";
+            default:
+                return condition;
+        }
+    }
+}
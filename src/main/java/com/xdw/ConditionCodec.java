@@ -0,0 +1,518 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLCurrentTimeExpr;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.xdw.ConditionLimitExceededException.Limit;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 条件的紧凑二进制格式
+ *
+ * 把解析后的条件树编码为字节数组，客户端可以直接发送编码结果，服务端解码后交给
+ * ConditionParser 处理，不再需要词法和语法分析。格式如下：
+ * <pre>
+ * 'X' 'C' 版本号(1字节)
+ * 字段表：字段数(varint)，每个字段为 限定名(字符串，空串表示无) + 字段名(字符串)
+ * 条件树：前序遍历的节点，节点以操作码开头，字段通过字段表下标引用
+ * </pre>
+ * 字符串为 varint 长度加 UTF-8 字节，整数为 zigzag 编码的 varint。
+ * 字段名和限定名会原样写入 SQL，解码时必须是标识符（可以用反引号或双引号括起），否则拒绝整个编码。
+ *
+ * 编码的是条件树本身而不是求值结果：时间函数保留为函数节点，在应用到 QueryWrapper 时
+ * 才按 ParserOptions 的策略求值，所以同一份编码可以在不同的选项下重复使用。
+ */
+public final class ConditionCodec {
+
+    private static final byte MAGIC_0 = 'X';
+    private static final byte MAGIC_1 = 'C';
+    private static final byte VERSION = 1;
+
+    // 节点操作码
+    private static final int OP_EMPTY = 0;
+    private static final int OP_AND = 1;
+    private static final int OP_OR = 2;
+    private static final int OP_NOT = 3;
+    private static final int OP_COMPARE = 4;
+    private static final int OP_IS_NULL = 5;
+    private static final int OP_IS_NOT_NULL = 6;
+    private static final int OP_IN = 7;
+    private static final int OP_NOT_IN = 8;
+    private static final int OP_BETWEEN = 9;
+    private static final int OP_NOT_BETWEEN = 10;
+
+    // 字段名：普通标识符，或用反引号、双引号括起的标识符；限定名可以带一级 schema
+    private static final String NAME = "([A-Za-z_][A-Za-z0-9_]*|`[A-Za-z_][A-Za-z0-9_]*`|\"[A-Za-z_][A-Za-z0-9_]*\")";
+    private static final Pattern COLUMN = Pattern.compile(NAME);
+    private static final Pattern OWNER = Pattern.compile(NAME + "(\\." + NAME + ")?");
+
+    // 比较运算符，下标即编码值
+    private static final SQLBinaryOperator[] COMPARE_OPERATORS = {
+            SQLBinaryOperator.Equality, SQLBinaryOperator.NotEqual,
+            SQLBinaryOperator.LessThan, SQLBinaryOperator.LessThanOrEqual,
+            SQLBinaryOperator.GreaterThan, SQLBinaryOperator.GreaterThanOrEqual,
+            SQLBinaryOperator.Like, SQLBinaryOperator.NotLike
+    };
+
+    // 字面量类型标记
+    private static final int LIT_NULL = 0;
+    private static final int LIT_STRING = 1;
+    private static final int LIT_INTEGER = 2;
+    private static final int LIT_BIG_INTEGER = 3;
+    private static final int LIT_DECIMAL = 4;
+    private static final int LIT_TRUE = 5;
+    private static final int LIT_FALSE = 6;
+    private static final int LIT_FUNCTION = 7;
+
+    private ConditionCodec() {
+    }
+
+    /**
+     * 解析条件字符串并编码
+     * @throws IllegalArgumentException 条件无法解析，或包含 ConditionParser 不支持的结构
+     */
+    public static byte[] encode(String condition, ParserOptions options) {
+        try {
+            return encode(ConditionParser.toSQLExpr(condition, options));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
+        }
+    }
+
+    /**
+     * 编码已解析的条件，null 表示空条件
+     */
+    static byte[] encode(SQLExpr expr) {
+        Encoder encoder = new Encoder();
+        ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        if (expr == null) {
+            tree.write(OP_EMPTY);
+        } else {
+            encoder.writeNode(expr, tree);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tree.size() + 16);
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(VERSION);
+        writeVarint(out, encoder.columns.size());
+        for (String[] column : encoder.columns) {
+            writeString(out, column[0] == null ? "" : column[0]);
+            writeString(out, column[1]);
+        }
+        out.write(tree.toByteArray(), 0, tree.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码为 Druid AST，空条件返回 null
+     * 编码的字节数按 maxLength 检查，节点数、嵌套深度、IN 列表大小和字面量个数按对应的限制检查
+     * @throws IllegalArgumentException 编码格式错误
+     * @throws ConditionLimitExceededException 超出复杂度限制
+     */
+    static SQLExpr decode(byte[] plan, ConditionLimits limits) {
+        if (plan.length > limits.getMaxLength()) {
+            throw new ConditionLimitExceededException(Limit.LENGTH, limits.getMaxLength(), plan.length);
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(plan);
+            if (in.get() != MAGIC_0 || in.get() != MAGIC_1) {
+                throw new IllegalArgumentException("Not a condition plan");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported condition plan version: " + version);
+            }
+            int columnCount = readVarint(in);
+            // 每个字段至少占两个字节，数量不可能超过剩余的字节数；先检查再分配，避免按伪造的数量分配数组
+            if (columnCount > in.remaining()) {
+                throw new IllegalArgumentException("Truncated condition plan");
+            }
+            String[][] columns = new String[columnCount][];
+            for (int i = 0; i < columnCount; i++) {
+                String owner = readString(in);
+                columns[i] = checkColumn(owner.isEmpty() ? null : owner, readString(in));
+            }
+            SQLExpr expr = new Decoder(in, columns, limits).readNode();
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes in condition plan");
+            }
+            return expr;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated condition plan", e);
+        }
+    }
+
+    private static final class Encoder {
+        // 字段（限定名, 字段名）到下标的映射，按首次出现的顺序编号
+        private final List<String[]> columns = new ArrayList<>();
+        private final Map<String, Integer> columnIds = new HashMap<>();
+
+        void writeNode(SQLExpr expr, ByteArrayOutputStream out) {
+            if (expr instanceof SQLBinaryOpExpr) {
+                writeBinaryOpExpr((SQLBinaryOpExpr) expr, out);
+            } else if (expr instanceof SQLInListExpr) {
+                SQLInListExpr inListExpr = (SQLInListExpr) expr;
+                out.write(inListExpr.isNot() ? OP_NOT_IN : OP_IN);
+                writeColumn(inListExpr.getExpr(), out);
+                int size = 0;
+                for (SQLExpr target : inListExpr.getTargetList()) {
+                    size += target instanceof LongListExpr ? ((LongListExpr) target).size() : 1;
+                }
+                writeVarint(out, size);
+                for (SQLExpr target : inListExpr.getTargetList()) {
+                    if (target instanceof LongListExpr) {
+                        LongListExpr longs = (LongListExpr) target;
+                        for (int i = 0; i < longs.size(); i++) {
+                            out.write(LIT_INTEGER);
+                            writeVarlong(out, longs.get(i));
+                        }
+                    } else {
+                        writeLiteral(target, out);
+                    }
+                }
+            } else if (expr instanceof SQLBetweenExpr) {
+                SQLBetweenExpr betweenExpr = (SQLBetweenExpr) expr;
+                out.write(betweenExpr.isNot() ? OP_NOT_BETWEEN : OP_BETWEEN);
+                writeColumn(betweenExpr.getTestExpr(), out);
+                writeLiteral(betweenExpr.getBeginExpr(), out);
+                writeLiteral(betweenExpr.getEndExpr(), out);
+            } else if (expr instanceof SQLNotExpr) {
+                out.write(OP_NOT);
+                writeNode(((SQLNotExpr) expr).getExpr(), out);
+            } else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Not) {
+                out.write(OP_NOT);
+                writeNode(((SQLUnaryExpr) expr).getExpr(), out);
+            } else {
+                throw new UnsupportedOperationException("Unsupported expression type: " + expr.getClass().getName());
+            }
+        }
+
+        private void writeBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr, ByteArrayOutputStream out) {
+            SQLBinaryOperator operator = binaryOpExpr.getOperator();
+            switch (operator) {
+                case BooleanAnd:
+                case BooleanOr:
+                    out.write(operator == SQLBinaryOperator.BooleanAnd ? OP_AND : OP_OR);
+                    writeNode(binaryOpExpr.getLeft(), out);
+                    writeNode(binaryOpExpr.getRight(), out);
+                    return;
+                case Is:
+                case IsNot:
+                    if (!(binaryOpExpr.getRight() instanceof SQLNullExpr)) {
+                        throw new IllegalArgumentException("Invalid NULL check expression");
+                    }
+                    out.write(operator == SQLBinaryOperator.Is ? OP_IS_NULL : OP_IS_NOT_NULL);
+                    writeColumn(binaryOpExpr.getLeft(), out);
+                    return;
+                default:
+                    for (int i = 0; i < COMPARE_OPERATORS.length; i++) {
+                        if (COMPARE_OPERATORS[i] == operator) {
+                            out.write(OP_COMPARE);
+                            out.write(i);
+                            writeColumn(binaryOpExpr.getLeft(), out);
+                            writeLiteral(binaryOpExpr.getRight(), out);
+                            return;
+                        }
+                    }
+                    throw new UnsupportedOperationException("Unsupported operator: " + operator.getName());
+            }
+        }
+
+        private void writeColumn(SQLExpr expr, ByteArrayOutputStream out) {
+            String owner = null;
+            String name;
+            if (expr instanceof SQLIdentifierExpr) {
+                name = ((SQLIdentifierExpr) expr).getName();
+            } else if (expr instanceof SQLPropertyExpr) {
+                owner = ((SQLPropertyExpr) expr).getOwnerName();
+                name = ((SQLPropertyExpr) expr).getName();
+            } else {
+                throw new IllegalArgumentException("Invalid column expression: " + expr);
+            }
+            String key = owner + '\u0000' + name;
+            Integer id = columnIds.get(key);
+            if (id == null) {
+                id = columnIds.size();
+                columnIds.put(key, id);
+                columns.add(checkColumn(owner, name));
+            }
+            writeVarint(out, id);
+        }
+
+        private void writeLiteral(SQLExpr expr, ByteArrayOutputStream out) {
+            if (expr instanceof SQLCharExpr) {
+                out.write(LIT_STRING);
+                writeString(out, ((SQLCharExpr) expr).getText());
+            } else if (expr instanceof SQLNCharExpr) {
+                out.write(LIT_STRING);
+                writeString(out, ((SQLNCharExpr) expr).getText());
+            } else if (expr instanceof LongLiteralExpr) {
+                out.write(LIT_INTEGER);
+                writeVarlong(out, ((LongLiteralExpr) expr).longValue());
+            } else if (expr instanceof SQLIntegerExpr) {
+                Number number = ((SQLIntegerExpr) expr).getNumber();
+                if (number instanceof BigInteger && ((BigInteger) number).bitLength() >= 64) {
+                    out.write(LIT_BIG_INTEGER);
+                    writeString(out, number.toString());
+                } else {
+                    out.write(LIT_INTEGER);
+                    writeVarlong(out, number.longValue());
+                }
+            } else if (expr instanceof SQLNumberExpr) {
+                out.write(LIT_DECIMAL);
+                writeString(out, ((SQLNumberExpr) expr).getNumber().toString());
+            } else if (expr instanceof SQLBooleanExpr) {
+                out.write(((SQLBooleanExpr) expr).getBooleanValue() ? LIT_TRUE : LIT_FALSE);
+            } else if (expr instanceof SQLNullExpr) {
+                out.write(LIT_NULL);
+            } else if (expr instanceof SQLMethodInvokeExpr) {
+                SQLMethodInvokeExpr func = (SQLMethodInvokeExpr) expr;
+                out.write(LIT_FUNCTION);
+                writeString(out, func.getMethodName().toLowerCase());
+                writeVarint(out, func.getArguments().size());
+                for (SQLExpr arg : func.getArguments()) {
+                    writeLiteral(arg, out);
+                }
+            } else if (expr instanceof SQLCurrentTimeExpr) {
+                // 关键字形式与无参函数形式的处理相同，统一编码为函数
+                out.write(LIT_FUNCTION);
+                writeString(out, ((SQLCurrentTimeExpr) expr).getType().name().toLowerCase());
+                writeVarint(out, 0);
+            } else {
+                throw new UnsupportedOperationException("Unsupported value type: " + expr.getClass().getName());
+            }
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private final String[][] columns;
+        private final ConditionLimits limits;
+        private int nodes;
+        private int literals;
+        private int depth;
+
+        Decoder(ByteBuffer in, String[][] columns, ConditionLimits limits) {
+            this.in = in;
+            this.columns = columns;
+            this.limits = limits;
+        }
+
+        SQLExpr readNode() {
+            if (++depth > limits.getMaxDepth()) {
+                throw new ConditionLimitExceededException(Limit.DEPTH, limits.getMaxDepth(), depth);
+            }
+            SQLExpr node = readNodeBody();
+            depth--;
+            return node;
+        }
+
+        private SQLExpr readNodeBody() {
+            if (++nodes > limits.getMaxTokens()) {
+                throw new ConditionLimitExceededException(Limit.TOKENS, limits.getMaxTokens(), nodes);
+            }
+            int op = in.get();
+            switch (op) {
+                case OP_EMPTY:
+                    return null;
+                case OP_AND:
+                    return new SQLBinaryOpExpr(readNode(), SQLBinaryOperator.BooleanAnd, readNode());
+                case OP_OR:
+                    return new SQLBinaryOpExpr(readNode(), SQLBinaryOperator.BooleanOr, readNode());
+                case OP_NOT:
+                    return new SQLNotExpr(readNode());
+                case OP_COMPARE: {
+                    int index = in.get();
+                    if (index < 0 || index >= COMPARE_OPERATORS.length) {
+                        throw new IllegalArgumentException("Unknown comparison operator: " + index);
+                    }
+                    return new SQLBinaryOpExpr(readColumn(), COMPARE_OPERATORS[index], readLiteral());
+                }
+                case OP_IS_NULL:
+                    return new SQLBinaryOpExpr(readColumn(), SQLBinaryOperator.Is, new SQLNullExpr());
+                case OP_IS_NOT_NULL:
+                    return new SQLBinaryOpExpr(readColumn(), SQLBinaryOperator.IsNot, new SQLNullExpr());
+                case OP_IN:
+                case OP_NOT_IN: {
+                    SQLInListExpr inListExpr = new SQLInListExpr(readColumn(), op == OP_NOT_IN);
+                    int size = readVarint(in);
+                    if (size > limits.getMaxInListSize()) {
+                        throw new ConditionLimitExceededException(Limit.IN_LIST_SIZE, limits.getMaxInListSize(), size);
+                    }
+                    if (size > in.remaining()) {
+                        throw new IllegalArgumentException("Truncated condition plan");
+                    }
+                    readInList(inListExpr, size);
+                    return inListExpr;
+                }
+                case OP_BETWEEN:
+                case OP_NOT_BETWEEN:
+                    return new SQLBetweenExpr(readColumn(), op == OP_NOT_BETWEEN, readLiteral(), readLiteral());
+                default:
+                    throw new IllegalArgumentException("Unknown condition plan opcode: " + op);
+            }
+        }
+
+        private SQLExpr readColumn() {
+            String[] column = columns[readVarint(in)];
+            return column[0] == null ? new SQLIdentifierExpr(column[1]) : new SQLPropertyExpr(column[0], column[1]);
+        }
+
+        /**
+         * 全部是整数的列表解码为一个 LongListExpr，否则逐个解码
+         */
+        private void readInList(SQLInListExpr inListExpr, int size) {
+            long[] longs = new long[size];
+            int count = 0;
+            while (count < size && in.get(in.position()) == LIT_INTEGER) {
+                countLiteral();
+                in.get();
+                longs[count++] = readVarlong(in);
+            }
+            if (count == size) {
+                inListExpr.addTarget(new LongListExpr(longs));
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                inListExpr.addTarget(new LongLiteralExpr(longs[i]));
+            }
+            for (int i = count; i < size; i++) {
+                inListExpr.addTarget(readLiteral());
+            }
+        }
+
+        private void countLiteral() {
+            if (++literals > limits.getMaxParameters()) {
+                throw new ConditionLimitExceededException(Limit.PARAMETERS, limits.getMaxParameters(), literals);
+            }
+        }
+
+        private SQLExpr readLiteral() {
+            countLiteral();
+            int tag = in.get();
+            switch (tag) {
+                case LIT_NULL:
+                    return new SQLNullExpr();
+                case LIT_STRING:
+                    return new SQLCharExpr(readString(in));
+                case LIT_INTEGER:
+                    return new LongLiteralExpr(readVarlong(in));
+                case LIT_BIG_INTEGER:
+                    return new SQLIntegerExpr(new BigInteger(readString(in)));
+                case LIT_DECIMAL:
+                    return new SQLNumberExpr(new BigDecimal(readString(in)));
+                case LIT_TRUE:
+                    return new SQLBooleanExpr(true);
+                case LIT_FALSE:
+                    return new SQLBooleanExpr(false);
+                case LIT_FUNCTION: {
+                    // 函数参数可以嵌套函数，嵌套层数与节点一样按 maxDepth 检查
+                    if (++depth > limits.getMaxDepth()) {
+                        throw new ConditionLimitExceededException(Limit.DEPTH, limits.getMaxDepth(), depth);
+                    }
+                    SQLMethodInvokeExpr func = new SQLMethodInvokeExpr(readString(in));
+                    int argc = readVarint(in);
+                    if (argc > limits.getMaxParameters()) {
+                        throw new ConditionLimitExceededException(Limit.PARAMETERS, limits.getMaxParameters(), argc);
+                    }
+                    if (argc > in.remaining()) {
+                        throw new IllegalArgumentException("Truncated condition plan");
+                    }
+                    List<SQLExpr> args = new ArrayList<>(argc);
+                    for (int i = 0; i < argc; i++) {
+                        args.add(readLiteral());
+                    }
+                    args.forEach(func::addArgument);
+                    depth--;
+                    return func;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown literal tag: " + tag);
+            }
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 检查字段名和限定名都是标识符，解码的字段会直接写入 SQL
+     */
+    private static String[] checkColumn(String owner, String name) {
+        if (owner != null && !OWNER.matcher(owner).matches()) {
+            throw new IllegalArgumentException("Invalid column qualifier in condition plan: " + owner);
+        }
+        if (!COLUMN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid column name in condition plan: " + name);
+        }
+        return new String[]{owner, name};
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in);
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("Truncated condition plan");
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = readUnsignedVarlong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid length in condition plan: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * zigzag 编码，绝对值小的负数也只占很少的字节
+     */
+    private static void writeVarlong(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readVarlong(ByteBuffer in) {
+        long v = readUnsignedVarlong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readUnsignedVarlong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in condition plan");
+    }
+}
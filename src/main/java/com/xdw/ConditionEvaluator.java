@@ -0,0 +1,242 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 在内存中对行数据求值条件
+ *
+ * 语义与 ConditionParser 生成的 SQL 保持一致，采用 SQL 的三值逻辑：
+ * 比较 NULL 的结果是 UNKNOWN（返回 null），NOT UNKNOWN 仍是 UNKNOWN，只有 TRUE 的行才算匹配。
+ * 不含通配符的 LIKE 与解析器一样按 %value% 处理。
+ *
+ * 字符串比较默认区分大小写；MySQL 常用的 *_ci 排序规则不区分大小写，此时应开启 ignoreCase。
+ */
+public class ConditionEvaluator {
+
+    private final ParserOptions options;
+    private final boolean ignoreCase;
+
+    public ConditionEvaluator(ParserOptions options, boolean ignoreCase) {
+        this.options = options;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * 过滤出条件为 TRUE 的行
+     * @throws IllegalArgumentException 行中缺少条件引用的字段
+     * @throws UnsupportedOperationException 条件包含无法在内存中求值的部分
+     */
+    public List<Map<String, Object>> filter(SQLExpr expr, List<Map<String, Object>> rows) {
+        Map<String, Pattern> likePatterns = new HashMap<>();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            if (Boolean.TRUE.equals(evaluate(expr, row, likePatterns))) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 对单行求值，返回 TRUE、FALSE 或 null（UNKNOWN）
+     */
+    public Boolean evaluate(SQLExpr expr, Map<String, Object> row) {
+        return evaluate(expr, row, new HashMap<>());
+    }
+
+    private Boolean evaluate(SQLExpr expr, Map<String, Object> row, Map<String, Pattern> likePatterns) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            return evaluateBinaryOpExpr((SQLBinaryOpExpr) expr, row, likePatterns);
+        } else if (expr instanceof SQLInListExpr) {
+            return evaluateInListExpr((SQLInListExpr) expr, row);
+        } else if (expr instanceof SQLBetweenExpr) {
+            return evaluateBetweenExpr((SQLBetweenExpr) expr, row);
+        } else if (expr instanceof SQLNotExpr) {
+            return not(evaluate(((SQLNotExpr) expr).getExpr(), row, likePatterns));
+        } else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Not) {
+            return not(evaluate(((SQLUnaryExpr) expr).getExpr(), row, likePatterns));
+        } else if (expr instanceof SQLInSubQueryExpr || expr instanceof SQLExistsExpr) {
+            throw new UnsupportedOperationException("Subqueries cannot be evaluated in memory: " + expr);
+        } else if (expr instanceof SQLMatchAgainstExpr) {
+            throw new UnsupportedOperationException("Full-text search cannot be evaluated in memory: " + expr);
+        }
+        throw new UnsupportedOperationException("Unsupported expression type: " + expr.getClass().getName());
+    }
+
+    private Boolean evaluateBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr, Map<String, Object> row, Map<String, Pattern> likePatterns) {
+        SQLBinaryOperator operator = binaryOpExpr.getOperator();
+        SQLExpr left = binaryOpExpr.getLeft();
+        SQLExpr right = binaryOpExpr.getRight();
+
+        switch (operator) {
+            case BooleanAnd: {
+                Boolean l = evaluate(left, row, likePatterns);
+                if (Boolean.FALSE.equals(l)) {
+                    return false;
+                }
+                Boolean r = evaluate(right, row, likePatterns);
+                if (Boolean.FALSE.equals(r)) {
+                    return false;
+                }
+                return l == null || r == null ? null : true;
+            }
+            case BooleanOr: {
+                Boolean l = evaluate(left, row, likePatterns);
+                if (Boolean.TRUE.equals(l)) {
+                    return true;
+                }
+                Boolean r = evaluate(right, row, likePatterns);
+                if (Boolean.TRUE.equals(r)) {
+                    return true;
+                }
+                return l == null || r == null ? null : false;
+            }
+            case Is:
+            case IsNot:
+                if (!(right instanceof SQLNullExpr)) {
+                    throw new IllegalArgumentException("Invalid NULL check expression");
+                }
+                Object value = columnValue(row, ConditionParser.extractColumnName(left));
+                return operator == SQLBinaryOperator.Is ? value == null : value != null;
+            case Like:
+            case NotLike: {
+                Object columnValue = columnValue(row, ConditionParser.extractColumnName(left));
+                Object pattern = literal(right);
+                if (columnValue == null || pattern == null) {
+                    return null;
+                }
+                boolean matched = likePattern(pattern.toString(), likePatterns).matcher(columnValue.toString()).matches();
+                return operator == SQLBinaryOperator.Like ? matched : !matched;
+            }
+            case Equality:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual: {
+                Object columnValue = columnValue(row, ConditionParser.extractColumnName(left));
+                Object literal = literal(right);
+                if (columnValue == null || literal == null) {
+                    return null;
+                }
+                int cmp = compare(columnValue, literal);
+                switch (operator) {
+                    case Equality:
+                        return cmp == 0;
+                    case NotEqual:
+                        return cmp != 0;
+                    case LessThan:
+                        return cmp < 0;
+                    case LessThanOrEqual:
+                        return cmp <= 0;
+                    case GreaterThan:
+                        return cmp > 0;
+                    default:
+                        return cmp >= 0;
+                }
+            }
+            default:
+                throw new UnsupportedOperationException("Unsupported operator: " + operator.getName());
+        }
+    }
+
+    private Boolean evaluateInListExpr(SQLInListExpr inListExpr, Map<String, Object> row) {
+        Object columnValue = columnValue(row, ConditionParser.extractColumnName(inListExpr.getExpr()));
+        if (columnValue == null) {
+            return null;
+        }
+        boolean sawNull = false;
+        for (Object literal : ConditionParser.extractValues(inListExpr, options)) {
+            if (literal instanceof SqlExpression) {
+                throw new UnsupportedOperationException("Expression is evaluated by the database: " + literal);
+            }
+            if (literal == null) {
+                sawNull = true;
+            } else if (compare(columnValue, literal) == 0) {
+                return !inListExpr.isNot();
+            }
+        }
+        // 列表中有 NULL 且没有匹配项时结果为 UNKNOWN
+        if (sawNull) {
+            return null;
+        }
+        return inListExpr.isNot();
+    }
+
+    private Boolean evaluateBetweenExpr(SQLBetweenExpr betweenExpr, Map<String, Object> row) {
+        Object columnValue = columnValue(row, ConditionParser.extractColumnName(betweenExpr.getTestExpr()));
+        Object begin = literal(betweenExpr.getBeginExpr());
+        Object end = literal(betweenExpr.getEndExpr());
+        if (columnValue == null || begin == null || end == null) {
+            return null;
+        }
+        boolean between = compare(columnValue, begin) >= 0 && compare(columnValue, end) <= 0;
+        return betweenExpr.isNot() != between;
+    }
+
+    private Object literal(SQLExpr expr) {
+        Object value = ConditionParser.extractValue(expr, options);
+        if (value instanceof SqlExpression) {
+            throw new UnsupportedOperationException("Expression is evaluated by the database: " + value);
+        }
+        return value;
+    }
+
+    private int compare(Object a, Object b) {
+        if (ignoreCase && a instanceof String && b instanceof String) {
+            return ((String) a).compareToIgnoreCase((String) b);
+        }
+        return RangeSet.compareValues(RangeSet.normalize(a), RangeSet.normalize(b));
+    }
+
+    /**
+     * 按字段名取值，依次尝试原名、小写、大写以及不区分大小写的匹配（JDBC 返回的列名大小写因驱动而异）
+     */
+    private static Object columnValue(Map<String, Object> row, String column) {
+        String name = ConditionParser.normalizeColumnName(column);
+        if (row.containsKey(name)) {
+            return row.get(name);
+        }
+        String upper = name.toUpperCase();
+        if (row.containsKey(upper)) {
+            return row.get(upper);
+        }
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        throw new IllegalArgumentException("Row does not contain column: " + column);
+    }
+
+    private Pattern likePattern(String value, Map<String, Pattern> cache) {
+        return cache.computeIfAbsent(value, v -> {
+            // 与 ConditionParser.handleLikeOperation 一致：不含通配符时按包含匹配
+            String pattern = v.contains("%") || v.contains("_") ? v : "%" + v + "%";
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '%') {
+                    regex.append(".*");
+                } else if (c == '_') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            int flags = Pattern.DOTALL | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            return Pattern.compile(regex.toString(), flags);
+        });
+    }
+
+    private static Boolean not(Boolean value) {
+        return value == null ? null : !value;
+    }
+}
@@ -0,0 +1,20 @@
+package com.xdw;
+
+/**
+ * 并发执行条件查询失败时抛出的异常，携带失败的条件字符串
+ */
+public class ConditionExecutionException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String condition;
+
+    public ConditionExecutionException(String message, String condition, Throwable cause) {
+        super(message + ": " + condition, cause);
+        this.condition = condition;
+    }
+
+    public String getCondition() {
+        return condition;
+    }
+}
@@ -0,0 +1,165 @@
+package com.xdw;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 多条件并发执行器
+ *
+ * 在虚拟线程上并发地解析并执行一组互相独立的条件：
+ * 1. 同时访问数据库的查询数量不超过连接池容量，避免线程在取连接时排队超时
+ * 2. 每条查询都有独立的超时时间，从拿到执行许可开始计时
+ * 3. 任意一条失败或超时，立即取消其余尚未完成的查询
+ *
+ * 同一个执行器可以被多个请求共享，许可数量在所有请求间共同生效。
+ */
+public class ConditionFanOutExecutor implements AutoCloseable {
+
+    private final Semaphore permits;
+    private final Duration queryTimeout;
+    private final ParserOptions options;
+    private final ScheduledExecutorService watchdog;
+
+    public ConditionFanOutExecutor(int maxConcurrency, Duration queryTimeout, ParserOptions options) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        }
+        if (queryTimeout == null || queryTimeout.isNegative() || queryTimeout.isZero()) {
+            throw new IllegalArgumentException("Query timeout must be positive: " + queryTimeout);
+        }
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.queryTimeout = queryTimeout;
+        this.options = options;
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "condition-fan-out-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.watchdog = scheduler;
+    }
+
+    /**
+     * 按 Druid 连接池的最大活跃连接数限制并发
+     */
+    public static ConditionFanOutExecutor forDataSource(DruidDataSource dataSource, Duration queryTimeout, ParserOptions options) {
+        return new ConditionFanOutExecutor(dataSource.getMaxActive(), queryTimeout, options);
+    }
+
+    /**
+     * 并发解析并执行所有条件
+     * @param conditions 条件字符串列表
+     * @param wrapperFactory 为每个条件创建新的 QueryWrapper
+     * @param mapper 执行查询的方法，通常是 mapper::selectList
+     * @return 与 conditions 顺序一致的结果列表
+     * @throws ConditionExecutionException 任意一个条件解析失败、执行失败或超时
+     */
+    public <T, R> List<R> execute(List<String> conditions, Supplier<QueryWrapper<T>> wrapperFactory,
+                                  Function<QueryWrapper<T>, R> mapper) {
+        Object[] results = new Object[conditions.size()];
+        List<Future<Integer>> futures = new ArrayList<>(conditions.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < conditions.size(); i++) {
+                int index = i;
+                futures.add(completion.submit(() -> {
+                    results[index] = executeOne(conditions.get(index), wrapperFactory, mapper);
+                    return index;
+                }));
+            }
+
+            Future<Integer> current = null;
+            try {
+                for (int done = 0; done < conditions.size(); done++) {
+                    current = completion.take();
+                    current.get();
+                }
+            } catch (ExecutionException e) {
+                cancelAll(futures);
+                String condition = conditions.get(futures.indexOf(current));
+                if (e.getCause() instanceof TimeoutException) {
+                    throw new ConditionExecutionException("Condition timed out after " + queryTimeout.toMillis() + " ms", condition, e.getCause());
+                }
+                throw new ConditionExecutionException("Condition execution failed", condition, e.getCause());
+            } catch (InterruptedException e) {
+                cancelAll(futures);
+                Thread.currentThread().interrupt();
+                throw new ConditionExecutionException("Interrupted while waiting for conditions", conditions.toString(), e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    private <T, R> R executeOne(String condition, Supplier<QueryWrapper<T>> wrapperFactory,
+                                Function<QueryWrapper<T>, R> mapper) throws InterruptedException, TimeoutException {
+        // 解析只消耗 CPU，不占用连接池许可
+        QueryWrapper<T> wrapper = ConditionParser.parse(condition, wrapperFactory.get(), options);
+
+        permits.acquire();
+        try {
+            Thread worker = Thread.currentThread();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> timer = watchdog.schedule(() -> {
+                timedOut.set(true);
+                worker.interrupt();
+            }, queryTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            try {
+                R result = mapper.apply(wrapper);
+                if (timedOut.get()) {
+                    throw new TimeoutException("Query exceeded " + queryTimeout.toMillis() + " ms");
+                }
+                return result;
+            } catch (RuntimeException e) {
+                if (timedOut.get()) {
+                    TimeoutException timeout = new TimeoutException("Query exceeded " + queryTimeout.toMillis() + " ms");
+                    timeout.initCause(e);
+                    throw timeout;
+                }
+                throw e;
+            } finally {
+                timer.cancel(false);
+                // 清除超时后残留的中断标记，避免影响后续任务
+                if (timedOut.get()) {
+                    Thread.interrupted();
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+    }
+}
@@ -0,0 +1,263 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIntervalExpr;
+import com.alibaba.druid.sql.ast.expr.SQLLiteralExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMatchAgainstExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNotExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNullExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.expr.SQLUnaryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLUnaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLValuableExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 条件形状的指纹
+ *
+ * 去掉所有字面量、把结构规范化后计算哈希，只取决于条件的形状，与具体的值无关：
+ * <ul>
+ *   <li>字面量和占位符都视为 ?，IN 列表不论长短都视为 IN (?)</li>
+ *   <li>字段名去掉引号并转为小写</li>
+ *   <li>连续的 AND（或 OR）展开为同一层，各部分按规范化后的文本排序，与书写顺序无关</li>
+ * </ul>
+ * 因此 "status = 'PAID' AND amount > 100" 与 "amount > 5 AND status = 'NEW'" 的指纹相同。
+ * 指纹是 16 位十六进制字符串（FNV-1a 64 位哈希），在不同 JVM 和版本间保持稳定，
+ * 可以写入 SQL 注释 "/* cond:指纹 *&#47;"，用来把慢查询日志、Druid 统计和业务指标关联到同一个条件模板。
+ */
+public final class ConditionFingerprint {
+
+    static final String COMMENT_PREFIX = "cond:";
+
+    private static final Pattern COMMENT = Pattern.compile("cond:([0-9a-f]{16})");
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ConditionFingerprint() {
+    }
+
+    /**
+     * 条件字符串的指纹，空条件的指纹是空字符串的哈希
+     * @throws IllegalArgumentException 条件无法解析
+     */
+    public static String of(String condition, ParserOptions options) {
+        return of(ConditionParser.parseToSQLExpr(condition, options), options.getDbType());
+    }
+
+    /**
+     * 已解析条件的指纹，空条件传入 null
+     */
+    static String of(SQLExpr expr, DbType dbType) {
+        return hash(expr == null ? "" : canonical(expr, dbType));
+    }
+
+    /**
+     * 从 QueryWrapper 的 SQL 注释中读取指纹，没有指纹时返回 null
+     */
+    public static String fromWrapper(QueryWrapper<?> queryWrapper) {
+        String comment = queryWrapper.getSqlComment();
+        if (comment == null) {
+            return null;
+        }
+        Matcher matcher = COMMENT.matcher(comment);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 把指纹作为 SQL 注释写入 QueryWrapper，渲染为 "/* cond:指纹 *&#47;"
+     * 指纹只包含十六进制字符，不会提前结束注释
+     */
+    static <T> QueryWrapper<T> tag(QueryWrapper<T> queryWrapper, String fingerprint) {
+        return queryWrapper.comment(" " + COMMENT_PREFIX + fingerprint + " ");
+    }
+
+    /**
+     * 多个指纹组合后的指纹，用于 AND/OR 组合的编译后条件；parts 的顺序不影响结果
+     */
+    static String combine(String connective, List<String> parts) {
+        List<String> sorted = new ArrayList<>(parts);
+        Collections.sort(sorted);
+        return hash(connective + "(" + String.join(",", sorted) + ")");
+    }
+
+    /**
+     * 规范化后的文本，即计算哈希的输入
+     */
+    static String canonical(SQLExpr expr, DbType dbType) {
+        StringBuilder sb = new StringBuilder();
+        append(expr, dbType, sb);
+        return sb.toString();
+    }
+
+    private static void append(SQLExpr expr, DbType dbType, StringBuilder sb) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binary = (SQLBinaryOpExpr) expr;
+            SQLBinaryOperator operator = binary.getOperator();
+            if (operator == SQLBinaryOperator.BooleanAnd || operator == SQLBinaryOperator.BooleanOr) {
+                List<String> parts = new ArrayList<>();
+                collectOperands(expr, operator, dbType, parts);
+                Collections.sort(parts);
+                sb.append('(').append(String.join(operator == SQLBinaryOperator.BooleanAnd ? " AND " : " OR ", parts)).append(')');
+                return;
+            }
+            append(binary.getLeft(), dbType, sb);
+            sb.append(' ').append(operator.getName()).append(' ');
+            append(binary.getRight(), dbType, sb);
+        } else if (expr instanceof SQLNullExpr) {
+            // IS NULL 与 = NULL 的区别是结构的一部分
+            sb.append("NULL");
+        } else if (isLiteral(expr)) {
+            sb.append('?');
+        } else if (expr instanceof SQLIdentifierExpr) {
+            sb.append(ConditionParser.normalizeColumnName(((SQLIdentifierExpr) expr).getName()));
+        } else if (expr instanceof SQLPropertyExpr) {
+            append(((SQLPropertyExpr) expr).getOwner(), dbType, sb);
+            sb.append('.').append(ConditionParser.normalizeColumnName(((SQLPropertyExpr) expr).getName()));
+        } else if (expr instanceof SQLInListExpr) {
+            SQLInListExpr in = (SQLInListExpr) expr;
+            append(in.getExpr(), dbType, sb);
+            sb.append(in.isNot() ? " NOT IN (" : " IN (");
+            // 列表长度不属于形状；含有非字面量的列表保留各项的形状
+            List<String> items = new ArrayList<>();
+            for (SQLExpr target : in.getTargetList()) {
+                String item = target instanceof LongListExpr ? "?" : canonical(target, dbType);
+                if (!items.contains(item)) {
+                    items.add(item);
+                }
+            }
+            Collections.sort(items);
+            sb.append(String.join(", ", items)).append(')');
+        } else if (expr instanceof SQLBetweenExpr) {
+            SQLBetweenExpr between = (SQLBetweenExpr) expr;
+            append(between.getTestExpr(), dbType, sb);
+            sb.append(between.isNot() ? " NOT BETWEEN " : " BETWEEN ");
+            append(between.getBeginExpr(), dbType, sb);
+            sb.append(" AND ");
+            append(between.getEndExpr(), dbType, sb);
+        } else if (expr instanceof SQLNotExpr) {
+            sb.append("NOT (");
+            append(((SQLNotExpr) expr).getExpr(), dbType, sb);
+            sb.append(')');
+        } else if (expr instanceof SQLUnaryExpr) {
+            SQLUnaryExpr unary = (SQLUnaryExpr) expr;
+            if (unary.getOperator() == SQLUnaryOperator.Negative && isLiteral(unary.getExpr())) {
+                // -5 与 5 只是值不同
+                sb.append('?');
+                return;
+            }
+            sb.append(unary.getOperator() == SQLUnaryOperator.Not ? "NOT" : unary.getOperator().name()).append(" (");
+            append(unary.getExpr(), dbType, sb);
+            sb.append(')');
+        } else if (expr instanceof SQLMethodInvokeExpr) {
+            SQLMethodInvokeExpr method = (SQLMethodInvokeExpr) expr;
+            sb.append(method.getMethodName().toLowerCase()).append('(');
+            List<SQLExpr> arguments = method.getArguments();
+            for (int i = 0; i < arguments.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                append(arguments.get(i), dbType, sb);
+            }
+            sb.append(')');
+        } else if (expr instanceof SQLIntervalExpr) {
+            SQLIntervalExpr interval = (SQLIntervalExpr) expr;
+            sb.append("INTERVAL ");
+            append(interval.getValue(), dbType, sb);
+            sb.append(' ').append(interval.getUnit());
+        } else if (expr instanceof SQLInSubQueryExpr) {
+            SQLInSubQueryExpr in = (SQLInSubQueryExpr) expr;
+            append(in.getExpr(), dbType, sb);
+            sb.append(in.isNot() ? " NOT IN (" : " IN (").append(subquery(in.getSubQuery(), dbType)).append(')');
+        } else if (expr instanceof SQLExistsExpr) {
+            SQLExistsExpr exists = (SQLExistsExpr) expr;
+            sb.append(exists.isNot() ? "NOT EXISTS (" : "EXISTS (").append(subquery(exists.getSubQuery(), dbType)).append(')');
+        } else if (expr instanceof SQLMatchAgainstExpr) {
+            SQLMatchAgainstExpr match = (SQLMatchAgainstExpr) expr;
+            sb.append("MATCH (");
+            List<SQLExpr> columns = match.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                append(columns.get(i), dbType, sb);
+            }
+            sb.append(") AGAINST (");
+            append(match.getAgainst(), dbType, sb);
+            sb.append(ConditionParser.searchModifier(match.getSearchModifier())).append(')');
+        } else {
+            // 其余表达式按类型和原文计入形状
+            sb.append(expr.getClass().getSimpleName()).append(':').append(expr);
+        }
+    }
+
+    private static void collectOperands(SQLExpr expr, SQLBinaryOperator operator, DbType dbType, List<String> parts) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == operator) {
+            collectOperands(((SQLBinaryOpExpr) expr).getLeft(), operator, dbType, parts);
+            collectOperands(((SQLBinaryOpExpr) expr).getRight(), operator, dbType, parts);
+        } else {
+            parts.add(canonical(expr, dbType));
+        }
+    }
+
+    private static boolean isLiteral(SQLExpr expr) {
+        return expr instanceof SQLLiteralExpr || expr instanceof SQLValuableExpr || expr instanceof SQLVariantRefExpr;
+    }
+
+    /**
+     * 子查询使用 Druid 的参数化输出去掉字面量
+     */
+    private static String subquery(SQLSelect select, DbType dbType) {
+        return ParameterizedOutputVisitorUtils.parameterize(select.toString(), dbType).toLowerCase();
+    }
+
+    /**
+     * 规范化文本的哈希，即指纹
+     */
+    static String hash(String canonical) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < canonical.length(); i++) {
+            char c = canonical.charAt(i);
+            if (c >= 0x80) {
+                // 含非 ASCII 字符时按 UTF-8 字节计算，纯 ASCII 时两者相同且不需要复制
+                return hex(utf8Hash(canonical));
+            }
+            hash ^= c;
+            hash *= FNV_PRIME;
+        }
+        return hex(hash);
+    }
+
+    private static long utf8Hash(String canonical) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : canonical.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String hex(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+}
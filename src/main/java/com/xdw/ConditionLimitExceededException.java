@@ -0,0 +1,45 @@
+package com.xdw;
+
+/**
+ * 条件超出复杂度限制或并发解析限制
+ *
+ * 继承 IllegalArgumentException，原来按非法条件处理的调用方不需要修改；
+ * 需要区分的调用方（例如返回 413 或 429）可以单独捕获，并通过 getLimit 判断原因。
+ */
+public class ConditionLimitExceededException extends IllegalArgumentException {
+
+    /**
+     * 超出的限制项
+     */
+    public enum Limit {
+        LENGTH, TOKENS, DEPTH, IN_LIST_SIZE, PARAMETERS, CONCURRENT_PARSES
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    private final Limit limit;
+    private final long maxAllowed;
+    private final long actual;
+
+    /**
+     * @param actual 检测到的值；扫描在超限时立即停止，所以通常等于 maxAllowed + 1，而不是输入的真实值
+     */
+    public ConditionLimitExceededException(Limit limit, long maxAllowed, long actual) {
+        super("Condition exceeds " + limit + " limit: " + actual + " > " + maxAllowed);
+        this.limit = limit;
+        this.maxAllowed = maxAllowed;
+        this.actual = actual;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public long getMaxAllowed() {
+        return maxAllowed;
+    }
+
+    public long getActual() {
+        return actual;
+    }
+}
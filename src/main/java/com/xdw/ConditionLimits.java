@@ -0,0 +1,118 @@
+package com.xdw;
+
+/**
+ * 条件复杂度限制
+ *
+ * 在交给 Druid 解析之前，用一次轻量的字符扫描检查条件，超出任意一项限制立即失败，
+ * 不会为超大的输入分配完整的语法树。扫描在第一次超限时就停止，所以一个 5 MB 的输入
+ * 在长度检查时就被拒绝，一个百万元素的 IN 列表在扫描到限制处时被拒绝。
+ *
+ * 不可变对象，每个 withXxx 方法都返回一个新的实例。Integer.MAX_VALUE 表示不限制。
+ */
+public final class ConditionLimits {
+
+    private static final ConditionLimits UNLIMITED = new ConditionLimits();
+
+    // 条件字符串的最大字符数
+    private int maxLength = Integer.MAX_VALUE;
+
+    // 最大词法单元数（标识符、字面量、运算符、括号等）
+    private int maxTokens = Integer.MAX_VALUE;
+
+    // 括号的最大嵌套深度
+    private int maxDepth = Integer.MAX_VALUE;
+
+    // 单个 IN 列表的最大元素数
+    private int maxInListSize = Integer.MAX_VALUE;
+
+    // 字面量和占位符的总数，即生成的绑定参数数量的上限
+    private int maxParameters = Integer.MAX_VALUE;
+
+    private ConditionLimits() {
+    }
+
+    private ConditionLimits copy() {
+        ConditionLimits copy = new ConditionLimits();
+        copy.maxLength = this.maxLength;
+        copy.maxTokens = this.maxTokens;
+        copy.maxDepth = this.maxDepth;
+        copy.maxInListSize = this.maxInListSize;
+        copy.maxParameters = this.maxParameters;
+        return copy;
+    }
+
+    /**
+     * 不做任何限制，与原有行为一致
+     */
+    public static ConditionLimits unlimited() {
+        return UNLIMITED;
+    }
+
+    public ConditionLimits withMaxLength(int maxLength) {
+        ConditionLimits copy = copy();
+        copy.maxLength = requirePositive(maxLength, "Max length");
+        return copy;
+    }
+
+    public ConditionLimits withMaxTokens(int maxTokens) {
+        ConditionLimits copy = copy();
+        copy.maxTokens = requirePositive(maxTokens, "Max tokens");
+        return copy;
+    }
+
+    public ConditionLimits withMaxDepth(int maxDepth) {
+        ConditionLimits copy = copy();
+        copy.maxDepth = requirePositive(maxDepth, "Max depth");
+        return copy;
+    }
+
+    public ConditionLimits withMaxInListSize(int maxInListSize) {
+        ConditionLimits copy = copy();
+        copy.maxInListSize = requirePositive(maxInListSize, "Max IN list size");
+        return copy;
+    }
+
+    public ConditionLimits withMaxParameters(int maxParameters) {
+        ConditionLimits copy = copy();
+        copy.maxParameters = requirePositive(maxParameters, "Max parameters");
+        return copy;
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxInListSize() {
+        return maxInListSize;
+    }
+
+    public int getMaxParameters() {
+        return maxParameters;
+    }
+
+    boolean isUnlimited() {
+        return maxLength == Integer.MAX_VALUE && maxTokens == Integer.MAX_VALUE && maxDepth == Integer.MAX_VALUE
+                && maxInListSize == Integer.MAX_VALUE && maxParameters == Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "ConditionLimits{maxLength=" + maxLength + ", maxTokens=" + maxTokens + ", maxDepth=" + maxDepth
+                + ", maxInListSize=" + maxInListSize + ", maxParameters=" + maxParameters + "}";
+    }
+}
@@ -0,0 +1,91 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xdw.ConditionLimitExceededException.Limit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按调用方限制同时进行的解析数量
+ *
+ * 每个调用方（租户、客户端 ID 等）同时最多只能有 maxConcurrentPerCaller 个解析在进行，
+ * 超出时立即以 ConditionLimitExceededException（CONCURRENT_PARSES）拒绝而不是排队等待，
+ * 这样一个不断发送病态条件的调用方最多占用固定数量的 CPU，不会拖慢其他调用方。
+ *
+ * 计数在调用方没有进行中的解析时自动移除，调用方数量很多时也不会无限增长。
+ */
+public class ConditionParseLimiter {
+
+    private final int maxConcurrentPerCaller;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public ConditionParseLimiter(int maxConcurrentPerCaller) {
+        if (maxConcurrentPerCaller <= 0) {
+            throw new IllegalArgumentException("Max concurrent parses must be positive: " + maxConcurrentPerCaller);
+        }
+        this.maxConcurrentPerCaller = maxConcurrentPerCaller;
+    }
+
+    /**
+     * 以调用方的名义解析条件
+     * options 中配置了 HeavyHitterTracker 时同时记录调用方的解析次数和耗时
+     * @throws ConditionLimitExceededException 调用方的并发解析数已满，或条件超出 options 中的复杂度限制
+     */
+    public <T> QueryWrapper<T> parse(String caller, String condition, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        HeavyHitterTracker tracker = options.getHeavyHitterTracker();
+        if (tracker == null) {
+            return run(caller, () -> ConditionParser.parse(condition, queryWrapper, options));
+        }
+        long start = System.nanoTime();
+        try {
+            return run(caller, () -> ConditionParser.parse(condition, queryWrapper, options));
+        } finally {
+            tracker.recordCaller(caller, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 以调用方的名义执行任意解析任务，如 CompiledCondition.compile 或 ConditionParser.prepare
+     * @throws ConditionLimitExceededException 调用方的并发解析数已满
+     */
+    public <R> R run(String caller, Supplier<R> task) {
+        acquire(caller);
+        try {
+            return task.get();
+        } finally {
+            release(caller);
+        }
+    }
+
+    /**
+     * 调用方当前进行中的解析数量
+     */
+    public int inFlight(String caller) {
+        AtomicInteger count = inFlight.get(caller);
+        return count == null ? 0 : count.get();
+    }
+
+    private void acquire(String caller) {
+        boolean[] admitted = new boolean[1];
+        inFlight.compute(caller, (key, count) -> {
+            if (count == null) {
+                count = new AtomicInteger();
+            }
+            if (count.get() < maxConcurrentPerCaller) {
+                count.incrementAndGet();
+                admitted[0] = true;
+            }
+            return count.get() == 0 ? null : count;
+        });
+        if (!admitted[0]) {
+            throw new ConditionLimitExceededException(Limit.CONCURRENT_PARSES, maxConcurrentPerCaller, maxConcurrentPerCaller + 1);
+        }
+    }
+
+    private void release(String caller) {
+        inFlight.compute(caller, (key, count) -> count == null || count.decrementAndGet() == 0 ? null : count);
+    }
+}
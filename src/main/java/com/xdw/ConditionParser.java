@@ -2,49 +2,145 @@ package com.xdw;
 
 import com.alibaba.druid.DbType;
 import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLCurrentTimeExpr;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.expr.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.time.Clock;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class ConditionParser {
 
     public static <T> QueryWrapper<T> parse(String condition, QueryWrapper<T> queryWrapper) {
+        return parse(condition, queryWrapper, ParserOptions.defaults());
+    }
+
+    /**
+     * 使用指定的解析选项解析条件
+     * @param condition SQL条件字符串，如 "name = 'John' AND age > 18"
+     * @param queryWrapper QueryWrapper实例
+     * @param options 解析选项
+     * @return 处理后的QueryWrapper
+     */
+    public static <T> QueryWrapper<T> parse(String condition, QueryWrapper<T> queryWrapper, ParserOptions options) {
         try {
-            // 去除前后空格并检查空字符串
-            condition = condition.trim();
-            if (condition.isEmpty()) {
+            HeavyHitterTracker tracker = options.getHeavyHitterTracker();
+            boolean tracked = tracker != null && tracker.sample();
+            long start = tracked ? System.nanoTime() : 0;
+            SQLExpr sqlExpr = toSQLExpr(condition, options);
+            if (sqlExpr == null) {
                 return queryWrapper;
             }
-            
-            SQLExpr sqlExpr = SQLUtils.toSQLExpr(condition, DbType.mysql);
-            parseSQLExpr(sqlExpr, queryWrapper);
+            parseSQLExpr(sqlExpr, queryWrapper, options);
+            if (tracked) {
+                tracker.record(sqlExpr, options.getDbType(), System.nanoTime() - start);
+            }
+            return tagFingerprint(sqlExpr, queryWrapper, options);
+        } catch (ConditionLimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
+        }
+    }
+
+    /**
+     * 使用 ConditionCodec 编码的条件，跳过文本解析
+     * 编码可能来自客户端，解码时同样检查 options 中的复杂度限制
+     * @param plan ConditionCodec.encode 的结果
+     * @param queryWrapper QueryWrapper实例
+     * @param options 解析选项，时间函数等按此选项求值
+     * @return 处理后的QueryWrapper
+     */
+    public static <T> QueryWrapper<T> parse(byte[] plan, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        SQLExpr sqlExpr = ConditionCodec.decode(plan, options.getLimits());
+        if (sqlExpr == null) {
             return queryWrapper;
+        }
+        try {
+            parseSQLExpr(sqlExpr, queryWrapper, options);
+            return tagFingerprint(sqlExpr, queryWrapper, options);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse condition: " + sqlExpr, e);
+        }
+    }
+
+    /**
+     * 选项要求时把条件指纹写入 SQL 注释
+     */
+    static <T> QueryWrapper<T> tagFingerprint(SQLExpr expr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        if (options.isFingerprintComment()) {
+            ConditionFingerprint.tag(queryWrapper, ConditionFingerprint.of(expr, options.getDbType()));
+        }
+        return queryWrapper;
+    }
+
+    /**
+     * 预编译带占位符的条件，如 "age >= :minAge AND status IN (:statuses)" 或 "age >= ? AND name = ?"
+     * 条件只解析一次，每次应用时绑定参数值
+     * @throws IllegalArgumentException 条件无法解析，或同时使用了命名和位置占位符
+     */
+    public static PreparedCondition prepare(String condition, ParserOptions options) {
+        return PreparedCondition.prepare(condition, options);
+    }
+
+    /**
+     * 把条件字符串解析为 Druid AST，空条件返回 null
+     * 分片路由等分析器也通过这里解析，保证与 parse 使用相同的方言
+     */
+    static SQLExpr toSQLExpr(String condition, ParserOptions options) {
+        // 去除前后空格并检查空字符串
+        condition = condition.trim();
+        if (condition.isEmpty()) {
+            return null;
+        }
+        // 先用轻量扫描检查复杂度限制，超限的输入不进入 Druid 解析
+        ConditionScanner.check(condition, options.getLimits());
+        return SQLUtils.toSQLExpr(condition, options.getDbType());
+    }
+
+    /**
+     * 与 toSQLExpr 相同，但把解析错误包装为 IllegalArgumentException，超出限制的异常原样抛出
+     */
+    static SQLExpr parseToSQLExpr(String condition, ParserOptions options) {
+        try {
+            return toSQLExpr(condition, options);
+        } catch (ConditionLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
         }
     }
 
-    private static <T> void parseSQLExpr(SQLExpr expr, QueryWrapper<T> queryWrapper) {
+    static <T> void parseSQLExpr(SQLExpr expr, QueryWrapper<T> queryWrapper, ParserOptions options) {
         if (expr instanceof SQLBinaryOpExpr) {
-            handleBinaryOpExpr((SQLBinaryOpExpr) expr, queryWrapper);
+            handleBinaryOpExpr((SQLBinaryOpExpr) expr, queryWrapper, options);
         } else if (expr instanceof SQLInListExpr) {
-            handleInListExpr((SQLInListExpr) expr, queryWrapper);
+            handleInListExpr((SQLInListExpr) expr, queryWrapper, options);
         } else if (expr instanceof SQLBetweenExpr) {
-            handleBetweenExpr((SQLBetweenExpr) expr, queryWrapper);
+            handleBetweenExpr((SQLBetweenExpr) expr, queryWrapper, options);
         } else if (expr instanceof SQLNotExpr) {
-            handleNotExpr((SQLNotExpr) expr, queryWrapper);
+            handleNotExpr((SQLNotExpr) expr, queryWrapper, options);
         } else if (expr instanceof SQLUnaryExpr) {
-            handleUnaryExpr((SQLUnaryExpr) expr, queryWrapper);
+            handleUnaryExpr((SQLUnaryExpr) expr, queryWrapper, options);
+        } else if (expr instanceof SQLInSubQueryExpr) {
+            handleInSubQueryExpr((SQLInSubQueryExpr) expr, queryWrapper, options);
+        } else if (expr instanceof SQLExistsExpr) {
+            handleExistsExpr((SQLExistsExpr) expr, queryWrapper, options);
+        } else if (expr instanceof SQLMatchAgainstExpr) {
+            handleMatchAgainstExpr((SQLMatchAgainstExpr) expr, queryWrapper, options);
         } else {
             throw new UnsupportedOperationException("Unsupported expression type: " + expr.getClass().getName());
         }
     }
 
-    private static <T> void handleBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr, QueryWrapper<T> queryWrapper) {
+    private static <T> void handleBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
         SQLBinaryOperator operator = binaryOpExpr.getOperator();
         SQLExpr left = binaryOpExpr.getLeft();
         SQLExpr right = binaryOpExpr.getRight();
@@ -52,16 +148,14 @@ public class ConditionParser {
         switch (operator) {
             case BooleanAnd:
                 // 对于AND操作，直接递归处理左右表达式
-                parseSQLExpr(left, queryWrapper);
-                parseSQLExpr(right, queryWrapper);
+                parseSQLExpr(left, queryWrapper, options);
+                parseSQLExpr(right, queryWrapper, options);
                 break;
             case BooleanOr:
                 // 对于OR操作，使用or()方法包装
-                queryWrapper.and(wrapper -> {
-                    wrapper.nested(w1 -> parseSQLExpr(left, w1))
-                           .or()
-                           .nested(w2 -> parseSQLExpr(right, w2));
-                });
+                // 连续的 OR 展开在同一层，每个分支一个 nested，嵌套深度不随分支数增长
+                // LIKE 只在顶层和 AND 分支中改写
+                queryWrapper.and(wrapper -> addOrBranches(binaryOpExpr, wrapper, options.withoutLikeRewrites()));
                 break;
             case Equality:
             case NotEqual:
@@ -71,7 +165,7 @@ public class ConditionParser {
             case GreaterThanOrEqual:
             case Like:
             case NotLike:
-                handleComparison(operator, left, right, queryWrapper);
+                handleComparison(operator, left, right, queryWrapper, options);
                 break;
             case Is:
             case IsNot:
@@ -82,9 +176,25 @@ public class ConditionParser {
         }
     }
 
-    private static <T> void handleComparison(SQLBinaryOperator operator, SQLExpr left, SQLExpr right, QueryWrapper<T> queryWrapper) {
+    private static <T> void addOrBranches(SQLExpr expr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == SQLBinaryOperator.BooleanOr) {
+            addOrBranches(((SQLBinaryOpExpr) expr).getLeft(), queryWrapper, options);
+            queryWrapper.or();
+            addOrBranches(((SQLBinaryOpExpr) expr).getRight(), queryWrapper, options);
+        } else {
+            queryWrapper.nested(w -> parseSQLExpr(expr, w, options));
+        }
+    }
+
+    private static <T> void handleComparison(SQLBinaryOperator operator, SQLExpr left, SQLExpr right, QueryWrapper<T> queryWrapper, ParserOptions options) {
         String column = extractColumnName(left);
-        Object value = extractValue(right);
+        Object value = extractValue(right, options);
+
+        if (value instanceof SqlExpression) {
+            // 下推到数据库的表达式直接写入 SQL，不产生绑定参数
+            queryWrapper.apply(column + " " + operator.getName() + " " + value);
+            return;
+        }
 
         switch (operator) {
             case Equality:
@@ -106,7 +216,10 @@ public class ConditionParser {
                 queryWrapper.ge(column, value);
                 break;
             case Like:
-                handleLikeOperation(column, value, queryWrapper, false);
+                if (!handleIndexedLike(column, value, queryWrapper, options)
+                        && !handleFullTextLike(column, value, queryWrapper, options)) {
+                    handleLikeOperation(column, value, queryWrapper, false);
+                }
                 break;
             case NotLike:
                 handleLikeOperation(column, value, queryWrapper, true);
@@ -140,6 +253,101 @@ public class ConditionParser {
         }
     }
 
+    /**
+     * 由三元组索引计算 LIKE 匹配的行，改写为 id IN (...)，没有匹配的行时改写为 1 = 0
+     * 与 handleLikeOperation 一致，不含通配符的值按 %value% 匹配
+     * NOT、OR 分支和子查询中的条件在调用前已去掉索引（ParserOptions.withoutLikeRewrites）：
+     * 在 NOT 下改写会让字段为 NULL 和不在索引中的行也满足条件
+     * @return 索引无法回答时返回 false，由调用方按原来的 LIKE 处理
+     */
+    private static <T> boolean handleIndexedLike(String column, Object value, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        TrigramIndex index = options.getTrigramIndex();
+        if (index == null || !(value instanceof String) || !index.isIndexed(column)) {
+            return false;
+        }
+        String pattern = (String) value;
+        if (!pattern.contains("%") && !pattern.contains("_")) {
+            pattern = "%" + pattern + "%";
+        }
+        long[] ids = index.search(column, pattern);
+        if (ids == null) {
+            return false;
+        }
+        if (ids.length == 0) {
+            queryWrapper.apply("1 = 0");
+            return true;
+        }
+        SQLInListExpr inListExpr = new SQLInListExpr(new SQLIdentifierExpr(index.getIdColumn()));
+        inListExpr.addTarget(new LongListExpr(ids));
+        handleInListExpr(inListExpr, queryWrapper, options);
+        return true;
+    }
+
+    /**
+     * 单字段 FULLTEXT 索引上按单词匹配的 LIKE 改写为布尔模式的全文检索
+     * 与三元组索引相同，NOT、OR 分支和子查询中的条件在调用前已去掉索引
+     * @return 不能改写时返回 false，由调用方按原来的 LIKE 处理
+     */
+    private static <T> boolean handleFullTextLike(String column, Object value, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        FullTextIndexes indexes = options.getFullTextIndexes();
+        if (!(value instanceof String) || !indexes.isIndexed(column) || !supportsMatchAgainst(options.getDbType())) {
+            return false;
+        }
+        String query = indexes.toBooleanQuery((String) value);
+        if (query == null) {
+            return false;
+        }
+        queryWrapper.apply("MATCH (" + column + ") AGAINST ({0} IN BOOLEAN MODE)", query);
+        return true;
+    }
+
+    /**
+     * MATCH ... AGAINST 是 MySQL 和 MariaDB 的语法
+     */
+    private static boolean supportsMatchAgainst(DbType dbType) {
+        return dbType == DbType.mysql || dbType == DbType.mariadb;
+    }
+
+    /**
+     * MATCH (col, ...) AGAINST ('...' [modifier])，检索文本作为绑定参数
+     * @throws UnsupportedOperationException 方言不是 MySQL 或 MariaDB
+     */
+    private static <T> void handleMatchAgainstExpr(SQLMatchAgainstExpr matchExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        if (!supportsMatchAgainst(options.getDbType())) {
+            throw new UnsupportedOperationException("MATCH ... AGAINST is not supported for " + options.getDbType() + ": " + matchExpr);
+        }
+        StringBuilder sql = new StringBuilder("MATCH (");
+        List<SQLExpr> columns = matchExpr.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(extractColumnName(columns.get(i)));
+        }
+        Object against = extractValue(matchExpr.getAgainst(), options);
+        if (against == null || against instanceof SqlExpression) {
+            throw new IllegalArgumentException("Full-text search text must be a value: " + matchExpr.getAgainst());
+        }
+        sql.append(") AGAINST ({0}").append(searchModifier(matchExpr.getSearchModifier())).append(')');
+        queryWrapper.apply(sql.toString(), against);
+    }
+
+    static String searchModifier(SQLMatchAgainstExpr.SearchModifier modifier) {
+        if (modifier == null) {
+            return "";
+        }
+        switch (modifier) {
+            case IN_BOOLEAN_MODE:
+                return " IN BOOLEAN MODE";
+            case IN_NATURAL_LANGUAGE_MODE:
+                return " IN NATURAL LANGUAGE MODE";
+            case IN_NATURAL_LANGUAGE_MODE_WITH_QUERY_EXPANSION:
+                return " IN NATURAL LANGUAGE MODE WITH QUERY EXPANSION";
+            default:
+                return " WITH QUERY EXPANSION";
+        }
+    }
+
     private static <T> void handleNullCheck(SQLBinaryOperator operator, SQLExpr left, SQLExpr right, QueryWrapper<T> queryWrapper) {
         if (right instanceof SQLNullExpr) {
             String column = extractColumnName(left);
@@ -153,7 +361,7 @@ public class ConditionParser {
         }
     }
 
-    private static String extractColumnName(SQLExpr expr) {
+    static String extractColumnName(SQLExpr expr) {
         if (expr instanceof SQLIdentifierExpr) {
             return ((SQLIdentifierExpr) expr).getName();
         } else if (expr instanceof SQLPropertyExpr) {
@@ -162,11 +370,60 @@ public class ConditionParser {
         throw new IllegalArgumentException("Invalid column expression: " + expr);
     }
 
-    private static Object extractValue(SQLExpr expr) {
-        if (expr instanceof SQLCharExpr) {
+    /**
+     * IN 列表中的全部值，LongListExpr 展开为按需装箱的视图
+     * 列表只由一个 LongListExpr 构成时直接返回视图，不复制数组
+     */
+    static List<Object> extractValues(SQLInListExpr inListExpr, ParserOptions options) {
+        List<SQLExpr> targets = inListExpr.getTargetList();
+        if (targets.size() == 1 && targets.get(0) instanceof LongListExpr) {
+            return ((LongListExpr) targets.get(0)).asList();
+        }
+        List<Object> values = new ArrayList<>(targets.size());
+        for (SQLExpr valueExpr : targets) {
+            if (valueExpr instanceof LongListExpr) {
+                values.addAll(((LongListExpr) valueExpr).asList());
+            } else {
+                values.add(extractValue(valueExpr, options));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 整数字面量的装箱形式：int 范围内为 Integer，long 范围内为 Long，更大的保持 BigInteger
+     */
+    static Number integerValue(Number number) {
+        if (number instanceof BigInteger && ((BigInteger) number).bitLength() >= 64) {
+            return number;
+        }
+        return integerValue(number.longValue());
+    }
+
+    static Number integerValue(long value) {
+        return value == (int) value ? (Number) (int) value : (Number) value;
+    }
+
+    /**
+     * 规范化字段名用于比较：去掉反引号或双引号并转为小写
+     */
+    static String normalizeColumnName(String column) {
+        String name = column.trim();
+        if (name.length() > 1 && (name.charAt(0) == '`' || name.charAt(0) == '"')) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.toLowerCase();
+    }
+
+    static Object extractValue(SQLExpr expr, ParserOptions options) {
+        if (expr instanceof BoundValueExpr) {
+            return ((BoundValueExpr) expr).getValue();
+        } else if (expr instanceof SQLCharExpr) {
             return ((SQLCharExpr) expr).getText();
+        } else if (expr instanceof LongLiteralExpr) {
+            return integerValue(((LongLiteralExpr) expr).longValue());
         } else if (expr instanceof SQLIntegerExpr) {
-            return ((SQLIntegerExpr) expr).getNumber().intValue();
+            return integerValue(((SQLIntegerExpr) expr).getNumber());
         } else if (expr instanceof SQLNumberExpr) {
             return ((SQLNumberExpr) expr).getNumber();
         } else if (expr instanceof SQLBooleanExpr) {
@@ -174,29 +431,48 @@ public class ConditionParser {
         } else if (expr instanceof SQLNullExpr) {
             return null;
         } else if (expr instanceof SQLMethodInvokeExpr) {
-            return handleFunction((SQLMethodInvokeExpr) expr);
+            return handleFunction((SQLMethodInvokeExpr) expr, options);
         } else if (expr instanceof SQLNCharExpr) {
             return ((SQLNCharExpr) expr).getText();
+        } else if (expr instanceof SQLCurrentTimeExpr) {
+            // 不带括号的 CURRENT_DATE / CURRENT_TIMESTAMP 等关键字形式
+            String name = ((SQLCurrentTimeExpr) expr).getType().name().toLowerCase();
+            if (isTimeFunction(name)) {
+                return handleTimeFunction(name, options);
+            }
         }
         throw new UnsupportedOperationException("Unsupported value type: " + expr.getClass().getName());
     }
 
-    private static Object handleFunction(SQLMethodInvokeExpr func) {
+    private static Object handleFunction(SQLMethodInvokeExpr func, ParserOptions options) {
         String methodName = func.getMethodName().toLowerCase();
         switch (methodName) {
             case "now":
             case "sysdate":
-                return new Date();
             case "current_date":
-                return new java.sql.Date(System.currentTimeMillis());
             case "current_timestamp":
-                return new java.sql.Timestamp(System.currentTimeMillis());
+                return handleTimeFunction(methodName, options);
             case "concat":
-                StringBuilder sb = new StringBuilder();
-                for (SQLExpr arg : func.getArguments()) {
-                    Object value = extractValue(arg);
+                // concat 的结果在 JVM 中拼接，其中的时间函数总是按 JVM 时钟求值
+                // 先求出各参数的文本和总长度，再按准确的容量拼接一次，不产生中间字符串
+                List<SQLExpr> arguments = func.getArguments();
+                String[] parts = new String[arguments.size()];
+                int length = 0;
+                for (int i = 0; i < parts.length; i++) {
+                    SQLExpr arg = arguments.get(i);
+                    String timeFunction = timeFunctionName(arg);
+                    Object value = timeFunction != null
+                            ? evaluateTimeFunction(timeFunction, options.getClock())
+                            : extractValue(arg, options);
                     if (value != null) {
-                        sb.append(value.toString());
+                        parts[i] = value.toString();
+                        length += parts[i].length();
+                    }
+                }
+                StringBuilder sb = new StringBuilder(length);
+                for (String part : parts) {
+                    if (part != null) {
+                        sb.append(part);
                     }
                 }
                 return sb.toString();
@@ -205,40 +481,231 @@ public class ConditionParser {
         }
     }
 
-    private static <T> void handleInListExpr(SQLInListExpr inListExpr, QueryWrapper<T> queryWrapper) {
+    /**
+     * 时间函数的小写名称，包括 now() 等函数调用和不带括号的 CURRENT_DATE 等关键字形式；不是时间函数时返回 null
+     */
+    private static String timeFunctionName(SQLExpr expr) {
+        String name = null;
+        if (expr instanceof SQLMethodInvokeExpr) {
+            name = ((SQLMethodInvokeExpr) expr).getMethodName().toLowerCase();
+        } else if (expr instanceof SQLCurrentTimeExpr) {
+            name = ((SQLCurrentTimeExpr) expr).getType().name().toLowerCase();
+        }
+        return name != null && isTimeFunction(name) ? name : null;
+    }
+
+    static boolean isTimeFunction(String methodName) {
+        switch (methodName) {
+            case "now":
+            case "sysdate":
+            case "current_date":
+            case "current_timestamp":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 处理时间函数
+     * PUSH_DOWN 策略下返回 SQL 表达式，由数据库求值，SQL 文本和参数在多次解析间保持不变；
+     * JVM_CLOCK 策略下使用配置的 Clock 在 JVM 中求值并作为绑定参数
+     */
+    private static Object handleTimeFunction(String methodName, ParserOptions options) {
+        if (options.getTimeFunctionPolicy() == TimeFunctionPolicy.PUSH_DOWN) {
+            switch (methodName) {
+                case "now":
+                    return SqlExpression.NOW;
+                case "sysdate":
+                    return options.getDbType() == DbType.postgresql ? SqlExpression.CLOCK_TIMESTAMP : SqlExpression.SYSDATE;
+                case "current_date":
+                    return SqlExpression.CURRENT_DATE;
+                default:
+                    return SqlExpression.CURRENT_TIMESTAMP;
+            }
+        }
+        return evaluateTimeFunction(methodName, options.getClock());
+    }
+
+    private static Object evaluateTimeFunction(String methodName, Clock clock) {
+        switch (methodName) {
+            case "now":
+            case "sysdate":
+                return new Date(clock.millis());
+            case "current_date":
+                return new java.sql.Date(clock.millis());
+            default:
+                return new java.sql.Timestamp(clock.millis());
+        }
+    }
+
+    /**
+     * 把值转换成 apply() 使用的 SQL 操作数：
+     * 下推的表达式原样写入，普通值作为 {n} 占位符加入参数列表
+     */
+    private static String toSqlOperand(Object value, List<Object> args) {
+        if (value instanceof SqlExpression) {
+            return value.toString();
+        }
+        args.add(value);
+        return "{" + (args.size() - 1) + "}";
+    }
+
+    private static <T> void handleInListExpr(SQLInListExpr inListExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
         String column = extractColumnName(inListExpr.getExpr());
-        List<Object> values = new ArrayList<>();
+        List<Object> values = extractValues(inListExpr, options);
+        boolean hasSqlExpression = false;
+        for (int i = 0; i < values.size() && !hasSqlExpression; i++) {
+            hasSqlExpression = values.get(i) instanceof SqlExpression;
+        }
 
-        for (SQLExpr valueExpr : inListExpr.getTargetList()) {
-            values.add(extractValue(valueExpr));
+        Object[] array = !hasSqlExpression && options.getDbType() == DbType.postgresql ? toTypedArray(values) : null;
+        if (array != null) {
+            // PostgreSQL：整个列表绑定为一个数组参数，任意长度的列表都是同一个语句形状
+            if (inListExpr.isNot()) {
+                queryWrapper.apply(column + " <> ALL({0})", (Object) array);
+            } else {
+                queryWrapper.apply(column + " = ANY({0})", (Object) array);
+            }
+            return;
         }
 
-        if (inListExpr.isNot()) {
+        values = padToBucket(values, options.getInListBucketing());
+
+        if (hasSqlExpression) {
+            List<Object> args = new ArrayList<>();
+            StringBuilder sql = new StringBuilder(column).append(inListExpr.isNot() ? " NOT IN (" : " IN (");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(toSqlOperand(values.get(i), args));
+            }
+            queryWrapper.apply(sql.append(")").toString(), args.toArray());
+        } else if (inListExpr.isNot()) {
             queryWrapper.notIn(column, values);
         } else {
             queryWrapper.in(column, values);
         }
     }
 
-    private static <T> void handleBetweenExpr(SQLBetweenExpr betweenExpr, QueryWrapper<T> queryWrapper) {
+    /**
+     * 把 IN 列表转换成数组参数
+     * 元素类型一致时使用该类型的数组（如 Integer[]、String[]），便于 JDBC 驱动推断数组类型
+     * @return 元素类型不一致或全部为 null 时返回 null，Object[] 无法绑定为有类型的数组，调用方退回逐个元素绑定
+     */
+    private static Object[] toTypedArray(List<Object> values) {
+        Class<?> elementType = null;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            Class<?> type = value.getClass();
+            if (elementType == null) {
+                elementType = type;
+            } else if (isIntegerType(elementType) && isIntegerType(type)) {
+                // 同时有 int 和 long 范围内的 id 时统一为 Long
+                elementType = elementType == type ? type : Long.class;
+            } else if (elementType != type) {
+                return null;
+            }
+        }
+        if (elementType == null) {
+            return null;
+        }
+        Object[] array = (Object[]) Array.newInstance(elementType, values.size());
+        if (elementType == Long.class) {
+            for (int i = 0; i < array.length; i++) {
+                Object value = values.get(i);
+                array[i] = value == null ? null : ((Number) value).longValue();
+            }
+            return array;
+        }
+        return values.toArray(array);
+    }
+
+    private static boolean isIntegerType(Class<?> type) {
+        return type == Integer.class || type == Long.class;
+    }
+
+    /**
+     * 按分桶策略补齐 IN 列表：重复最后一个值直到桶大小，使 SQL 形状数量有界
+     * 返回只读视图，不复制原列表
+     */
+    private static List<Object> padToBucket(List<Object> values, InListBucketing bucketing) {
+        if (bucketing == null || values.isEmpty()) {
+            return values;
+        }
+        int target = bucketing.bucketSize(values.size());
+        return target > values.size() ? new PaddedList(values, target) : values;
+    }
+
+    private static final class PaddedList extends AbstractList<Object> implements RandomAccess {
+        private final List<Object> values;
+        private final int size;
+
+        PaddedList(List<Object> values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return values.get(Math.min(index, values.size() - 1));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * col [NOT] IN (SELECT ...)，子查询按 options 中的白名单检查后整体交给数据库执行
+     */
+    private static <T> void handleInSubQueryExpr(SQLInSubQueryExpr inSubQueryExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        String column = extractColumnName(inSubQueryExpr.getExpr());
+        SqlFragment subquery = SubqueryRenderer.render(inSubQueryExpr.getSubQuery(), true, options);
+        String operator = inSubQueryExpr.isNot() ? " NOT IN (" : " IN (";
+        queryWrapper.apply(column + operator + subquery.getTemplate() + ")", subquery.getParameters().toArray());
+    }
+
+    /**
+     * [NOT] EXISTS (SELECT ...)
+     */
+    private static <T> void handleExistsExpr(SQLExistsExpr existsExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        SqlFragment subquery = SubqueryRenderer.render(existsExpr.getSubQuery(), false, options);
+        String operator = existsExpr.isNot() ? "NOT EXISTS (" : "EXISTS (";
+        queryWrapper.apply(operator + subquery.getTemplate() + ")", subquery.getParameters().toArray());
+    }
+
+    private static <T> void handleBetweenExpr(SQLBetweenExpr betweenExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
         String column = extractColumnName(betweenExpr.getTestExpr());
-        Object begin = extractValue(betweenExpr.getBeginExpr());
-        Object end = extractValue(betweenExpr.getEndExpr());
+        Object begin = extractValue(betweenExpr.getBeginExpr(), options);
+        Object end = extractValue(betweenExpr.getEndExpr(), options);
 
-        if (betweenExpr.isNot()) {
+        if (begin instanceof SqlExpression || end instanceof SqlExpression) {
+            List<Object> args = new ArrayList<>();
+            String sql = column + (betweenExpr.isNot() ? " NOT BETWEEN " : " BETWEEN ")
+                    + toSqlOperand(begin, args) + " AND " + toSqlOperand(end, args);
+            queryWrapper.apply(sql, args.toArray());
+        } else if (betweenExpr.isNot()) {
             queryWrapper.notBetween(column, begin, end);
         } else {
             queryWrapper.between(column, begin, end);
         }
     }
 
-    private static <T> void handleNotExpr(SQLNotExpr notExpr, QueryWrapper<T> queryWrapper) {
-        queryWrapper.not(wrapper -> parseSQLExpr(notExpr.getExpr(), wrapper));
+    private static <T> void handleNotExpr(SQLNotExpr notExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
+        queryWrapper.not(wrapper -> parseSQLExpr(notExpr.getExpr(), wrapper, options.withoutLikeRewrites()));
     }
 
-    private static <T> void handleUnaryExpr(SQLUnaryExpr unaryExpr, QueryWrapper<T> queryWrapper) {
+    private static <T> void handleUnaryExpr(SQLUnaryExpr unaryExpr, QueryWrapper<T> queryWrapper, ParserOptions options) {
         if (unaryExpr.getOperator() == SQLUnaryOperator.Not) {
-            queryWrapper.not(wrapper -> parseSQLExpr(unaryExpr.getExpr(), wrapper));
+            queryWrapper.not(wrapper -> parseSQLExpr(unaryExpr.getExpr(), wrapper, options.withoutLikeRewrites()));
         } else {
             // 对于正负号等一元操作符，通常在值提取时处理
             throw new UnsupportedOperationException("Unsupported unary operator: " + unaryExpr.getOperator());
@@ -6,6 +6,8 @@ import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.expr.*;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -20,11 +22,23 @@ import java.util.List;
  * 1. 先运行简单的测试用例，观察输出格式
  * 2. 对比你公司的QueryWrapper生成的SQL格式
  * 3. 根据差异调整相应的方法调用
+ * 
+ * 调试输出经由 DebugTraceSink 异步写入 SLF4J（Logger 名为本类全名，级别 DEBUG），
+ * 开启调试不会让解析线程在 System.out 的锁上排队
+ * 
+ * 是否输出按每次解析决定：DebugTraceScope 内使用范围的策略，范围外使用全局策略，
+ * 策略可以抽样，也可以只输出慢的解析或指定指纹的条件，见 DebugTracePolicy
  */
 public class ConditionParserForDebug {
     
-    // 控制调试输出的开关
-    private static boolean DEBUG_ENABLED = true;
+    // 不在 DebugTraceScope 中时使用的跟踪策略，为 null 时不跟踪
+    private static volatile DebugTracePolicy globalPolicy = DebugTracePolicy.all();
+
+    // 当前线程正在进行的跟踪，不跟踪时为 null
+    private static final ThreadLocal<Trace> CURRENT_TRACE = new ThreadLocal<>();
+
+    // 调试输出写入的异步缓冲区，为 null 时直接写 System.out
+    private static volatile DebugTraceSink traceSink = DebugTraceSink.shared();
     
     /**
      * 主解析方法
@@ -33,6 +47,27 @@ public class ConditionParserForDebug {
      * @return 处理后的QueryWrapper
      */
     public static <T> QueryWrapper<T> parse(String condition, QueryWrapper<T> queryWrapper) {
+        DebugTraceScope scope = DebugTraceScope.current();
+        DebugTracePolicy policy = scope != null ? scope.getPolicy() : globalPolicy;
+        if (policy == null || !policy.sample()) {
+            return doParse(condition, queryWrapper);
+        }
+        Trace previous = CURRENT_TRACE.get();
+        Trace trace = new Trace(policy, scope != null ? scope.getLabel() : null);
+        CURRENT_TRACE.set(trace);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            QueryWrapper<T> result = doParse(condition, queryWrapper);
+            failed = false;
+            return result;
+        } finally {
+            CURRENT_TRACE.set(previous);
+            trace.finish(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static <T> QueryWrapper<T> doParse(String condition, QueryWrapper<T> queryWrapper) {
         debugPrint("================== 开始解析 SQL 条件 ==================");
         debugPrint("原始条件: " + condition);
         
@@ -48,20 +83,26 @@ public class ConditionParserForDebug {
             
             // 使用Druid解析器将字符串解析为AST（抽象语法树）
             SQLExpr sqlExpr = SQLUtils.toSQLExpr(condition, DbType.mysql);
+            matchFingerprint(sqlExpr);
             debugPrint("Druid 解析成功，AST 根节点类型: " + sqlExpr.getClass().getSimpleName());
             debugPrint("AST 根节点完整类名: " + sqlExpr.getClass().getName());
             
             // 递归处理AST
             parseSQLExpr(sqlExpr, queryWrapper, 0);
             
-            debugPrint("解析完成，最终生成的 SQL 片段: " + queryWrapper.getSqlSegment());
-            debugPrint("参数映射: " + queryWrapper.getParamNameValuePairs());
+            if (tracing()) {
+                debugPrint("解析完成，最终生成的 SQL 片段: " + queryWrapper.getSqlSegment());
+                debugPrint("参数映射: " + queryWrapper.getParamNameValuePairs());
+            }
             debugPrint("================== 解析结束 ==================\n");
             
             return queryWrapper;
         } catch (Exception e) {
             debugPrint("解析失败: " + e.getMessage());
-            e.printStackTrace();
+            if (tracing()) {
+                // 堆栈作为跟踪的一条消息，与其他消息一起经缓冲区输出或丢弃
+                debugPrint(stackTrace(e));
+            }
             throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
         }
     }
@@ -75,7 +116,9 @@ public class ConditionParserForDebug {
     private static <T> void parseSQLExpr(SQLExpr expr, QueryWrapper<T> queryWrapper, int depth) {
         String indent = getIndent(depth);
         debugPrint(indent + "处理表达式: " + expr.getClass().getSimpleName());
-        debugPrint(indent + "表达式内容: " + expr.toString());
+        if (tracing()) {
+            debugPrint(indent + "表达式内容: " + expr.toString());
+        }
         
         if (expr instanceof SQLBinaryOpExpr) {
             debugPrint(indent + "识别为二元操作表达式");
@@ -109,8 +152,10 @@ public class ConditionParserForDebug {
 
         debugPrint(indent + "二元操作符: " + operator);
         debugPrint(indent + "操作符名称: " + operator.getName());
-        debugPrint(indent + "左侧表达式: " + left.toString() + " (类型: " + left.getClass().getSimpleName() + ")");
-        debugPrint(indent + "右侧表达式: " + right.toString() + " (类型: " + right.getClass().getSimpleName() + ")");
+        if (tracing()) {
+            debugPrint(indent + "左侧表达式: " + left.toString() + " (类型: " + left.getClass().getSimpleName() + ")");
+            debugPrint(indent + "右侧表达式: " + right.toString() + " (类型: " + right.getClass().getSimpleName() + ")");
+        }
 
         switch (operator) {
             case BooleanAnd:
@@ -163,8 +208,10 @@ public class ConditionParserForDebug {
         }
         
         // 显示当前QueryWrapper状态
-        debugPrint(indent + "当前 SQL 片段: " + queryWrapper.getSqlSegment());
-        debugPrint(indent + "当前参数: " + queryWrapper.getParamNameValuePairs());
+        if (tracing()) {
+            debugPrint(indent + "当前 SQL 片段: " + queryWrapper.getSqlSegment());
+            debugPrint(indent + "当前参数: " + queryWrapper.getParamNameValuePairs());
+        }
     }
 
     /**
@@ -221,7 +268,9 @@ public class ConditionParserForDebug {
                 throw new UnsupportedOperationException("Unsupported comparison operator: " + operator.getName());
         }
         
-        debugPrint(indent + "比较操作完成，当前 SQL: " + queryWrapper.getSqlSegment());
+        if (tracing()) {
+            debugPrint(indent + "比较操作完成，当前 SQL: " + queryWrapper.getSqlSegment());
+        }
     }
 
     /**
@@ -301,7 +350,9 @@ public class ConditionParserForDebug {
     private static String extractColumnName(SQLExpr expr, int depth) {
         String indent = getIndent(depth);
         debugPrint(indent + "提取字段名，表达式类型: " + expr.getClass().getSimpleName());
-        debugPrint(indent + "表达式内容: " + expr.toString());
+        if (tracing()) {
+            debugPrint(indent + "表达式内容: " + expr.toString());
+        }
         
         if (expr instanceof SQLIdentifierExpr) {
             String name = ((SQLIdentifierExpr) expr).getName();
@@ -323,7 +374,9 @@ public class ConditionParserForDebug {
     private static Object extractValue(SQLExpr expr, int depth) {
         String indent = getIndent(depth);
         debugPrint(indent + "提取值，表达式类型: " + expr.getClass().getSimpleName());
-        debugPrint(indent + "表达式内容: " + expr.toString());
+        if (tracing()) {
+            debugPrint(indent + "表达式内容: " + expr.toString());
+        }
         
         if (expr instanceof SQLCharExpr) {
             String text = ((SQLCharExpr) expr).getText();
@@ -493,25 +546,127 @@ public class ConditionParserForDebug {
     }
     
     /**
-     * 调试输出方法
+     * 调试输出方法，当前解析没有被跟踪时不输出
      */
     private static void debugPrint(String message) {
-        if (DEBUG_ENABLED) {
+        Trace trace = CURRENT_TRACE.get();
+        if (trace != null) {
+            trace.add(message);
+        }
+    }
+
+    private static String stackTrace(Throwable e) {
+        StringWriter writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
+        return writer.toString().trim();
+    }
+
+    /**
+     * 当前解析是否被跟踪，构造代价较高的消息前先检查
+     */
+    private static boolean tracing() {
+        return CURRENT_TRACE.get() != null;
+    }
+
+    /**
+     * 策略限定了指纹时，不匹配的条件立即停止跟踪
+     */
+    private static void matchFingerprint(SQLExpr sqlExpr) {
+        Trace trace = CURRENT_TRACE.get();
+        if (trace != null && trace.policy.hasFingerprints()
+                && !trace.policy.matchesFingerprint(ConditionFingerprint.of(sqlExpr, DbType.mysql))) {
+            trace.discard();
+            CURRENT_TRACE.remove();
+        }
+    }
+
+    /**
+     * 写出一条消息：放入异步缓冲区后立即返回，缓冲区满时丢弃
+     */
+    private static void emit(String message) {
+        DebugTraceSink sink = traceSink;
+        if (sink != null) {
+            sink.offer(message);
+        } else {
             System.out.println("[DEBUG] " + message);
         }
     }
+
+    /**
+     * 一次被跟踪的解析
+     * 策略需要在解析结束后才能决定是否输出时，消息先缓存在这里
+     */
+    private static final class Trace {
+        final DebugTracePolicy policy;
+        final String prefix;
+        // 等待解析结束后决定是否输出的消息，立即输出时为 null
+        final List<String> pending;
+        boolean discarded;
+
+        Trace(DebugTracePolicy policy, String label) {
+            this.policy = policy;
+            this.prefix = label == null ? "" : "[" + label + "] ";
+            this.pending = policy.isDeferred() ? new ArrayList<>() : null;
+        }
+
+        void add(String message) {
+            if (pending != null) {
+                pending.add(message);
+            } else {
+                emit(prefix + message);
+            }
+        }
+
+        void discard() {
+            discarded = true;
+        }
+
+        void finish(long nanos, boolean failed) {
+            if (pending == null || discarded || !(failed || policy.matchesDuration(nanos))) {
+                return;
+            }
+            for (String message : pending) {
+                emit(prefix + message);
+            }
+            if (!failed) {
+                emit(prefix + "解析耗时: " + nanos / 1000 + " 微秒");
+            }
+        }
+    }
+
+    /**
+     * 设置调试输出写入的缓冲区，传入 null 时同步写 System.out
+     */
+    public static void setTraceSink(DebugTraceSink sink) {
+        traceSink = sink;
+    }
+
+    public static DebugTraceSink getTraceSink() {
+        return traceSink;
+    }
     
     /**
-     * 设置是否启用调试输出
+     * 设置是否启用调试输出，启用时全局策略为跟踪所有解析
      */
     public static void setDebugEnabled(boolean enabled) {
-        DEBUG_ENABLED = enabled;
+        globalPolicy = enabled ? DebugTracePolicy.all() : null;
     }
     
     /**
-     * 检查是否启用调试输出
+     * 检查是否启用调试输出（DebugTraceScope 之外）
      */
     public static boolean isDebugEnabled() {
-        return DEBUG_ENABLED;
+        return globalPolicy != null;
+    }
+
+    /**
+     * 设置 DebugTraceScope 之外使用的跟踪策略，为 null 时不跟踪
+     */
+    public static void setTracePolicy(DebugTracePolicy policy) {
+        globalPolicy = policy;
+    }
+
+    public static DebugTracePolicy getTracePolicy() {
+        return globalPolicy;
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译条件的内存映射文件存储
+ *
+ * 以条件字符串为键，把 ConditionCodec 的编码结果追加写入映射文件。服务重启后重新打开同一个文件，
+ * 只需扫描一遍记录建立索引，已经编译过的条件无需再次解析。编码内容留在映射文件中，不占用堆内存。
+ *
+ * 文件格式：
+ * <pre>
+ * 文件头(16字节)：魔数 "XDWP"、版本号(int)、已提交的数据末尾位置(long)
+ * 记录：键长度(int) 键(UTF-8) 编码长度(int) 编码
+ * </pre>
+ * 记录写完后才更新文件头中的末尾位置，写到一半时进程退出，重新打开时未提交的记录会被忽略。
+ *
+ * 同一个文件同一时刻只能被一个进程打开；同一进程内可以被多个线程共享。
+ */
+public class ConditionPlanStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x58445750; // "XDWP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET = 8;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    private final FileChannel channel;
+    private final ParserOptions options;
+    private final Map<String, PlanLocation> index = new ConcurrentHashMap<>();
+
+    // 扩容时替换为新的映射，读操作使用各自拿到的映射，旧映射在不再被引用后释放
+    private volatile MappedByteBuffer buffer;
+    private int end;
+
+    private static final class PlanLocation {
+        final int offset;
+        final int length;
+
+        PlanLocation(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private ConditionPlanStore(FileChannel channel, ParserOptions options) {
+        this.channel = channel;
+        this.options = options;
+    }
+
+    /**
+     * 打开或创建存储文件，并加载已有的编译结果索引
+     * @param file 存储文件
+     * @param options 编译新条件时使用的解析选项
+     * @throws IllegalStateException 文件不是有效的存储文件
+     */
+    public static ConditionPlanStore open(Path file, ParserOptions options) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ConditionPlanStore store = new ConditionPlanStore(channel, options);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Plan store is too large: " + size);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(END_OFFSET, HEADER_SIZE);
+            end = HEADER_SIZE;
+            return;
+        }
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a condition plan store");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported plan store version: " + buffer.getInt(4));
+        }
+        long committed = buffer.getLong(END_OFFSET);
+        if (committed < HEADER_SIZE || committed > size) {
+            throw new IllegalStateException("Corrupted plan store: invalid end position " + committed);
+        }
+        int position = HEADER_SIZE;
+        while (position < committed) {
+            int keyLength = buffer.getInt(position);
+            int keyOffset = position + 4;
+            if (keyLength < 0 || keyOffset + keyLength + 4 > committed) {
+                throw new IllegalStateException("Corrupted plan store at position " + position);
+            }
+            int planLength = buffer.getInt(keyOffset + keyLength);
+            int planOffset = keyOffset + keyLength + 4;
+            if (planLength < 0 || planOffset + planLength > committed) {
+                throw new IllegalStateException("Corrupted plan store at position " + position);
+            }
+            byte[] key = new byte[keyLength];
+            buffer.get(keyOffset, key);
+            index.put(new String(key, StandardCharsets.UTF_8), new PlanLocation(planOffset, planLength));
+            position = planOffset + planLength;
+        }
+        end = position;
+    }
+
+    /**
+     * 取得条件的编码，不存在时解析、编码并写入存储
+     * @throws IllegalArgumentException 条件无法解析
+     */
+    public byte[] compile(String condition) {
+        String key = key(condition);
+        PlanLocation location = index.get(key);
+        if (location != null) {
+            return read(location);
+        }
+        byte[] plan = ConditionCodec.encode(condition, options);
+        synchronized (this) {
+            if (!index.containsKey(key)) {
+                index.put(key, append(key, plan));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 使用存储中的编码把条件应用到 QueryWrapper
+     */
+    public <T> QueryWrapper<T> parse(String condition, QueryWrapper<T> queryWrapper) {
+        return ConditionParser.parse(compile(condition), queryWrapper, options);
+    }
+
+    public boolean contains(String condition) {
+        return index.containsKey(key(condition));
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private byte[] read(PlanLocation location) {
+        byte[] plan = new byte[location.length];
+        buffer.get(location.offset, plan);
+        return plan;
+    }
+
+    private PlanLocation append(String key, byte[] plan) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long recordEnd = (long) end + 8 + keyBytes.length + plan.length;
+        if (recordEnd > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Plan store is full");
+        }
+        ensureCapacity((int) recordEnd);
+        MappedByteBuffer target = buffer;
+        int position = end;
+        target.putInt(position, keyBytes.length);
+        target.put(position + 4, keyBytes);
+        target.putInt(position + 4 + keyBytes.length, plan.length);
+        int planOffset = position + 8 + keyBytes.length;
+        target.put(planOffset, plan);
+        // 记录写完后再提交末尾位置
+        target.putLong(END_OFFSET, recordEnd);
+        end = (int) recordEnd;
+        return new PlanLocation(planOffset, plan.length);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, Integer.MAX_VALUE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow plan store", e);
+        }
+    }
+
+    // 同一条件在不同方言下的语法树可能不同，键中带上方言
+    private String key(String condition) {
+        return options.getDbType().name() + ':' + condition.trim();
+    }
+
+    /**
+     * 把映射内容刷到磁盘并关闭文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.xdw;
+
+import com.xdw.ConditionLimitExceededException.Limit;
+
+import java.util.Arrays;
+
+/**
+ * 解析前的轻量字符扫描
+ *
+ * 只识别字符串、数字、标识符、占位符和括号，不构造任何对象，一次线性扫描完成所有检查，
+ * 在第一次超出限制时立即抛出 ConditionLimitExceededException。
+ * 统计是近似的：目的是拦截明显异常的输入，而不是精确计算 Druid 的词法单元。
+ */
+final class ConditionScanner {
+
+    private ConditionScanner() {
+    }
+
+    static void check(String condition, ConditionLimits limits) {
+        if (limits.isUnlimited()) {
+            return;
+        }
+        int length = condition.length();
+        if (length > limits.getMaxLength()) {
+            throw new ConditionLimitExceededException(Limit.LENGTH, limits.getMaxLength(), length);
+        }
+
+        int tokens = 0;
+        int parameters = 0;
+        int depth = 0;
+        // 每层括号是否是 IN 列表，以及该层已出现的逗号数；只为实际出现的深度分配
+        boolean[] inList = new boolean[16];
+        int[] commas = new int[16];
+        boolean afterIn = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = condition.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (++tokens > limits.getMaxTokens()) {
+                throw new ConditionLimitExceededException(Limit.TOKENS, limits.getMaxTokens(), tokens);
+            }
+            boolean isIn = false;
+            if (c == '\'') {
+                i = skipQuoted(condition, i, '\'');
+                parameters++;
+            } else if (c == '"' || c == '`') {
+                i = skipQuoted(condition, i, c);
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(condition.charAt(i + 1)))) {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(condition.charAt(i)) || condition.charAt(i) == '.')) {
+                    i++;
+                }
+                parameters++;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(condition.charAt(i)) || condition.charAt(i) == '_' || condition.charAt(i) == '$')) {
+                    i++;
+                }
+                isIn = i - start == 2 && (c == 'i' || c == 'I') && (condition.charAt(start + 1) == 'n' || condition.charAt(start + 1) == 'N');
+            } else if (c == '?' || (c == ':' && i + 1 < length && (Character.isLetter(condition.charAt(i + 1)) || condition.charAt(i + 1) == '_'))) {
+                i++;
+                while (i < length && (Character.isLetterOrDigit(condition.charAt(i)) || condition.charAt(i) == '_')) {
+                    i++;
+                }
+                parameters++;
+            } else if (c == '(') {
+                depth++;
+                if (depth > limits.getMaxDepth()) {
+                    throw new ConditionLimitExceededException(Limit.DEPTH, limits.getMaxDepth(), depth);
+                }
+                if (depth >= inList.length) {
+                    inList = Arrays.copyOf(inList, inList.length * 2);
+                    commas = Arrays.copyOf(commas, commas.length * 2);
+                }
+                inList[depth] = afterIn;
+                commas[depth] = 0;
+                i++;
+            } else if (c == ')') {
+                if (depth > 0) {
+                    depth--;
+                }
+                i++;
+            } else if (c == ',') {
+                if (inList[depth] && ++commas[depth] + 1 > limits.getMaxInListSize()) {
+                    throw new ConditionLimitExceededException(Limit.IN_LIST_SIZE, limits.getMaxInListSize(), commas[depth] + 1);
+                }
+                i++;
+            } else {
+                i++;
+            }
+            if (parameters > limits.getMaxParameters()) {
+                throw new ConditionLimitExceededException(Limit.PARAMETERS, limits.getMaxParameters(), parameters);
+            }
+            afterIn = isIn;
+        }
+    }
+
+    /**
+     * 跳过引号包围的内容，支持重复引号和反斜杠转义，返回结束引号之后的位置
+     */
+    private static int skipQuoted(String s, int start, char quote) {
+        int i = start + 1;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\' && quote == '\'') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < s.length() && s.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return s.length();
+    }
+}
@@ -0,0 +1,448 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于表统计信息的代价估算
+ *
+ * 在执行之前估算条件的选择率、返回行数和需要扫描的行数：
+ * - 叶子条件使用字段的 NDV、NULL 比例和等深直方图估算
+ * - AND 假设各部分相互独立取乘积，OR 取 a + b - ab，NOT 取补集并排除 NULL
+ * - 没有统计信息的字段以及下推到数据库的表达式使用与 PostgreSQL 相同的默认选择率
+ *
+ * 扫描行数按"能否走索引"粗略估算：AND 取可走索引部分中最小的一个，OR 要求每个分支都能走索引，
+ * 否则视为全表扫描。据此可以在执行前拒绝大查询，或把它们放到慢查询通道：
+ * <pre>
+ * CostEstimator estimator = new CostEstimator(TableStatistics.load(snapshot), options);
+ * if (estimator.classify(condition, 10_000, 1_000_000) == CostEstimator.Lane.REJECTED) { ... }
+ * </pre>
+ * 在内存中求值时，可以先用 orderForEvaluation 把选择率低的 AND 分支排到前面，使不匹配的行尽早短路。
+ */
+public class CostEstimator {
+
+    static final double DEFAULT_EQUALITY_SELECTIVITY = 0.005;
+    static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+    static final double DEFAULT_MATCH_SELECTIVITY = 0.005;
+    static final double DEFAULT_SUBQUERY_SELECTIVITY = 0.5;
+
+    /**
+     * 查询通道
+     */
+    public enum Lane {
+        FAST, SLOW, REJECTED
+    }
+
+    /**
+     * 估算结果
+     */
+    public static final class Estimate {
+        private final double selectivity;
+        private final double rows;
+        private final double scannedRows;
+
+        Estimate(double selectivity, double rows, double scannedRows) {
+            this.selectivity = selectivity;
+            this.rows = rows;
+            this.scannedRows = scannedRows;
+        }
+
+        /**
+         * 满足条件的行所占比例，0 到 1
+         */
+        public double getSelectivity() {
+            return selectivity;
+        }
+
+        /**
+         * 预计返回的行数
+         */
+        public long getRows() {
+            return Math.round(rows);
+        }
+
+        /**
+         * 预计需要扫描的行数，无法走索引时等于表的总行数
+         */
+        public long getScannedRows() {
+            return Math.round(scannedRows);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("selectivity=%.4f, rows=%d, scannedRows=%d", selectivity, getRows(), getScannedRows());
+        }
+    }
+
+    private final TableStatistics statistics;
+    private final ParserOptions options;
+
+    public CostEstimator(TableStatistics statistics, ParserOptions options) {
+        this.statistics = statistics;
+        this.options = options;
+    }
+
+    public Estimate estimate(String condition) {
+        SQLExpr sqlExpr = ConditionParser.parseToSQLExpr(condition, options);
+        return sqlExpr == null ? estimate((SQLExpr) null) : estimate(sqlExpr);
+    }
+
+    /**
+     * @param expr 条件表达式，null 表示空条件
+     */
+    public Estimate estimate(SQLExpr expr) {
+        long total = statistics.getRowCount();
+        if (expr == null) {
+            return new Estimate(1, total, total);
+        }
+        double selectivity = selectivity(expr);
+        return new Estimate(selectivity, selectivity * total, scanFraction(expr) * total);
+    }
+
+    /**
+     * 按预计扫描行数分配查询通道
+     * @param slowLaneRows 超过此行数进入慢查询通道
+     * @param maxRows      超过此行数直接拒绝
+     */
+    public Lane classify(String condition, long slowLaneRows, long maxRows) {
+        if (slowLaneRows > maxRows) {
+            throw new IllegalArgumentException("Slow lane threshold " + slowLaneRows + " exceeds the rejection threshold " + maxRows);
+        }
+        long scanned = estimate(condition).getScannedRows();
+        if (scanned > maxRows) {
+            return Lane.REJECTED;
+        }
+        return scanned > slowLaneRows ? Lane.SLOW : Lane.FAST;
+    }
+
+    /**
+     * 估算条件的选择率
+     * @throws UnsupportedOperationException 条件包含不支持的表达式
+     */
+    public double selectivity(SQLExpr expr) {
+        return clamp(estimateSelectivity(expr));
+    }
+
+    private double estimateSelectivity(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) expr;
+            if (binaryOpExpr.getOperator() == SQLBinaryOperator.BooleanAnd) {
+                return selectivity(binaryOpExpr.getLeft()) * selectivity(binaryOpExpr.getRight());
+            }
+            if (binaryOpExpr.getOperator() == SQLBinaryOperator.BooleanOr) {
+                double left = selectivity(binaryOpExpr.getLeft());
+                double right = selectivity(binaryOpExpr.getRight());
+                return left + right - left * right;
+            }
+            return binaryOpSelectivity(binaryOpExpr);
+        } else if (expr instanceof SQLInListExpr) {
+            return inListSelectivity((SQLInListExpr) expr);
+        } else if (expr instanceof SQLBetweenExpr) {
+            return betweenSelectivity((SQLBetweenExpr) expr);
+        } else if (expr instanceof SQLNotExpr) {
+            return notSelectivity(((SQLNotExpr) expr).getExpr());
+        } else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Not) {
+            return notSelectivity(((SQLUnaryExpr) expr).getExpr());
+        } else if (expr instanceof SQLInSubQueryExpr || expr instanceof SQLExistsExpr) {
+            // 统计信息只描述本表，子查询的结果无从估算
+            boolean not = expr instanceof SQLInSubQueryExpr ? ((SQLInSubQueryExpr) expr).isNot() : ((SQLExistsExpr) expr).isNot();
+            return not ? 1 - DEFAULT_SUBQUERY_SELECTIVITY : DEFAULT_SUBQUERY_SELECTIVITY;
+        } else if (expr instanceof SQLMatchAgainstExpr) {
+            return DEFAULT_MATCH_SELECTIVITY;
+        }
+        throw new UnsupportedOperationException("Unsupported expression type: " + expr.getClass().getName());
+    }
+
+    /**
+     * 对单个字段的条件取反时，字段为 NULL 的行既不满足原条件也不满足取反后的条件
+     */
+    private double notSelectivity(SQLExpr expr) {
+        String column = leafColumn(expr);
+        double matched = selectivity(expr);
+        return column == null ? 1 - matched : nonNullFraction(column) - matched;
+    }
+
+    private double binaryOpSelectivity(SQLBinaryOpExpr binaryOpExpr) {
+        SQLBinaryOperator operator = binaryOpExpr.getOperator();
+        String column = ConditionParser.extractColumnName(binaryOpExpr.getLeft());
+        ColumnStatistics stats = statistics.getColumn(column);
+        switch (operator) {
+            case Is:
+                return stats == null ? DEFAULT_EQUALITY_SELECTIVITY : stats.getNullFraction();
+            case IsNot:
+                return stats == null ? 1 - DEFAULT_EQUALITY_SELECTIVITY : 1 - stats.getNullFraction();
+            case Like:
+            case NotLike: {
+                Object pattern = ConditionParser.extractValue(binaryOpExpr.getRight(), options);
+                if (pattern == null) {
+                    return 0;
+                }
+                double like = pattern instanceof SqlExpression ? DEFAULT_MATCH_SELECTIVITY : likeSelectivity(stats, pattern.toString());
+                return operator == SQLBinaryOperator.Like ? like : nonNullFraction(column) - like;
+            }
+            case Equality:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+                break;
+            default:
+                throw new UnsupportedOperationException("Unsupported operator: " + operator);
+        }
+
+        Object value = ConditionParser.extractValue(binaryOpExpr.getRight(), options);
+        if (value == null) {
+            return 0;
+        }
+        if (stats == null || value instanceof SqlExpression) {
+            return defaultSelectivity(operator);
+        }
+        double nonNull = 1 - stats.getNullFraction();
+        double fraction;
+        switch (operator) {
+            case Equality:
+                return nonNull * stats.equalFraction(value);
+            case NotEqual:
+                return nonNull * (1 - stats.equalFraction(value));
+            case LessThan:
+                fraction = stats.lessThanFraction(value);
+                break;
+            case LessThanOrEqual:
+                fraction = stats.atMostFraction(value);
+                break;
+            case GreaterThan:
+                fraction = stats.atMostFraction(value);
+                fraction = fraction < 0 ? -1 : 1 - fraction;
+                break;
+            default:
+                fraction = stats.lessThanFraction(value);
+                fraction = fraction < 0 ? -1 : 1 - fraction;
+                break;
+        }
+        return fraction < 0 ? DEFAULT_RANGE_SELECTIVITY : nonNull * fraction;
+    }
+
+    private static double defaultSelectivity(SQLBinaryOperator operator) {
+        switch (operator) {
+            case Equality:
+                return DEFAULT_EQUALITY_SELECTIVITY;
+            case NotEqual:
+                return 1 - DEFAULT_EQUALITY_SELECTIVITY;
+            default:
+                return DEFAULT_RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * 以固定前缀开头的模式按前缀对应的区间估算，其他模式使用默认选择率
+     * 不含通配符的模式与解析器一样按 %value% 处理
+     */
+    private double likeSelectivity(ColumnStatistics stats, String pattern) {
+        String prefix = likePrefix(pattern);
+        if (stats == null || prefix.isEmpty()) {
+            return DEFAULT_MATCH_SELECTIVITY;
+        }
+        double lower = stats.lessThanFraction(prefix);
+        double upper = stats.lessThanFraction(prefix + Character.MAX_VALUE);
+        if (lower < 0 || upper < 0) {
+            return DEFAULT_MATCH_SELECTIVITY;
+        }
+        return (1 - stats.getNullFraction()) * Math.max(0, upper - lower);
+    }
+
+    /**
+     * 模式中第一个通配符之前的部分；不含通配符时返回空串
+     */
+    private static String likePrefix(String pattern) {
+        int wildcard = -1;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%' || c == '_') {
+                wildcard = i;
+                break;
+            }
+            if (c == '\\') {
+                // 转义字符之后的字符不是通配符，前缀到此为止以保持简单
+                return pattern.substring(0, i);
+            }
+        }
+        return wildcard < 0 ? "" : pattern.substring(0, wildcard);
+    }
+
+    private double inListSelectivity(SQLInListExpr inListExpr) {
+        String column = ConditionParser.extractColumnName(inListExpr.getExpr());
+        ColumnStatistics stats = statistics.getColumn(column);
+        double matched = 0;
+        boolean containsNull = false;
+        Set<Object> seen = new HashSet<>();
+        for (Object value : ConditionParser.extractValues(inListExpr, options)) {
+            if (value == null) {
+                containsNull = true;
+            } else if (stats == null || value instanceof SqlExpression) {
+                matched += DEFAULT_EQUALITY_SELECTIVITY;
+            } else if (seen.add(RangeSet.normalize(value))) {
+                matched += (1 - stats.getNullFraction()) * stats.equalFraction(value);
+            }
+        }
+        double nonNull = nonNullFraction(column);
+        matched = Math.min(matched, nonNull);
+        if (inListExpr.isNot()) {
+            // NOT IN 列表中包含 NULL 时永远不成立
+            return containsNull ? 0 : nonNull - matched;
+        }
+        return matched;
+    }
+
+    private double betweenSelectivity(SQLBetweenExpr betweenExpr) {
+        String column = ConditionParser.extractColumnName(betweenExpr.getTestExpr());
+        ColumnStatistics stats = statistics.getColumn(column);
+        Object begin = ConditionParser.extractValue(betweenExpr.getBeginExpr(), options);
+        Object end = ConditionParser.extractValue(betweenExpr.getEndExpr(), options);
+        if (begin == null || end == null) {
+            return 0;
+        }
+        double between;
+        if (stats == null || begin instanceof SqlExpression || end instanceof SqlExpression) {
+            // 两个默认范围条件的交集
+            between = DEFAULT_RANGE_SELECTIVITY * DEFAULT_RANGE_SELECTIVITY;
+        } else {
+            double lower = stats.lessThanFraction(begin);
+            double upper = stats.atMostFraction(end);
+            between = lower < 0 || upper < 0
+                    ? DEFAULT_RANGE_SELECTIVITY * DEFAULT_RANGE_SELECTIVITY
+                    : (1 - stats.getNullFraction()) * Math.max(0, upper - lower);
+        }
+        return betweenExpr.isNot() ? nonNullFraction(column) - between : between;
+    }
+
+    private double nonNullFraction(String column) {
+        ColumnStatistics stats = statistics.getColumn(column);
+        return stats == null ? 1 : 1 - stats.getNullFraction();
+    }
+
+    /**
+     * 需要扫描的行所占比例
+     */
+    private double scanFraction(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) expr;
+            if (binaryOpExpr.getOperator() == SQLBinaryOperator.BooleanAnd) {
+                return Math.min(scanFraction(binaryOpExpr.getLeft()), scanFraction(binaryOpExpr.getRight()));
+            }
+            if (binaryOpExpr.getOperator() == SQLBinaryOperator.BooleanOr) {
+                // 每个分支都走索引时按索引合并估算，任一分支需要全表扫描则整体全表扫描
+                return Math.min(1, scanFraction(binaryOpExpr.getLeft()) + scanFraction(binaryOpExpr.getRight()));
+            }
+        }
+        String column = leafColumn(expr);
+        if (column != null && statistics.isIndexed(column) && isIndexable(expr)) {
+            return selectivity(expr);
+        }
+        return 1;
+    }
+
+    /**
+     * 能否用字段上的 B-Tree 索引定位：等值、范围、IS NULL、IN、BETWEEN 和前缀 LIKE
+     */
+    private boolean isIndexable(SQLExpr expr) {
+        if (expr instanceof SQLInListExpr) {
+            return !((SQLInListExpr) expr).isNot();
+        }
+        if (expr instanceof SQLBetweenExpr) {
+            return !((SQLBetweenExpr) expr).isNot();
+        }
+        if (!(expr instanceof SQLBinaryOpExpr)) {
+            return false;
+        }
+        SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) expr;
+        switch (binaryOpExpr.getOperator()) {
+            case Equality:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+            case Is:
+                return true;
+            case Like: {
+                Object pattern = ConditionParser.extractValue(binaryOpExpr.getRight(), options);
+                return pattern instanceof String && !likePrefix((String) pattern).isEmpty();
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 叶子条件约束的字段，AND/OR/NOT 返回 null
+     */
+    private static String leafColumn(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOperator operator = ((SQLBinaryOpExpr) expr).getOperator();
+            if (operator == SQLBinaryOperator.BooleanAnd || operator == SQLBinaryOperator.BooleanOr) {
+                return null;
+            }
+            return ConditionParser.extractColumnName(((SQLBinaryOpExpr) expr).getLeft());
+        } else if (expr instanceof SQLInListExpr) {
+            return ConditionParser.extractColumnName(((SQLInListExpr) expr).getExpr());
+        } else if (expr instanceof SQLBetweenExpr) {
+            return ConditionParser.extractColumnName(((SQLBetweenExpr) expr).getTestExpr());
+        }
+        return null;
+    }
+
+    /**
+     * 为内存求值重排条件：AND 按选择率从低到高，OR 按选择率从高到低，
+     * 使 ConditionEvaluator 尽早短路。返回新的表达式树，原树不会被修改。
+     */
+    public SQLExpr orderForEvaluation(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOperator operator = ((SQLBinaryOpExpr) expr).getOperator();
+            if (operator == SQLBinaryOperator.BooleanAnd || operator == SQLBinaryOperator.BooleanOr) {
+                List<SQLExpr> branches = new ArrayList<>();
+                flatten(expr, operator, branches);
+                List<SQLExpr> ordered = new ArrayList<>(branches.size());
+                List<Double> selectivities = new ArrayList<>(branches.size());
+                for (SQLExpr branch : branches) {
+                    ordered.add(orderForEvaluation(branch));
+                    selectivities.add(selectivity(branch));
+                }
+                List<Integer> indexes = new ArrayList<>(branches.size());
+                for (int i = 0; i < branches.size(); i++) {
+                    indexes.add(i);
+                }
+                Comparator<Integer> bySelectivity = Comparator.comparing(selectivities::get);
+                indexes.sort(operator == SQLBinaryOperator.BooleanAnd ? bySelectivity : bySelectivity.reversed());
+                SQLExpr result = ordered.get(indexes.get(0));
+                for (int i = 1; i < indexes.size(); i++) {
+                    result = new SQLBinaryOpExpr(result, operator, ordered.get(indexes.get(i)), options.getDbType());
+                }
+                return result;
+            }
+        } else if (expr instanceof SQLNotExpr) {
+            return new SQLNotExpr(orderForEvaluation(((SQLNotExpr) expr).getExpr()));
+        } else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Not) {
+            return new SQLUnaryExpr(SQLUnaryOperator.Not, orderForEvaluation(((SQLUnaryExpr) expr).getExpr()));
+        }
+        return expr.clone();
+    }
+
+    private static void flatten(SQLExpr expr, SQLBinaryOperator operator, List<SQLExpr> branches) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == operator) {
+            flatten(((SQLBinaryOpExpr) expr).getLeft(), operator, branches);
+            flatten(((SQLBinaryOpExpr) expr).getRight(), operator, branches);
+        } else {
+            branches.add(expr);
+        }
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
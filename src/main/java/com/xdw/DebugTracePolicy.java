@@ -0,0 +1,115 @@
+package com.xdw;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 调试解析器的跟踪策略：哪些解析需要输出调试信息
+ *
+ * 依次判断：
+ * <ol>
+ *   <li>抽样：平均每 sampleEvery 次解析跟踪一次，在解析开始前决定</li>
+ *   <li>指纹：只跟踪 ConditionFingerprint 在给定集合中的条件，条件解析为语法树后即可判断，不匹配时立即停止跟踪</li>
+ *   <li>耗时：只输出耗时不少于 minDuration 的解析，解析结束后才能判断</li>
+ * </ol>
+ * 有指纹或耗时条件时，调试信息先缓存在解析线程中，满足条件后一次性输出。解析失败时总是输出。
+ *
+ * 对象不可变，withXxx 方法返回新的对象，可以在线程间共享。
+ */
+public final class DebugTracePolicy {
+
+    private static final DebugTracePolicy ALL = new DebugTracePolicy(1, Duration.ZERO, Collections.emptySet());
+
+    private final int sampleEvery;
+    private final Duration minDuration;
+    private final Set<String> fingerprints;
+
+    private DebugTracePolicy(int sampleEvery, Duration minDuration, Set<String> fingerprints) {
+        this.sampleEvery = sampleEvery;
+        this.minDuration = minDuration;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * 跟踪所有解析
+     */
+    public static DebugTracePolicy all() {
+        return ALL;
+    }
+
+    /**
+     * 平均每 sampleEvery 次解析跟踪一次，1 表示全部跟踪
+     */
+    public DebugTracePolicy withSampling(int sampleEvery) {
+        if (sampleEvery <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive: " + sampleEvery);
+        }
+        return new DebugTracePolicy(sampleEvery, minDuration, fingerprints);
+    }
+
+    /**
+     * 只输出耗时不少于 minDuration 的解析
+     */
+    public DebugTracePolicy withMinDuration(Duration minDuration) {
+        if (minDuration == null || minDuration.isNegative()) {
+            throw new IllegalArgumentException("Invalid min duration: " + minDuration);
+        }
+        return new DebugTracePolicy(sampleEvery, minDuration, fingerprints);
+    }
+
+    /**
+     * 只跟踪指纹在给定集合中的条件，不传参数时不限制
+     * @see ConditionFingerprint
+     */
+    public DebugTracePolicy withFingerprints(String... fingerprints) {
+        Set<String> set = new LinkedHashSet<>(Arrays.asList(fingerprints));
+        return new DebugTracePolicy(sampleEvery, minDuration, Collections.unmodifiableSet(set));
+    }
+
+    /**
+     * 本次解析是否抽中
+     */
+    boolean sample() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    boolean hasFingerprints() {
+        return !fingerprints.isEmpty();
+    }
+
+    boolean matchesFingerprint(String fingerprint) {
+        return fingerprints.isEmpty() || fingerprints.contains(fingerprint);
+    }
+
+    boolean matchesDuration(long nanos) {
+        return nanos >= minDuration.toNanos();
+    }
+
+    /**
+     * 是否需要在解析结束后才能决定输出
+     */
+    boolean isDeferred() {
+        return !fingerprints.isEmpty() || !minDuration.isZero();
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public Duration getMinDuration() {
+        return minDuration;
+    }
+
+    public Set<String> getFingerprints() {
+        return fingerprints;
+    }
+
+    @Override
+    public String toString() {
+        return "DebugTracePolicy{sampleEvery=" + sampleEvery + ", minDuration=" + minDuration + ", fingerprints=" + fingerprints + "}";
+    }
+}
@@ -0,0 +1,77 @@
+package com.xdw;
+
+/**
+ * 当前线程上的调试跟踪范围
+ *
+ * 在范围内，ConditionParserForDebug 按范围的策略决定是否输出，不受全局开关影响；
+ * 范围外使用 ConditionParserForDebug.setTracePolicy 设置的全局策略。例如只跟踪某个租户的请求：
+ * <pre>
+ * try (DebugTraceScope scope = DebugTraceScope.open("tenant-42", DebugTracePolicy.all().withSampling(10))) {
+ *     ConditionParserForDebug.parse(condition, queryWrapper);
+ * }
+ * </pre>
+ * 范围内输出的每条消息以 "[标签] " 开头。范围可以嵌套，关闭时恢复外层范围；
+ * 范围只对打开它的线程有效，必须在同一个线程中关闭。
+ */
+public final class DebugTraceScope implements AutoCloseable {
+
+    private static final ThreadLocal<DebugTraceScope> CURRENT = new ThreadLocal<>();
+
+    private final String label;
+    private final DebugTracePolicy policy;
+    private final DebugTraceScope previous;
+    private final Thread owner;
+
+    private DebugTraceScope(String label, DebugTracePolicy policy, DebugTraceScope previous) {
+        this.label = label;
+        this.policy = policy;
+        this.previous = previous;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * 在当前线程上打开跟踪范围
+     * @param label 输出时的标签，如租户或请求编号，可以为 null
+     * @param policy 跟踪策略，为 null 时范围内不跟踪
+     */
+    public static DebugTraceScope open(String label, DebugTracePolicy policy) {
+        DebugTraceScope scope = new DebugTraceScope(label, policy, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 当前线程最内层的范围，不在范围内时返回 null
+     */
+    public static DebugTraceScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @throws IllegalStateException 在其他线程中关闭，或不是最内层的范围
+     */
+    @Override
+    public void close() {
+        if (Thread.currentThread() != owner || CURRENT.get() != this) {
+            throw new IllegalStateException("Trace scope must be closed by its owner thread in reverse order: " + label);
+        }
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public DebugTracePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "DebugTraceScope{label=" + label + ", policy=" + policy + "}";
+    }
+}
@@ -0,0 +1,216 @@
+package com.xdw;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 调试输出的异步缓冲区
+ *
+ * 解析线程只把消息放进预先分配的环形缓冲区，由一个后台线程取出后写入 SLF4J，
+ * 解析线程不会在输出流的锁上排队，也不会把虚拟线程固定在载体线程上。
+ * 缓冲区满时丢弃新消息并计数，不阻塞解析线程。
+ *
+ * 缓冲区是有界的多生产者、单消费者队列：每个槽位带一个序号，生产者通过 CAS 取得写入位置，
+ * 写完消息后发布序号，写线程按序号判断槽位是否可读。同一线程写入的消息保持顺序。
+ * 缓冲区为空时写线程挂起，由放入消息的生产者唤醒；关闭时写线程等正在放入的生产者完成后才退出，
+ * 每条消息要么交给 Logger，要么计入 dropped。
+ *
+ * 默认缓冲区 shared() 写入名为 com.xdw.ConditionParserForDebug 的 Logger，级别为 DEBUG，
+ * 输出位置和格式由 Logback 的配置决定。写线程是守护线程，进程退出前需要完整输出时调用 flush()。
+ */
+public final class DebugTraceSink implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    // flush 等待写线程时的轮询间隔
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static volatile DebugTraceSink shared;
+
+    private final Logger logger;
+    private final int mask;
+    private final String[] messages;
+    // 槽位 i 的序号等于 n + 1 表示第 n 条消息已写入，等于 n 表示可以写入第 n 条消息
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // 已通过 running 检查、尚未返回的 offer 调用数
+    private final AtomicInteger producers = new AtomicInteger();
+    private final Thread writer;
+
+    // 只由写线程修改
+    private volatile long head;
+    private volatile boolean running = true;
+    // 写线程已经或即将挂起，生产者发布消息后需要唤醒它
+    private volatile boolean sleeping;
+
+    /**
+     * @param capacity 缓冲的消息数，向上取整为 2 的幂
+     * @param logger 写线程使用的 Logger
+     */
+    public DebugTraceSink(int capacity, Logger logger) {
+        if (capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 2);
+        this.logger = logger;
+        this.mask = size - 1;
+        this.messages = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.writer = new Thread(this::drain, "condition-debug-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 调试解析器默认使用的缓冲区
+     */
+    public static DebugTraceSink shared() {
+        DebugTraceSink sink = shared;
+        if (sink == null) {
+            synchronized (DebugTraceSink.class) {
+                sink = shared;
+                if (sink == null) {
+                    sink = new DebugTraceSink(DEFAULT_CAPACITY, LoggerFactory.getLogger(ConditionParserForDebug.class));
+                    shared = sink;
+                }
+            }
+        }
+        return sink;
+    }
+
+    /**
+     * 放入一条消息，缓冲区已满或已关闭时丢弃
+     * @return 是否放入
+     */
+    public boolean offer(String message) {
+        // 先登记再检查 running：close 之后写线程会等登记过的生产者写完再退出
+        producers.incrementAndGet();
+        try {
+            if (!running) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            long position = tail.get();
+            while (true) {
+                int index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        messages[index] = message;
+                        sequences.set(index, position + 1);
+                        if (sleeping) {
+                            LockSupport.unpark(writer);
+                        }
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // 写线程还没有取走上一轮的消息
+                    dropped.incrementAndGet();
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            String message = poll();
+            if (message != null) {
+                logger.debug(message);
+            } else if (running) {
+                sleeping = true;
+                // 标记之后再检查一次：在标记之前发布的消息由这里发现，之后发布的由生产者唤醒
+                if (running && !readable()) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            } else if (producers.get() == 0 && head == tail.get()) {
+                return;
+            } else {
+                // 已通过检查但尚未写完的消息
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private boolean readable() {
+        long position = head;
+        return sequences.get((int) position & mask) == position + 1;
+    }
+
+    private String poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        String message = messages[index];
+        messages[index] = null;
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return message;
+    }
+
+    /**
+     * 等待调用之前放入的消息都已交给 Logger
+     */
+    public void flush() {
+        long target = tail.get();
+        while (head < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FLUSH_POLL_NANOS);
+        }
+    }
+
+    /**
+     * 写完缓冲区中的消息后停止写线程，之后放入的消息都被丢弃
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 因缓冲区已满或已关闭而丢弃的消息数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 已交给 Logger 的消息数
+     */
+    public long getWritten() {
+        return head;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "DebugTraceSink{capacity=" + getCapacity() + ", written=" + head + ", dropped=" + dropped.get() + "}";
+    }
+}
@@ -0,0 +1,126 @@
+package com.xdw;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 数据库中已建立 FULLTEXT 索引的字段，用于把按单词匹配的 LIKE 改写为全文检索
+ *
+ * 通过 ParserOptions.withFullTextIndexes 启用后，单字段 FULLTEXT 索引上的 "title LIKE '%word%'"
+ * 改写为 "MATCH (title) AGAINST ('+word*' IN BOOLEAN MODE)"，由全文索引代替全表扫描。
+ * 全文检索按单词匹配：改写后只匹配含有以 word 开头的单词的行，是原来 LIKE 结果的子集，
+ * 如 "swordfish" 不再匹配 '%word%'。只有能接受这一差别的字段才应该注册。
+ *
+ * 以下情况保持原来的 LIKE：
+ * <ul>
+ *   <li>模式不是 %word% 的形式（或不含通配符的 word），或 word 含有 ASCII 字母和数字以外的字符</li>
+ *   <li>word 短于 minTokenSize，或是 InnoDB 默认的停用词，这些词不在全文索引中</li>
+ *   <li>字段只出现在多字段的 FULLTEXT 索引中，MySQL 要求 MATCH 的字段与索引完全一致</li>
+ *   <li>NOT LIKE，或 LIKE 位于 NOT、OR 分支或子查询中：在 NOT 下子集变为超集，索引也不描述子查询的表</li>
+ *   <li>数据库不是 MySQL / MariaDB</li>
+ * </ul>
+ * 条件中直接书写的 MATCH ... AGAINST 不需要注册即可使用，同样只支持 MySQL 和 MariaDB。对象不可变，可以在线程间共享。
+ */
+public final class FullTextIndexes {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    /**
+     * InnoDB innodb_ft_min_token_size 的默认值，MyISAM 的 ft_min_word_len 默认为 4
+     */
+    public static final int DEFAULT_MIN_TOKEN_SIZE = 3;
+
+    /**
+     * InnoDB 默认停用词表（INFORMATION_SCHEMA.INNODB_FT_DEFAULT_STOPWORD）
+     */
+    private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
+            "a", "about", "an", "are", "as", "at", "be", "by", "com", "de", "en", "for", "from", "how", "i", "in",
+            "is", "it", "la", "of", "on", "or", "that", "the", "this", "to", "was", "what", "when", "where", "who",
+            "will", "with", "und", "www"));
+
+    private static final FullTextIndexes EMPTY = new FullTextIndexes(Collections.emptySet(), DEFAULT_MIN_TOKEN_SIZE);
+
+    // 单字段 FULLTEXT 索引的规范化字段名
+    private final Set<String> columns;
+    private final int minTokenSize;
+
+    private FullTextIndexes(Set<String> columns, int minTokenSize) {
+        this.columns = columns;
+        this.minTokenSize = minTokenSize;
+    }
+
+    /**
+     * 没有注册任何索引，不改写
+     */
+    public static FullTextIndexes empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 注册单字段 FULLTEXT 索引，如 FULLTEXT (title)
+     */
+    public FullTextIndexes withIndex(String... columns) {
+        Set<String> set = new LinkedHashSet<>(this.columns);
+        for (String column : columns) {
+            if (column == null || !IDENTIFIER.matcher(column).matches()) {
+                throw new IllegalArgumentException("Invalid column: " + column);
+            }
+            set.add(ConditionParser.normalizeColumnName(column));
+        }
+        return new FullTextIndexes(Collections.unmodifiableSet(set), minTokenSize);
+    }
+
+    /**
+     * 全文索引收录的最短单词长度，应与数据库的 innodb_ft_min_token_size（或 ft_min_word_len）一致
+     */
+    public FullTextIndexes withMinTokenSize(int minTokenSize) {
+        if (minTokenSize <= 0) {
+            throw new IllegalArgumentException("Min token size must be positive: " + minTokenSize);
+        }
+        return new FullTextIndexes(columns, minTokenSize);
+    }
+
+    public boolean isIndexed(String column) {
+        return columns.contains(ConditionParser.normalizeColumnName(column));
+    }
+
+    /**
+     * LIKE 模式对应的布尔模式检索词，如 "%word%" 和 "word" 都对应 "+word*"
+     * @return 模式不能改写为全文检索时返回 null
+     */
+    String toBooleanQuery(String pattern) {
+        String word = pattern;
+        if (word.length() >= 2 && word.startsWith("%") && word.endsWith("%")) {
+            word = word.substring(1, word.length() - 1);
+        }
+        if (word.length() < minTokenSize || STOPWORDS.contains(word.toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+        // 只接受 ASCII 字母和数字：中日韩文字不以空格分词，默认解析器会把整段文字作为一个词
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return null;
+            }
+        }
+        return "+" + word + "*";
+    }
+
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    public int getMinTokenSize() {
+        return minTokenSize;
+    }
+
+    @Override
+    public String toString() {
+        return "FullTextIndexes{columns=" + columns + ", minTokenSize=" + minTokenSize + "}";
+    }
+}
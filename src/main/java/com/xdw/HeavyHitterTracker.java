@@ -0,0 +1,305 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMatchAgainstExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNullExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 用固定内存统计最常见、总耗时最多的条件形状、字段、运算符和调用方
+ *
+ * 每个维度分别按次数和总耗时（解析加构建 QueryWrapper 的纳秒数）各用一个 Space-Saving 计数器，
+ * 每个计数器最多保留 capacity 个 key，内存与请求量和不同条件的数量无关。
+ * 条件形状以 ConditionFingerprint 为 key，说明文字是去掉字面量的规范化文本，不包含用户数据。
+ *
+ * 通过 ParserOptions.withHeavyHitterTracker 启用后，ConditionParser.parse 在每次解析成功后记录；
+ * 经由 ConditionParseLimiter.parse 解析时还记录调用方，包括被拒绝和失败的解析。
+ * 解析量很大时可以只记录随机抽样的 1/sampleEvery 次解析，记录时权重乘以 sampleEvery，估计值仍然无偏。
+ * 统计结果可以随时查询，或用 dump() 输出为文本：
+ * <ul>
+ *   <li>次数最多的形状适合预编译为 CompiledCondition 或 PreparedCondition</li>
+ *   <li>次数和耗时最多的字段是加索引的候选</li>
+ *   <li>耗时最多的调用方是限流的候选</li>
+ * </ul>
+ * 对象可以在线程间共享。
+ */
+public class HeavyHitterTracker {
+
+    /**
+     * 统计的维度
+     */
+    public enum Dimension {
+        SHAPE, COLUMN, OPERATOR, CALLER
+    }
+
+    /**
+     * 排序的依据
+     */
+    public enum Metric {
+        COUNT, TIME
+    }
+
+    // 说明文字的最大长度，避免很长的条件占用过多内存
+    private static final int MAX_LABEL_LENGTH = 200;
+
+    /**
+     * 一个高频 key 的估计值
+     */
+    public static final class HeavyHitter {
+        private final String key;
+        private final String label;
+        private final long estimate;
+        private final long error;
+
+        HeavyHitter(String key, String label, long estimate, long error) {
+            this.key = key;
+            this.label = label;
+            this.estimate = estimate;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 条件形状的规范化文本；其他维度与 key 相同
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * 估计的次数或纳秒数，不小于真实值
+         */
+        public long getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * 估计值最多比真实值大多少
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * 真实值的下界
+         */
+        public long getGuaranteed() {
+            return estimate - error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + estimate + (error > 0 ? "(±" + error + ")" : "");
+        }
+    }
+
+    private final int capacity;
+    private final int sampleEvery;
+    // 按 Dimension 和 Metric 排列
+    private final SpaceSaving[] sketches;
+
+    /**
+     * 记录每一次解析
+     * @param capacity 每个维度、每个指标保留的计数器个数
+     */
+    public HeavyHitterTracker(int capacity) {
+        this(capacity, 1);
+    }
+
+    /**
+     * @param capacity    每个维度、每个指标保留的计数器个数
+     * @param sampleEvery 平均每 sampleEvery 次解析记录一次，1 表示全部记录
+     */
+    public HeavyHitterTracker(int capacity, int sampleEvery) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (sampleEvery <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive: " + sampleEvery);
+        }
+        this.capacity = capacity;
+        this.sampleEvery = sampleEvery;
+        this.sketches = new SpaceSaving[Dimension.values().length * Metric.values().length];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new SpaceSaving(capacity);
+        }
+    }
+
+    private SpaceSaving sketch(Dimension dimension, Metric metric) {
+        return sketches[dimension.ordinal() * Metric.values().length + metric.ordinal()];
+    }
+
+    /**
+     * 本次解析是否需要记录，解析器在开始计时前调用
+     */
+    boolean sample() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    /**
+     * 记录一次被抽中的解析，条件中的每个字段和运算符各记一次
+     */
+    void record(SQLExpr expr, DbType dbType, long nanos) {
+        String canonical = ConditionFingerprint.canonical(expr, dbType);
+        String label = canonical.length() > MAX_LABEL_LENGTH ? canonical.substring(0, MAX_LABEL_LENGTH) + "..." : canonical;
+        add(Dimension.SHAPE, ConditionFingerprint.hash(canonical), label, nanos, sampleEvery);
+
+        Set<String> columns = new LinkedHashSet<>();
+        Set<String> operators = new LinkedHashSet<>();
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLBinaryOpExpr x) {
+                SQLBinaryOperator operator = x.getOperator();
+                if (operator != SQLBinaryOperator.BooleanAnd && operator != SQLBinaryOperator.BooleanOr) {
+                    addColumn(x.getLeft(), columns);
+                    operators.add(x.getRight() instanceof SQLNullExpr && (operator == SQLBinaryOperator.Is
+                            || operator == SQLBinaryOperator.IsNot) ? operator.getName() + " NULL" : operator.getName());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLInListExpr x) {
+                addColumn(x.getExpr(), columns);
+                operators.add(x.isNot() ? "NOT IN" : "IN");
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLBetweenExpr x) {
+                addColumn(x.getTestExpr(), columns);
+                operators.add(x.isNot() ? "NOT BETWEEN" : "BETWEEN");
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLInSubQueryExpr x) {
+                addColumn(x.getExpr(), columns);
+                operators.add(x.isNot() ? "NOT IN (SELECT)" : "IN (SELECT)");
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLExistsExpr x) {
+                operators.add(x.isNot() ? "NOT EXISTS" : "EXISTS");
+                return true;
+            }
+
+            @Override
+            public boolean visit(SQLMatchAgainstExpr x) {
+                for (SQLExpr column : x.getColumns()) {
+                    addColumn(column, columns);
+                }
+                operators.add("MATCH");
+                return true;
+            }
+        });
+        for (String column : columns) {
+            add(Dimension.COLUMN, column, column, nanos, sampleEvery);
+        }
+        for (String operator : operators) {
+            add(Dimension.OPERATOR, operator, operator, nanos, sampleEvery);
+        }
+    }
+
+    private static void addColumn(SQLExpr expr, Set<String> columns) {
+        if (expr instanceof SQLIdentifierExpr || expr instanceof SQLPropertyExpr) {
+            columns.add(ConditionParser.normalizeColumnName(ConditionParser.extractColumnName(expr)));
+        }
+    }
+
+    /**
+     * 记录调用方的一次解析，调用方不抽样
+     * @param nanos 解析耗时，包括失败的解析
+     */
+    public void recordCaller(String caller, long nanos) {
+        add(Dimension.CALLER, caller, caller, nanos, 1);
+    }
+
+    private void add(Dimension dimension, String key, String label, long nanos, int scale) {
+        sketch(dimension, Metric.COUNT).add(key, label, scale);
+        sketch(dimension, Metric.TIME).add(key, label, Math.max(0, nanos) * scale);
+    }
+
+    /**
+     * 估计值最大的 n 个 key，按估计值从大到小排列
+     */
+    public List<HeavyHitter> top(Dimension dimension, Metric metric, int n) {
+        return sketch(dimension, metric).top(n);
+    }
+
+    /**
+     * 维度上记录的总次数或总纳秒数
+     */
+    public long total(Dimension dimension, Metric metric) {
+        return sketch(dimension, metric).total();
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        for (SpaceSaving sketch : sketches) {
+            sketch.clear();
+        }
+    }
+
+    /**
+     * 每个维度、每个指标的前 n 个 key，输出为便于阅读的文本
+     */
+    public String dump(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (Dimension dimension : Dimension.values()) {
+            for (Metric metric : Metric.values()) {
+                long total = total(dimension, metric);
+                sb.append(dimension).append(" by ").append(metric).append(" (total ").append(format(metric, total)).append(")\n");
+                for (HeavyHitter hitter : top(dimension, metric, n)) {
+                    sb.append("  ").append(format(metric, hitter.getEstimate()));
+                    if (hitter.getError() > 0) {
+                        sb.append(" (±").append(format(metric, hitter.getError())).append(')');
+                    }
+                    sb.append("  ").append(hitter.getKey());
+                    if (!hitter.getKey().equals(hitter.getLabel())) {
+                        sb.append("  ").append(hitter.getLabel());
+                    }
+                    sb.append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String format(Metric metric, long value) {
+        return metric == Metric.COUNT ? Long.toString(value) : String.format("%.3f ms", value / 1_000_000.0);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitterTracker{capacity=" + capacity + ", conditions=" + total(Dimension.SHAPE, Metric.COUNT) + "}";
+    }
+}
@@ -0,0 +1,69 @@
+package com.xdw;
+
+import java.util.Arrays;
+
+/**
+ * IN 列表长度分桶策略
+ *
+ * 每一种 IN 列表长度都会产生不同的 SQL 文本，Druid 的 PSCache 和 MySQL 的预编译语句缓存
+ * 会因此不断换入换出。分桶后 IN 列表会被补齐到桶大小（重复最后一个值），
+ * 不同的语句形状数量就被限制在桶的个数以内。
+ *
+ * 补齐只会重复已有的值，因此 IN / NOT IN 的语义都不会改变。
+ */
+public final class InListBucketing {
+
+    private final int[] ladder;
+
+    private InListBucketing(int[] ladder) {
+        this.ladder = ladder;
+    }
+
+    /**
+     * 按 2 的幂分桶：1, 2, 4, 8, 16 ...
+     */
+    public static InListBucketing powersOfTwo() {
+        return new InListBucketing(null);
+    }
+
+    /**
+     * 按配置的阶梯分桶，如 ladder(8, 32, 128, 512)
+     * 超过最大阶梯的列表会补齐到最大阶梯的整数倍
+     */
+    public static InListBucketing ladder(int... sizes) {
+        if (sizes == null || sizes.length == 0) {
+            throw new IllegalArgumentException("Bucket ladder must not be empty");
+        }
+        int[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] <= 0) {
+            throw new IllegalArgumentException("Bucket sizes must be positive: " + Arrays.toString(sizes));
+        }
+        return new InListBucketing(sorted);
+    }
+
+    /**
+     * 计算给定长度的列表应补齐到的桶大小
+     */
+    public int bucketSize(int size) {
+        if (size <= 1) {
+            return size;
+        }
+        if (ladder == null) {
+            int highest = Integer.highestOneBit(size);
+            return highest == size ? size : highest << 1;
+        }
+        for (int step : ladder) {
+            if (size <= step) {
+                return step;
+            }
+        }
+        int largest = ladder[ladder.length - 1];
+        return ((size + largest - 1) / largest) * largest;
+    }
+
+    @Override
+    public String toString() {
+        return ladder == null ? "InListBucketing[powersOfTwo]" : "InListBucketing" + Arrays.toString(ladder);
+    }
+}
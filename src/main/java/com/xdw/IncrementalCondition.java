@@ -0,0 +1,187 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 可增量修改的条件
+ *
+ * 由若干顶层子句通过 AND（或 OR）连接而成。增删一个子句时只解析变化的那个子句，
+ * 其余子句的编译结果和 SQL 片段原样复用，新旧两个对象共享未变化的子句。
+ * 整体的 SQL 片段由各子句缓存的片段拼接得到，不需要重新解析整个条件。
+ *
+ * 对象不可变，add/remove/replace 都返回新对象。
+ */
+public final class IncrementalCondition {
+
+    private final boolean disjunction;
+    private final ParserOptions options;
+    private final List<CompiledCondition> clauses;
+    private volatile SqlFragment fragment;
+
+    private IncrementalCondition(boolean disjunction, ParserOptions options, List<CompiledCondition> clauses) {
+        this.disjunction = disjunction;
+        this.options = options;
+        this.clauses = clauses;
+    }
+
+    /**
+     * 子句之间用 AND 连接的空条件
+     */
+    public static IncrementalCondition conjunction(ParserOptions options) {
+        return new IncrementalCondition(false, options, Collections.emptyList());
+    }
+
+    /**
+     * 子句之间用 OR 连接的空条件
+     */
+    public static IncrementalCondition disjunction(ParserOptions options) {
+        return new IncrementalCondition(true, options, Collections.emptyList());
+    }
+
+    /**
+     * 解析完整的条件并按顶层的 AND（顶层是 OR 时按 OR）拆分为子句
+     * @throws IllegalArgumentException 条件无法解析
+     */
+    public static IncrementalCondition of(String condition, ParserOptions options) {
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, options);
+        if (expr == null) {
+            return conjunction(options);
+        }
+        boolean disjunction = expr instanceof SQLBinaryOpExpr
+                && ((SQLBinaryOpExpr) expr).getOperator() == SQLBinaryOperator.BooleanOr;
+        List<SQLExpr> parts = new ArrayList<>();
+        split(expr, disjunction ? SQLBinaryOperator.BooleanOr : SQLBinaryOperator.BooleanAnd, parts);
+        List<CompiledCondition> clauses = new ArrayList<>(parts.size());
+        for (SQLExpr part : parts) {
+            clauses.add(CompiledCondition.of(SQLUtils.toSQLString(part, options.getDbType()), part, options));
+        }
+        return new IncrementalCondition(disjunction, options, Collections.unmodifiableList(clauses));
+    }
+
+    private static void split(SQLExpr expr, SQLBinaryOperator operator, List<SQLExpr> parts) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == operator) {
+            split(((SQLBinaryOpExpr) expr).getLeft(), operator, parts);
+            split(((SQLBinaryOpExpr) expr).getRight(), operator, parts);
+        } else {
+            parts.add(expr);
+        }
+    }
+
+    /**
+     * 追加一个子句，只解析这个子句
+     */
+    public IncrementalCondition add(String clause) {
+        return add(CompiledCondition.compile(clause, options));
+    }
+
+    public IncrementalCondition add(CompiledCondition clause) {
+        if (clause.isEmpty()) {
+            return this;
+        }
+        List<CompiledCondition> next = new ArrayList<>(clauses.size() + 1);
+        next.addAll(clauses);
+        next.add(clause);
+        return withClauses(next);
+    }
+
+    /**
+     * 删除指定位置的子句
+     */
+    public IncrementalCondition remove(int index) {
+        List<CompiledCondition> next = new ArrayList<>(clauses);
+        next.remove(index);
+        return withClauses(next);
+    }
+
+    /**
+     * 删除第一个文本相同的子句（忽略前后空白），不存在时返回当前对象
+     */
+    public IncrementalCondition remove(String clause) {
+        int index = indexOf(clause);
+        return index < 0 ? this : remove(index);
+    }
+
+    /**
+     * 替换指定位置的子句，只解析新的子句
+     */
+    public IncrementalCondition replace(int index, String clause) {
+        CompiledCondition compiled = CompiledCondition.compile(clause, options);
+        List<CompiledCondition> next = new ArrayList<>(clauses);
+        if (compiled.isEmpty()) {
+            next.remove(index);
+        } else {
+            next.set(index, compiled);
+        }
+        return withClauses(next);
+    }
+
+    public int indexOf(String clause) {
+        String text = clause.trim();
+        for (int i = 0; i < clauses.size(); i++) {
+            if (clauses.get(i).toString().equals(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private IncrementalCondition withClauses(List<CompiledCondition> next) {
+        return new IncrementalCondition(disjunction, options, Collections.unmodifiableList(next));
+    }
+
+    public List<CompiledCondition> getClauses() {
+        return clauses;
+    }
+
+    public boolean isDisjunction() {
+        return disjunction;
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * 拼接各子句缓存的片段得到整个条件的 SQL 片段
+     */
+    public SqlFragment toSqlFragment() {
+        SqlFragment result = fragment;
+        if (result == null) {
+            List<SqlFragment> parts = new ArrayList<>(clauses.size());
+            boolean cacheable = true;
+            for (CompiledCondition clause : clauses) {
+                parts.add(clause.toSqlFragment());
+                cacheable &= clause.isCacheable();
+            }
+            result = SqlFragment.join(parts, disjunction);
+            if (cacheable) {
+                fragment = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把整个条件追加到 QueryWrapper，与已有条件之间是 AND 关系
+     */
+    public <T> QueryWrapper<T> apply(QueryWrapper<T> queryWrapper) {
+        return toSqlFragment().applyTo(queryWrapper);
+    }
+
+    @Override
+    public String toString() {
+        List<String> texts = new ArrayList<>(clauses.size());
+        for (CompiledCondition clause : clauses) {
+            texts.add("(" + clause + ")");
+        }
+        return String.join(disjunction ? " OR " : " AND ", texts);
+    }
+}
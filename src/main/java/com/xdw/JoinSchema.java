@@ -0,0 +1,318 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMatchAgainstExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNotExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.expr.SQLUnaryExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 关联查询的表结构：一张主表和若干可以关联的表，每张表有固定的别名
+ *
+ * 普通的 parse 会丢掉字段的表限定符，"o.status = 'X' AND c.region = 'EU'" 解析后无法区分字段属于哪张表。
+ * 通过 JoinSchema 解析时保留限定符，并把别名或表名映射到配置的别名：
+ * <pre>
+ * JoinSchema schema = JoinSchema.of("orders", "o")
+ *         .withJoin("customers", "c", "c.id = o.customer_id")
+ *         .withJoinMany("order_items", "i", "i.order_id = o.id");
+ * JoinedCondition condition = schema.parse("o.status = 'PAID' AND customers.region = 'EU'", options);
+ * condition.apply(queryWrapper);                 // o.status = ? AND c.region = ?
+ * condition.getFromClause();                     // orders o LEFT JOIN customers c ON c.id = o.customer_id
+ * </pre>
+ * 关联表之间的过滤因此可以在一条 SQL 中完成，不需要先查主表再逐行查关联表（N+1 查询）。
+ * 关联一律使用 LEFT JOIN：没有关联行的主表行以 NULL 参与条件，"o.status = 'PAID' OR c.region = 'EU'"
+ * 不会丢掉没有客户的订单。条件拒绝 NULL 时（如 c.region = 'EU'），数据库会把它优化为内连接。
+ *
+ * 没有限定符的字段属于主表；限定符不是已配置的别名或表名时拒绝解析，用户条件不能引用配置之外的表。
+ * FROM 子句只包含条件实际引用到的关联表，以及它们的 ON 条件所依赖的关联表。
+ * 对象不可变，可以在线程间共享。
+ */
+public final class JoinSchema {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    /**
+     * 一张可以关联的表
+     */
+    static final class Join {
+        final String table;
+        final String alias;
+        final String on;
+        // 一对多关联会让主表的行重复出现
+        final boolean many;
+        // ON 条件引用到的其他关联表的别名
+        final Set<String> dependencies;
+
+        Join(String table, String alias, String on, boolean many, Set<String> dependencies) {
+            this.table = table;
+            this.alias = alias;
+            this.on = on;
+            this.many = many;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final String table;
+    private final String alias;
+    // 按声明顺序排列，被依赖的表总在依赖它的表之前
+    private final List<Join> joins;
+    // 规范化后的别名和表名 -> 别名
+    private final Map<String, String> qualifiers;
+
+    private JoinSchema(String table, String alias, List<Join> joins, Map<String, String> qualifiers) {
+        this.table = table;
+        this.alias = alias;
+        this.joins = joins;
+        this.qualifiers = qualifiers;
+    }
+
+    /**
+     * @param table 主表名，只允许字母、数字和下划线，可以带 schema 前缀
+     * @param alias 主表别名
+     */
+    public static JoinSchema of(String table, String alias) {
+        checkIdentifier(table);
+        checkAlias(alias);
+        Map<String, String> qualifiers = new LinkedHashMap<>();
+        qualifiers.put(normalize(alias), alias);
+        qualifiers.put(normalize(table), alias);
+        return new JoinSchema(table, alias, Collections.emptyList(), qualifiers);
+    }
+
+    /**
+     * 多对一或一对一关联的表，关联后主表的行不会重复
+     * @param on ON 条件，只能引用主表和已经声明的关联表
+     * @throws IllegalArgumentException 表名或别名不合法、别名重复，或 ON 条件引用了未声明的表
+     */
+    public JoinSchema withJoin(String table, String alias, String on) {
+        return addJoin(table, alias, on, false);
+    }
+
+    /**
+     * 一对多关联的表，关联后主表的行可能重复，查询时需要 DISTINCT
+     * @see #withJoin(String, String, String)
+     */
+    public JoinSchema withJoinMany(String table, String alias, String on) {
+        return addJoin(table, alias, on, true);
+    }
+
+    private JoinSchema addJoin(String table, String alias, String on, boolean many) {
+        checkIdentifier(table);
+        checkAlias(alias);
+        if (qualifiers.containsKey(normalize(alias))) {
+            throw new IllegalArgumentException("Duplicate table alias: " + alias);
+        }
+        Map<String, String> newQualifiers = new LinkedHashMap<>(qualifiers);
+        newQualifiers.put(normalize(alias), alias);
+        // 同一张表关联多次时表名有歧义，只能通过别名引用
+        String tableKey = normalize(table);
+        if (newQualifiers.containsKey(tableKey)) {
+            newQualifiers.put(tableKey, null);
+        } else {
+            newQualifiers.put(tableKey, alias);
+        }
+        Set<String> dependencies = new LinkedHashSet<>();
+        for (String owner : owners(on)) {
+            String resolved = newQualifiers.get(normalize(owner));
+            if (resolved == null) {
+                throw new IllegalArgumentException("Join condition of " + alias + " references unknown table: " + owner);
+            }
+            if (!resolved.equals(alias) && !resolved.equals(this.alias)) {
+                dependencies.add(resolved);
+            }
+        }
+        List<Join> newJoins = new ArrayList<>(joins);
+        newJoins.add(new Join(table, alias, on.trim(), many, Collections.unmodifiableSet(dependencies)));
+        return new JoinSchema(this.table, this.alias, Collections.unmodifiableList(newJoins), newQualifiers);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    /**
+     * 解析条件，字段的限定符映射为配置的别名
+     * @throws IllegalArgumentException 条件无法解析，或引用了未配置的表
+     */
+    public JoinedCondition parse(String condition, ParserOptions options) {
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, options);
+        if (expr == null) {
+            return new JoinedCondition(this, CompiledCondition.empty(), Collections.emptySet());
+        }
+        Set<String> referenced = new LinkedHashSet<>();
+        SQLExpr resolved = resolve(expr, referenced);
+        return new JoinedCondition(this, CompiledCondition.of(condition.trim(), resolved, options), referenced);
+    }
+
+    /**
+     * 引用到的别名需要的关联表，按声明顺序排列，包含 ON 条件间接依赖的表
+     */
+    List<Join> requiredJoins(Set<String> referenced) {
+        Set<String> required = new LinkedHashSet<>(referenced);
+        // 依赖总是指向更早声明的表，倒序遍历一次即可求出闭包
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            Join join = joins.get(i);
+            if (required.contains(join.alias)) {
+                required.addAll(join.dependencies);
+            }
+        }
+        List<Join> result = new ArrayList<>();
+        for (Join join : joins) {
+            if (required.contains(join.alias)) {
+                result.add(join);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 复制条件树，字段替换为带别名的字段名，记录引用到的关联表别名
+     */
+    private SQLExpr resolve(SQLExpr expr, Set<String> referenced) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binary = (SQLBinaryOpExpr) expr;
+            SQLBinaryOperator operator = binary.getOperator();
+            if (operator == SQLBinaryOperator.BooleanAnd || operator == SQLBinaryOperator.BooleanOr) {
+                return new SQLBinaryOpExpr(resolve(binary.getLeft(), referenced), operator,
+                        resolve(binary.getRight(), referenced));
+            }
+            // 比较的左侧是字段，右侧是值
+            return new SQLBinaryOpExpr(resolveColumn(binary.getLeft(), referenced), operator, binary.getRight().clone());
+        }
+        if (expr instanceof SQLInListExpr) {
+            SQLInListExpr in = (SQLInListExpr) expr;
+            SQLInListExpr copy = new SQLInListExpr(resolveColumn(in.getExpr(), referenced), in.isNot());
+            for (SQLExpr target : in.getTargetList()) {
+                copy.addTarget(target.clone());
+            }
+            return copy;
+        }
+        if (expr instanceof SQLBetweenExpr) {
+            SQLBetweenExpr between = (SQLBetweenExpr) expr;
+            return new SQLBetweenExpr(resolveColumn(between.getTestExpr(), referenced), between.isNot(),
+                    between.getBeginExpr().clone(), between.getEndExpr().clone());
+        }
+        if (expr instanceof SQLNotExpr) {
+            return new SQLNotExpr(resolve(((SQLNotExpr) expr).getExpr(), referenced));
+        }
+        if (expr instanceof SQLUnaryExpr) {
+            SQLUnaryExpr unary = (SQLUnaryExpr) expr;
+            return new SQLUnaryExpr(unary.getOperator(), resolve(unary.getExpr(), referenced));
+        }
+        if (expr instanceof SQLInSubQueryExpr) {
+            // 子查询中的表和字段由 ParserOptions 的白名单检查
+            SQLInSubQueryExpr copy = ((SQLInSubQueryExpr) expr).clone();
+            copy.setExpr(resolveColumn(copy.getExpr(), referenced));
+            return copy;
+        }
+        if (expr instanceof SQLExistsExpr) {
+            return expr.clone();
+        }
+        if (expr instanceof SQLMatchAgainstExpr) {
+            SQLMatchAgainstExpr copy = ((SQLMatchAgainstExpr) expr).clone();
+            List<SQLExpr> columns = copy.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                columns.set(i, resolveColumn(columns.get(i), referenced));
+            }
+            return copy;
+        }
+        throw new IllegalArgumentException("Unsupported expression in join condition: " + expr);
+    }
+
+    /**
+     * 带别名的字段，用名字中含点号的标识符表示，渲染时原样输出 "别名.字段"
+     */
+    private SQLExpr resolveColumn(SQLExpr expr, Set<String> referenced) {
+        String owner;
+        String column;
+        if (expr instanceof SQLPropertyExpr) {
+            SQLExpr ownerExpr = ((SQLPropertyExpr) expr).getOwner();
+            if (!(ownerExpr instanceof SQLIdentifierExpr)) {
+                throw new IllegalArgumentException("Invalid column qualifier: " + expr);
+            }
+            owner = ((SQLIdentifierExpr) ownerExpr).getName();
+            column = ((SQLPropertyExpr) expr).getName();
+        } else if (expr instanceof SQLIdentifierExpr) {
+            owner = alias;
+            column = ((SQLIdentifierExpr) expr).getName();
+        } else {
+            throw new IllegalArgumentException("Invalid column expression: " + expr);
+        }
+        String resolved = qualifiers.get(normalize(owner));
+        if (resolved == null) {
+            throw new IllegalArgumentException(qualifiers.containsKey(normalize(owner))
+                    ? "Ambiguous table name, use its alias: " + owner
+                    : "Unknown table alias: " + owner);
+        }
+        if (!resolved.equals(alias)) {
+            referenced.add(resolved);
+        }
+        return new SQLIdentifierExpr(resolved + "." + column);
+    }
+
+    private static Set<String> owners(String on) {
+        SQLExpr expr;
+        try {
+            expr = SQLUtils.toSQLExpr(on);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid join condition: " + on, e);
+        }
+        Set<String> owners = new LinkedHashSet<>();
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLPropertyExpr x) {
+                if (x.getOwner() instanceof SQLIdentifierExpr) {
+                    owners.add(((SQLIdentifierExpr) x.getOwner()).getName());
+                }
+                return false;
+            }
+        });
+        return owners;
+    }
+
+    private static void checkIdentifier(String table) {
+        if (table == null || !IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+    }
+
+    private static void checkAlias(String alias) {
+        if (alias == null || alias.indexOf('.') >= 0 || !IDENTIFIER.matcher(alias).matches()) {
+            throw new IllegalArgumentException("Invalid table alias: " + alias);
+        }
+    }
+
+    private static String normalize(String identifier) {
+        return ConditionParser.normalizeColumnName(identifier);
+    }
+
+    String fromClause(List<Join> required) {
+        StringBuilder sb = new StringBuilder(table).append(' ').append(alias);
+        for (Join join : required) {
+            sb.append(" LEFT JOIN ").append(join.table).append(' ').append(join.alias).append(" ON ").append(join.on);
+        }
+        return sb.toString();
+    }
+}
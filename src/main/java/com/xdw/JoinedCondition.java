@@ -0,0 +1,89 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 通过 JoinSchema 解析的条件：字段带有配置的别名，并附带执行条件所需的 FROM 子句
+ *
+ * 条件部分是一个 CompiledCondition，可以与其他编译后的条件组合；
+ * 与之组合的条件同样需要使用带别名的字段名，否则在关联查询中可能有歧义。
+ * 在 Mapper XML 中的典型用法：
+ * <pre>
+ * SELECT ${select} ${ew.customSqlSegment}
+ * </pre>
+ * 其中 select 为 selectClause("o.*") 的结果。对象不可变，可以在线程间共享。
+ */
+public final class JoinedCondition {
+
+    private final CompiledCondition condition;
+    private final List<String> joinedAliases;
+    private final boolean distinct;
+    private final String fromClause;
+
+    JoinedCondition(JoinSchema schema, CompiledCondition condition, Set<String> referenced) {
+        List<JoinSchema.Join> joins = schema.requiredJoins(referenced);
+        List<String> aliases = new ArrayList<>(joins.size());
+        boolean many = false;
+        for (JoinSchema.Join join : joins) {
+            aliases.add(join.alias);
+            many |= join.many;
+        }
+        this.condition = condition;
+        this.joinedAliases = Collections.unmodifiableList(aliases);
+        this.distinct = many;
+        this.fromClause = schema.fromClause(joins);
+    }
+
+    /**
+     * 带别名字段的条件
+     */
+    public CompiledCondition getCondition() {
+        return condition;
+    }
+
+    /**
+     * 需要关联的表的别名，按 JOIN 的顺序排列，不含主表
+     */
+    public List<String> getJoinedAliases() {
+        return joinedAliases;
+    }
+
+    /**
+     * 关联了一对多的表，主表的行可能重复，需要 SELECT DISTINCT
+     */
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * 不含 FROM 关键字的 FROM 子句，如 "orders o LEFT JOIN customers c ON c.id = o.customer_id"
+     */
+    public String getFromClause() {
+        return fromClause;
+    }
+
+    /**
+     * WHERE 之前的查询语句，如 "SELECT o.* FROM orders o LEFT JOIN customers c ON c.id = o.customer_id"
+     * @param columns 查询的字段，由调用方提供，不做转义
+     */
+    public String selectClause(String columns) {
+        return (distinct ? "SELECT DISTINCT " : "SELECT ") + columns + " FROM " + fromClause;
+    }
+
+    /**
+     * 把条件追加到 QueryWrapper
+     */
+    public <T> QueryWrapper<T> apply(QueryWrapper<T> queryWrapper) {
+        return condition.apply(queryWrapper);
+    }
+
+    @Override
+    public String toString() {
+        return condition + " FROM " + fromClause;
+    }
+}
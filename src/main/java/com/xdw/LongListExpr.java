@@ -0,0 +1,93 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLExprImpl;
+import com.alibaba.druid.sql.visitor.SQLASTVisitor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * IN 列表中连续的一组整数，以 long[] 保存
+ *
+ * 作为 SQLInListExpr 的一个目标节点出现，代表多个值。数值型 IN 列表（通常是一批 id）
+ * 解码或绑定时不再为每个元素创建节点和装箱对象，调用方通过 ConditionParser.extractValues
+ * 统一展开，得到的是按需装箱的只读视图。
+ *
+ * 数组不会被修改，节点之间可以共享。
+ */
+final class LongListExpr extends SQLExprImpl {
+
+    private final long[] values;
+
+    LongListExpr(long[] values) {
+        this.values = values;
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    long get(int index) {
+        return values[index];
+    }
+
+    /**
+     * 按需装箱的只读视图，装箱规则与 LongLiteralExpr 相同
+     */
+    List<Object> asList() {
+        return new BoxedView(values);
+    }
+
+    @Override
+    protected void accept0(SQLASTVisitor visitor) {
+        // 叶子节点，没有需要访问的子节点
+    }
+
+    @Override
+    public SQLExpr clone() {
+        return new LongListExpr(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LongListExpr && Arrays.equals(values, ((LongListExpr) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (long value : values) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    private static final class BoxedView extends AbstractList<Object> implements RandomAccess {
+        private final long[] values;
+
+        BoxedView(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(int index) {
+            return ConditionParser.integerValue(values[index]);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
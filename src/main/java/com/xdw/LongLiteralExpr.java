@@ -0,0 +1,55 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLExprImpl;
+import com.alibaba.druid.sql.ast.expr.SQLValuableExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitor;
+
+/**
+ * 编译计划中的整数字面量，以 long 保存
+ *
+ * 从二进制编码解码时使用它代替 SQLIntegerExpr，不为每个字面量分配装箱的 Number，
+ * 只在绑定到 QueryWrapper 时才装箱。装箱规则与解析条件文本时一致：int 范围内为 Integer，否则为 Long。
+ */
+final class LongLiteralExpr extends SQLExprImpl implements SQLValuableExpr {
+
+    private final long value;
+
+    LongLiteralExpr(long value) {
+        this.value = value;
+    }
+
+    long longValue() {
+        return value;
+    }
+
+    @Override
+    public Object getValue() {
+        return ConditionParser.integerValue(value);
+    }
+
+    @Override
+    protected void accept0(SQLASTVisitor visitor) {
+        // 叶子节点，没有需要访问的子节点
+    }
+
+    @Override
+    public SQLExpr clone() {
+        return new LongLiteralExpr(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LongLiteralExpr && value == ((LongLiteralExpr) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(value);
+    }
+}
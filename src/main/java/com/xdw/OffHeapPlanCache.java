@@ -0,0 +1,352 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 编译结果的堆外缓存
+ *
+ * 以条件字符串为键缓存 ConditionCodec 的编码，编码和索引都放在 Arena 分配的堆外内存中，
+ * 缓存几十万个条件也不会增加老年代的对象数量和 GC 停顿。命中时把编码复制回堆上解码，
+ * 解码结果用完即可回收。
+ *
+ * 数据区是一个环形日志，记录按写入顺序追加，空间或条目数不足时从最旧的记录开始淘汰（FIFO）：
+ * <pre>
+ * 记录：记录长度(int) 键长度(int) 键哈希(long) 编码长度(int) 保留(int) 键(UTF-8) 编码，按 8 字节对齐
+ * 回绕标记：-1(int)，表示数据区末尾剩余的空间未使用，下一条记录从头开始
+ * </pre>
+ * 索引是开放寻址的哈希表，每个槽位 16 字节：键哈希(long，0 表示空槽) 记录位置(int) 保留(int)；
+ * 哈希相同时比较记录中的键，删除时向前移动后续槽位，不留墓碑。
+ *
+ * 对象可以在线程间共享，读操作之间不互斥；用完后必须关闭以释放堆外内存。
+ */
+public class OffHeapPlanCache implements AutoCloseable {
+
+    private static final int RECORD_HEADER = 24;
+    private static final int SLOT_SIZE = 16;
+    private static final int WRAP = -1;
+
+    private final ParserOptions options;
+    private final Arena arena;
+    private final MemorySegment data;
+    private final MemorySegment slots;
+    private final long capacity;
+    private final int maxEntries;
+    private final long mask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long evictions;
+
+    // 以下字段只在持有写锁时修改
+    private long head;
+    private long tail;
+    private long used;
+    private int size;
+    private boolean closed;
+
+    /**
+     * @param options 编译条件时使用的解析选项
+     * @param capacityBytes 数据区的字节数
+     * @param maxEntries 最多缓存的条件数，决定索引的大小
+     */
+    public OffHeapPlanCache(ParserOptions options, long capacityBytes, int maxEntries) {
+        if (capacityBytes < RECORD_HEADER || capacityBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacityBytes);
+        }
+        if (maxEntries <= 0 || maxEntries > (1 << 28)) {
+            throw new IllegalArgumentException("Invalid max entries: " + maxEntries);
+        }
+        this.options = options;
+        this.capacity = capacityBytes & ~7L;
+        this.maxEntries = maxEntries;
+        // 装载因子不超过 0.5，线性探测的探测长度保持很短
+        long slotCount = Long.highestOneBit((long) maxEntries * 2 - 1) << 1;
+        this.mask = slotCount - 1;
+        this.arena = Arena.ofShared();
+        this.data = arena.allocate(capacity, 8);
+        this.slots = arena.allocate(slotCount * SLOT_SIZE, 8);
+        slots.fill((byte) 0);
+    }
+
+    /**
+     * 取得条件的编码，不在缓存中时解析、编码并放入缓存
+     * @throws IllegalArgumentException 条件无法解析
+     * @throws IllegalStateException 缓存已关闭
+     */
+    public byte[] compile(String condition) {
+        byte[] key = key(condition);
+        long hash = hash(key);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long record = find(key, hash);
+            if (record >= 0) {
+                hits.incrementAndGet();
+                return readPlan(record, key.length);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        misses.incrementAndGet();
+        byte[] plan = ConditionCodec.encode(condition, options);
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (find(key, hash) < 0) {
+                insert(key, hash, plan);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return plan;
+    }
+
+    /**
+     * 使用缓存中的编码把条件应用到 QueryWrapper
+     */
+    public <T> QueryWrapper<T> parse(String condition, QueryWrapper<T> queryWrapper) {
+        return ConditionParser.parse(compile(condition), queryWrapper, options);
+    }
+
+    public boolean contains(String condition) {
+        byte[] key = key(condition);
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return find(key, hash(key)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 缓存中的条件数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 数据区中已使用的字节数，包括回绕时末尾未使用的部分
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 分配的堆外内存总字节数，包括索引
+     */
+    public long offHeapBytes() {
+        return data.byteSize() + slots.byteSize();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 释放堆外内存，之后的访问抛出 IllegalStateException
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                arena.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Plan cache is closed");
+        }
+    }
+
+    // 同一条件在不同方言下的语法树可能不同，键中带上方言
+    private byte[] key(String condition) {
+        return (options.getDbType().name() + ':' + condition.trim()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 查找键对应的记录位置，不存在时返回 -1
+     */
+    private long find(byte[] key, long hash) {
+        MemorySegment heapKey = MemorySegment.ofArray(key);
+        for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE);
+            if (slotHash == 0) {
+                return -1;
+            }
+            if (slotHash == hash) {
+                long record = slots.get(ValueLayout.JAVA_INT, slot * SLOT_SIZE + 8);
+                if (data.get(ValueLayout.JAVA_INT, record + 4) == key.length
+                        && data.asSlice(record + RECORD_HEADER, key.length).mismatch(heapKey) < 0) {
+                    return record;
+                }
+            }
+        }
+    }
+
+    private byte[] readPlan(long record, int keyLength) {
+        byte[] plan = new byte[data.get(ValueLayout.JAVA_INT, record + 16)];
+        MemorySegment.copy(data, ValueLayout.JAVA_BYTE, record + RECORD_HEADER + keyLength, plan, 0, plan.length);
+        return plan;
+    }
+
+    private void insert(byte[] key, long hash, byte[] plan) {
+        long length = (RECORD_HEADER + key.length + plan.length + 7L) & ~7L;
+        if (length > capacity) {
+            // 编码比整个数据区还大，不缓存
+            return;
+        }
+        while (size >= maxEntries) {
+            evictOldest();
+        }
+        long record;
+        while ((record = placement(length)) < 0) {
+            evictOldest();
+        }
+        if (record != head) {
+            // 末尾放不下，标记剩余空间未使用，从头开始写
+            data.set(ValueLayout.JAVA_INT, head, WRAP);
+            used += capacity - head;
+        }
+        data.set(ValueLayout.JAVA_INT, record, (int) length);
+        data.set(ValueLayout.JAVA_INT, record + 4, key.length);
+        data.set(ValueLayout.JAVA_LONG, record + 8, hash);
+        data.set(ValueLayout.JAVA_INT, record + 16, plan.length);
+        data.set(ValueLayout.JAVA_INT, record + 20, 0);
+        MemorySegment.copy(key, 0, data, ValueLayout.JAVA_BYTE, record + RECORD_HEADER, key.length);
+        MemorySegment.copy(plan, 0, data, ValueLayout.JAVA_BYTE, record + RECORD_HEADER + key.length, plan.length);
+        head = record + length == capacity ? 0 : record + length;
+        used += length;
+
+        long slot = hash & mask;
+        while (slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots.set(ValueLayout.JAVA_LONG, slot * SLOT_SIZE, hash);
+        slots.set(ValueLayout.JAVA_INT, slot * SLOT_SIZE + 8, (int) record);
+        size++;
+    }
+
+    /**
+     * 长度为 length 的新记录的写入位置，不淘汰记录就放不下时返回 -1
+     * 返回值与 head 不同时表示需要回绕到数据区开头
+     */
+    private long placement(long length) {
+        if (size == 0) {
+            return head;
+        }
+        if (head > tail) {
+            // 记录在 [tail, head) 中，可以写在末尾，或回绕到开头但不能越过 tail
+            if (capacity - head >= length) {
+                return head;
+            }
+            return tail >= length ? 0 : -1;
+        }
+        // 已回绕，空闲空间是 [head, tail)；head == tail 时数据区已满
+        return tail - head >= length ? head : -1;
+    }
+
+    /**
+     * 淘汰最旧的记录，遇到回绕标记时先跳过数据区末尾未使用的部分
+     * 缓存为空时不能调用；最后一条记录被淘汰后数据区从头开始
+     */
+    private void evictOldest() {
+        if (tail + 4 > capacity || data.get(ValueLayout.JAVA_INT, tail) == WRAP) {
+            used -= capacity - tail;
+            tail = 0;
+        }
+        long record = tail;
+        int length = data.get(ValueLayout.JAVA_INT, record);
+        removeSlot(data.get(ValueLayout.JAVA_LONG, record + 8), record);
+        used -= length;
+        tail = record + length == capacity ? 0 : record + length;
+        evictions++;
+        if (--size == 0) {
+            head = 0;
+            tail = 0;
+            used = 0;
+        }
+    }
+
+    private void removeSlot(long hash, long record) {
+        long slot = hash & mask;
+        while (slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE) != hash
+                || slots.get(ValueLayout.JAVA_INT, slot * SLOT_SIZE + 8) != record) {
+            slot = (slot + 1) & mask;
+        }
+        // 向前移动后续槽位，保证探测序列中间没有空槽
+        long hole = slot;
+        for (long next = (slot + 1) & mask; ; next = (next + 1) & mask) {
+            long nextHash = slots.get(ValueLayout.JAVA_LONG, next * SLOT_SIZE);
+            if (nextHash == 0) {
+                break;
+            }
+            long home = nextHash & mask;
+            // home 不在 (hole, next] 之间时，这个槽位可以移动到 hole
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                MemorySegment.copy(slots, next * SLOT_SIZE, slots, hole * SLOT_SIZE, SLOT_SIZE);
+                hole = next;
+            }
+        }
+        slots.set(ValueLayout.JAVA_LONG, hole * SLOT_SIZE, 0L);
+        slots.set(ValueLayout.JAVA_INT, hole * SLOT_SIZE + 8, 0);
+    }
+
+    /**
+     * 键的 64 位 FNV-1a 哈希，0 保留给空槽
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // 混合高位，低位用作槽位下标
+        hash ^= hash >>> 32;
+        return hash == 0 ? 1 : hash;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapPlanCache{size=" + size() + ", usedBytes=" + usedBytes() + ", capacity=" + capacity + "}";
+    }
+}
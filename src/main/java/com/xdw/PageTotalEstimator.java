@@ -0,0 +1,275 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分页查询的总行数
+ *
+ * MyBatis-Plus 分页默认每一页都对同一个条件执行一次精确的 COUNT(*)，在大表上与查询本页的代价相当。
+ * 本类按选定的方式得到总行数，并标明结果是精确值还是估算值：
+ * <ul>
+ *   <li>EXACT：每次精确计数，与 MyBatis-Plus 的默认行为相同</li>
+ *   <li>ESTIMATED：用 CostEstimator 按统计信息估算，不访问数据库</li>
+ *   <li>CACHED：精确计数，结果按条件缓存一段时间，缓存期内的结果标为估算值</li>
+ *   <li>CAPPED：最多计数到 cap 行，达到上限时返回 cap 并标为估算值</li>
+ * </ul>
+ * 典型用法是把结果写入 Page 并关闭 MyBatis-Plus 自己的计数：
+ * <pre>
+ * PageTotalEstimator.PageTotal total = totals.total(condition);
+ * mapper.selectPage(PageTotalEstimator.applyTo(new Page&lt;&gt;(current, size), total), wrapper);
+ * </pre>
+ * 对象可以在线程间共享。
+ */
+public class PageTotalEstimator {
+
+    /**
+     * 总行数的来源
+     */
+    public enum Mode {
+        EXACT, ESTIMATED, CACHED, CAPPED
+    }
+
+    /**
+     * 执行计数查询，通常委托给 Mapper
+     */
+    public interface RowCounter {
+
+        /**
+         * 满足条件的精确行数，如 mapper.selectCount(wrapper)
+         */
+        long count(QueryWrapper<Object> wrapper);
+
+        /**
+         * 满足条件的行数，最多数到 limit 行
+         * 默认实现执行完整计数；应覆盖为只扫描 limit 行的查询，
+         * 如 SELECT COUNT(*) FROM (SELECT 1 FROM t WHERE ... LIMIT n) c
+         */
+        default long countUpTo(QueryWrapper<Object> wrapper, long limit) {
+            return Math.min(count(wrapper), limit);
+        }
+    }
+
+    /**
+     * 总行数及其是否精确
+     */
+    public static final class PageTotal {
+        private final long total;
+        private final boolean exact;
+        private final Mode mode;
+
+        PageTotal(long total, boolean exact, Mode mode) {
+            this.total = total;
+            this.exact = exact;
+            this.mode = mode;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 总行数是否是刚刚精确计数的结果；为 false 时只能用于展示大致的页数
+         */
+        public boolean isExact() {
+            return exact;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        @Override
+        public String toString() {
+            return (exact ? "" : "~") + total + " (" + mode + ")";
+        }
+    }
+
+    private static final class CachedCount {
+        final long count;
+        final long expiresAt;
+
+        CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Mode mode;
+    private final ParserOptions options;
+    private final RowCounter counter;
+    private final CostEstimator estimator;
+    private final long cap;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Clock clock;
+
+    // 按访问顺序排列的缓存计数，最久未访问的在最前面
+    private final LinkedHashMap<List<Object>, CachedCount> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong countQueries = new AtomicLong();
+
+    private PageTotalEstimator(Mode mode, ParserOptions options, RowCounter counter, CostEstimator estimator,
+                               long cap, long ttlMillis, int maxEntries, Clock clock) {
+        this.mode = mode;
+        this.options = options;
+        this.counter = counter;
+        this.estimator = estimator;
+        this.cap = cap;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * 每次精确计数
+     */
+    public static PageTotalEstimator exact(RowCounter counter, ParserOptions options) {
+        return new PageTotalEstimator(Mode.EXACT, options, requireCounter(counter), null, 0, 0, 0, null);
+    }
+
+    /**
+     * 按统计信息估算，不访问数据库
+     */
+    public static PageTotalEstimator estimated(CostEstimator estimator, ParserOptions options) {
+        if (estimator == null) {
+            throw new IllegalArgumentException("Estimator must not be null");
+        }
+        return new PageTotalEstimator(Mode.ESTIMATED, options, null, estimator, 0, 0, 0, null);
+    }
+
+    /**
+     * 精确计数并按条件缓存
+     * @param ttl        缓存的有效期
+     * @param maxEntries 最多缓存的条件数，超出时淘汰最久未访问的
+     * @param clock      判断过期使用的时钟，测试中可以注入可控的时钟
+     */
+    public static PageTotalEstimator cached(RowCounter counter, ParserOptions options, Duration ttl, int maxEntries, Clock clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive: " + ttl);
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock must not be null");
+        }
+        return new PageTotalEstimator(Mode.CACHED, options, requireCounter(counter), null, 0, ttl.toMillis(), maxEntries, clock);
+    }
+
+    /**
+     * 最多计数到 cap 行
+     */
+    public static PageTotalEstimator capped(RowCounter counter, ParserOptions options, long cap) {
+        if (cap <= 0) {
+            throw new IllegalArgumentException("Cap must be positive: " + cap);
+        }
+        return new PageTotalEstimator(Mode.CAPPED, options, requireCounter(counter), null, cap, 0, 0, null);
+    }
+
+    private static RowCounter requireCounter(RowCounter counter) {
+        if (counter == null) {
+            throw new IllegalArgumentException("Row counter must not be null");
+        }
+        return counter;
+    }
+
+    /**
+     * 满足条件的总行数
+     * @throws IllegalArgumentException 条件无法解析
+     */
+    public PageTotal total(String condition) {
+        if (mode == Mode.ESTIMATED) {
+            return new PageTotal(estimator.estimate(condition).getRows(), false, mode);
+        }
+        return total(CompiledCondition.compile(condition, options));
+    }
+
+    /**
+     * 编译后条件的总行数；ESTIMATED 方式需要条件文本，应使用 total(String)
+     */
+    public PageTotal total(CompiledCondition condition) {
+        switch (mode) {
+            case EXACT:
+                return new PageTotal(count(condition), true, mode);
+            case CAPPED: {
+                // 多数一行，才能区分恰好 cap 行和超过 cap 行
+                long counted = countUpTo(condition, cap + 1);
+                return counted > cap ? new PageTotal(cap, false, mode) : new PageTotal(counted, true, mode);
+            }
+            case CACHED:
+                return cachedTotal(condition);
+            default:
+                return total(condition.toString());
+        }
+    }
+
+    private PageTotal cachedTotal(CompiledCondition condition) {
+        // 同样的 SQL 和参数才是同一个计数
+        SqlFragment fragment = condition.toSqlFragment();
+        List<Object> key = Arrays.asList(fragment.getSql(), fragment.getParameters());
+        long now = clock.millis();
+        synchronized (cache) {
+            CachedCount cached = cache.get(key);
+            if (cached != null && cached.expiresAt > now) {
+                return new PageTotal(cached.count, false, mode);
+            }
+        }
+        long counted = count(condition);
+        synchronized (cache) {
+            cache.put(key, new CachedCount(counted, now + ttlMillis));
+            if (cache.size() > maxEntries) {
+                Map.Entry<List<Object>, CachedCount> eldest = cache.entrySet().iterator().next();
+                cache.remove(eldest.getKey());
+            }
+        }
+        return new PageTotal(counted, true, mode);
+    }
+
+    private long count(CompiledCondition condition) {
+        countQueries.incrementAndGet();
+        return counter.count(condition.apply(new QueryWrapper<>()));
+    }
+
+    private long countUpTo(CompiledCondition condition, long limit) {
+        countQueries.incrementAndGet();
+        return counter.countUpTo(condition.apply(new QueryWrapper<>()), limit);
+    }
+
+    /**
+     * 丢弃所有缓存的计数，表数据大量变化时调用
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 已经执行的计数查询次数
+     */
+    public long getCountQueries() {
+        return countQueries.get();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 把总行数写入 Page，并关闭 MyBatis-Plus 分页插件自己的 COUNT 查询
+     */
+    public static <P extends Page<?>> P applyTo(P page, PageTotal total) {
+        page.setSearchCount(false);
+        page.setTotal(total.getTotal());
+        return page;
+    }
+}
@@ -0,0 +1,232 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+
+import java.time.Clock;
+
+/**
+ * 条件解析选项
+ *
+ * 不可变对象，可以在启动时构建一次后在多个线程间共享。
+ * 每个 withXxx 方法都返回一个新的实例，原实例保持不变。
+ */
+public final class ParserOptions {
+
+    private static final ParserOptions DEFAULTS = new ParserOptions();
+
+    // 解析和生成 SQL 时使用的数据库方言
+    private DbType dbType = DbType.mysql;
+
+    // IN 列表分桶策略，null 表示不分桶
+    private InListBucketing inListBucketing;
+
+    // 时间函数处理策略及 JVM 求值时使用的时钟
+    private TimeFunctionPolicy timeFunctionPolicy = TimeFunctionPolicy.JVM_CLOCK;
+    private Clock clock = Clock.systemDefaultZone();
+
+    // 条件复杂度限制，在 Druid 解析之前检查
+    private ConditionLimits limits = ConditionLimits.unlimited();
+
+    // 子查询可以访问的表和字段，null 表示不允许子查询
+    private SubqueryAllowlist subqueryAllowlist;
+
+    // 是否把条件指纹作为 SQL 注释写入 QueryWrapper
+    private boolean fingerprintComment;
+
+    // 记录高频条件的统计器，null 表示不记录
+    private HeavyHitterTracker heavyHitterTracker;
+
+    // 用于回答前导通配符 LIKE 的三元组索引，null 表示不改写
+    private TrigramIndex trigramIndex;
+
+    // 已建立 FULLTEXT 索引的字段，按单词匹配的 LIKE 改写为 MATCH ... AGAINST
+    private FullTextIndexes fullTextIndexes = FullTextIndexes.empty();
+
+    private ParserOptions() {
+    }
+
+    private ParserOptions copy() {
+        ParserOptions copy = new ParserOptions();
+        copy.dbType = this.dbType;
+        copy.inListBucketing = this.inListBucketing;
+        copy.timeFunctionPolicy = this.timeFunctionPolicy;
+        copy.clock = this.clock;
+        copy.limits = this.limits;
+        copy.subqueryAllowlist = this.subqueryAllowlist;
+        copy.fingerprintComment = this.fingerprintComment;
+        copy.heavyHitterTracker = this.heavyHitterTracker;
+        copy.trigramIndex = this.trigramIndex;
+        copy.fullTextIndexes = this.fullTextIndexes;
+        return copy;
+    }
+
+    /**
+     * 默认选项：与原有 ConditionParser.parse 的行为完全一致
+     */
+    public static ParserOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * 设置数据库方言，同时影响条件解析和 SQL 生成
+     * PostgreSQL 下 IN 列表会生成 col = ANY(?) 并绑定为单个数组参数（元素类型不一致时仍逐个绑定），
+     * 下推的 sysdate() 生成 clock_timestamp()
+     */
+    public ParserOptions withDbType(DbType dbType) {
+        if (dbType == null) {
+            throw new IllegalArgumentException("DbType must not be null");
+        }
+        ParserOptions copy = copy();
+        copy.dbType = dbType;
+        return copy;
+    }
+
+    /**
+     * 设置 IN 列表分桶策略，传入 null 关闭分桶
+     */
+    public ParserOptions withInListBucketing(InListBucketing bucketing) {
+        ParserOptions copy = copy();
+        copy.inListBucketing = bucketing;
+        return copy;
+    }
+
+    /**
+     * 设置时间函数处理策略
+     */
+    public ParserOptions withTimeFunctionPolicy(TimeFunctionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Time function policy must not be null");
+        }
+        ParserOptions copy = copy();
+        copy.timeFunctionPolicy = policy;
+        return copy;
+    }
+
+    /**
+     * 设置 JVM_CLOCK 策略下使用的时钟，测试中可以注入固定时钟
+     */
+    public ParserOptions withClock(Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock must not be null");
+        }
+        ParserOptions copy = copy();
+        copy.clock = clock;
+        return copy;
+    }
+
+    /**
+     * 设置条件复杂度限制，超出限制的条件在解析前被拒绝
+     */
+    public ParserOptions withLimits(ConditionLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException("Limits must not be null");
+        }
+        ParserOptions copy = copy();
+        copy.limits = limits;
+        return copy;
+    }
+
+    /**
+     * 允许条件中使用 IN 子查询和 EXISTS 子查询，子查询只能访问白名单中的表和字段
+     * 传入 null 关闭子查询
+     */
+    public ParserOptions withSubqueryAllowlist(SubqueryAllowlist allowlist) {
+        ParserOptions copy = copy();
+        copy.subqueryAllowlist = allowlist;
+        return copy;
+    }
+
+    /**
+     * 应用条件时把条件指纹写入 QueryWrapper 的 SQL 注释，如 "/* cond:3f2a9c01d4e5b687 *&#47;"
+     * @see ConditionFingerprint
+     */
+    public ParserOptions withFingerprintComment(boolean enabled) {
+        ParserOptions copy = copy();
+        copy.fingerprintComment = enabled;
+        return copy;
+    }
+
+    /**
+     * 解析时把条件形状、字段、运算符和耗时记录到 tracker，传入 null 关闭记录
+     * 同一个 tracker 可以被多组选项共享
+     */
+    public ParserOptions withHeavyHitterTracker(HeavyHitterTracker tracker) {
+        ParserOptions copy = copy();
+        copy.heavyHitterTracker = tracker;
+        return copy;
+    }
+
+    /**
+     * 已索引字段上的 LIKE 由 index 计算匹配的行，改写为 "id IN (...)"，传入 null 关闭改写
+     * @see TrigramIndex
+     */
+    public ParserOptions withTrigramIndex(TrigramIndex index) {
+        ParserOptions copy = copy();
+        copy.trigramIndex = index;
+        return copy;
+    }
+
+    /**
+     * 单字段 FULLTEXT 索引上按单词匹配的 LIKE 改写为 MATCH ... AGAINST，只对 MySQL 和 MariaDB 生效
+     * @see FullTextIndexes
+     */
+    public ParserOptions withFullTextIndexes(FullTextIndexes indexes) {
+        ParserOptions copy = copy();
+        copy.fullTextIndexes = indexes == null ? FullTextIndexes.empty() : indexes;
+        return copy;
+    }
+
+    /**
+     * 去掉 LIKE 改写的选项，用于 NOT、OR 分支和子查询中的条件
+     * 索引只描述外层查询的表，且改写只在条件直接决定结果集的位置上保持 LIKE 的含义
+     */
+    ParserOptions withoutLikeRewrites() {
+        if (trigramIndex == null && fullTextIndexes.getColumns().isEmpty()) {
+            return this;
+        }
+        ParserOptions copy = copy();
+        copy.trigramIndex = null;
+        copy.fullTextIndexes = FullTextIndexes.empty();
+        return copy;
+    }
+
+    public DbType getDbType() {
+        return dbType;
+    }
+
+    public InListBucketing getInListBucketing() {
+        return inListBucketing;
+    }
+
+    public TimeFunctionPolicy getTimeFunctionPolicy() {
+        return timeFunctionPolicy;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public ConditionLimits getLimits() {
+        return limits;
+    }
+
+    public SubqueryAllowlist getSubqueryAllowlist() {
+        return subqueryAllowlist;
+    }
+
+    public boolean isFingerprintComment() {
+        return fingerprintComment;
+    }
+
+    public HeavyHitterTracker getHeavyHitterTracker() {
+        return heavyHitterTracker;
+    }
+
+    public TrigramIndex getTrigramIndex() {
+        return trigramIndex;
+    }
+
+    public FullTextIndexes getFullTextIndexes() {
+        return fullTextIndexes;
+    }
+}
@@ -0,0 +1,177 @@
+package com.xdw;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RANGE 分区裁剪
+ *
+ * 根据范围分析得到的分区字段取值区间，判断哪些分区可能包含匹配的行，
+ * 可以生成显式的 PARTITION (...) 子句，或在条件不可能匹配任何行时直接拒绝查询。
+ *
+ * 分区定义与 MySQL 的 PARTITION BY RANGE 一致：按顺序给出每个分区的 VALUES LESS THAN 上界，
+ * 最后一个分区的上界可以是 MAXVALUE。
+ */
+public class PartitionPruner {
+
+    /**
+     * 分区定义：名称和 VALUES LESS THAN 上界，上界为 null 表示 MAXVALUE
+     */
+    public static final class RangePartition {
+        private final String name;
+        private final Object lessThan;
+
+        private RangePartition(String name, Object lessThan) {
+            this.name = name;
+            this.lessThan = lessThan;
+        }
+
+        public static RangePartition lessThan(String name, Object bound) {
+            if (bound == null) {
+                throw new IllegalArgumentException("Partition bound must not be null, use maxValue() instead");
+            }
+            return new RangePartition(name, bound);
+        }
+
+        public static RangePartition maxValue(String name) {
+            return new RangePartition(name, null);
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * 裁剪结果
+     */
+    public static final class PruneResult {
+        private final List<String> partitions;
+        private final int totalPartitions;
+        private final ColumnRanges ranges;
+
+        private PruneResult(List<String> partitions, int totalPartitions, ColumnRanges ranges) {
+            this.partitions = partitions;
+            this.totalPartitions = totalPartitions;
+            this.ranges = ranges;
+        }
+
+        /**
+         * 可能包含匹配行的分区名称，按分区顺序排列
+         */
+        public List<String> getPartitions() {
+            return partitions;
+        }
+
+        /**
+         * 条件是否不可能匹配任何分区
+         */
+        public boolean isEmpty() {
+            return partitions.isEmpty();
+        }
+
+        /**
+         * 是否排除了至少一个分区
+         */
+        public boolean isPruned() {
+            return partitions.size() < totalPartitions;
+        }
+
+        public ColumnRanges getRanges() {
+            return ranges;
+        }
+
+        /**
+         * 生成 PARTITION (p1, p2) 子句；没有排除任何分区时返回空字符串
+         */
+        public String partitionClause() {
+            if (isEmpty()) {
+                throw new IllegalStateException("No partition can match the condition");
+            }
+            if (!isPruned()) {
+                return "";
+            }
+            return "PARTITION (" + String.join(", ", partitions) + ")";
+        }
+
+        /**
+         * 在表名后追加分区子句，如 events PARTITION (p202401, p202402)
+         */
+        public String tableWithPartitions(String table) {
+            String clause = partitionClause();
+            return clause.isEmpty() ? table : table + " " + clause;
+        }
+    }
+
+    private final String column;
+    private final List<RangePartition> partitions;
+    private final List<RangeSet> partitionRanges;
+    private final RangeAnalyzer analyzer;
+
+    /**
+     * @param column 分区字段
+     * @param partitions 按上界升序排列的分区定义
+     * @param options 解析选项
+     */
+    public PartitionPruner(String column, List<RangePartition> partitions, ParserOptions options) {
+        this(column, partitions, options, false);
+    }
+
+    /**
+     * @param column 分区字段
+     * @param partitions 按上界升序排列的分区定义
+     * @param options 解析选项
+     * @param ignoreCase 字符串分区字段是否按忽略大小写的顺序比较，应与数据库排序规则一致（如 MySQL 的 *_ci），
+     *                   否则可能排除实际包含匹配行的分区
+     */
+    public PartitionPruner(String column, List<RangePartition> partitions, ParserOptions options, boolean ignoreCase) {
+        if (partitions.isEmpty()) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        this.column = column;
+        this.partitions = Collections.unmodifiableList(new ArrayList<>(partitions));
+        this.partitionRanges = new ArrayList<>(partitions.size());
+        this.analyzer = new RangeAnalyzer(options, ignoreCase);
+
+        Object previous = null;
+        for (int i = 0; i < partitions.size(); i++) {
+            // 上界与条件中的值按同样的规则比较
+            Object bound = analyzer.fold(partitions.get(i).lessThan);
+            if (bound == null && i != partitions.size() - 1) {
+                throw new IllegalArgumentException("MAXVALUE partition must be the last one: " + partitions.get(i).name);
+            }
+            if (previous != null && bound != null
+                    && RangeSet.compareValues(RangeSet.normalize(previous), RangeSet.normalize(bound)) >= 0) {
+                throw new IllegalArgumentException("Partition bounds must be strictly increasing: " + partitions.get(i).name);
+            }
+            partitionRanges.add(RangeSet.closedOpen(previous, bound));
+            previous = bound;
+        }
+    }
+
+    public PruneResult prune(String condition) {
+        ColumnRanges ranges = analyzer.analyze(condition);
+        List<String> matched = new ArrayList<>();
+        if (!ranges.isUnsatisfiable()) {
+            RangeSet range = ranges.get(column);
+            for (int i = 0; i < partitions.size(); i++) {
+                if (!range.intersect(partitionRanges.get(i)).isEmpty()) {
+                    matched.add(partitions.get(i).name);
+                }
+            }
+        }
+        return new PruneResult(Collections.unmodifiableList(matched), partitions.size(), ranges);
+    }
+
+    /**
+     * 裁剪分区，条件不可能匹配任何行时抛出 IllegalArgumentException，避免无意义的查询发往数据库
+     */
+    public PruneResult pruneOrReject(String condition) {
+        PruneResult result = prune(condition);
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("Condition can never match any partition: " + condition);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,485 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xdw.ConditionLimitExceededException.Limit;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 带占位符的预编译条件
+ *
+ * 支持命名占位符（:minAge）和位置占位符（?），同一个条件只能使用其中一种。
+ * 条件在 prepare 时解析一次，每次应用时把参数值绑定到占位符上，不再解析文本：
+ * <pre>
+ * PreparedCondition condition = ConditionParser.prepare("age >= :minAge AND status IN (:statuses)", options);
+ * condition.apply(queryWrapper, Map.of("minAge", 18, "statuses", List.of("NEW", "PAID")));
+ * </pre>
+ * IN 列表中的占位符绑定集合或数组时按元素个数展开，long[] 保持原始类型直到生成参数；
+ * 绑定的值原样作为参数，不会被当作 SQL 文本。
+ *
+ * 只需要 SQL 文本和参数时使用 toSqlFragment。占位符只出现在比较、BETWEEN 和 IN 的值位置时，
+ * SQL 形状在 prepare 时渲染一次，之后每次调用只分配参数数组和结果对象；
+ * LIKE、函数参数中的占位符，以及绑定集合或 NULL 以外会改变形状的值，回退到逐次渲染。
+ *
+ * 对象不可变，可以在线程间共享。
+ */
+public final class PreparedCondition {
+
+    private final String condition;
+    private final SQLExpr expr;
+    private final ParserOptions options;
+    private final List<String> parameterNames;
+    private final int positionalCount;
+    // 预先渲染的 SQL 形状，无法缓存时为 null
+    private final Shape shape;
+
+    private PreparedCondition(String condition, SQLExpr expr, ParserOptions options,
+                              List<String> parameterNames, int positionalCount) {
+        this.condition = condition;
+        this.expr = expr;
+        this.options = options;
+        this.parameterNames = parameterNames;
+        this.positionalCount = positionalCount;
+        this.shape = buildShape();
+    }
+
+    static PreparedCondition prepare(String condition, ParserOptions options) {
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, options);
+        Set<String> names = new LinkedHashSet<>();
+        int[] positional = new int[1];
+        if (expr != null) {
+            collectPlaceholders(expr, names, positional);
+        }
+        if (!names.isEmpty() && positional[0] > 0) {
+            throw new IllegalArgumentException("Cannot mix named and positional placeholders: " + condition);
+        }
+        PreparedCondition prepared = new PreparedCondition(condition.trim(), expr, options,
+                Collections.unmodifiableList(new ArrayList<>(names)), positional[0]);
+        prepared.validate();
+        return prepared;
+    }
+
+    private static void collectPlaceholders(SQLExpr expr, Set<String> names, int[] positional) {
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLVariantRefExpr x) {
+                if ("?".equals(x.getName())) {
+                    positional[0]++;
+                } else if (x.getName().startsWith(":") && x.getName().length() > 1) {
+                    names.add(x.getName().substring(1));
+                } else {
+                    throw new IllegalArgumentException("Unsupported placeholder: " + x.getName());
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * 用占位值试应用一次，不支持的条件在 prepare 时就报错，而不是等到第一次应用
+     */
+    private void validate() {
+        if (expr == null) {
+            return;
+        }
+        Binder binder = new Binder(null, null) {
+            @Override
+            Object lookup(SQLVariantRefExpr placeholder) {
+                return 0;
+            }
+        };
+        try {
+            ConditionParser.parseSQLExpr(bindExpr(expr, binder), new QueryWrapper<>(), options);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to parse condition: " + condition, e);
+        }
+    }
+
+    /**
+     * 按名称绑定参数并应用到 QueryWrapper
+     * @throws IllegalArgumentException 缺少参数，或参数值不能用于所在的位置
+     */
+    public <T> QueryWrapper<T> apply(QueryWrapper<T> queryWrapper, Map<String, ?> parameters) {
+        return applyBound(queryWrapper, new Binder(parameters, null));
+    }
+
+    /**
+     * 按位置绑定参数并应用到 QueryWrapper
+     * @throws IllegalArgumentException 参数个数与占位符个数不一致，或参数值不能用于所在的位置
+     */
+    public <T> QueryWrapper<T> apply(QueryWrapper<T> queryWrapper, Object... parameters) {
+        return applyBound(queryWrapper, positionalBinder(parameters));
+    }
+
+    /**
+     * 按名称绑定参数，得到可以与其他条件组合的编译结果
+     */
+    public CompiledCondition bind(Map<String, ?> parameters) {
+        return CompiledCondition.of(condition, expr == null ? null : bindExpr(expr, new Binder(parameters, null)), options);
+    }
+
+    /**
+     * 按位置绑定参数，得到可以与其他条件组合的编译结果
+     */
+    public CompiledCondition bind(Object... parameters) {
+        Binder binder = positionalBinder(parameters);
+        return CompiledCondition.of(condition, expr == null ? null : bindExpr(expr, binder), options);
+    }
+
+    /**
+     * 按名称绑定参数，得到 SQL 片段
+     * @throws IllegalArgumentException 缺少参数，或参数值不能用于所在的位置
+     */
+    public SqlFragment toSqlFragment(Map<String, ?> parameters) {
+        if (shape != null) {
+            Object[] values = new Object[shape.slots.length];
+            for (int i = 0; i < values.length; i++) {
+                int slot = shape.slots[i];
+                if (slot < 0) {
+                    values[i] = shape.constants[i];
+                    continue;
+                }
+                String name = parameterNames.get(slot);
+                Object value = parameters.get(name);
+                if (value == null && !parameters.containsKey(name)) {
+                    throw new IllegalArgumentException("Missing value for parameter: " + name);
+                }
+                if (!fitsShape(value)) {
+                    return bind(parameters).toSqlFragment();
+                }
+                values[i] = value;
+            }
+            return shape.fragment.withParameters(values);
+        }
+        return bind(parameters).toSqlFragment();
+    }
+
+    /**
+     * 按位置绑定参数，得到 SQL 片段
+     * @throws IllegalArgumentException 参数个数与占位符个数不一致，或参数值不能用于所在的位置
+     */
+    public SqlFragment toSqlFragment(Object... parameters) {
+        if (shape != null) {
+            checkPositional(parameters);
+            Object[] values = new Object[shape.slots.length];
+            for (int i = 0; i < values.length; i++) {
+                int slot = shape.slots[i];
+                Object value = slot < 0 ? shape.constants[i] : parameters[slot];
+                if (slot >= 0 && !fitsShape(value)) {
+                    return bind(parameters).toSqlFragment();
+                }
+                values[i] = value;
+            }
+            return shape.fragment.withParameters(values);
+        }
+        return bind(parameters).toSqlFragment();
+    }
+
+    /**
+     * 集合和数组会展开 IN 列表或被拒绝，都不能直接放进缓存的形状
+     */
+    private static boolean fitsShape(Object value) {
+        return !isMultiValued(value) && !(value instanceof SqlExpression);
+    }
+
+    private <T> QueryWrapper<T> applyBound(QueryWrapper<T> queryWrapper, Binder binder) {
+        if (expr == null) {
+            return queryWrapper;
+        }
+        SQLExpr bound = bindExpr(expr, binder);
+        try {
+            ConditionParser.parseSQLExpr(bound, queryWrapper, options);
+            // 占位符和绑定的值都视为 ?，指纹与参数无关
+            return ConditionParser.tagFingerprint(expr, queryWrapper, options);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to apply condition: " + condition, e);
+        }
+    }
+
+    private Binder positionalBinder(Object[] parameters) {
+        checkPositional(parameters);
+        return new Binder(null, parameters);
+    }
+
+    private void checkPositional(Object[] parameters) {
+        if (!parameterNames.isEmpty()) {
+            throw new IllegalArgumentException("Condition uses named placeholders: " + parameterNames);
+        }
+        if (parameters.length != positionalCount) {
+            throw new IllegalArgumentException("Expected " + positionalCount + " parameters but got " + parameters.length);
+        }
+    }
+
+    /**
+     * 预先渲染的 SQL 形状
+     */
+    private static final class Shape {
+        // SQL 与模板，参数在每次绑定时替换
+        final SqlFragment fragment;
+        // 每个参数对应的占位符序号（命名占位符为名称的序号），-1 表示条件中的常量
+        final int[] slots;
+        final Object[] constants;
+
+        Shape(SqlFragment fragment, int[] slots, Object[] constants) {
+            this.fragment = fragment;
+            this.slots = slots;
+            this.constants = constants;
+        }
+    }
+
+    /**
+     * 渲染时代替绑定值的标记，toString 带有不可见字符，被拼进字符串后仍能识别出来
+     */
+    private static final class Slot {
+        final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String toString() {
+            return "\u0001slot" + index + "\u0001";
+        }
+    }
+
+    /**
+     * 把每个占位符绑定为 Slot 渲染一次：标记原样出现在参数中时，该位置可以直接替换为绑定值；
+     * 标记被拼进字符串（LIKE、concat）或数组（PostgreSQL 的 ANY），或时间函数需要每次求值时，不缓存形状
+     */
+    private Shape buildShape() {
+        if (expr == null || (options.getTimeFunctionPolicy() == TimeFunctionPolicy.JVM_CLOCK
+                && CompiledCondition.containsTimeFunction(expr))) {
+            return null;
+        }
+        if (options.getDbType() == DbType.postgresql && containsInListPlaceholder(expr)) {
+            // PostgreSQL 的 IN 列表按元素类型绑定为数组或逐个展开，形状取决于绑定的值
+            return null;
+        }
+        Binder binder = new Binder(null, null) {
+            private int next;
+
+            @Override
+            Object lookup(SQLVariantRefExpr placeholder) {
+                String name = placeholder.getName();
+                return new Slot("?".equals(name) ? next++ : parameterNames.indexOf(name.substring(1)));
+            }
+        };
+        SqlFragment fragment;
+        try {
+            QueryWrapper<Object> wrapper = new QueryWrapper<>();
+            ConditionParser.parseSQLExpr(bindExpr(expr, binder), wrapper, options);
+            fragment = SqlFragment.of(wrapper);
+        } catch (Exception e) {
+            return null;
+        }
+        List<Object> parameters = fragment.getParameters();
+        int[] slots = new int[parameters.size()];
+        Object[] constants = new Object[parameters.size()];
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < slots.length; i++) {
+            Object parameter = parameters.get(i);
+            if (parameter instanceof Slot) {
+                slots[i] = ((Slot) parameter).index;
+                seen.add(slots[i]);
+            } else if (containsSlot(parameter)) {
+                return null;
+            } else {
+                slots[i] = -1;
+                constants[i] = parameter;
+            }
+        }
+        int placeholders = parameterNames.isEmpty() ? positionalCount : parameterNames.size();
+        return seen.size() == placeholders ? new Shape(fragment, slots, constants) : null;
+    }
+
+    private static boolean containsInListPlaceholder(SQLExpr expr) {
+        boolean[] found = new boolean[1];
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLInListExpr x) {
+                for (SQLExpr target : x.getTargetList()) {
+                    found[0] |= target instanceof SQLVariantRefExpr;
+                }
+                return true;
+            }
+        });
+        return found[0];
+    }
+
+    private static boolean containsSlot(Object parameter) {
+        if (parameter instanceof String) {
+            return ((String) parameter).indexOf('\u0001') >= 0;
+        }
+        if (parameter instanceof Object[]) {
+            for (Object element : (Object[]) parameter) {
+                if (element instanceof Slot || containsSlot(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 命名参数列表，按首次出现的顺序排列；使用位置占位符时为空
+     */
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * 条件形状的指纹，占位符视为字面量，与绑定的参数无关
+     * @see ConditionFingerprint
+     */
+    public String getFingerprint() {
+        return ConditionFingerprint.of(expr, options.getDbType());
+    }
+
+    /**
+     * 位置占位符的个数
+     */
+    public int getParameterCount() {
+        return positionalCount;
+    }
+
+    @Override
+    public String toString() {
+        return condition;
+    }
+
+    /**
+     * 按顺序为占位符查找参数值
+     */
+    private static class Binder {
+        private final Map<String, ?> named;
+        private final Object[] positional;
+        private int next;
+
+        Binder(Map<String, ?> named, Object[] positional) {
+            this.named = named;
+            this.positional = positional;
+        }
+
+        Object lookup(SQLVariantRefExpr placeholder) {
+            String name = placeholder.getName();
+            if ("?".equals(name)) {
+                if (positional == null) {
+                    throw new IllegalArgumentException("Condition uses positional placeholders");
+                }
+                return positional[next++];
+            }
+            String key = name.substring(1);
+            if (named == null || !named.containsKey(key)) {
+                throw new IllegalArgumentException("Missing value for parameter: " + key);
+            }
+            return named.get(key);
+        }
+    }
+
+    /**
+     * 复制条件树并把占位符替换为绑定的值
+     * 原树在线程间共享，不能修改；Druid 在构造父节点时会设置子节点的 parent，所以未变化的叶子也要复制
+     */
+    private SQLExpr bindExpr(SQLExpr node, Binder binder) {
+        if (node instanceof SQLVariantRefExpr) {
+            Object value = binder.lookup((SQLVariantRefExpr) node);
+            if (isMultiValued(value)) {
+                throw new IllegalArgumentException("Collection value is only allowed in an IN list: " + node);
+            }
+            return new BoundValueExpr(value);
+        } else if (node instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binaryOpExpr = (SQLBinaryOpExpr) node;
+            SQLExpr left = bindExpr(binaryOpExpr.getLeft(), binder);
+            SQLExpr right = bindExpr(binaryOpExpr.getRight(), binder);
+            return new SQLBinaryOpExpr(left, binaryOpExpr.getOperator(), right, options.getDbType());
+        } else if (node instanceof SQLInListExpr) {
+            SQLInListExpr inListExpr = (SQLInListExpr) node;
+            SQLInListExpr bound = new SQLInListExpr(bindExpr(inListExpr.getExpr(), binder), inListExpr.isNot());
+            for (SQLExpr target : inListExpr.getTargetList()) {
+                if (target instanceof SQLVariantRefExpr) {
+                    Object value = binder.lookup((SQLVariantRefExpr) target);
+                    if (value instanceof long[]) {
+                        // id 数组保持 long[]，绑定时不逐个装箱；复制一份，调用方之后修改数组不影响结果
+                        long[] longs = (long[]) value;
+                        checkInListSize(longs.length, target);
+                        bound.addTarget(new LongListExpr(longs.clone()));
+                    } else if (isMultiValued(value)) {
+                        List<Object> values = toList(value);
+                        checkInListSize(values.size(), target);
+                        for (Object v : values) {
+                            bound.addTarget(new BoundValueExpr(v));
+                        }
+                    } else {
+                        bound.addTarget(new BoundValueExpr(value));
+                    }
+                } else {
+                    bound.addTarget(bindExpr(target, binder));
+                }
+            }
+            return bound;
+        } else if (node instanceof SQLBetweenExpr) {
+            SQLBetweenExpr betweenExpr = (SQLBetweenExpr) node;
+            SQLExpr test = bindExpr(betweenExpr.getTestExpr(), binder);
+            SQLExpr begin = bindExpr(betweenExpr.getBeginExpr(), binder);
+            SQLExpr end = bindExpr(betweenExpr.getEndExpr(), binder);
+            return new SQLBetweenExpr(test, betweenExpr.isNot(), begin, end);
+        } else if (node instanceof SQLNotExpr) {
+            return new SQLNotExpr(bindExpr(((SQLNotExpr) node).getExpr(), binder));
+        } else if (node instanceof SQLUnaryExpr) {
+            SQLUnaryExpr unaryExpr = (SQLUnaryExpr) node;
+            return new SQLUnaryExpr(unaryExpr.getOperator(), bindExpr(unaryExpr.getExpr(), binder));
+        } else if (node instanceof SQLMethodInvokeExpr) {
+            SQLMethodInvokeExpr func = (SQLMethodInvokeExpr) node;
+            SQLMethodInvokeExpr bound = new SQLMethodInvokeExpr(func.getMethodName());
+            for (SQLExpr arg : func.getArguments()) {
+                bound.addArgument(bindExpr(arg, binder));
+            }
+            return bound;
+        } else if (node instanceof SQLMatchAgainstExpr) {
+            SQLMatchAgainstExpr matchExpr = (SQLMatchAgainstExpr) node;
+            SQLMatchAgainstExpr bound = matchExpr.clone();
+            bound.setAgainst(bindExpr(matchExpr.getAgainst(), binder));
+            return bound;
+        }
+        return node.clone();
+    }
+
+    private void checkInListSize(int size, SQLExpr target) {
+        if (size == 0) {
+            throw new IllegalArgumentException("Empty collection bound to IN list: " + target);
+        }
+        int maxInListSize = options.getLimits().getMaxInListSize();
+        if (size > maxInListSize) {
+            throw new ConditionLimitExceededException(Limit.IN_LIST_SIZE, maxInListSize, size);
+        }
+    }
+
+    private static boolean isMultiValued(Object value) {
+        return value instanceof Collection || (value != null && value.getClass().isArray() && !(value instanceof byte[]));
+    }
+
+    private static List<Object> toList(Object value) {
+        if (value instanceof Collection) {
+            return new ArrayList<>((Collection<?>) value);
+        }
+        int length = Array.getLength(value);
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            values.add(Array.get(value, i));
+        }
+        return values;
+    }
+}
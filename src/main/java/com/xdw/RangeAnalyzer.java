@@ -0,0 +1,192 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+
+import java.util.Collections;
+
+/**
+ * 字段取值范围分析
+ *
+ * 与 ConditionParser 的处理器一一对应地遍历条件，计算每个字段允许的取值区间：
+ * - 比较运算、BETWEEN、IN 生成对应的区间
+ * - AND 对同一字段取交集，OR 取并集
+ * - NOT 通过德摩根定律下推到叶子节点，对叶子取补集
+ * - LIKE、IS NULL、子查询、MATCH ... AGAINST 以及下推到数据库的表达式无法转换成区间，视为不约束
+ *
+ * 比较 NULL（如 col = NULL、col IN (NULL)）在 SQL 中永远不成立，得到空集。
+ * 开启 ignoreCase 时字符串按忽略大小写的顺序比较，与 ConditionEvaluator 的 ignoreCase 一致。
+ */
+public class RangeAnalyzer {
+
+    private final ParserOptions options;
+    private final boolean ignoreCase;
+
+    public RangeAnalyzer(ParserOptions options) {
+        this(options, false);
+    }
+
+    /**
+     * @param ignoreCase 字符串是否按忽略大小写的顺序比较，应与数据库排序规则一致
+     */
+    public RangeAnalyzer(ParserOptions options, boolean ignoreCase) {
+        this.options = options;
+        this.ignoreCase = ignoreCase;
+    }
+
+    public ColumnRanges analyze(String condition) {
+        SQLExpr sqlExpr = ConditionParser.parseToSQLExpr(condition, options);
+        return sqlExpr == null ? ColumnRanges.UNCONSTRAINED : analyze(sqlExpr);
+    }
+
+    public ColumnRanges analyze(SQLExpr expr) {
+        return analyze(expr, false);
+    }
+
+    private ColumnRanges analyze(SQLExpr expr, boolean negated) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            return analyzeBinaryOpExpr((SQLBinaryOpExpr) expr, negated);
+        } else if (expr instanceof SQLInListExpr) {
+            return analyzeInListExpr((SQLInListExpr) expr, negated);
+        } else if (expr instanceof SQLBetweenExpr) {
+            return analyzeBetweenExpr((SQLBetweenExpr) expr, negated);
+        } else if (expr instanceof SQLNotExpr) {
+            return analyze(((SQLNotExpr) expr).getExpr(), !negated);
+        } else if (expr instanceof SQLUnaryExpr && ((SQLUnaryExpr) expr).getOperator() == SQLUnaryOperator.Not) {
+            return analyze(((SQLUnaryExpr) expr).getExpr(), !negated);
+        } else if (expr instanceof SQLInSubQueryExpr || expr instanceof SQLExistsExpr || expr instanceof SQLMatchAgainstExpr) {
+            // 结果取决于其他表或全文索引，取反后同样不约束
+            return ColumnRanges.UNCONSTRAINED;
+        }
+        throw new UnsupportedOperationException("Unsupported expression type: " + expr.getClass().getName());
+    }
+
+    private ColumnRanges analyzeBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr, boolean negated) {
+        SQLBinaryOperator operator = binaryOpExpr.getOperator();
+        switch (operator) {
+            case BooleanAnd: {
+                ColumnRanges left = analyze(binaryOpExpr.getLeft(), negated);
+                ColumnRanges right = analyze(binaryOpExpr.getRight(), negated);
+                // NOT (a AND b) = NOT a OR NOT b
+                return negated ? left.or(right) : left.and(right);
+            }
+            case BooleanOr: {
+                ColumnRanges left = analyze(binaryOpExpr.getLeft(), negated);
+                ColumnRanges right = analyze(binaryOpExpr.getRight(), negated);
+                // NOT (a OR b) = NOT a AND NOT b
+                return negated ? left.and(right) : left.or(right);
+            }
+            case Equality:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+                return analyzeComparison(operator, binaryOpExpr.getLeft(), binaryOpExpr.getRight(), negated);
+            default:
+                // LIKE、IS NULL 等无法表示为区间
+                return ColumnRanges.UNCONSTRAINED;
+        }
+    }
+
+    private ColumnRanges analyzeComparison(SQLBinaryOperator operator, SQLExpr left, SQLExpr right, boolean negated) {
+        String column = ConditionParser.extractColumnName(left);
+        Object value = value(right);
+        if (value instanceof SqlExpression) {
+            return ColumnRanges.UNCONSTRAINED;
+        }
+        if (value == null) {
+            return constrain(column, RangeSet.empty());
+        }
+
+        RangeSet range;
+        switch (operator) {
+            case Equality:
+                range = RangeSet.point(value);
+                break;
+            case NotEqual:
+                range = RangeSet.point(value).complement();
+                break;
+            case LessThan:
+                range = RangeSet.lessThan(value);
+                break;
+            case LessThanOrEqual:
+                range = RangeSet.atMost(value);
+                break;
+            case GreaterThan:
+                range = RangeSet.greaterThan(value);
+                break;
+            default:
+                range = RangeSet.atLeast(value);
+                break;
+        }
+        return constrain(column, negated ? range.complement() : range);
+    }
+
+    private ColumnRanges analyzeInListExpr(SQLInListExpr inListExpr, boolean negated) {
+        String column = ConditionParser.extractColumnName(inListExpr.getExpr());
+        RangeSet range = RangeSet.empty();
+        boolean containsNull = false;
+        for (Object value : ConditionParser.extractValues(inListExpr, options)) {
+            if (value instanceof SqlExpression) {
+                return ColumnRanges.UNCONSTRAINED;
+            }
+            value = fold(value);
+            if (value == null) {
+                containsNull = true;
+            } else {
+                range = range.union(RangeSet.point(value));
+            }
+        }
+        boolean not = inListExpr.isNot() != negated;
+        if (not) {
+            // NOT IN 列表中包含 NULL 时永远不成立
+            return constrain(column, containsNull ? RangeSet.empty() : range.complement());
+        }
+        return constrain(column, range);
+    }
+
+    private ColumnRanges analyzeBetweenExpr(SQLBetweenExpr betweenExpr, boolean negated) {
+        String column = ConditionParser.extractColumnName(betweenExpr.getTestExpr());
+        Object begin = value(betweenExpr.getBeginExpr());
+        Object end = value(betweenExpr.getEndExpr());
+        if (begin instanceof SqlExpression || end instanceof SqlExpression) {
+            return ColumnRanges.UNCONSTRAINED;
+        }
+        boolean not = betweenExpr.isNot() != negated;
+        if (begin == null || end == null) {
+            // NOT BETWEEN a AND b 即 col < a OR col > b，与 NULL 比较的一侧不成立，另一侧仍可能成立
+            if (!not || begin == null && end == null) {
+                return constrain(column, RangeSet.empty());
+            }
+            return constrain(column, begin == null ? RangeSet.greaterThan(end) : RangeSet.lessThan(begin));
+        }
+        RangeSet range = RangeSet.closed(begin, end);
+        return constrain(column, not ? range.complement() : range);
+    }
+
+    private Object value(SQLExpr expr) {
+        return fold(ConditionParser.extractValue(expr, options));
+    }
+
+    /**
+     * ignoreCase 时把字符串转换为与 String.compareToIgnoreCase 顺序相同的形式
+     */
+    Object fold(Object value) {
+        if (!ignoreCase || !(value instanceof String)) {
+            return value;
+        }
+        char[] chars = ((String) value).toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    private static ColumnRanges constrain(String column, RangeSet range) {
+        if (range.isAll()) {
+            return ColumnRanges.UNCONSTRAINED;
+        }
+        return new ColumnRanges(Collections.singletonMap(ConditionParser.normalizeColumnName(column), range), true);
+    }
+}
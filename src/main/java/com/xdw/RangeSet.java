@@ -0,0 +1,415 @@
+package com.xdw;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 单个字段允许取值的区间集合
+ *
+ * 由若干互不相交、按下界升序排列的区间组成，不可变。
+ * 区间端点为 null 表示无界（负无穷或正无穷）；NULL 值本身不属于任何区间。
+ *
+ * 数值统一按 BigDecimal 比较，这样 10 和 10.0 被视为同一个值；
+ * 字符串与数值或日期比较时，先尝试把字符串解析成对应类型。
+ */
+public final class RangeSet {
+
+    private static final RangeSet ALL = new RangeSet(Collections.singletonList(new Interval(null, false, null, false)));
+    private static final RangeSet EMPTY = new RangeSet(Collections.emptyList());
+
+    /**
+     * 区间：lower/upper 为 null 表示无界
+     */
+    public static final class Interval {
+        private final Object lower;
+        private final boolean lowerInclusive;
+        private final Object upper;
+        private final boolean upperInclusive;
+
+        Interval(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lower != null && lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upper != null && upperInclusive;
+        }
+
+        public Object getLower() {
+            return lower;
+        }
+
+        public boolean isLowerInclusive() {
+            return lowerInclusive;
+        }
+
+        public Object getUpper() {
+            return upper;
+        }
+
+        public boolean isUpperInclusive() {
+            return upperInclusive;
+        }
+
+        private boolean isEmpty() {
+            if (lower == null || upper == null) {
+                return false;
+            }
+            int cmp = compareValues(lower, upper);
+            return cmp > 0 || (cmp == 0 && !(lowerInclusive && upperInclusive));
+        }
+
+        @Override
+        public String toString() {
+            return (lowerInclusive ? "[" : "(") + (lower == null ? "-∞" : lower) + ", "
+                    + (upper == null ? "+∞" : upper) + (upperInclusive ? "]" : ")");
+        }
+    }
+
+    private final List<Interval> intervals;
+
+    private RangeSet(List<Interval> intervals) {
+        this.intervals = intervals;
+    }
+
+    public static RangeSet all() {
+        return ALL;
+    }
+
+    public static RangeSet empty() {
+        return EMPTY;
+    }
+
+    public static RangeSet point(Object value) {
+        Object v = normalize(value);
+        return of(new Interval(v, true, v, true));
+    }
+
+    public static RangeSet greaterThan(Object value) {
+        return of(new Interval(normalize(value), false, null, false));
+    }
+
+    public static RangeSet atLeast(Object value) {
+        return of(new Interval(normalize(value), true, null, false));
+    }
+
+    public static RangeSet lessThan(Object value) {
+        return of(new Interval(null, false, normalize(value), false));
+    }
+
+    public static RangeSet atMost(Object value) {
+        return of(new Interval(null, false, normalize(value), true));
+    }
+
+    public static RangeSet closed(Object lower, Object upper) {
+        return of(new Interval(normalize(lower), true, normalize(upper), true));
+    }
+
+    /**
+     * 左闭右开区间 [lower, upper)，null 表示无界，用于描述 RANGE 分区
+     */
+    public static RangeSet closedOpen(Object lower, Object upper) {
+        return of(new Interval(normalize(lower), true, normalize(upper), false));
+    }
+
+    private static RangeSet of(Interval interval) {
+        return interval.isEmpty() ? EMPTY : new RangeSet(Collections.singletonList(interval));
+    }
+
+    public List<Interval> getIntervals() {
+        return intervals;
+    }
+
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    public boolean isAll() {
+        return intervals.size() == 1 && intervals.get(0).lower == null && intervals.get(0).upper == null;
+    }
+
+    /**
+     * 判断值是否落在区间集合内，NULL 永远不在任何区间内
+     */
+    public boolean contains(Object value) {
+        if (value == null) {
+            return false;
+        }
+        Object v = normalize(value);
+        for (Interval interval : intervals) {
+            if (aboveLower(interval, v) && belowUpper(interval, v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断当前集合是否是另一个集合的子集
+     */
+    public boolean isSubsetOf(RangeSet other) {
+        return intersect(other).equalsRanges(this);
+    }
+
+    public RangeSet intersect(RangeSet other) {
+        if (isAll() || other.isEmpty()) {
+            return other;
+        }
+        if (other.isAll() || isEmpty()) {
+            return this;
+        }
+        List<Interval> result = new ArrayList<>();
+        for (Interval a : intervals) {
+            for (Interval b : other.intervals) {
+                Interval merged = intersect(a, b);
+                if (!merged.isEmpty()) {
+                    result.add(merged);
+                }
+            }
+        }
+        return normalizeIntervals(result);
+    }
+
+    public RangeSet union(RangeSet other) {
+        if (isAll() || other.isEmpty()) {
+            return this;
+        }
+        if (other.isAll() || isEmpty()) {
+            return other;
+        }
+        List<Interval> result = new ArrayList<>(intervals);
+        result.addAll(other.intervals);
+        return normalizeIntervals(result);
+    }
+
+    public RangeSet complement() {
+        if (isEmpty()) {
+            return ALL;
+        }
+        if (isAll()) {
+            return EMPTY;
+        }
+        List<Interval> result = new ArrayList<>();
+        Object previousUpper = null;
+        boolean previousUpperInclusive = false;
+        boolean first = true;
+        for (Interval interval : intervals) {
+            if (first) {
+                if (interval.lower != null) {
+                    result.add(new Interval(null, false, interval.lower, !interval.lowerInclusive));
+                }
+                first = false;
+            } else {
+                Interval gap = new Interval(previousUpper, !previousUpperInclusive, interval.lower, !interval.lowerInclusive);
+                if (!gap.isEmpty()) {
+                    result.add(gap);
+                }
+            }
+            if (interval.upper == null) {
+                return normalizeIntervals(result);
+            }
+            previousUpper = interval.upper;
+            previousUpperInclusive = interval.upperInclusive;
+        }
+        result.add(new Interval(previousUpper, !previousUpperInclusive, null, false));
+        return normalizeIntervals(result);
+    }
+
+    private boolean equalsRanges(RangeSet other) {
+        if (intervals.size() != other.intervals.size()) {
+            return false;
+        }
+        for (int i = 0; i < intervals.size(); i++) {
+            Interval a = intervals.get(i);
+            Interval b = other.intervals.get(i);
+            if (compareLower(a, b) != 0 || compareUpper(a, b) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Interval intersect(Interval a, Interval b) {
+        Interval lower = compareLower(a, b) >= 0 ? a : b;
+        Interval upper = compareUpper(a, b) <= 0 ? a : b;
+        return new Interval(lower.lower, lower.lowerInclusive, upper.upper, upper.upperInclusive);
+    }
+
+    /**
+     * 排序并合并重叠或相邻的区间
+     */
+    private static RangeSet normalizeIntervals(List<Interval> input) {
+        if (input.isEmpty()) {
+            return EMPTY;
+        }
+        List<Interval> sorted = new ArrayList<>(input);
+        sorted.sort(RangeSet::compareLower);
+        List<Interval> result = new ArrayList<>();
+        Interval current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            Interval next = sorted.get(i);
+            if (connected(current, next)) {
+                Interval upper = compareUpper(current, next) >= 0 ? current : next;
+                current = new Interval(current.lower, current.lowerInclusive, upper.upper, upper.upperInclusive);
+            } else {
+                result.add(current);
+                current = next;
+            }
+        }
+        result.add(current);
+        if (result.size() == 1 && result.get(0).lower == null && result.get(0).upper == null) {
+            return ALL;
+        }
+        return new RangeSet(Collections.unmodifiableList(result));
+    }
+
+    /**
+     * 两个区间（a 的下界不大于 b 的下界）是否重叠或首尾相接
+     */
+    private static boolean connected(Interval a, Interval b) {
+        if (a.upper == null || b.lower == null) {
+            return true;
+        }
+        int cmp = compareValues(a.upper, b.lower);
+        return cmp > 0 || (cmp == 0 && (a.upperInclusive || b.lowerInclusive));
+    }
+
+    private static int compareLower(Interval a, Interval b) {
+        if (a.lower == null || b.lower == null) {
+            return a.lower == null ? (b.lower == null ? 0 : -1) : 1;
+        }
+        int cmp = compareValues(a.lower, b.lower);
+        if (cmp != 0) {
+            return cmp;
+        }
+        // 同一个端点，闭区间的下界更小
+        return a.lowerInclusive == b.lowerInclusive ? 0 : (a.lowerInclusive ? -1 : 1);
+    }
+
+    private static int compareUpper(Interval a, Interval b) {
+        if (a.upper == null || b.upper == null) {
+            return a.upper == null ? (b.upper == null ? 0 : 1) : -1;
+        }
+        int cmp = compareValues(a.upper, b.upper);
+        if (cmp != 0) {
+            return cmp;
+        }
+        // 同一个端点，闭区间的上界更大
+        return a.upperInclusive == b.upperInclusive ? 0 : (a.upperInclusive ? 1 : -1);
+    }
+
+    private static boolean aboveLower(Interval interval, Object value) {
+        if (interval.lower == null) {
+            return true;
+        }
+        int cmp = compareValues(value, interval.lower);
+        return cmp > 0 || (cmp == 0 && interval.lowerInclusive);
+    }
+
+    private static boolean belowUpper(Interval interval, Object value) {
+        if (interval.upper == null) {
+            return true;
+        }
+        int cmp = compareValues(value, interval.upper);
+        return cmp < 0 || (cmp == 0 && interval.upperInclusive);
+    }
+
+    /**
+     * 把值转换成可比较的规范形式：数值统一为 BigDecimal，布尔值视为 1/0，
+     * java.time 的日期时间统一为 java.sql.Date / Timestamp（JDBC 驱动对 DATETIME 可能返回 LocalDateTime）
+     */
+    static Object normalize(Object value) {
+        if (value instanceof BigDecimal) {
+            return value;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        if (value instanceof LocalDate) {
+            return java.sql.Date.valueOf((LocalDate) value);
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value);
+        }
+        if (value instanceof Instant) {
+            return Timestamp.from((Instant) value);
+        }
+        if (value instanceof OffsetDateTime) {
+            return Timestamp.from(((OffsetDateTime) value).toInstant());
+        }
+        if (value instanceof ZonedDateTime) {
+            return Timestamp.from(((ZonedDateTime) value).toInstant());
+        }
+        return value;
+    }
+
+    /**
+     * 比较两个规范化后的值，类型不同时先尝试把字符串转换为另一侧的类型，失败则按字符串比较
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a.getClass() == b.getClass() || (a instanceof Date && b instanceof Date)) {
+            if (a instanceof Date) {
+                return Long.compare(((Date) a).getTime(), ((Date) b).getTime());
+            }
+            if (a instanceof BigDecimal) {
+                return ((BigDecimal) a).compareTo((BigDecimal) b);
+            }
+            if (a instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+        }
+        if (a instanceof String) {
+            Object converted = convertString((String) a, b);
+            if (converted != null) {
+                return compareValues(converted, b);
+            }
+        } else if (b instanceof String) {
+            Object converted = convertString((String) b, a);
+            if (converted != null) {
+                return compareValues(a, converted);
+            }
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    static Object convertString(String text, Object target) {
+        try {
+            if (target instanceof BigDecimal) {
+                return new BigDecimal(text.trim());
+            }
+            if (target instanceof Date) {
+                String trimmed = text.trim();
+                return trimmed.length() <= 10 ? java.sql.Date.valueOf(trimmed) : Timestamp.valueOf(trimmed);
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        if (intervals.isEmpty()) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Interval interval : intervals) {
+            if (sb.length() > 0) {
+                sb.append(" ∪ ");
+            }
+            sb.append(interval);
+        }
+        return sb.toString();
+    }
+}
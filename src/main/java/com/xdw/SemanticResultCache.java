@@ -0,0 +1,271 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 语义包含结果缓存
+ *
+ * 缓存最近的查询结果及其条件。查询时先按条件文本精确匹配；未命中时，
+ * 再判断新条件是否被某个已缓存的条件逻辑蕴含（例如 amount > 500 AND status = 'PAID'
+ * 蕴含 amount > 100），如果是，就在内存中过滤缓存的行，而不是访问数据库。
+ *
+ * 包含判断基于 RangeAnalyzer 的区间分析：只有精确表示为字段区间合取的缓存条件才能用于包含匹配，
+ * 判断是保守的——无法证明包含时一律回源查询，不会返回错误的结果。
+ *
+ * 含有子查询的条件结果取决于其他表，含有 now()、CURRENT_* 等时间函数的条件结果随时间变化，
+ * 都不缓存，每次都调用 loader；MATCH ... AGAINST 只能精确命中。
+ *
+ * 注意：loader 必须返回条件的完整结果集（不能带 LIMIT 或分页），否则过滤结果会缺少行。
+ * 缓存按条目数和总行数两个维度做 LRU 淘汰，表数据变化时需调用 invalidate(table)。
+ */
+public class SemanticResultCache {
+
+    private final int maxEntries;
+    private final long maxRows;
+    private final ParserOptions options;
+    private final RangeAnalyzer analyzer;
+    private final ConditionEvaluator evaluator;
+
+    // 按访问顺序排列的缓存条目，最久未访问的在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+
+    // 每张表的失效次数，加载期间表被失效时丢弃加载结果，避免缓存旧数据
+    private final Map<String, Long> generations = new HashMap<>();
+    private long allGeneration;
+
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong containmentHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry {
+        final String table;
+        final ColumnRanges ranges;
+        final List<Map<String, Object>> rows;
+
+        Entry(String table, ColumnRanges ranges, List<Map<String, Object>> rows) {
+            this.table = table;
+            this.ranges = ranges;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public static final class Stats {
+        private final long exactHits;
+        private final long containmentHits;
+        private final long misses;
+
+        Stats(long exactHits, long containmentHits, long misses) {
+            this.exactHits = exactHits;
+            this.containmentHits = containmentHits;
+            this.misses = misses;
+        }
+
+        public long getExactHits() {
+            return exactHits;
+        }
+
+        public long getContainmentHits() {
+            return containmentHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getLookups() {
+            return exactHits + containmentHits + misses;
+        }
+
+        public double exactHitRatio() {
+            return getLookups() == 0 ? 0 : (double) exactHits / getLookups();
+        }
+
+        public double containmentHitRatio() {
+            return getLookups() == 0 ? 0 : (double) containmentHits / getLookups();
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{exactHits=" + exactHits + ", containmentHits=" + containmentHits + ", misses=" + misses + "}";
+        }
+    }
+
+    /**
+     * @param maxEntries 最多缓存的结果集数量
+     * @param maxRows 所有结果集的总行数上限
+     * @param options 解析选项
+     * @param ignoreCase 内存过滤时字符串比较是否忽略大小写，应与数据库排序规则一致
+     */
+    public SemanticResultCache(int maxEntries, long maxRows, ParserOptions options, boolean ignoreCase) {
+        if (maxEntries <= 0 || maxRows <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        this.options = options;
+        // 包含判断与内存过滤使用相同的字符串顺序，否则忽略大小写时会漏掉行
+        this.analyzer = new RangeAnalyzer(options, ignoreCase);
+        this.evaluator = new ConditionEvaluator(options, ignoreCase);
+    }
+
+    /**
+     * 查询缓存，未命中时调用 loader 从数据库加载并缓存结果
+     * @param table 条件所查询的表，用于失效
+     * @param condition 条件字符串
+     * @param loader 加载完整结果集的方法
+     */
+    public List<Map<String, Object>> get(String table, String condition, Supplier<List<Map<String, Object>>> loader) {
+        String key = key(table, condition);
+        long generation;
+        synchronized (this) {
+            generation = generation(table);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                exactHits.incrementAndGet();
+                return entry.rows;
+            }
+        }
+
+        SQLExpr sqlExpr = ConditionParser.parseToSQLExpr(condition, options);
+        if (containsSubquery(sqlExpr) || CompiledCondition.containsTimeFunction(sqlExpr)) {
+            // 子查询中的表变化时 invalidate(table) 无法感知，时间函数的结果随时间变化，缓存的结果都会过期
+            misses.incrementAndGet();
+            return loader.get();
+        }
+        ColumnRanges ranges = sqlExpr == null ? ColumnRanges.ALL_ROWS : analyzer.analyze(sqlExpr);
+
+        if (sqlExpr != null) {
+            // 空条件没有更宽的条件可以包含它
+            List<Map<String, Object>> filtered = answerFromContainingEntry(table, sqlExpr, ranges);
+            if (filtered != null) {
+                containmentHits.incrementAndGet();
+                return filtered;
+            }
+        }
+
+        misses.incrementAndGet();
+        List<Map<String, Object>> rows = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+        put(key, new Entry(table, ranges, rows), generation);
+        return rows;
+    }
+
+    /**
+     * 在同一张表的缓存条目中找到蕴含新条件、且行数最少的结果集，在内存中过滤
+     */
+    private List<Map<String, Object>> answerFromContainingEntry(String table, SQLExpr sqlExpr, ColumnRanges ranges) {
+        List<Entry> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.table.equals(table) && ranges.implies(entry.ranges)) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(a.rows.size(), b.rows.size()));
+        for (Entry candidate : candidates) {
+            try {
+                return Collections.unmodifiableList(evaluator.filter(sqlExpr, candidate.rows));
+            } catch (IllegalArgumentException | UnsupportedOperationException e) {
+                // 缓存的行缺少条件引用的字段，或条件无法在内存中求值，尝试下一个候选
+            }
+        }
+        return null;
+    }
+
+    private synchronized void put(String key, Entry entry, long generation) {
+        if (entry.rows.size() > maxRows || generation(entry.table) != generation) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            cachedRows -= previous.rows.size();
+        }
+        cachedRows += entry.rows.size();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || cachedRows > maxRows) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            cachedRows -= eldest.rows.size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 使某张表的所有缓存结果失效
+     */
+    public synchronized void invalidate(String table) {
+        generations.merge(table, 1L, Long::sum);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.table.equals(table)) {
+                cachedRows -= entry.rows.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        allGeneration++;
+        entries.clear();
+        cachedRows = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long cachedRows() {
+        return cachedRows;
+    }
+
+    public Stats stats() {
+        return new Stats(exactHits.get(), containmentHits.get(), misses.get());
+    }
+
+    // 两个计数器都只增不减，和发生变化说明表被失效过
+    private long generation(String table) {
+        return allGeneration + generations.getOrDefault(table, 0L);
+    }
+
+    private static boolean containsSubquery(SQLExpr expr) {
+        if (expr == null) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        expr.accept(new SQLASTVisitorAdapter() {
+            @Override
+            public boolean visit(SQLInSubQueryExpr x) {
+                found[0] = true;
+                return false;
+            }
+
+            @Override
+            public boolean visit(SQLExistsExpr x) {
+                found[0] = true;
+                return false;
+            }
+        });
+        return found[0];
+    }
+
+    private static String key(String table, String condition) {
+        return table + '\u0000' + condition.trim();
+    }
+}
@@ -0,0 +1,195 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 分片路由器
+ *
+ * 从条件中提取分片键上的等值和 IN 约束，计算查询真正可能命中的分片：
+ * - AND 取两侧分片集合的交集
+ * - OR 取两侧分片集合的并集
+ * - 分片键 = 值 / 分片键 IN (...) 只命中这些值所在的分片
+ * - 其它条件（包括 NOT、!=、范围比较等）无法缩小范围，视为命中全部分片
+ *
+ * 这样查询只会发往可能有数据的分片，而不是广播到所有分片。
+ */
+public class ShardRouter {
+
+    private final String shardKeyColumn;
+    private final int shardCount;
+    private final ToIntFunction<Object> shardFunction;
+    private final ParserOptions options;
+
+    /**
+     * @param shardKeyColumn 分片键字段名，如 tenant_id
+     * @param shardCount 分片数量
+     * @param shardFunction 分片函数，把分片键的值映射为 [0, shardCount) 内的分片编号
+     * @param options 解析选项
+     */
+    public ShardRouter(String shardKeyColumn, int shardCount, ToIntFunction<Object> shardFunction, ParserOptions options) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.shardKeyColumn = ConditionParser.normalizeColumnName(shardKeyColumn);
+        this.shardCount = shardCount;
+        this.shardFunction = shardFunction;
+        this.options = options;
+    }
+
+    /**
+     * 按取模分片：整数值对分片数取模，其它值使用 hashCode 取模
+     * 数据库比较时会把数字字符串转换为数字，'5' 与 5 命中同一行，所以表示整数的字符串按整数取模
+     */
+    public static ShardRouter modulo(String shardKeyColumn, int shardCount, ParserOptions options) {
+        return new ShardRouter(shardKeyColumn, shardCount, value -> {
+            if (value instanceof Number) {
+                return (int) Math.floorMod(((Number) value).longValue(), (long) shardCount);
+            }
+            Long number = integerValue(value.toString());
+            if (number != null) {
+                return (int) Math.floorMod(number, (long) shardCount);
+            }
+            return Math.floorMod(value.toString().hashCode(), shardCount);
+        }, options);
+    }
+
+    /**
+     * 字符串表示的整数值（允许前后空白和 5.0、1e3 这样的形式），不是 long 范围内的整数时返回 null
+     */
+    private static Long integerValue(String text) {
+        try {
+            return new BigDecimal(text.trim()).longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 计算条件可能命中的最小分片集合（按编号升序）
+     */
+    public SortedSet<Integer> targetShards(String condition) {
+        SortedSet<Integer> shards = new TreeSet<>();
+        BitSet bits = analyze(condition);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            shards.add(i);
+        }
+        return Collections.unmodifiableSortedSet(shards);
+    }
+
+    /**
+     * 为每个需要访问的分片生成一个 QueryWrapper
+     * @return 分片编号到 QueryWrapper 的映射，按分片编号升序；条件不可能命中任何分片时返回空映射
+     */
+    public <T> Map<Integer, QueryWrapper<T>> route(String condition, Supplier<QueryWrapper<T>> wrapperFactory) {
+        SQLExpr sqlExpr = toSQLExpr(condition);
+        BitSet bits = sqlExpr == null ? allShards() : analyze(sqlExpr);
+        Map<Integer, QueryWrapper<T>> wrappers = new LinkedHashMap<>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            QueryWrapper<T> wrapper = wrapperFactory.get();
+            if (sqlExpr != null) {
+                ConditionParser.parseSQLExpr(sqlExpr, wrapper, options);
+            }
+            wrappers.put(i, wrapper);
+        }
+        return wrappers;
+    }
+
+    private BitSet analyze(String condition) {
+        SQLExpr sqlExpr = toSQLExpr(condition);
+        return sqlExpr == null ? allShards() : analyze(sqlExpr);
+    }
+
+    private SQLExpr toSQLExpr(String condition) {
+        return ConditionParser.parseToSQLExpr(condition, options);
+    }
+
+    private BitSet analyze(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            return analyzeBinaryOpExpr((SQLBinaryOpExpr) expr);
+        } else if (expr instanceof SQLInListExpr) {
+            return analyzeInListExpr((SQLInListExpr) expr);
+        }
+        // BETWEEN、NOT、IS NULL 等条件无法确定分片
+        return allShards();
+    }
+
+    private BitSet analyzeBinaryOpExpr(SQLBinaryOpExpr binaryOpExpr) {
+        switch (binaryOpExpr.getOperator()) {
+            case BooleanAnd: {
+                BitSet result = analyze(binaryOpExpr.getLeft());
+                result.and(analyze(binaryOpExpr.getRight()));
+                return result;
+            }
+            case BooleanOr: {
+                BitSet result = analyze(binaryOpExpr.getLeft());
+                result.or(analyze(binaryOpExpr.getRight()));
+                return result;
+            }
+            case Equality:
+                if (isShardKey(binaryOpExpr.getLeft())) {
+                    BitSet result = new BitSet(shardCount);
+                    addShard(result, ConditionParser.extractValue(binaryOpExpr.getRight(), options));
+                    return result;
+                }
+                return allShards();
+            default:
+                return allShards();
+        }
+    }
+
+    private BitSet analyzeInListExpr(SQLInListExpr inListExpr) {
+        if (inListExpr.isNot() || !isShardKey(inListExpr.getExpr())) {
+            return allShards();
+        }
+        BitSet result = new BitSet(shardCount);
+        for (Object value : ConditionParser.extractValues(inListExpr, options)) {
+            if (value instanceof SqlExpression) {
+                return allShards();
+            }
+            addShard(result, value);
+        }
+        return result;
+    }
+
+    private void addShard(BitSet shards, Object value) {
+        if (value == null) {
+            // 分片键 = NULL 永远不成立，不命中任何分片
+            return;
+        }
+        if (value instanceof SqlExpression) {
+            shards.set(0, shardCount);
+            return;
+        }
+        int shard = shardFunction.applyAsInt(value);
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalStateException("Shard function returned " + shard + " for value " + value
+                    + ", expected [0, " + shardCount + ")");
+        }
+        shards.set(shard);
+    }
+
+    private boolean isShardKey(SQLExpr expr) {
+        if (!(expr instanceof SQLIdentifierExpr) && !(expr instanceof SQLPropertyExpr)) {
+            return false;
+        }
+        return shardKeyColumn.equals(ConditionParser.normalizeColumnName(ConditionParser.extractColumnName(expr)));
+    }
+
+    private BitSet allShards() {
+        BitSet all = new BitSet(shardCount);
+        all.set(0, shardCount);
+        return all;
+    }
+}
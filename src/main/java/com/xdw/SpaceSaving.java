@@ -0,0 +1,144 @@
+package com.xdw;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加权的 Space-Saving 算法，在固定数量的计数器中找出权重最大的 key
+ *
+ * 最多保留 capacity 个计数器。新 key 到来且计数器已满时，替换权重最小的计数器：
+ * 新 key 继承它的权重作为误差上界。任何总权重超过 总权重 / capacity 的 key 一定在计数器中，
+ * 计数器中的估计值只会偏大，偏大的部分不超过 error。
+ *
+ * 计数器按权重组成最小堆，每次更新 O(log capacity)；被替换的计数器对象直接复用。
+ * 所有方法都是同步的。
+ */
+final class SpaceSaving {
+
+    private static final class Counter {
+        String key;
+        String label;
+        long weight;
+        long error;
+        int index;
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * 给 key 增加权重
+     * @param label 与 key 一起保存的说明文字，只在 key 进入计数器时记录
+     */
+    synchronized void add(String key, String label, long weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative: " + weight);
+        }
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.weight += weight;
+            siftDown(counter.index);
+            return;
+        }
+        if (size < capacity) {
+            counter = new Counter();
+            counter.key = key;
+            counter.label = label;
+            counter.weight = weight;
+            counter.index = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.index);
+            return;
+        }
+        // 替换权重最小的计数器，它的权重是新 key 在此之前可能累积的最大值
+        counter = heap[0];
+        counters.remove(counter.key);
+        counter.key = key;
+        counter.label = label;
+        counter.error = counter.weight;
+        counter.weight += weight;
+        counters.put(key, counter);
+        siftDown(0);
+    }
+
+    /**
+     * 估计权重最大的 n 个 key，按估计值从大到小排列
+     */
+    synchronized List<HeavyHitterTracker.HeavyHitter> top(int n) {
+        List<HeavyHitterTracker.HeavyHitter> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            result.add(new HeavyHitterTracker.HeavyHitter(counter.key, counter.label, counter.weight, counter.error));
+        }
+        result.sort((a, b) -> Long.compare(b.getEstimate(), a.getEstimate()));
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    /**
+     * 所有 key 的总权重，包括已经被替换掉的
+     */
+    synchronized long total() {
+        return total;
+    }
+
+    synchronized void clear() {
+        counters.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+        total = 0;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].weight <= counter.weight) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heap[right].weight < heap[child].weight) {
+                child = right;
+            }
+            if (counter.weight <= heap[child].weight) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+}
@@ -0,0 +1,32 @@
+package com.xdw;
+
+/**
+ * 直接写入 SQL 文本、由数据库求值的表达式
+ *
+ * 解析过程中遇到可下推的函数时返回该类型的值，而不是在 JVM 中求值后作为绑定参数。
+ * 这样同一个条件每次解析得到的 SQL 文本和参数都相同，执行计划可以被缓存。
+ */
+final class SqlExpression {
+
+    static final SqlExpression NOW = new SqlExpression("NOW()");
+    static final SqlExpression SYSDATE = new SqlExpression("SYSDATE()");
+    // PostgreSQL 没有 SYSDATE()，与之对应的是返回实际执行时刻的 clock_timestamp()
+    static final SqlExpression CLOCK_TIMESTAMP = new SqlExpression("clock_timestamp()");
+    static final SqlExpression CURRENT_DATE = new SqlExpression("CURRENT_DATE");
+    static final SqlExpression CURRENT_TIMESTAMP = new SqlExpression("CURRENT_TIMESTAMP");
+
+    private final String sql;
+
+    SqlExpression(String sql) {
+        this.sql = sql;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -0,0 +1,191 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 渲染好的条件 SQL 片段：带 ? 占位符的 SQL 文本和按顺序排列的参数
+ *
+ * 片段由 ConditionParser 生成的 QueryWrapper 转换而来，语义与直接解析完全一致。
+ * 片段不可变，可以缓存并拼接成更大的条件，拼接时不需要重新解析。
+ */
+public final class SqlFragment {
+
+    static final SqlFragment EMPTY = new SqlFragment("", "", Collections.emptyList());
+
+    private static final Pattern PARAM_PATTERN = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+
+    private final String sql;
+    // 与 sql 相同，但占位符为 QueryWrapper.apply 使用的 {0}、{1} ...
+    private final String template;
+    private final List<Object> parameters;
+
+    private SqlFragment(String sql, String template, List<Object> parameters) {
+        this.sql = sql;
+        this.template = template;
+        this.parameters = parameters;
+    }
+
+    /**
+     * 把 QueryWrapper 的 SQL 片段中的参数引用按出现顺序替换为占位符
+     */
+    static SqlFragment of(QueryWrapper<?> wrapper) {
+        String segment = wrapper.getSqlSegment();
+        Map<String, Object> pairs = wrapper.getParamNameValuePairs();
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        StringBuilder template = new StringBuilder();
+        Matcher matcher = PARAM_PATTERN.matcher(segment);
+        int last = 0;
+        while (matcher.find()) {
+            sql.append(segment, last, matcher.start()).append('?');
+            template.append(segment, last, matcher.start()).append('{').append(parameters.size()).append('}');
+            parameters.add(pairs.get(matcher.group(1)));
+            last = matcher.end();
+        }
+        sql.append(segment, last, segment.length());
+        template.append(segment, last, segment.length());
+        if (sql.toString().trim().isEmpty()) {
+            return EMPTY;
+        }
+        return new SqlFragment(sql.toString().trim(), template.toString().trim(), Collections.unmodifiableList(parameters));
+    }
+
+    /**
+     * 不带参数的 SQL 片段，调用方保证 sql 中没有花括号
+     */
+    static SqlFragment raw(String sql) {
+        return new SqlFragment(sql, sql, Collections.emptyList());
+    }
+
+    /**
+     * 在片段前后拼接不带参数的 SQL 文本，参数不变
+     */
+    static SqlFragment enclose(String prefix, SqlFragment fragment, String suffix) {
+        return new SqlFragment(prefix + fragment.sql + suffix, prefix + fragment.template + suffix, fragment.parameters);
+    }
+
+    /**
+     * 用 AND 或 OR 连接多个片段，空片段被忽略
+     */
+    static SqlFragment join(List<SqlFragment> fragments, boolean disjunction) {
+        List<SqlFragment> nonEmpty = new ArrayList<>(fragments.size());
+        for (SqlFragment fragment : fragments) {
+            if (!fragment.isEmpty()) {
+                nonEmpty.add(fragment);
+            }
+        }
+        if (nonEmpty.isEmpty()) {
+            return EMPTY;
+        }
+        if (nonEmpty.size() == 1) {
+            return nonEmpty.get(0);
+        }
+        String connective = disjunction ? " OR " : " AND ";
+        StringBuilder sql = new StringBuilder("(");
+        StringBuilder template = new StringBuilder("(");
+        List<Object> parameters = new ArrayList<>();
+        for (SqlFragment fragment : nonEmpty) {
+            if (fragment != nonEmpty.get(0)) {
+                sql.append(connective);
+                template.append(connective);
+            }
+            sql.append('(').append(fragment.sql).append(')');
+            template.append('(').append(shift(fragment.template, fragment.parameters.size(), parameters.size())).append(')');
+            parameters.addAll(fragment.parameters);
+        }
+        sql.append(')');
+        template.append(')');
+        return new SqlFragment(sql.toString(), template.toString(), Collections.unmodifiableList(parameters));
+    }
+
+    /**
+     * SQL 相同、参数不同的片段，参数数组直接作为参数列表，不复制
+     */
+    SqlFragment withParameters(Object[] parameters) {
+        return new SqlFragment(sql, template, Collections.unmodifiableList(Arrays.asList(parameters)));
+    }
+
+    /**
+     * 对片段取反
+     */
+    static SqlFragment not(SqlFragment fragment) {
+        if (fragment.isEmpty()) {
+            throw new IllegalArgumentException("Cannot negate an empty fragment");
+        }
+        return new SqlFragment("NOT (" + fragment.sql + ")", "NOT (" + fragment.template + ")", fragment.parameters);
+    }
+
+    /**
+     * 把 {0}..{count-1} 占位符整体后移 offset
+     */
+    private static String shift(String template, int count, int offset) {
+        if (offset == 0 || count == 0) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + count * 2);
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            int close = c == '{' ? template.indexOf('}', i) : -1;
+            if (close > i + 1 && isDigits(template, i + 1, close)) {
+                sb.append('{').append(Integer.parseInt(template.substring(i + 1, close)) + offset).append('}');
+                i = close + 1;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 作为一个整体条件追加到 QueryWrapper
+     */
+    <T> QueryWrapper<T> applyTo(QueryWrapper<T> queryWrapper) {
+        if (isEmpty()) {
+            return queryWrapper;
+        }
+        return queryWrapper.apply(template, parameters.toArray());
+    }
+
+    /**
+     * 占位符为 {0}、{1} ... 的 SQL 文本，用于 QueryWrapper.apply
+     */
+    String getTemplate() {
+        return template;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    public boolean isEmpty() {
+        return sql.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + parameters;
+    }
+}
@@ -0,0 +1,88 @@
+package com.xdw;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 条件中的子查询可以访问的表和字段
+ *
+ * 默认不允许子查询。配置后 "col IN (SELECT ...)" 和 "[NOT] EXISTS (SELECT ...)" 作为一条语句在数据库中执行，
+ * 不需要先查出一批 id 再拼成 IN 列表：
+ * <pre>
+ * SubqueryAllowlist allowlist = SubqueryAllowlist.empty()
+ *         .allow("customers", "id", "region", "status")
+ *         .allow("order_items", "order_id", "sku");
+ * ParserOptions options = ParserOptions.defaults().withSubqueryAllowlist(allowlist);
+ * ConditionParser.parse("customer_id IN (SELECT id FROM customers WHERE region = 'EU')", wrapper, options);
+ * </pre>
+ * 子查询只能是单表的简单 SELECT，查询的字段和 WHERE 中的字段都必须在白名单中，
+ * WHERE 中的值同样作为绑定参数。对象不可变，可以在线程间共享。
+ */
+public final class SubqueryAllowlist {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private static final SubqueryAllowlist EMPTY = new SubqueryAllowlist(Collections.emptyMap());
+
+    // 规范化后的表名 -> 规范化后的字段名
+    private final Map<String, Set<String>> tables;
+
+    private SubqueryAllowlist(Map<String, Set<String>> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * 不允许访问任何表的白名单
+     */
+    public static SubqueryAllowlist empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 允许子查询访问 table 的指定字段，同一张表多次调用时字段合并
+     * @param table 表名，只允许字母、数字和下划线，可以带 schema 前缀
+     * @throws IllegalArgumentException 表名或字段名不合法
+     */
+    public SubqueryAllowlist allow(String table, String... columns) {
+        checkIdentifier(table, "table name");
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one column must be allowed for table: " + table);
+        }
+        Map<String, Set<String>> copy = new LinkedHashMap<>(tables);
+        Set<String> allowed = new LinkedHashSet<>(copy.getOrDefault(normalize(table), Collections.emptySet()));
+        for (String column : columns) {
+            checkIdentifier(column, "column name");
+            allowed.add(normalize(column));
+        }
+        copy.put(normalize(table), Collections.unmodifiableSet(allowed));
+        return new SubqueryAllowlist(Collections.unmodifiableMap(copy));
+    }
+
+    public boolean isTableAllowed(String table) {
+        return tables.containsKey(normalize(table));
+    }
+
+    public boolean isColumnAllowed(String table, String column) {
+        Set<String> columns = tables.get(normalize(table));
+        return columns != null && columns.contains(ConditionParser.normalizeColumnName(column));
+    }
+
+    private static void checkIdentifier(String identifier, String kind) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Invalid " + kind + ": " + identifier);
+        }
+    }
+
+    private static String normalize(String identifier) {
+        return ConditionParser.normalizeColumnName(identifier);
+    }
+
+    @Override
+    public String toString() {
+        return tables.toString();
+    }
+}
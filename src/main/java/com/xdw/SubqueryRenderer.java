@@ -0,0 +1,216 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.expr.SQLBetweenExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMatchAgainstExpr;
+import com.alibaba.druid.sql.ast.expr.SQLNotExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.expr.SQLUnaryExpr;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQueryBlock;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 按 SubqueryAllowlist 检查并渲染条件中的子查询
+ *
+ * 渲染结果由检查过的部分重新拼出，而不是输出用户的原文，未识别的子句不会被带进 SQL：
+ * 只支持 SELECT 字段 FROM 表 [别名] [WHERE 条件]。
+ * WHERE 中与外层查询关联的比较（如 i.order_id = o.id）原样输出，其余部分按普通条件解析为绑定参数。
+ */
+final class SubqueryRenderer {
+
+    private static final Pattern ALIAS = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final SubqueryAllowlist allowlist;
+    private final String table;
+    // 子查询内部字段的限定符：别名，没有别名时为表名
+    private final String qualifier;
+
+    private SubqueryRenderer(SubqueryAllowlist allowlist, String table, String qualifier) {
+        this.allowlist = allowlist;
+        this.table = table;
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * 渲染子查询
+     * @param singleColumn IN 子查询需要恰好查询一个字段；EXISTS 子查询忽略查询的字段，输出 SELECT 1
+     * @throws UnsupportedOperationException 选项中没有配置子查询白名单
+     * @throws IllegalArgumentException 子查询不是简单的单表查询，或访问了白名单之外的表和字段
+     */
+    static SqlFragment render(SQLSelect select, boolean singleColumn, ParserOptions options) {
+        // LIKE 改写的索引建立在外层查询的表上，不能用于子查询的表
+        options = options.withoutLikeRewrites();
+        SubqueryAllowlist allowlist = options.getSubqueryAllowlist();
+        if (allowlist == null) {
+            throw new UnsupportedOperationException("Subqueries are not allowed: " + select);
+        }
+        if (select.getWithSubQuery() != null || select.getOrderBy() != null || select.getLimit() != null
+                || !(select.getQuery() instanceof SQLSelectQueryBlock)) {
+            throw new IllegalArgumentException("Only a simple single-table SELECT is allowed in a subquery: " + select);
+        }
+        SQLSelectQueryBlock block = (SQLSelectQueryBlock) select.getQuery();
+        if (block.getGroupBy() != null || block.getOrderBy() != null || block.getLimit() != null
+                || block.getInto() != null || block.isForUpdate() || block.getStartWith() != null
+                || block.getConnectBy() != null || block.getFirst() != null || block.getOffset() != null
+                || (block.getWindows() != null && !block.getWindows().isEmpty())
+                || !(block.getFrom() instanceof SQLExprTableSource)) {
+            throw new IllegalArgumentException("Only a simple single-table SELECT is allowed in a subquery: " + select);
+        }
+        SQLExprTableSource from = (SQLExprTableSource) block.getFrom();
+        if (!(from.getExpr() instanceof SQLName)) {
+            throw new IllegalArgumentException("Invalid table in subquery: " + from);
+        }
+        String table = from.getExpr().toString();
+        if (!allowlist.isTableAllowed(table)) {
+            throw new IllegalArgumentException("Table is not allowed in subqueries: " + table);
+        }
+        String alias = from.getAlias();
+        if (alias != null && !ALIAS.matcher(alias).matches()) {
+            throw new IllegalArgumentException("Invalid table alias in subquery: " + alias);
+        }
+        SubqueryRenderer renderer = new SubqueryRenderer(allowlist, table, alias != null ? alias : table);
+        StringBuilder head = new StringBuilder("SELECT ");
+        if (singleColumn) {
+            List<SQLSelectItem> items = block.getSelectList();
+            if (items.size() != 1) {
+                throw new IllegalArgumentException("IN subquery must select exactly one column: " + select);
+            }
+            head.append(renderer.column(items.get(0).getExpr()));
+        } else {
+            head.append('1');
+        }
+        head.append(" FROM ").append(table);
+        if (alias != null) {
+            head.append(' ').append(alias);
+        }
+        if (block.getWhere() == null) {
+            return SqlFragment.raw(head.toString());
+        }
+        List<SqlFragment> conjuncts = new ArrayList<>();
+        renderer.addConjuncts(block.getWhere(), conjuncts, options);
+        return SqlFragment.enclose(head + " WHERE ", SqlFragment.join(conjuncts, false), "");
+    }
+
+    private void addConjuncts(SQLExpr expr, List<SqlFragment> conjuncts, ParserOptions options) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == SQLBinaryOperator.BooleanAnd) {
+            addConjuncts(((SQLBinaryOpExpr) expr).getLeft(), conjuncts, options);
+            addConjuncts(((SQLBinaryOpExpr) expr).getRight(), conjuncts, options);
+        } else if (isCorrelation(expr)) {
+            SQLBinaryOpExpr comparison = (SQLBinaryOpExpr) expr;
+            conjuncts.add(SqlFragment.raw(qualifier + "." + column(comparison.getLeft()) + " "
+                    + comparison.getOperator().getName() + " " + outerColumn(comparison.getRight())));
+        } else {
+            checkColumns(expr);
+            QueryWrapper<Object> wrapper = new QueryWrapper<>();
+            ConditionParser.parseSQLExpr(expr, wrapper, options);
+            conjuncts.add(SqlFragment.of(wrapper));
+        }
+    }
+
+    /**
+     * 与外层查询关联的比较：左侧是子查询的字段，右侧是字段而不是值
+     */
+    private static boolean isCorrelation(SQLExpr expr) {
+        if (!(expr instanceof SQLBinaryOpExpr)) {
+            return false;
+        }
+        SQLBinaryOpExpr binary = (SQLBinaryOpExpr) expr;
+        switch (binary.getOperator()) {
+            case Equality:
+            case NotEqual:
+            case LessThan:
+            case LessThanOrEqual:
+            case GreaterThan:
+            case GreaterThanOrEqual:
+                return binary.getRight() instanceof SQLIdentifierExpr || binary.getRight() instanceof SQLPropertyExpr;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 外层查询的字段必须带限定符，否则会被数据库解析为子查询自身的字段
+     */
+    private String outerColumn(SQLExpr expr) {
+        if (!(expr instanceof SQLPropertyExpr) || !(((SQLPropertyExpr) expr).getOwner() instanceof SQLIdentifierExpr)) {
+            throw new IllegalArgumentException("Correlated column must be qualified with an outer table: " + expr);
+        }
+        SQLPropertyExpr property = (SQLPropertyExpr) expr;
+        String owner = ((SQLIdentifierExpr) property.getOwner()).getName();
+        if (isOwnQualifier(owner)) {
+            throw new IllegalArgumentException("Comparing two columns of the subquery table is not supported: " + expr);
+        }
+        return owner + "." + property.getName();
+    }
+
+    /**
+     * 检查条件中所有字段都是子查询表上允许访问的字段，嵌套的子查询在渲染时单独检查
+     * 未识别的表达式一律拒绝，ConditionParser 支持新的表达式时需要在这里同时检查其中的字段
+     */
+    private void checkColumns(SQLExpr expr) {
+        if (expr instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binary = (SQLBinaryOpExpr) expr;
+            if (binary.getOperator() == SQLBinaryOperator.BooleanAnd || binary.getOperator() == SQLBinaryOperator.BooleanOr) {
+                checkColumns(binary.getLeft());
+                checkColumns(binary.getRight());
+            } else {
+                column(binary.getLeft());
+            }
+        } else if (expr instanceof SQLInListExpr) {
+            column(((SQLInListExpr) expr).getExpr());
+        } else if (expr instanceof SQLInSubQueryExpr) {
+            column(((SQLInSubQueryExpr) expr).getExpr());
+        } else if (expr instanceof SQLBetweenExpr) {
+            column(((SQLBetweenExpr) expr).getTestExpr());
+        } else if (expr instanceof SQLNotExpr) {
+            checkColumns(((SQLNotExpr) expr).getExpr());
+        } else if (expr instanceof SQLUnaryExpr) {
+            checkColumns(((SQLUnaryExpr) expr).getExpr());
+        } else if (expr instanceof SQLMatchAgainstExpr) {
+            for (SQLExpr column : ((SQLMatchAgainstExpr) expr).getColumns()) {
+                column(column);
+            }
+        } else if (!(expr instanceof SQLExistsExpr)) {
+            throw new IllegalArgumentException("Unsupported expression in subquery on " + table + ": " + expr);
+        }
+    }
+
+    /**
+     * 子查询表上允许访问的字段名，不带限定符
+     */
+    private String column(SQLExpr expr) {
+        String name;
+        if (expr instanceof SQLIdentifierExpr) {
+            name = ((SQLIdentifierExpr) expr).getName();
+        } else if (expr instanceof SQLPropertyExpr && ((SQLPropertyExpr) expr).getOwner() instanceof SQLIdentifierExpr
+                && isOwnQualifier(((SQLIdentifierExpr) ((SQLPropertyExpr) expr).getOwner()).getName())) {
+            name = ((SQLPropertyExpr) expr).getName();
+        } else {
+            throw new IllegalArgumentException("Invalid column in subquery on " + table + ": " + expr);
+        }
+        if (!allowlist.isColumnAllowed(table, name)) {
+            throw new IllegalArgumentException("Column is not allowed in subqueries: " + table + "." + name);
+        }
+        return name;
+    }
+
+    private boolean isOwnQualifier(String owner) {
+        String normalized = ConditionParser.normalizeColumnName(owner);
+        return normalized.equals(ConditionParser.normalizeColumnName(qualifier))
+                || normalized.equals(ConditionParser.normalizeColumnName(table));
+    }
+}
@@ -0,0 +1,334 @@
+package com.xdw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 单张表的统计信息：总行数、各字段的统计信息以及建有索引的字段
+ *
+ * 统计信息可以从本地快照文件加载，也可以通过 JDBC 从嵌入式数据库（如 H2）采集后保存为快照。
+ * 快照是 Properties 格式的文本文件，便于检入代码库并在评审时比较：
+ * <pre>
+ * table=orders
+ * rows=10000
+ * indexes=id,amount
+ * columns=id,amount,status
+ * column.amount.ndv=1000
+ * column.amount.nullFraction=0.0
+ * column.amount.type=number
+ * column.amount.histogram.size=101
+ * column.amount.histogram.0=0
+ * ...
+ * </pre>
+ * 对象不可变，可以在线程间共享。
+ */
+public final class TableStatistics {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final String table;
+    private final long rowCount;
+    private final Map<String, ColumnStatistics> columns;
+    private final Set<String> indexedColumns;
+
+    /**
+     * @param indexedColumns 可以通过索引定位的字段，复合索引只应包含最左列
+     */
+    public TableStatistics(String table, long rowCount, Collection<ColumnStatistics> columns, Collection<String> indexedColumns) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Row count must not be negative: " + rowCount);
+        }
+        Map<String, ColumnStatistics> byName = new LinkedHashMap<>();
+        for (ColumnStatistics column : columns) {
+            byName.put(column.getColumn(), column);
+        }
+        Set<String> indexed = new LinkedHashSet<>();
+        for (String column : indexedColumns) {
+            indexed.add(ConditionParser.normalizeColumnName(column));
+        }
+        this.table = table;
+        this.rowCount = rowCount;
+        this.columns = Collections.unmodifiableMap(byName);
+        this.indexedColumns = Collections.unmodifiableSet(indexed);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 字段的统计信息，字段名不区分大小写，没有统计信息时返回 null
+     */
+    public ColumnStatistics getColumn(String column) {
+        return columns.get(ConditionParser.normalizeColumnName(column));
+    }
+
+    public Collection<ColumnStatistics> getColumns() {
+        return columns.values();
+    }
+
+    public boolean isIndexed(String column) {
+        return indexedColumns.contains(ConditionParser.normalizeColumnName(column));
+    }
+
+    public Set<String> getIndexedColumns() {
+        return indexedColumns;
+    }
+
+    /**
+     * 从快照文件加载统计信息
+     * @throws IllegalArgumentException 快照内容不完整或格式错误
+     */
+    public static TableStatistics load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            String table = required(properties, "table");
+            long rows = Long.parseLong(required(properties, "rows"));
+            List<ColumnStatistics> columns = new ArrayList<>();
+            for (String column : split(properties.getProperty("columns", ""))) {
+                String prefix = "column." + column + ".";
+                String type = required(properties, prefix + "type");
+                int size = Integer.parseInt(properties.getProperty(prefix + "histogram.size", "0"));
+                List<Object> histogram = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    histogram.add(fromText(type, required(properties, prefix + "histogram." + i)));
+                }
+                columns.add(new ColumnStatistics(column,
+                        Long.parseLong(required(properties, prefix + "ndv")),
+                        Double.parseDouble(required(properties, prefix + "nullFraction")),
+                        histogram));
+            }
+            return new TableStatistics(table, rows, columns, split(properties.getProperty("indexes", "")));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid statistics snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * 保存为快照文件
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("table", table);
+        properties.setProperty("rows", Long.toString(rowCount));
+        properties.setProperty("indexes", String.join(",", indexedColumns));
+        properties.setProperty("columns", String.join(",", columns.keySet()));
+        for (ColumnStatistics column : columns.values()) {
+            String prefix = "column." + column.getColumn() + ".";
+            List<Object> histogram = column.getHistogram();
+            properties.setProperty(prefix + "ndv", Long.toString(column.getDistinctCount()));
+            properties.setProperty(prefix + "nullFraction", Double.toString(column.getNullFraction()));
+            properties.setProperty(prefix + "type", histogram.isEmpty() ? "string" : typeOf(histogram.get(0)));
+            properties.setProperty(prefix + "histogram.size", Integer.toString(histogram.size()));
+            for (int i = 0; i < histogram.size(); i++) {
+                properties.setProperty(prefix + "histogram." + i, toText(histogram.get(i)));
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, "statistics of " + table);
+        }
+    }
+
+    /**
+     * 从数据库采集统计信息
+     *
+     * 对每个字段执行一次 COUNT(DISTINCT) 并按顺序读取全部非 NULL 值来构建直方图，
+     * 适用于嵌入式数据库和测试数据，不应直接对生产库的大表执行。
+     *
+     * @param table   表名，只允许字母、数字和下划线，可以带 schema 前缀
+     * @param buckets 直方图的桶数
+     */
+    public static TableStatistics collect(Connection connection, String table, int buckets) throws SQLException {
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Buckets must be positive: " + buckets);
+        }
+        try (Statement statement = connection.createStatement()) {
+            List<String> columnNames = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columnNames.add(metaData.getColumnName(i));
+                }
+            }
+            long rows;
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                rs.next();
+                rows = rs.getLong(1);
+            }
+            List<ColumnStatistics> columns = new ArrayList<>();
+            for (String column : columnNames) {
+                columns.add(collectColumn(statement, table, column, rows, buckets));
+            }
+            return new TableStatistics(table, rows, columns, indexedColumns(connection, table));
+        }
+    }
+
+    private static ColumnStatistics collectColumn(Statement statement, String table, String column,
+                                                  long rows, int buckets) throws SQLException {
+        String quoted = '"' + column + '"';
+        long nonNull;
+        long distinct;
+        try (ResultSet rs = statement.executeQuery("SELECT COUNT(" + quoted + "), COUNT(DISTINCT " + quoted + ") FROM " + table)) {
+            rs.next();
+            nonNull = rs.getLong(1);
+            distinct = rs.getLong(2);
+        }
+        List<Object> histogram = new ArrayList<>();
+        if (nonNull > 0) {
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT " + quoted + " FROM " + table + " WHERE " + quoted + " IS NOT NULL ORDER BY " + quoted)) {
+                long position = 0;
+                int next = 0;
+                while (rs.next() && next <= buckets) {
+                    // 第 next 个边界位于排序后第 next * (n - 1) / k 个值
+                    long boundPosition = Math.round((double) next * (nonNull - 1) / buckets);
+                    while (position == boundPosition && next <= buckets) {
+                        Object value = comparable(rs.getObject(1));
+                        if (value == null) {
+                            return new ColumnStatistics(column, distinct, nullFraction(rows, nonNull), Collections.emptyList());
+                        }
+                        histogram.add(value);
+                        next++;
+                        boundPosition = Math.round((double) next * (nonNull - 1) / buckets);
+                    }
+                    position++;
+                }
+            }
+        }
+        return new ColumnStatistics(column, distinct, nullFraction(rows, nonNull), histogram);
+    }
+
+    private static double nullFraction(long rows, long nonNull) {
+        return rows == 0 ? 0 : (double) (rows - nonNull) / rows;
+    }
+
+    /**
+     * 转换成可以放进直方图的值，不能比较大小的类型返回 null
+     */
+    private static Object comparable(Object value) {
+        if (value instanceof LocalDateTime) {
+            value = Timestamp.valueOf((LocalDateTime) value);
+        }
+        Object normalized = RangeSet.normalize(value);
+        return normalized instanceof BigDecimal || normalized instanceof Date || normalized instanceof String ? normalized : null;
+    }
+
+    /**
+     * 各个索引的最左列
+     */
+    private static List<String> indexedColumns(Connection connection, String table) throws SQLException {
+        String schema = null;
+        String name = table;
+        int dot = table.indexOf('.');
+        if (dot > 0) {
+            schema = table.substring(0, dot);
+            name = table.substring(dot + 1);
+        }
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> columns = new ArrayList<>();
+        // 未加引号的标识符在不同数据库中可能被存成大写或小写
+        for (int attempt = 0; attempt < 3 && columns.isEmpty(); attempt++) {
+            String schemaCandidate = schema == null ? null : caseOf(attempt, schema);
+            String candidate = caseOf(attempt, name);
+            try (ResultSet rs = metaData.getIndexInfo(null, schemaCandidate, candidate, false, true)) {
+                while (rs.next()) {
+                    String column = rs.getString("COLUMN_NAME");
+                    if (column != null && rs.getShort("ORDINAL_POSITION") == 1) {
+                        columns.add(column);
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static String caseOf(int attempt, String identifier) {
+        return attempt == 0 ? identifier : attempt == 1 ? identifier.toUpperCase() : identifier.toLowerCase();
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing property: " + key);
+        }
+        return value;
+    }
+
+    private static List<String> split(String list) {
+        List<String> result = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.trim().isEmpty()) {
+                result.add(item.trim());
+            }
+        }
+        return result;
+    }
+
+    private static String typeOf(Object value) {
+        if (value instanceof BigDecimal) {
+            return "number";
+        }
+        return value instanceof Date ? "date" : "string";
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime()).toString();
+        }
+        return value.toString();
+    }
+
+    private static Object fromText(String type, String text) {
+        switch (type) {
+            case "number":
+                return new BigDecimal(text);
+            case "date":
+                return text.length() <= 10 ? java.sql.Date.valueOf(text) : Timestamp.valueOf(text);
+            case "string":
+                return text;
+            default:
+                throw new IllegalArgumentException("Unknown column type: " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return table + "{rows=" + rowCount + ", columns=" + columns.values() + ", indexes=" + indexedColumns + "}";
+    }
+}
@@ -0,0 +1,17 @@
+package com.xdw;
+
+/**
+ * 时间函数（now()、sysdate()、current_date、current_timestamp）的处理策略
+ */
+public enum TimeFunctionPolicy {
+
+    /**
+     * 在 JVM 中使用配置的 Clock 求值，结果作为绑定参数（原有行为）
+     */
+    JVM_CLOCK,
+
+    /**
+     * 作为 SQL 表达式下推到数据库，如 col > NOW()，SQL 文本和参数保持不变
+     */
+    PUSH_DOWN
+}
@@ -0,0 +1,388 @@
+package com.xdw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * 文本字段的进程内三元组（trigram）倒排索引，用于回答前导通配符的 LIKE
+ *
+ * "title LIKE '%abc%'" 无法使用 B 树索引，数据库只能全表扫描。本索引为配置的文本字段记录
+ * 每个连续三个字符到行 id 的倒排表，查询时取模式中每段长度不少于 3 的字面量的所有三元组，
+ * 求倒排表的交集得到候选 id，再用保存的字段值逐个按 LIKE 语义校验，结果与数据库的 LIKE 一致。
+ *
+ * 通过 ParserOptions.withTrigramIndex 启用后，ConditionParser 把顶层或 AND 分支中已索引字段上的 LIKE
+ * 改写为 "id IN (...)"，与其他条件的组合由数据库按主键完成；没有匹配的行时改写为 "1 = 0"。
+ * 索引描述的是外层查询的表。以下情况保持原来的 LIKE：
+ * <ul>
+ *   <li>NOT LIKE，或 LIKE 位于 NOT、OR 分支或子查询中</li>
+ *   <li>字段不在索引中</li>
+ *   <li>模式中没有长度不少于 3 的字面量，三元组无法缩小范围</li>
+ *   <li>匹配的行数超过 maxCandidates，IN 列表过长时全表扫描反而更快</li>
+ * </ul>
+ *
+ * 索引不会自动感知数据库的变化，写入数据时需要同步调用 put / remove，否则查询结果会与数据库不一致。
+ * 编译后的条件（CompiledCondition）在编译时确定 id 列表。
+ * 模式中的 % 和 _ 为通配符，反斜杠为转义字符，与 MySQL 和 H2 的默认规则相同。
+ * 对象可以在线程间共享，查询之间不互斥。
+ */
+public class TrigramIndex {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final String idColumn;
+    private final boolean ignoreCase;
+    private final int maxCandidates;
+    private final Map<String, ColumnIndex> columns = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 一个字段的倒排表和字段值
+     */
+    private static final class ColumnIndex {
+        // 三元组（三个 char 拼成的 long）到有序 id 列表
+        final Map<Long, Postings> postings = new HashMap<>();
+        // 规范化后的字段值，用于校验候选
+        final Map<Long, String> values = new HashMap<>();
+    }
+
+    /**
+     * 有序、无重复的 id 列表，按 id 递增写入时追加为 O(1)
+     */
+    private static final class Postings {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size == 0 || ids[size - 1] < id) {
+                ensureCapacity();
+                ids[size++] = id;
+                return;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            ensureCapacity();
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+
+    /**
+     * @param idColumn 行 id 字段，改写后的条件为 idColumn IN (...)
+     * @param ignoreCase 是否忽略大小写，应与数据库字段的排序规则一致（MySQL 的默认排序规则忽略大小写）
+     * @param maxCandidates 匹配的行数超过此值时不改写
+     * @param columns 建立索引的文本字段
+     */
+    public TrigramIndex(String idColumn, boolean ignoreCase, int maxCandidates, String... columns) {
+        if (maxCandidates <= 0) {
+            throw new IllegalArgumentException("Max candidates must be positive: " + maxCandidates);
+        }
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one column is required");
+        }
+        checkIdentifier(idColumn, "id column");
+        this.idColumn = idColumn;
+        this.ignoreCase = ignoreCase;
+        this.maxCandidates = maxCandidates;
+        for (String column : columns) {
+            checkIdentifier(column, "column");
+            this.columns.put(ConditionParser.normalizeColumnName(column), new ColumnIndex());
+        }
+    }
+
+    private static void checkIdentifier(String identifier, String kind) {
+        if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Invalid " + kind + ": " + identifier);
+        }
+    }
+
+    /**
+     * 批量加载一个字段的值，按 id 递增的顺序加载最快
+     * @param values id 到字段值，值为 null 的行不建立索引
+     */
+    public void load(String column, Map<Long, String> values) {
+        lock.writeLock().lock();
+        try {
+            ColumnIndex index = column(column);
+            for (Map.Entry<Long, String> entry : values.entrySet()) {
+                put(index, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 插入或更新一行的字段值，value 为 null 时等同于 remove
+     */
+    public void put(String column, long id, String value) {
+        lock.writeLock().lock();
+        try {
+            put(column(column), id, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从一个字段的索引中删除一行
+     */
+    public void remove(String column, long id) {
+        lock.writeLock().lock();
+        try {
+            remove(column(column), id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从所有字段的索引中删除一行
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            for (ColumnIndex index : columns.values()) {
+                remove(index, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(ColumnIndex index, long id, String value) {
+        remove(index, id);
+        if (value == null) {
+            return;
+        }
+        String normalized = normalize(value);
+        index.values.put(id, normalized);
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            index.postings.computeIfAbsent(trigram(normalized, i), k -> new Postings()).add(id);
+        }
+    }
+
+    private void remove(ColumnIndex index, long id) {
+        String old = index.values.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (int i = 0; i + 3 <= old.length(); i++) {
+            long key = trigram(old, i);
+            Postings postings = index.postings.get(key);
+            if (postings != null) {
+                postings.remove(id);
+                if (postings.size == 0) {
+                    index.postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 字段值满足 LIKE 模式的所有行 id，按递增排列
+     * @return 索引无法回答时返回 null：字段未建立索引、模式中没有长度不少于 3 的字面量，或匹配的行数超过 maxCandidates
+     */
+    public long[] search(String column, String pattern) {
+        ColumnIndex index = columns.get(ConditionParser.normalizeColumnName(column));
+        if (index == null) {
+            return null;
+        }
+        String normalized = normalize(pattern);
+        List<Long> trigrams = new ArrayList<>();
+        for (String literal : literals(normalized)) {
+            for (int i = 0; i + 3 <= literal.length(); i++) {
+                trigrams.add(trigram(literal, i));
+            }
+        }
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(trigrams.size());
+            for (Long trigram : trigrams) {
+                Postings postings = index.postings.get(trigram);
+                if (postings == null) {
+                    return new long[0];
+                }
+                lists.add(postings);
+            }
+            // 从最短的倒排表开始求交集
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            long[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = intersect(candidates, count, lists.get(i));
+            }
+            long[] result = new long[Math.min(count, maxCandidates)];
+            int matched = 0;
+            for (int i = 0; i < count; i++) {
+                if (like(index.values.get(candidates[i]), normalized)) {
+                    if (matched == maxCandidates) {
+                        return null;
+                    }
+                    result[matched++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(result, matched);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 保留 candidates 前 count 个元素中出现在 postings 中的，返回保留的个数
+     */
+    private static int intersect(long[] candidates, int count, Postings postings) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int index = Arrays.binarySearch(postings.ids, from, postings.size, candidates[i]);
+            if (index >= 0) {
+                candidates[kept++] = candidates[i];
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * 模式中通配符之间的字面量，转义字符已去掉
+     */
+    private static List<String> literals(String pattern) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                current.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                literals.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        literals.add(current.toString());
+        return literals;
+    }
+
+    /**
+     * 按 LIKE 语义匹配：% 匹配任意个字符，_ 匹配一个字符，反斜杠转义下一个字符
+     */
+    static boolean like(String value, String pattern) {
+        int v = 0;
+        int p = 0;
+        // 最近一个 % 之后的模式位置，以及它当前对应的值位置
+        int starPattern = -1;
+        int starValue = 0;
+        while (v < value.length()) {
+            if (p < pattern.length()) {
+                char c = pattern.charAt(p);
+                if (c == '%') {
+                    starPattern = ++p;
+                    starValue = v;
+                    continue;
+                }
+                if (c == '_') {
+                    p++;
+                    v++;
+                    continue;
+                }
+                int literalLength = 1;
+                if (c == '\\' && p + 1 < pattern.length()) {
+                    c = pattern.charAt(p + 1);
+                    literalLength = 2;
+                }
+                if (c == value.charAt(v)) {
+                    p += literalLength;
+                    v++;
+                    continue;
+                }
+            }
+            if (starPattern < 0) {
+                return false;
+            }
+            // 让上一个 % 多匹配一个字符后重试
+            p = starPattern;
+            v = ++starValue;
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '%') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static long trigram(String s, int offset) {
+        return ((long) s.charAt(offset) << 32) | ((long) s.charAt(offset + 1) << 16) | s.charAt(offset + 2);
+    }
+
+    private String normalize(String value) {
+        return ignoreCase ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    private ColumnIndex column(String column) {
+        ColumnIndex index = columns.get(ConditionParser.normalizeColumnName(column));
+        if (index == null) {
+            throw new IllegalArgumentException("Column is not indexed: " + column);
+        }
+        return index;
+    }
+
+    public boolean isIndexed(String column) {
+        return columns.containsKey(ConditionParser.normalizeColumnName(column));
+    }
+
+    public String getIdColumn() {
+        return idColumn;
+    }
+
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    /**
+     * 字段中已建立索引的行数
+     */
+    public int size(String column) {
+        lock.readLock().lock();
+        try {
+            return column(column).values.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TrigramIndex{idColumn=" + idColumn + ", columns=" + columns.keySet() + "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.xdw;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 重放路径的分配预算
+ *
+ * 用 ThreadMXBean 统计当前线程在每次调用中分配的字节数，超过预算即失败。
+ * 预算按"绑定值本身不可避免"来定：参数数组、参数列表和结果片段，不允许出现与条件大小成比例的中间对象。
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int CALLS = 10_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    public static void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private static long bytesPerCall(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            call.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / CALLS;
+    }
+
+    @Test
+    public void testCompiledConditionReplayAllocatesNothing() {
+        CompiledCondition condition = CompiledCondition.compile("tenant_id = 7", ParserOptions.defaults())
+                .and(CompiledCondition.compile("status IN ('NEW', 'PAID') AND amount BETWEEN 10 AND 99", ParserOptions.defaults()));
+        long bytes = bytesPerCall(condition::toSqlFragment);
+        System.out.println("编译条件重放，每次分配: " + bytes + " 字节");
+        assertTrue(bytes <= 8, "allocated " + bytes + " bytes per call");
+    }
+
+    @Test
+    public void testPreparedFragmentAllocatesOnlyBindValues() {
+        PreparedCondition prepared = ConditionParser.prepare(
+                "tenant_id = ? AND status IN (?, ?) AND amount BETWEEN ? AND ? AND (owner_id = ? OR visibility = 'PUBLIC')",
+                ParserOptions.defaults());
+        Object[] parameters = {7L, "NEW", "PAID", 10, 99, 42L};
+        long bytes = bytesPerCall(() -> prepared.toSqlFragment(parameters));
+        System.out.println("预编译条件按位置绑定 6 个参数，每次分配: " + bytes + " 字节");
+        // Object[7] + 参数列表视图 + SqlFragment
+        assertTrue(bytes <= 160, "allocated " + bytes + " bytes per call");
+        assertEquals(Arrays.asList(7L, "NEW", "PAID", 10, 99, 42L, "PUBLIC"), prepared.toSqlFragment(parameters).getParameters());
+    }
+
+    @Test
+    public void testNamedBindingAllocatesOnlyBindValues() {
+        PreparedCondition prepared = ConditionParser.prepare(
+                "tenant_id = :tenant AND created_by = :user AND (owner_id = :user OR shared = true)",
+                ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo()));
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("tenant", 7L);
+        parameters.put("user", 42L);
+        long bytes = bytesPerCall(() -> prepared.toSqlFragment(parameters));
+        System.out.println("预编译条件按名称绑定 2 个参数，每次分配: " + bytes + " 字节");
+        assertTrue(bytes <= 128, "allocated " + bytes + " bytes per call");
+    }
+
+    @Test
+    public void testBudgetDoesNotGrowWithInListLength() {
+        StringBuilder condition = new StringBuilder("tenant_id = ? AND id IN (");
+        for (int i = 1; i <= 200; i++) {
+            condition.append(i > 1 ? ", " : "").append(i);
+        }
+        PreparedCondition prepared = ConditionParser.prepare(condition.append(")").toString(), ParserOptions.defaults());
+        Object[] tenant = {7L};
+        long bytes = bytesPerCall(() -> prepared.toSqlFragment(tenant));
+        System.out.println("200 个常量的 IN 列表，每次分配: " + bytes + " 字节");
+        // 常量参数直接复制到参数数组：Object[201] 约 820 字节，没有逐个元素的对象
+        assertTrue(bytes <= 1024, "allocated " + bytes + " bytes per call");
+    }
+}
@@ -0,0 +1,171 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledConditionTest {
+
+    // 启动时编译一次的固定条件
+    private static final CompiledCondition TENANT = CompiledCondition.compile("tenant_id = 7", ParserOptions.defaults());
+    private static final CompiledCondition SECURITY = CompiledCondition.compile(
+            "owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM')", ParserOptions.defaults());
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:compiled_condition");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE docs (id INT PRIMARY KEY, tenant_id INT, owner_id INT, visibility VARCHAR(16), amount INT)",
+                "INSERT INTO docs SELECT X, MOD(X, 10), MOD(X, 50), "
+                        + "CASEWHEN(MOD(X, 3) = 0, 'PUBLIC', CASEWHEN(MOD(X, 3) = 1, 'TEAM', 'PRIVATE')), "
+                        + "MOD(X * 37, 1000) FROM SYSTEM_RANGE(1, 2000)");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE docs");
+        connection.close();
+    }
+
+    @Test
+    public void testCombinationMatchesConcatenatedParse() throws SQLException {
+        CompiledCondition user = CompiledCondition.compile("amount > 500 AND amount < 800", ParserOptions.defaults());
+        assertSameRows("(tenant_id = 7) AND (owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM')) AND (amount > 500 AND amount < 800)",
+                TENANT.and(SECURITY).and(user));
+        assertSameRows("tenant_id = 7 OR amount > 900", TENANT.or(CompiledCondition.compile("amount > 900", ParserOptions.defaults())));
+        assertSameRows("tenant_id = 7 AND NOT (owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM'))", TENANT.and(SECURITY.not()));
+        assertSameRows("NOT (tenant_id = 7 AND amount BETWEEN 100 AND 200)",
+                TENANT.and(CompiledCondition.compile("amount BETWEEN 100 AND 200", ParserOptions.defaults())).not());
+    }
+
+    @Test
+    public void testApplyIsOnePassAndCombinesWithWrapper() throws SQLException {
+        CompiledCondition condition = TENANT.and(SECURITY);
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+        wrapper.gt("amount", 100);
+        condition.apply(wrapper);
+        wrapper.orderByAsc("id");
+        String segment = wrapper.getSqlSegment();
+        assertTrue(segment.contains("ORDER BY id ASC"), segment);
+
+        QueryWrapper<Object> expected = ConditionParser.parse(
+                "amount > 100 AND tenant_id = 7 AND (owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM'))", new QueryWrapper<>());
+        assertEquals(count(expected), count(wrapper));
+    }
+
+    @Test
+    public void testAndIsFlattenedAndShared() {
+        CompiledCondition user = CompiledCondition.compile("amount > 1", ParserOptions.defaults());
+        CompiledCondition combined = TENANT.and(SECURITY).and(user);
+        assertEquals("(tenant_id = 7) AND (owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM')) AND (amount > 1)", combined.toString());
+        assertEquals(TENANT.toSqlFragment().getParameters().size() + SECURITY.toSqlFragment().getParameters().size() + 1,
+                combined.toSqlFragment().getParameters().size());
+        assertSame(SECURITY, SECURITY.not().not());
+    }
+
+    @Test
+    public void testEmptyConditions() {
+        CompiledCondition empty = CompiledCondition.compile("  ", ParserOptions.defaults());
+        assertTrue(empty.isEmpty());
+        assertSame(TENANT, TENANT.and(empty));
+        assertSame(TENANT, CompiledCondition.empty().and(TENANT));
+        assertTrue(TENANT.or(empty).isEmpty());
+        assertThrows(IllegalStateException.class, empty::not);
+        QueryWrapper<Object> wrapper = empty.apply(new QueryWrapper<>());
+        assertEquals("", wrapper.getSqlSegment());
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int threshold = i;
+                futures.add(executor.submit(() -> {
+                    CompiledCondition user = CompiledCondition.compile("amount > " + threshold, ParserOptions.defaults());
+                    QueryWrapper<Object> wrapper = TENANT.and(SECURITY).and(user).apply(new QueryWrapper<>());
+                    wrapper.getSqlSegment();
+                    return wrapper.getParamNameValuePairs().size();
+                }));
+            }
+            int expected = TENANT.and(SECURITY).toSqlFragment().getParameters().size() + 1;
+            for (Future<Integer> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidConditionFailsAtCompileTime() {
+        assertThrows(IllegalArgumentException.class, () -> CompiledCondition.compile("amount <> 1", ParserOptions.defaults()));
+    }
+
+    /**
+     * 基准测试：每个请求拼接字符串整体解析，与只编译用户条件后组合的耗时对比
+     */
+    @Test
+    public void benchmarkAgainstStringConcatenation() throws SQLException {
+        int requests = 5000;
+        String tenant = "tenant_id = 7";
+        String security = "owner_id = 42 OR visibility IN ('PUBLIC', 'TEAM')";
+
+        long start = System.nanoTime();
+        int concatenated = 0;
+        for (int i = 0; i < requests; i++) {
+            String condition = "(" + tenant + ") AND (" + security + ") AND (amount > " + i + ")";
+            QueryWrapper<Object> wrapper = ConditionParser.parse(condition, new QueryWrapper<>());
+            concatenated += wrapper.getSqlSegment().length();
+        }
+        long concatenatedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        int composed = 0;
+        for (int i = 0; i < requests; i++) {
+            CompiledCondition user = CompiledCondition.compile("amount > " + i, ParserOptions.defaults());
+            QueryWrapper<Object> wrapper = TENANT.and(SECURITY).and(user).apply(new QueryWrapper<>());
+            composed += wrapper.getSqlSegment().length();
+        }
+        long composedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("条件组合基准测试 (" + requests + " 个请求):");
+        System.out.println("  拼接字符串整体解析: " + concatenatedMillis + " ms");
+        System.out.println("  组合编译后的条件:   " + composedMillis + " ms");
+
+        // 耗时只作为输出；断言两种方式查询到的行相同
+        assertTrue(concatenated > 0 && composed > 0);
+        for (int i = 0; i < 1000; i += 250) {
+            assertSameRows("(" + tenant + ") AND (" + security + ") AND (amount > " + i + ")",
+                    TENANT.and(SECURITY).and(CompiledCondition.compile("amount > " + i, ParserOptions.defaults())));
+        }
+    }
+
+    private void assertSameRows(String fullCondition, CompiledCondition condition) throws SQLException {
+        int expected = count(ConditionParser.parse(fullCondition, new QueryWrapper<>()));
+        assertEquals(expected, count(condition.apply(new QueryWrapper<>())), fullCondition);
+        SqlFragment fragment = condition.toSqlFragment();
+        assertEquals(expected, JdbcTestSupport.countRows(connection, new JdbcTestSupport.JdbcSql(
+                "SELECT * FROM docs WHERE " + fragment.getSql(), fragment.getParameters())), fullCondition);
+        assertTrue(expected > 0 && expected < 2000, fullCondition + " matched " + expected);
+    }
+
+    private int count(QueryWrapper<?> wrapper) throws SQLException {
+        return JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM docs", wrapper));
+    }
+}
@@ -0,0 +1,228 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionCodecTest {
+
+    private static final List<String> CONDITIONS = Arrays.asList(
+            "name = 'John' AND age > 18",
+            "(fieldA = 'valueA' AND fieldB = 'valueB') OR fieldC = 'valueC'",
+            "status IN ('PAID', 'NEW', NULL) AND id NOT IN (1, 2, 3)",
+            "amount BETWEEN 10.5 AND 99.95 OR amount NOT BETWEEN -5 AND 5",
+            "NOT (deleted = true) AND remark IS NULL AND email IS NOT NULL",
+            "name LIKE 'Jo%' AND code NOT LIKE 'x' AND note LIKE N'备注'",
+            "t.created_at < NOW() AND updated_at >= CURRENT_DATE AND label = CONCAT('a', 'b')",
+            "big_id = 9223372036854775807 AND huge = 92233720368547758070 AND neg >= -2147483649"
+    );
+
+    @Test
+    public void testDecodedPlanProducesSameWrapper() {
+        ParserOptions options = ParserOptions.defaults()
+                .withClock(Clock.fixed(Instant.parse("2024-03-01T00:00:00Z"), ZoneId.of("UTC")));
+        for (String condition : CONDITIONS) {
+            assertSameWrapper(condition, options);
+        }
+    }
+
+    @Test
+    public void testPlanIsIndependentOfEvaluationOptions() {
+        // 同一份编码在不同的时间函数策略和方言下应用，结果与直接解析一致
+        byte[] plan = ConditionCodec.encode("created_at < NOW() AND id IN (1, 2, 3)", ParserOptions.defaults());
+        ParserOptions pushDown = ParserOptions.defaults().withTimeFunctionPolicy(TimeFunctionPolicy.PUSH_DOWN);
+        QueryWrapper<Object> wrapper = ConditionParser.parse(plan, new QueryWrapper<>(), pushDown);
+        assertTrue(wrapper.getSqlSegment().contains("created_at < NOW()"), wrapper.getSqlSegment());
+
+        ParserOptions postgres = ParserOptions.defaults().withDbType(DbType.postgresql);
+        wrapper = ConditionParser.parse(plan, new QueryWrapper<>(), postgres);
+        assertTrue(wrapper.getSqlSegment().contains("id = ANY("), wrapper.getSqlSegment());
+    }
+
+    @Test
+    public void testIntegerListsDecodeToPrimitiveSlots() {
+        byte[] plan = ConditionCodec.encode("id IN (1, 3000000000, 9223372036854775807) AND code = 7", ParserOptions.defaults());
+        SQLBinaryOpExpr decoded = (SQLBinaryOpExpr) ConditionCodec.decode(plan, ConditionLimits.unlimited());
+        SQLInListExpr inList = (SQLInListExpr) decoded.getLeft();
+        assertEquals(1, inList.getTargetList().size());
+        assertInstanceOf(LongListExpr.class, inList.getTargetList().get(0));
+        assertInstanceOf(LongLiteralExpr.class, ((SQLBinaryOpExpr) decoded.getRight()).getRight());
+
+        // 参数在绑定时装箱，超过 int 范围的 id 不会被截断
+        QueryWrapper<Object> wrapper = ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults());
+        assertEquals(Arrays.asList(1, 3000000000L, Long.MAX_VALUE, 7),
+                JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+
+        wrapper = ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults().withDbType(DbType.postgresql));
+        Object array = JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params.get(0);
+        assertArrayEquals(new Long[]{1L, 3000000000L, Long.MAX_VALUE}, (Long[]) array);
+
+        // 混合类型的列表逐个解码，结果与直接解析一致
+        assertSameWrapper("id IN (1, 'a', 3000000000, NULL)", ParserOptions.defaults());
+        assertSameWrapper("id IN (1, 2, 3)", ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo()));
+    }
+
+    @Test
+    public void testReplayAllocation() {
+        StringBuilder condition = new StringBuilder("tenant_id = 42 AND id IN (");
+        for (int i = 0; i < 1000; i++) {
+            condition.append(i > 0 ? ", " : "").append(3_000_000_000L + i);
+        }
+        byte[] plan = ConditionCodec.encode(condition.append(")").toString(), ParserOptions.defaults());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < 200; i++) {
+            ConditionCodec.decode(plan, ConditionLimits.unlimited());
+        }
+        int replays = 1000;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < replays; i++) {
+            ConditionCodec.decode(plan, ConditionLimits.unlimited());
+        }
+        long decodeBytes = (threads.getThreadAllocatedBytes(threadId) - before) / replays;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < replays; i++) {
+            ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults()).getSqlSegment();
+        }
+        long applyBytes = (threads.getThreadAllocatedBytes(threadId) - before) / replays;
+        System.out.println("1000 个 id 的 IN 列表，每次解码分配 " + decodeBytes + " 字节，解码并应用到 QueryWrapper 分配 " + applyBytes + " 字节");
+    }
+
+    @Test
+    public void testRepeatedColumnsAreStoredOnce() {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("customer_reference_code = ").append(i);
+        }
+        byte[] plan = ConditionCodec.encode(condition.toString(), ParserOptions.defaults());
+        assertTrue(plan.length < condition.toString().getBytes(StandardCharsets.UTF_8).length / 4,
+                "plan size " + plan.length);
+        assertSameWrapper(condition.toString(), ParserOptions.defaults());
+    }
+
+    @Test
+    public void testEmptyCondition() {
+        byte[] plan = ConditionCodec.encode("   ", ParserOptions.defaults());
+        QueryWrapper<Object> wrapper = ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults());
+        assertEquals("", wrapper.getSqlSegment());
+    }
+
+    @Test
+    public void testUnsupportedConditionIsRejectedAtEncodeTime() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionCodec.encode("a = b + 1", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionCodec.encode("a <> 1", ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testMalformedPlanIsRejected() {
+        byte[] plan = ConditionCodec.encode("name = 'John' AND age > 18", ParserOptions.defaults());
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse(Arrays.copyOf(plan, plan.length - 1), wrapper, ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse(Arrays.copyOf(plan, plan.length + 1), wrapper, ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse("name = 'John'".getBytes(StandardCharsets.UTF_8), wrapper, ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testTamperedColumnNamesAreRejected() {
+        // 长度相同的替换，只改字段表中的字符串
+        byte[] column = tamper(ConditionCodec.encode("abcdefghij = 1", ParserOptions.defaults()), "abcdefghij", "1=1 OR xyz");
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse(column, new QueryWrapper<>(), ParserOptions.defaults()));
+        byte[] owner = tamper(ConditionCodec.encode("owner_name.id = 1", ParserOptions.defaults()), "owner_name", "a) OR (1=1");
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse(owner, new QueryWrapper<>(), ParserOptions.defaults()));
+        byte[] quoted = tamper(ConditionCodec.encode("`abcdef` = 1", ParserOptions.defaults()), "`abcdef`", "`a` OR 1");
+        assertThrows(IllegalArgumentException.class,
+                () -> ConditionParser.parse(quoted, new QueryWrapper<>(), ParserOptions.defaults()));
+
+        // 带引号和 schema 的标识符照常解码
+        assertSameWrapper("`order` = 1 AND shop.t.name = 'x'", ParserOptions.defaults());
+    }
+
+    private static byte[] tamper(byte[] plan, String from, String to) {
+        byte[] source = from.getBytes(StandardCharsets.UTF_8);
+        byte[] target = to.getBytes(StandardCharsets.UTF_8);
+        assertEquals(source.length, target.length);
+        for (int i = 0; i + source.length <= plan.length; i++) {
+            if (Arrays.equals(plan, i, i + source.length, source, 0, source.length)) {
+                byte[] tampered = plan.clone();
+                System.arraycopy(target, 0, tampered, i, target.length);
+                return tampered;
+            }
+        }
+        throw new AssertionError("Not found in plan: " + from);
+    }
+
+    @Test
+    public void testCraftedCountsAreRejectedBeforeAllocation() {
+        ParserOptions options = ParserOptions.defaults();
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+        // 字段数为 0x7fffffff 的 8 字节编码
+        byte[] columns = {'X', 'C', 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.parse(columns, wrapper, options));
+
+        // 一个字段 a，条件 a = f(...)，函数参数个数为 0x7fffffff
+        byte[] argc = {'X', 'C', 1, 1, 0, 1, 'a', 4, 0, 0, 7, 1, 'f', (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.parse(argc, wrapper, options));
+        ParserOptions limited = options.withLimits(ConditionLimits.unlimited().withMaxParameters(100));
+        assertThrows(ConditionLimitExceededException.class, () -> ConditionParser.parse(argc, wrapper, limited));
+    }
+
+    @Test
+    public void testNestedFunctionDepthIsLimited() {
+        // a = f(f(f(...)))，每层一个参数
+        int levels = 10_000;
+        byte[] plan = new byte[11 + levels * 4 + 1];
+        byte[] header = {'X', 'C', 1, 1, 0, 1, 'a', 4, 0, 0};
+        System.arraycopy(header, 0, plan, 0, header.length);
+        int position = header.length;
+        for (int i = 0; i < levels; i++) {
+            plan[position++] = 7;
+            plan[position++] = 1;
+            plan[position++] = 'f';
+            plan[position++] = 1;
+        }
+        plan[position++] = 0;
+        byte[] nested = Arrays.copyOf(plan, position);
+        ParserOptions options = ParserOptions.defaults().withLimits(ConditionLimits.unlimited().withMaxDepth(64));
+        ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(nested, new QueryWrapper<>(), options));
+        assertEquals(ConditionLimitExceededException.Limit.DEPTH, e.getLimit());
+
+        // 限制以内的嵌套仍然可以解码
+        byte[] shallow = {'X', 'C', 1, 1, 0, 1, 'a', 4, 0, 0, 7, 6, 'c', 'o', 'n', 'c', 'a', 't', 1, 7, 6, 'c', 'o', 'n', 'c', 'a', 't', 1, 1, 1, 'x'};
+        QueryWrapper<Object> wrapper = ConditionParser.parse(shallow, new QueryWrapper<>(), options);
+        assertEquals(List.of("x"), JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+    }
+
+    private static void assertSameWrapper(String condition, ParserOptions options) {
+        QueryWrapper<Object> expected = ConditionParser.parse(condition, new QueryWrapper<>(), options);
+        byte[] plan = ConditionCodec.encode(condition, options);
+        QueryWrapper<Object> actual = ConditionParser.parse(plan, new QueryWrapper<>(), options);
+        assertEquals(expected.getSqlSegment(), actual.getSqlSegment(), condition);
+        assertEquals(new ArrayList<>(expected.getParamNameValuePairs().values()),
+                new ArrayList<>(actual.getParamNameValuePairs().values()), condition);
+    }
+}
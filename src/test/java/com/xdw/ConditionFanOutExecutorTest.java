@@ -0,0 +1,189 @@
+package com.xdw;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionFanOutExecutorTest {
+
+    static class User {
+        // 测试用实体类
+    }
+
+    // 模拟一次数据库往返的网络延迟
+    private static final long ROUND_TRIP_MILLIS = 20;
+
+    private DruidDataSource dataSource;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:h2:mem:fan_out_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaxActive(4);
+        dataSource.setTestWhileIdle(false);
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcTestSupport.execute(connection,
+                    "CREATE TABLE orders (id INT PRIMARY KEY, status VARCHAR(16), amount INT)",
+                    "INSERT INTO orders SELECT X, CASEWHEN(MOD(X, 2) = 0, 'PAID', 'NEW'), X * 10 FROM SYSTEM_RANGE(1, 1000)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    private Function<QueryWrapper<User>, Integer> countMapper(AtomicInteger active, AtomicInteger maxActive) {
+        return wrapper -> {
+            int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            try (Connection connection = dataSource.getConnection()) {
+                int rows = JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM orders", wrapper));
+                Thread.sleep(ROUND_TRIP_MILLIS);
+                return rows;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                active.decrementAndGet();
+            }
+        };
+    }
+
+    private static List<String> conditions(int count) {
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            conditions.add("status = 'PAID' AND amount > " + (i * 100));
+        }
+        return conditions;
+    }
+
+    @Test
+    public void testResultsMatchSequentialExecutionInOrder() {
+        List<String> conditions = conditions(30);
+        Function<QueryWrapper<User>, Integer> mapper = countMapper(new AtomicInteger(), new AtomicInteger());
+
+        List<Integer> sequential = new ArrayList<>();
+        for (String condition : conditions) {
+            sequential.add(mapper.apply(ConditionParser.parse(condition, new QueryWrapper<>())));
+        }
+
+        try (ConditionFanOutExecutor executor = ConditionFanOutExecutor.forDataSource(dataSource, Duration.ofSeconds(5), ParserOptions.defaults())) {
+            List<Integer> concurrent = executor.execute(conditions, QueryWrapper::new, mapper);
+            assertEquals(sequential, concurrent);
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsBoundedByPoolCapacity() {
+        AtomicInteger maxActive = new AtomicInteger();
+        try (ConditionFanOutExecutor executor = ConditionFanOutExecutor.forDataSource(dataSource, Duration.ofSeconds(5), ParserOptions.defaults())) {
+            executor.execute(conditions(40), QueryWrapper::new, countMapper(new AtomicInteger(), maxActive));
+        }
+        assertTrue(maxActive.get() <= dataSource.getMaxActive(), "并发查询数不应超过连接池容量: " + maxActive.get());
+        assertTrue(maxActive.get() > 1, "应该有多个查询并发执行");
+    }
+
+    @Test
+    public void testTimeoutCancelsRemainingQueries() {
+        AtomicInteger completed = new AtomicInteger();
+        List<String> conditions = conditions(20);
+        conditions.set(0, "amount = -1");
+        Function<QueryWrapper<User>, Integer> mapper = wrapper -> {
+            try {
+                // 第一个条件模拟慢查询，其余查询也需要一段时间
+                Thread.sleep(wrapper.getSqlSegment().contains("amount =") ? 5_000 : 500);
+                completed.incrementAndGet();
+                return 0;
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("interrupted", e);
+            }
+        };
+
+        try (ConditionFanOutExecutor executor = new ConditionFanOutExecutor(20, Duration.ofMillis(100), ParserOptions.defaults())) {
+            long start = System.nanoTime();
+            ConditionExecutionException e = assertThrows(ConditionExecutionException.class,
+                    () -> executor.execute(conditions, QueryWrapper<User>::new, mapper));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertTrue(elapsedMillis < 2_000, "超时后应立即返回，实际耗时: " + elapsedMillis + " ms");
+            assertEquals(0, completed.get(), "其余查询应该被取消");
+        }
+    }
+
+    @Test
+    public void testParseFailureCancelsRemainingQueries() {
+        AtomicInteger completed = new AtomicInteger();
+        List<String> conditions = conditions(10);
+        conditions.add("amount >>> 1");
+        Function<QueryWrapper<User>, Integer> mapper = wrapper -> {
+            try {
+                Thread.sleep(2_000);
+                completed.incrementAndGet();
+                return 0;
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("interrupted", e);
+            }
+        };
+
+        try (ConditionFanOutExecutor executor = new ConditionFanOutExecutor(4, Duration.ofSeconds(10), ParserOptions.defaults())) {
+            ConditionExecutionException e = assertThrows(ConditionExecutionException.class,
+                    () -> executor.execute(conditions, QueryWrapper<User>::new, mapper));
+            assertEquals("amount >>> 1", e.getCondition());
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertEquals(0, completed.get());
+        }
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new ConditionFanOutExecutor(0, Duration.ofSeconds(1), ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> new ConditionFanOutExecutor(1, Duration.ZERO, ParserOptions.defaults()));
+    }
+
+    /**
+     * 基准测试：40 个条件顺序执行与并发执行的延迟对比
+     */
+    @Test
+    public void benchmarkLatencyAgainstSequential() {
+        List<String> conditions = conditions(40);
+        Function<QueryWrapper<User>, Integer> mapper = countMapper(new AtomicInteger(), new AtomicInteger());
+
+        long start = System.nanoTime();
+        List<Integer> sequential = new ArrayList<>();
+        for (String condition : conditions) {
+            sequential.add(mapper.apply(ConditionParser.parse(condition, new QueryWrapper<>())));
+        }
+        long sequentialMillis = (System.nanoTime() - start) / 1_000_000;
+
+        List<Integer> concurrent;
+        start = System.nanoTime();
+        try (ConditionFanOutExecutor executor = ConditionFanOutExecutor.forDataSource(dataSource, Duration.ofSeconds(5), ParserOptions.defaults())) {
+            concurrent = executor.execute(conditions, QueryWrapper::new, mapper);
+        }
+        long concurrentMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("并发执行基准测试 (40 个条件，连接池 " + dataSource.getMaxActive() + " 个连接):");
+        System.out.println("  顺序执行: " + sequentialMillis + " ms");
+        System.out.println("  并发执行: " + concurrentMillis + " ms");
+
+        assertEquals(sequential, concurrent);
+        assertTrue(concurrentMillis < sequentialMillis);
+    }
+}
@@ -0,0 +1,138 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionFingerprintTest {
+
+    private static final ParserOptions OPTIONS = ParserOptions.defaults();
+    private static final ParserOptions TAGGED = ParserOptions.defaults().withFingerprintComment(true);
+
+    private static String fingerprint(String condition) {
+        return ConditionFingerprint.of(condition, OPTIONS);
+    }
+
+    @Test
+    public void testSameShapeSameFingerprint() {
+        String base = fingerprint("status = 'PAID' AND amount > 100");
+        assertEquals(16, base.length());
+        assertTrue(base.matches("[0-9a-f]{16}"), base);
+        assertEquals(base, fingerprint("status = 'NEW' AND amount > 5"));
+        assertEquals(base, fingerprint("amount > 99.5 AND status = 'x'"));
+        assertEquals(base, fingerprint("`Status` = 'NEW' AND AMOUNT > -3"));
+        assertEquals(base, fingerprint("status = ? AND amount > ?"));
+        assertEquals(base, fingerprint("status = :status AND amount > :min"));
+
+        assertEquals(fingerprint("id IN (1)"), fingerprint("id IN (1, 2, 3, 4, 5)"));
+        assertEquals(fingerprint("a = 1 AND (b = 2 OR c = 3) AND d = 4"), fingerprint("d = 9 AND (c = 0 OR b = 0) AND a = 0"));
+        assertEquals(fingerprint("created_at > DATE_SUB(NOW(), INTERVAL 7 DAY)"),
+                fingerprint("created_at > date_sub(now(), INTERVAL 30 DAY)"));
+    }
+
+    @Test
+    public void testDifferentShapeDifferentFingerprint() {
+        String[] conditions = {
+                "status = 'PAID'",
+                "status != 'PAID'",
+                "state = 'PAID'",
+                "status IS NULL",
+                "status IS NOT NULL",
+                "status IN ('PAID')",
+                "status NOT IN ('PAID')",
+                "status LIKE 'P%'",
+                "amount BETWEEN 1 AND 2",
+                "NOT (status = 'PAID')",
+                "status = 'PAID' AND amount > 1",
+                "status = 'PAID' OR amount > 1",
+                "created_at > DATE_SUB(NOW(), INTERVAL 7 DAY)",
+                "created_at > DATE_SUB(NOW(), INTERVAL 7 HOUR)",
+                "o.status = 'PAID'",
+        };
+        for (int i = 0; i < conditions.length; i++) {
+            for (int j = i + 1; j < conditions.length; j++) {
+                assertNotEquals(fingerprint(conditions[i]), fingerprint(conditions[j]), conditions[i] + " / " + conditions[j]);
+            }
+        }
+    }
+
+    @Test
+    public void testFingerprintIsStable() {
+        // 指纹会写进日志和指标，算法或规范化规则变化时这里的值也会变化
+        assertEquals("((amount > ? AND status = ?) OR id IN (?))", ConditionFingerprint.canonical(
+                ConditionParser.parseToSQLExpr("id IN (7, 8) OR status = 'PAID' AND amount > 1", OPTIONS), DbType.mysql));
+        assertEquals("1dafd1975d7ea7f8", fingerprint("id IN (7, 8) OR status = 'PAID' AND amount > 1"));
+    }
+
+    @Test
+    public void testTagsWrapperAsComment() throws Exception {
+        String expected = fingerprint("status = 'PAID' AND amount > 100");
+
+        QueryWrapper<Object> untagged = ConditionParser.parse("status = 'PAID' AND amount > 100", new QueryWrapper<>());
+        assertNull(ConditionFingerprint.fromWrapper(untagged));
+
+        QueryWrapper<Object> tagged = ConditionParser.parse("status = 'NEW' AND amount > 7", new QueryWrapper<>(), TAGGED);
+        assertEquals("/* cond:" + expected + " */", tagged.getSqlComment());
+        assertEquals(expected, ConditionFingerprint.fromWrapper(tagged));
+
+        // 编码后的条件、预编译条件和编译后的条件得到同样的指纹
+        byte[] plan = ConditionCodec.encode("status = 'x' AND amount > 1", OPTIONS);
+        assertEquals(expected, ConditionFingerprint.fromWrapper(ConditionParser.parse(plan, new QueryWrapper<>(), TAGGED)));
+        PreparedCondition prepared = ConditionParser.prepare("status = :status AND amount > :min", TAGGED);
+        assertEquals(expected, prepared.getFingerprint());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("status", "PAID");
+        parameters.put("min", 10);
+        QueryWrapper<Object> applied = prepared.apply(new QueryWrapper<>(), parameters);
+        assertEquals(expected, ConditionFingerprint.fromWrapper(applied));
+        assertEquals(expected, CompiledCondition.compile("amount > 3 AND status = 'x'", TAGGED).getFingerprint());
+
+        CompiledCondition tenant = CompiledCondition.compile("tenant_id = 1", TAGGED);
+        CompiledCondition user = CompiledCondition.compile("status = 'PAID'", TAGGED);
+        assertEquals(tenant.and(user).getFingerprint(), user.and(tenant).getFingerprint());
+        assertNotEquals(tenant.and(user).getFingerprint(), tenant.or(user).getFingerprint());
+        assertEquals(tenant.and(user).getFingerprint(),
+                ConditionFingerprint.fromWrapper(tenant.and(user).apply(new QueryWrapper<>())));
+        assertNull(CompiledCondition.empty().apply(new QueryWrapper<>()).getSqlComment());
+
+        // 注释放在语句末尾，数据库照常执行
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:fingerprint")) {
+            JdbcTestSupport.execute(connection, "CREATE TABLE orders (id INT PRIMARY KEY, status VARCHAR(16), amount INT)",
+                    "INSERT INTO orders VALUES (1, 'NEW', 10), (2, 'NEW', 5), (3, 'PAID', 50)");
+            JdbcTestSupport.JdbcSql sql = JdbcTestSupport.toJdbcSql("SELECT id FROM orders", tagged);
+            assertEquals(1, JdbcTestSupport.countRows(connection,
+                    new JdbcTestSupport.JdbcSql(sql.sql + " " + tagged.getSqlComment(), sql.params)));
+            JdbcTestSupport.execute(connection, "DROP TABLE orders");
+        }
+    }
+
+    @Test
+    public void testFingerprintCost() {
+        String condition = "status IN ('PAID', 'NEW') AND amount BETWEEN 10 AND 500 AND (region = 'EU' OR vip = 1) "
+                + "AND created_at > DATE_SUB(NOW(), INTERVAL 7 DAY)";
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, OPTIONS);
+        int iterations = 20000;
+        for (int i = 0; i < iterations; i++) {
+            ConditionFingerprint.of(expr, DbType.mysql);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionFingerprint.of(expr, DbType.mysql);
+        }
+        long fingerprintNanos = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParser.parseToSQLExpr(condition, OPTIONS);
+        }
+        long parseNanos = (System.nanoTime() - start) / iterations;
+        System.out.println("计算指纹平均耗时: " + fingerprintNanos + " ns，解析条件平均耗时: " + parseNanos + " ns");
+    }
+}
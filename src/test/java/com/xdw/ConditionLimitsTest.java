@@ -0,0 +1,172 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.xdw.ConditionLimitExceededException.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionLimitsTest {
+
+    private static final ConditionLimits LIMITS = ConditionLimits.unlimited()
+            .withMaxLength(64 * 1024)
+            .withMaxTokens(2000)
+            .withMaxDepth(16)
+            .withMaxInListSize(1000)
+            .withMaxParameters(1500);
+    private static final ParserOptions OPTIONS = ParserOptions.defaults().withLimits(LIMITS);
+
+    @Test
+    public void testOversizedInputIsRejectedBeforeParsing() {
+        StringBuilder condition = new StringBuilder("name = '");
+        while (condition.length() < 5 * 1024 * 1024) {
+            condition.append("xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx");
+        }
+        condition.append('\'');
+        ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(condition.toString(), new QueryWrapper<>(), OPTIONS));
+        // 按长度拒绝，说明没有进入词法分析
+        assertEquals(Limit.LENGTH, e.getLimit());
+        assertEquals(condition.length(), e.getActual());
+        // 异常信息不包含原始输入
+        assertTrue(e.getMessage().length() < 200);
+    }
+
+    @Test
+    public void testHugeInListStopsAtLimit() {
+        StringBuilder condition = new StringBuilder("id IN (");
+        for (int i = 0; i < 1_000_000; i++) {
+            condition.append(i).append(',');
+        }
+        condition.append("0)");
+        ParserOptions options = OPTIONS.withLimits(LIMITS.withMaxLength(Integer.MAX_VALUE)
+                .withMaxTokens(Integer.MAX_VALUE).withMaxParameters(Integer.MAX_VALUE));
+        ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(condition.toString(), new QueryWrapper<>(), options));
+        assertEquals(Limit.IN_LIST_SIZE, e.getLimit());
+        assertEquals(1001, e.getActual());
+    }
+
+    @Test
+    public void testTokenDepthAndParameterLimits() {
+        assertLimit(Limit.TOKENS, chain(600, " AND "), OPTIONS);
+        assertLimit(Limit.DEPTH, repeat("(", 20) + "a = 1" + repeat(")", 20), OPTIONS);
+        assertLimit(Limit.PARAMETERS, chain(600, " AND "),
+                ParserOptions.defaults().withLimits(ConditionLimits.unlimited().withMaxParameters(500)));
+
+        // 限制内的条件正常解析
+        ConditionParser.parse(chain(300, " AND "), new QueryWrapper<>(), OPTIONS);
+        ConditionParser.parse(repeat("(", 15) + "a = 1" + repeat(")", 15), new QueryWrapper<>(), OPTIONS);
+    }
+
+    @Test
+    public void testQuotedTextIsNotCounted() {
+        ParserOptions options = ParserOptions.defaults().withLimits(ConditionLimits.unlimited().withMaxInListSize(2).withMaxDepth(1));
+        QueryWrapper<Object> wrapper = ConditionParser.parse("name IN ('a,b,c', 'd(e(f') AND `we,ird` = 'x'", new QueryWrapper<>(), options);
+        wrapper.getSqlSegment();
+        assertEquals(3, wrapper.getParamNameValuePairs().size());
+        // 嵌套的普通括号不是 IN 列表
+        ConditionParser.parse("a IN (1, 2) AND b = 1", new QueryWrapper<>(), options);
+        assertLimit(Limit.IN_LIST_SIZE, "a NOT IN (1, 2, 3)", options);
+    }
+
+    @Test
+    public void testLimitsApplyToAllEntryPoints() {
+        String condition = repeat("(", 20) + "a = :a" + repeat(")", 20);
+        assertThrows(ConditionLimitExceededException.class, () -> ConditionParser.prepare(condition, OPTIONS));
+        assertThrows(ConditionLimitExceededException.class, () -> CompiledCondition.compile(condition, OPTIONS));
+        assertThrows(ConditionLimitExceededException.class, () -> new RangeAnalyzer(OPTIONS).analyze(condition));
+
+        // 绑定到 IN 占位符的集合同样受限
+        PreparedCondition prepared = ConditionParser.prepare("id IN (:ids)", OPTIONS);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            ids.add(i);
+        }
+        ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                () -> prepared.apply(new QueryWrapper<>(), Collections.singletonMap("ids", ids)));
+        assertEquals(Limit.IN_LIST_SIZE, e.getLimit());
+
+        // 客户端发送的二进制编码在解码时检查
+        byte[] plan = ConditionCodec.encode(chain(600, " OR "), ParserOptions.defaults());
+        assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults()
+                        .withLimits(ConditionLimits.unlimited().withMaxParameters(500))));
+        assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(plan, new QueryWrapper<>(), OPTIONS));
+        ConditionParser.parse(plan, new QueryWrapper<>(), ParserOptions.defaults());
+    }
+
+    @Test
+    public void testPerCallerConcurrentParseLimit() throws Exception {
+        ConditionParseLimiter limiter = new ConditionParseLimiter(2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> running = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                running.add(executor.submit(() -> limiter.run("tenant-a", () -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 1;
+                })));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(2, limiter.inFlight("tenant-a"));
+
+            ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                    () -> limiter.parse("tenant-a", "a = 1", new QueryWrapper<>(), ParserOptions.defaults()));
+            assertEquals(Limit.CONCURRENT_PARSES, e.getLimit());
+            // 其他调用方不受影响
+            limiter.parse("tenant-b", "a = 1", new QueryWrapper<>(), ParserOptions.defaults());
+
+            release.countDown();
+            for (Future<Integer> future : running) {
+                assertEquals(1, future.get());
+            }
+            assertEquals(0, limiter.inFlight("tenant-a"));
+            limiter.parse("tenant-a", "a = 1", new QueryWrapper<>(), ParserOptions.defaults());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertLimit(Limit limit, String condition, ParserOptions options) {
+        ConditionLimitExceededException e = assertThrows(ConditionLimitExceededException.class,
+                () -> ConditionParser.parse(condition, new QueryWrapper<>(), options));
+        assertEquals(limit, e.getLimit(), condition.length() > 80 ? condition.substring(0, 80) : condition);
+    }
+
+    private static String chain(int clauses, String connective) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < clauses; i++) {
+            if (i > 0) {
+                sb.append(connective);
+            }
+            sb.append("c").append(i).append(" = ").append(i);
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -3,6 +3,8 @@ package com.xdw;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -282,4 +284,12 @@ public class ConditionParserTest {
         assertTrue(wrapper.getParamNameValuePairs().containsValue("John"));
         assertTrue(wrapper.getParamNameValuePairs().containsValue(18));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIntegerLiteralsKeepPrecision() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("a = 7 AND b = 3000000000 AND c = -9223372036854775808 AND d = 92233720368547758070", wrapper);
+        assertEquals(Arrays.asList(7, 3000000000L, Long.MIN_VALUE, new BigInteger("92233720368547758070")),
+                JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+    }
+}
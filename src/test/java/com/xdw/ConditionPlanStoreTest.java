@@ -0,0 +1,106 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionPlanStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testPlansSurviveReopen() throws Exception {
+        Path file = dir.resolve("plans.bin");
+        byte[] plan;
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            plan = store.compile("status = 'PAID' AND amount > 100");
+            store.compile("name LIKE 'Jo%'");
+            store.compile("status = 'PAID' AND amount > 100");
+            assertEquals(2, store.size());
+        }
+
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            assertEquals(2, store.size());
+            assertTrue(store.contains("  status = 'PAID' AND amount > 100 "));
+            assertArrayEquals(plan, store.compile("status = 'PAID' AND amount > 100"));
+
+            QueryWrapper<Object> wrapper = store.parse("name LIKE 'Jo%'", new QueryWrapper<>());
+            QueryWrapper<Object> expected = ConditionParser.parse("name LIKE 'Jo%'", new QueryWrapper<>());
+            assertEquals(expected.getSqlSegment(), wrapper.getSqlSegment());
+        }
+    }
+
+    @Test
+    public void testStoreGrowsBeyondInitialMapping() throws Exception {
+        Path file = dir.resolve("plans.bin");
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            padding.append('x');
+        }
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            for (int i = 0; i < 1000; i++) {
+                store.compile("id = " + i + " AND note = '" + padding + "'");
+            }
+            assertEquals(1000, store.size());
+        }
+        assertTrue(Files.size(file) > (1 << 20));
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            assertEquals(1000, store.size());
+            assertTrue(store.contains("id = 999 AND note = '" + padding + "'"));
+        }
+    }
+
+    @Test
+    public void testUncommittedRecordIsIgnored() throws Exception {
+        Path file = dir.resolve("plans.bin");
+        long committed;
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            store.compile("a = 1");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(16);
+                channel.read(header, 0);
+                committed = header.getLong(8);
+            }
+            store.compile("b = 2");
+        }
+        // 模拟写入第二条记录后、提交末尾位置前进程退出
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer end = ByteBuffer.allocate(8).putLong(0, committed);
+            channel.write(end, 8);
+        }
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            assertEquals(1, store.size());
+            assertTrue(store.contains("a = 1"));
+            assertFalse(store.contains("b = 2"));
+            store.compile("c = 3");
+        }
+        try (ConditionPlanStore store = ConditionPlanStore.open(file, ParserOptions.defaults())) {
+            assertEquals(2, store.size());
+            assertTrue(store.contains("c = 3"));
+        }
+    }
+
+    @Test
+    public void testForeignFileIsRejected() throws Exception {
+        Path file = dir.resolve("other.bin");
+        Files.write(file, "not a plan store at all".getBytes());
+        assertThrows(IllegalStateException.class, () -> ConditionPlanStore.open(file, ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testInvalidConditionIsNotStored() throws Exception {
+        try (ConditionPlanStore store = ConditionPlanStore.open(dir.resolve("plans.bin"), ParserOptions.defaults())) {
+            assertThrows(IllegalArgumentException.class, () -> store.compile("a <> 1"));
+            assertEquals(0, store.size());
+        }
+    }
+}
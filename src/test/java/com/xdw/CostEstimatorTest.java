@@ -0,0 +1,185 @@
+package com.xdw;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CostEstimatorTest {
+
+    private static final int ROWS = 10000;
+
+    private Connection connection;
+    private TableStatistics statistics;
+    private CostEstimator estimator;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:cost");
+        // amount 均匀分布；score 有 70% 的行等于 1；note 每 7 行有一个 NULL
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE orders (id INT PRIMARY KEY, amount INT, score INT, status VARCHAR(16), "
+                        + "note VARCHAR(32), created_at DATE)",
+                "CREATE INDEX idx_orders_amount ON orders (amount)",
+                "INSERT INTO orders SELECT X, MOD(X * 37, 1000), "
+                        + "CASEWHEN(MOD(X, 10) < 7, 1, MOD(X * 13, 500)), "
+                        + "CASEWHEN(MOD(X, 3) = 0, 'PAID', CASEWHEN(MOD(X, 3) = 1, 'NEW', 'CLOSED')), "
+                        + "CASEWHEN(MOD(X, 7) = 0, NULL, 'note ' || X), "
+                        + "DATEADD('DAY', MOD(X, 365), DATE '2024-01-01') FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        statistics = TableStatistics.collect(connection, "orders", 100);
+        estimator = new CostEstimator(statistics, ParserOptions.defaults());
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE orders");
+        connection.close();
+    }
+
+    private int actualRows(String condition) throws SQLException {
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+        ConditionParser.parse(condition, wrapper);
+        return JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM orders", wrapper));
+    }
+
+    @Test
+    public void testCollectsStatistics() {
+        assertEquals(ROWS, statistics.getRowCount());
+        assertEquals(1000, statistics.getColumn("amount").getDistinctCount());
+        assertEquals(3, statistics.getColumn("STATUS").getDistinctCount());
+        assertEquals(1.0 / 7, statistics.getColumn("note").getNullFraction(), 0.001);
+        assertEquals(101, statistics.getColumn("amount").getHistogram().size());
+        assertTrue(statistics.isIndexed("id"));
+        assertTrue(statistics.isIndexed("amount"));
+        assertFalse(statistics.isIndexed("status"));
+    }
+
+    @Test
+    public void testEstimatesMatchActualCounts() throws SQLException {
+        List<String> conditions = Arrays.asList(
+                "amount < 100",
+                "amount BETWEEN 200 AND 299",
+                "amount IN (1, 2, 3)",
+                "amount >= 950",
+                "status = 'PAID'",
+                "status != 'PAID'",
+                "note IS NULL",
+                "note IS NOT NULL",
+                "score = 1",
+                "score > 250",
+                "score NOT IN (1)",
+                "amount > 500 AND status = 'NEW'",
+                "amount < 50 OR amount > 950",
+                "NOT (amount < 900)",
+                "created_at >= '2024-07-01'",
+                "note LIKE 'note 1%'",
+                "note NOT LIKE 'note 1%'");
+        for (String condition : conditions) {
+            long estimated = estimator.estimate(condition).getRows();
+            int actual = actualRows(condition);
+            // 允许 20% 的相对误差，或总行数 1% 的绝对误差
+            double tolerance = Math.max(actual * 0.2, ROWS * 0.01);
+            System.out.println(String.format("%-40s 估算 %6d 行，实际 %6d 行", condition, estimated, actual));
+            assertEquals(actual, estimated, tolerance, condition);
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        Path snapshot = tempDir.resolve("orders.properties");
+        statistics.save(snapshot);
+        TableStatistics loaded = TableStatistics.load(snapshot);
+        assertEquals(statistics.getRowCount(), loaded.getRowCount());
+        assertEquals(statistics.getIndexedColumns(), loaded.getIndexedColumns());
+
+        CostEstimator fromSnapshot = new CostEstimator(loaded, ParserOptions.defaults());
+        for (String condition : Arrays.asList("amount < 100", "score = 1", "created_at >= '2024-07-01'",
+                "note LIKE 'note 1%'", "status IN ('NEW', 'CLOSED')")) {
+            assertEquals(estimator.estimate(condition).getSelectivity(), fromSnapshot.estimate(condition).getSelectivity(),
+                    1e-9, condition);
+        }
+    }
+
+    @Test
+    public void testScannedRowsAndLanes() {
+        // 走 amount 上的索引
+        CostEstimator.Estimate indexed = estimator.estimate("amount BETWEEN 10 AND 19 AND status = 'PAID'");
+        assertEquals(100, indexed.getScannedRows(), 10);
+        assertEquals(33, indexed.getRows(), 10);
+        assertEquals(1, estimator.estimate("id = 42").getScannedRows());
+
+        // 字段上没有索引，或 OR 的一侧无法走索引，都要全表扫描
+        assertEquals(ROWS, estimator.estimate("status = 'PAID'").getScannedRows());
+        assertEquals(ROWS, estimator.estimate("amount < 10 OR status = 'PAID'").getScannedRows());
+        assertEquals(200, estimator.estimate("amount < 10 OR amount >= 990").getScannedRows(), 20);
+
+        assertEquals(CostEstimator.Lane.FAST, estimator.classify("amount = 7", 1000, 5000));
+        assertEquals(CostEstimator.Lane.SLOW, estimator.classify("amount < 300", 1000, 5000));
+        assertEquals(CostEstimator.Lane.REJECTED, estimator.classify("note LIKE '%1%'", 1000, 5000));
+        assertThrows(IllegalArgumentException.class, () -> estimator.classify("amount = 7", 5000, 1000));
+    }
+
+    @Test
+    public void testColumnsWithoutStatisticsUseDefaults() {
+        TableStatistics empty = new TableStatistics("orders", 1000, Collections.emptyList(), Collections.emptyList());
+        CostEstimator defaults = new CostEstimator(empty, ParserOptions.defaults());
+        assertEquals(CostEstimator.DEFAULT_EQUALITY_SELECTIVITY, defaults.estimate("status = 'PAID'").getSelectivity(), 1e-9);
+        assertEquals(CostEstimator.DEFAULT_RANGE_SELECTIVITY, defaults.estimate("amount > 10").getSelectivity(), 1e-9);
+        assertEquals(1, defaults.estimate("").getSelectivity(), 1e-9);
+        assertEquals(0, defaults.estimate("amount = NULL").getSelectivity(), 1e-9);
+
+        // 子查询和全文检索无法由本表的统计信息估算
+        assertEquals(CostEstimator.DEFAULT_SUBQUERY_SELECTIVITY,
+                defaults.estimate("customer_id IN (SELECT id FROM customers)").getSelectivity(), 1e-9);
+        assertEquals(1 - CostEstimator.DEFAULT_SUBQUERY_SELECTIVITY,
+                defaults.estimate("NOT EXISTS (SELECT 1 FROM customers)").getSelectivity(), 1e-9);
+        assertEquals(CostEstimator.DEFAULT_MATCH_SELECTIVITY,
+                defaults.estimate("MATCH (note) AGAINST ('mysql')").getSelectivity(), 1e-9);
+        assertEquals(1000, defaults.estimate("MATCH (note) AGAINST ('mysql')").getScannedRows());
+    }
+
+    @Test
+    public void testOrderForEvaluation() throws SQLException {
+        String condition = "note IS NOT NULL AND status != 'CLOSED' AND amount = 7 AND (score = 1 OR amount < 5)";
+        SQLExpr expr = ConditionParser.parseToSQLExpr(condition, ParserOptions.defaults());
+        String original = expr.toString();
+        SQLExpr ordered = estimator.orderForEvaluation(expr);
+        assertEquals(original, expr.toString());
+        assertTrue(ordered.toString().startsWith("amount = 7"), ordered.toString());
+        assertTrue(ordered.toString().indexOf("score = 1") < ordered.toString().indexOf("amount < 5"), ordered.toString());
+
+        List<Map<String, Object>> rows = JdbcTestSupport.queryRows(connection,
+                new JdbcTestSupport.JdbcSql("SELECT id, amount, score, status, note FROM orders", Collections.emptyList()));
+        ConditionEvaluator evaluator = new ConditionEvaluator(ParserOptions.defaults(), false);
+        assertEquals(evaluator.filter(expr, rows), evaluator.filter(ordered, rows));
+
+        // 选择率低的条件排在前面时，大部分行在第一个条件就被短路
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            evaluator.filter(expr, rows);
+        }
+        long originalNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            evaluator.filter(ordered, rows);
+        }
+        long orderedNanos = System.nanoTime() - start;
+        System.out.println("原顺序求值耗时: " + originalNanos / 1_000_000 + " ms，按选择率排序后: " + orderedNanos / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,197 @@
+package com.xdw;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DebugTraceScopeTest {
+
+    private DebugTraceSink previousSink;
+    private DebugTracePolicy previousPolicy;
+    private DebugTraceSink sink;
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    public void setUp() {
+        Logger logger = (Logger) LoggerFactory.getLogger("com.xdw.DebugTraceScopeTest");
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+        logger.detachAndStopAllAppenders();
+        appender = new ListAppender<>();
+        appender.setContext(logger.getLoggerContext());
+        appender.start();
+        logger.addAppender(appender);
+        sink = new DebugTraceSink(1 << 16, logger);
+        previousSink = ConditionParserForDebug.getTraceSink();
+        previousPolicy = ConditionParserForDebug.getTracePolicy();
+        ConditionParserForDebug.setTraceSink(sink);
+        ConditionParserForDebug.setDebugEnabled(false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ConditionParserForDebug.setTraceSink(previousSink);
+        ConditionParserForDebug.setTracePolicy(previousPolicy);
+        sink.close();
+    }
+
+    private List<String> messages() {
+        sink.flush();
+        return appender.list.stream().map(ILoggingEvent::getFormattedMessage).collect(Collectors.toList());
+    }
+
+    private List<String> traced(String marker) {
+        return messages().stream().filter(m -> m.contains("原始条件: ") && m.contains(marker)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testScopeTracesOnlyItsThread() throws Exception {
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 20; i++) {
+                ConditionParserForDebug.parse("tenant = 'other' AND id = " + i, new QueryWrapper<>());
+            }
+        });
+        try (DebugTraceScope scope = DebugTraceScope.open("tenant-42", DebugTracePolicy.all())) {
+            assertSame(scope, DebugTraceScope.current());
+            ConditionParserForDebug.parse("tenant = 'mine' AND id = 1", new QueryWrapper<>());
+        }
+        other.get();
+        assertNull(DebugTraceScope.current());
+        ConditionParserForDebug.parse("tenant = 'after' AND id = 2", new QueryWrapper<>());
+
+        List<String> messages = messages();
+        assertTrue(messages.contains("[tenant-42] 原始条件: tenant = 'mine' AND id = 1"), messages.toString());
+        assertTrue(messages.stream().allMatch(m -> m.startsWith("[tenant-42] ")), messages.toString());
+        assertTrue(traced("other").isEmpty());
+        assertTrue(traced("after").isEmpty());
+
+        // 全局开关仍然有效，范围可以关闭跟踪
+        ConditionParserForDebug.setDebugEnabled(true);
+        ConditionParserForDebug.parse("tenant = 'global'", new QueryWrapper<>());
+        try (DebugTraceScope quiet = DebugTraceScope.open("quiet", null)) {
+            assertNull(quiet.getPolicy());
+            ConditionParserForDebug.parse("tenant = 'quiet'", new QueryWrapper<>());
+        }
+        assertTrue(messages().contains("原始条件: tenant = 'global'"));
+        assertTrue(traced("quiet").isEmpty());
+    }
+
+    @Test
+    public void testNestedScopesRestoreOuter() {
+        try (DebugTraceScope outer = DebugTraceScope.open("outer", DebugTracePolicy.all())) {
+            try (DebugTraceScope inner = DebugTraceScope.open("inner", DebugTracePolicy.all())) {
+                assertSame(inner, DebugTraceScope.current());
+                assertThrows(IllegalStateException.class, outer::close);
+                ConditionParserForDebug.parse("a = 1", new QueryWrapper<>());
+            }
+            assertSame(outer, DebugTraceScope.current());
+            ConditionParserForDebug.parse("b = 2", new QueryWrapper<>());
+        }
+        assertNull(DebugTraceScope.current());
+        List<String> messages = messages();
+        assertTrue(messages.contains("[inner] 原始条件: a = 1"));
+        assertTrue(messages.contains("[outer] 原始条件: b = 2"));
+    }
+
+    @Test
+    public void testSamplingTracesAboutOneInN() {
+        ConditionParserForDebug.setTracePolicy(DebugTracePolicy.all().withSampling(10));
+        int parses = 2000;
+        for (int i = 0; i < parses; i++) {
+            QueryWrapper<Object> wrapper = ConditionParserForDebug.parse("sampled = " + i, new QueryWrapper<>());
+            // 没有被抽中的解析结果不变
+            assertEquals(ConditionParser.parse("sampled = " + i, new QueryWrapper<>()).getSqlSegment(), wrapper.getSqlSegment());
+        }
+        int traced = traced("sampled").size();
+        assertTrue(traced > 100 && traced < 300, Integer.toString(traced));
+        assertThrows(IllegalArgumentException.class, () -> DebugTracePolicy.all().withSampling(0));
+    }
+
+    @Test
+    public void testFingerprintAndDurationTriggers() {
+        String fingerprint = ConditionFingerprint.of("status = 'x' AND amount > 1", ParserOptions.defaults());
+        try (DebugTraceScope scope = DebugTraceScope.open("fp", DebugTracePolicy.all().withFingerprints(fingerprint))) {
+            assertTrue(scope.getPolicy().hasFingerprints());
+            ConditionParserForDebug.parse("status = 'PAID' AND amount > 100", new QueryWrapper<>());
+            ConditionParserForDebug.parse("amount > 5 AND status = 'NEW'", new QueryWrapper<>());
+            ConditionParserForDebug.parse("status = 'PAID' OR amount > 100", new QueryWrapper<>());
+        }
+        assertEquals(2, traced("amount").size(), messages().toString());
+        assertTrue(traced("OR").isEmpty());
+        assertTrue(messages().stream().anyMatch(m -> m.startsWith("[fp] 解析耗时: ")));
+
+        appender.list.clear();
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try (DebugTraceScope scope = DebugTraceScope.open("slow", DebugTracePolicy.all().withMinDuration(Duration.ofHours(1)))) {
+            assertTrue(scope.getPolicy().isDeferred());
+            ConditionParserForDebug.parse("fast = 1", new QueryWrapper<>());
+            // 解析失败时总是输出
+            assertThrows(IllegalArgumentException.class, () -> ConditionParserForDebug.parse("broken = ", new QueryWrapper<>()));
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(traced("fast").isEmpty());
+        assertEquals(1, traced("broken").size());
+        assertTrue(messages().stream().anyMatch(m -> m.startsWith("[slow] 解析失败: ")));
+        // 堆栈经缓冲区输出，不直接写 System.err
+        assertTrue(messages().stream().anyMatch(m -> m.startsWith("[slow] ") && m.contains("\tat com.xdw.ConditionParserForDebug")),
+                messages().toString());
+        assertEquals(0, captured.size(), captured.toString());
+
+        appender.list.clear();
+        try (DebugTraceScope scope = DebugTraceScope.open("any", DebugTracePolicy.all().withMinDuration(Duration.ZERO.plusNanos(1)))) {
+            assertEquals("any", scope.getLabel());
+            ConditionParserForDebug.parse("slow = 1", new QueryWrapper<>());
+        }
+        assertEquals(1, traced("slow = 1").size());
+    }
+
+    /**
+     * 基准测试：未被跟踪的解析不再构造代价较高的调试消息
+     */
+    @Test
+    public void benchmarkUntracedParse() {
+        String condition = "name = 'John' AND age > 18 AND status IN ('NEW', 'PAID') AND (city LIKE 'Bei%' OR vip = 1)";
+        int iterations = 5000;
+        for (int i = 0; i < iterations; i++) {
+            ConditionParserForDebug.parse(condition, new QueryWrapper<>());
+            ConditionParser.parse(condition, new QueryWrapper<>());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParserForDebug.parse(condition, new QueryWrapper<>());
+        }
+        long untraced = (System.nanoTime() - start) / iterations;
+        ConditionParserForDebug.setTracePolicy(DebugTracePolicy.all().withSampling(100));
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParserForDebug.parse(condition, new QueryWrapper<>());
+        }
+        long sampled = (System.nanoTime() - start) / iterations;
+        ConditionParserForDebug.setTracePolicy(DebugTracePolicy.all());
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParserForDebug.parse(condition, new QueryWrapper<>());
+        }
+        long traced = (System.nanoTime() - start) / iterations;
+        System.out.println("调试解析器平均耗时：不跟踪 " + untraced + " ns，每 100 次抽样一次 " + sampled
+                + " ns，全部跟踪 " + traced + " ns（丢弃 " + sink.getDropped() + " 条）");
+    }
+}
@@ -0,0 +1,248 @@
+package com.xdw;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DebugTraceSinkTest {
+
+    /**
+     * 测试专用的 Logger，不向上传递，避免刷屏
+     */
+    private static Logger logger(String name, AppenderBase<ILoggingEvent> appender) {
+        Logger logger = (Logger) LoggerFactory.getLogger("com.xdw.DebugTraceSinkTest." + name);
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+        appender.setContext(logger.getLoggerContext());
+        appender.start();
+        logger.addAppender(appender);
+        return logger;
+    }
+
+    @Test
+    public void testMessagesReachLoggerInOrder() {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        try (DebugTraceSink sink = new DebugTraceSink(64, logger("order", appender))) {
+            assertEquals(64, sink.getCapacity());
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(sink.offer("message " + i) || sink.getDropped() > 0);
+                if (i % 50 == 0) {
+                    sink.flush();
+                }
+            }
+            sink.flush();
+            assertEquals(1000, sink.getWritten() + sink.getDropped());
+        }
+        List<String> messages = new ArrayList<>();
+        for (ILoggingEvent event : appender.list) {
+            assertEquals(Level.DEBUG, event.getLevel());
+            messages.add(event.getFormattedMessage());
+        }
+        assertEquals("message 0", messages.get(0));
+        for (int i = 1; i < messages.size(); i++) {
+            int previous = Integer.parseInt(messages.get(i - 1).substring(8));
+            assertTrue(Integer.parseInt(messages.get(i).substring(8)) > previous, messages.toString());
+        }
+    }
+
+    @Test
+    public void testOverflowDropsAndCounts() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new ArrayList<>();
+        AppenderBase<ILoggingEvent> slow = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.add(event.getFormattedMessage());
+            }
+        };
+        DebugTraceSink sink = new DebugTraceSink(8, logger("overflow", slow));
+        // 写线程卡在第一条消息上，之后只能再缓冲 8 条
+        assertTrue(sink.offer("first"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sink.offer("m" + i)) {
+                accepted++;
+            }
+        }
+        assertEquals(8, accepted);
+        assertEquals(92, sink.getDropped());
+
+        release.countDown();
+        sink.close();
+        assertEquals(9, written.size());
+        assertEquals("m7", written.get(8));
+        assertFalse(sink.offer("after close"));
+        assertEquals(93, sink.getDropped());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        int threads = 8;
+        int perThread = 5000;
+        try (DebugTraceSink sink = new DebugTraceSink(1024, logger("concurrent", appender));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        sink.offer(thread + ":" + i);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+            sink.flush();
+            assertEquals(threads * perThread, sink.getWritten() + sink.getDropped());
+        }
+        // 每个线程自己的消息保持顺序，没有重复
+        int[] last = new int[threads];
+        java.util.Arrays.fill(last, -1);
+        for (ILoggingEvent event : appender.list) {
+            String[] parts = event.getFormattedMessage().split(":");
+            int thread = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            assertTrue(index > last[thread], event.getFormattedMessage());
+            last[thread] = index;
+        }
+    }
+
+    @Test
+    public void testCloseDuringOfferLosesNothing() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            ListAppender<ILoggingEvent> appender = new ListAppender<>();
+            DebugTraceSink sink = new DebugTraceSink(1 << 16, logger("close" + round, appender));
+            int threads = 4;
+            int perThread = 2000;
+            CountDownLatch started = new CountDownLatch(threads);
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                for (int t = 0; t < threads; t++) {
+                    executor.submit(() -> {
+                        started.countDown();
+                        for (int i = 0; i < perThread; i++) {
+                            sink.offer("m" + i);
+                        }
+                    });
+                }
+                started.await();
+                sink.close();
+            }
+            // 关闭前后放入的每条消息要么写出，要么计入丢弃
+            assertEquals(threads * perThread, sink.getWritten() + sink.getDropped(), "round " + round);
+            assertEquals(sink.getWritten(), appender.list.size());
+        }
+    }
+
+    @Test
+    public void testIdleWriterIsWokenByOffer() throws Exception {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        try (DebugTraceSink sink = new DebugTraceSink(16, logger("idle", appender))) {
+            for (int i = 0; i < 20; i++) {
+                // 写线程空闲时挂起，由下一条消息唤醒
+                Thread.sleep(5);
+                assertTrue(sink.offer("wake " + i));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (sink.getWritten() < i + 1 && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                assertEquals(i + 1, sink.getWritten());
+            }
+        }
+    }
+
+    @Test
+    public void testDebugParserWritesThroughSink() {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        DebugTraceSink previous = ConditionParserForDebug.getTraceSink();
+        try (DebugTraceSink sink = new DebugTraceSink(1024, logger("parser", appender))) {
+            ConditionParserForDebug.setTraceSink(sink);
+            ConditionParserForDebug.setDebugEnabled(true);
+            ConditionParserForDebug.parse("name = 'John' AND age > 18", new QueryWrapper<>());
+            sink.flush();
+            assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().equals("原始条件: name = 'John' AND age > 18")));
+            assertTrue(appender.list.stream().anyMatch(e -> e.getFormattedMessage().startsWith("解析完成")));
+        } finally {
+            ConditionParserForDebug.setTraceSink(previous);
+        }
+    }
+
+    /**
+     * 基准测试：开启调试时多个虚拟线程并发解析，对比直接写 System.out 与写入异步缓冲区的吞吐量
+     * 两种方式最终都写到同一种丢弃输出的 PrintStream，差别只在解析线程是否在输出流的锁上排队
+     */
+    @Test
+    public void benchmarkDebugThroughput() throws Exception {
+        String condition = "name = 'John' AND age > 18 AND status IN ('NEW', 'PAID') AND (city LIKE 'Bei%' OR vip = 1)";
+        int threads = 16;
+        int perThread = 200;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        AppenderBase<ILoggingEvent> printer = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                discard.println("[DEBUG] " + event.getFormattedMessage());
+            }
+        };
+        DebugTraceSink previous = ConditionParserForDebug.getTraceSink();
+        PrintStream out = System.out;
+        ConditionParserForDebug.setDebugEnabled(true);
+        try (DebugTraceSink sink = new DebugTraceSink(1 << 16, logger("benchmark", printer))) {
+            System.setOut(discard);
+            ConditionParserForDebug.setTraceSink(null);
+            run(condition, threads, perThread);
+            long direct = run(condition, threads, perThread);
+
+            ConditionParserForDebug.setTraceSink(sink);
+            run(condition, threads, perThread);
+            long buffered = run(condition, threads, perThread);
+            sink.flush();
+            System.setOut(out);
+
+            int parses = threads * perThread;
+            System.out.println("开启调试、" + threads + " 个虚拟线程并发解析 " + parses + " 次：");
+            System.out.println("  直接写 System.out: " + direct / 1_000_000 + " ms，" + parses * 1_000_000_000L / direct + " 次/秒");
+            System.out.println("  写入异步缓冲区:    " + buffered / 1_000_000 + " ms，" + parses * 1_000_000_000L / buffered
+                    + " 次/秒，丢弃 " + sink.getDropped() + " 条，写出 " + sink.getWritten() + " 条");
+        } finally {
+            System.setOut(out);
+            ConditionParserForDebug.setTraceSink(previous);
+        }
+    }
+
+    private static long run(String condition, int threads, int perThread) throws InterruptedException {
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ConditionParserForDebug.parse(condition, new QueryWrapper<>());
+                    }
+                });
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,167 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DialectTest {
+
+    static class User {
+        // 测试用实体类
+    }
+
+    private static final ParserOptions POSTGRESQL = ParserOptions.defaults().withDbType(DbType.postgresql);
+
+    @Test
+    public void testPostgresInListBindsSingleArray() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("id IN (1, 2, 3)", wrapper, POSTGRESQL);
+
+        String sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("id = ANY(#{ew.paramNameValuePairs."), "SQL should use = ANY(?), but got: " + sqlSegment);
+        assertEquals(1, wrapper.getParamNameValuePairs().size());
+        Object param = wrapper.getParamNameValuePairs().values().iterator().next();
+        assertArrayEquals(new Integer[]{1, 2, 3}, (Object[]) param);
+        assertEquals(Integer[].class, param.getClass());
+    }
+
+    @Test
+    public void testPostgresNotInUsesAll() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("status NOT IN ('A', 'B')", wrapper, POSTGRESQL);
+
+        String sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("status <> ALL(#{ew.paramNameValuePairs."), sqlSegment);
+        Object param = wrapper.getParamNameValuePairs().values().iterator().next();
+        assertEquals(String[].class, param.getClass());
+    }
+
+    @Test
+    public void testPostgresShapeIndependentOfListSize() {
+        String small = ConditionParser.parse(inCondition(0, 3), new QueryWrapper<User>(), POSTGRESQL).getSqlSegment();
+        String large = ConditionParser.parse(inCondition(0, 300), new QueryWrapper<User>(), POSTGRESQL).getSqlSegment();
+        assertEquals(small, large);
+
+        // 数组绑定本身就是固定形状，不需要再分桶补齐
+        QueryWrapper<User> wrapper = ConditionParser.parse(inCondition(0, 3), new QueryWrapper<>(),
+                POSTGRESQL.withInListBucketing(InListBucketing.powersOfTwo()));
+        wrapper.getSqlSegment();
+        assertEquals(3, ((Object[]) wrapper.getParamNameValuePairs().values().iterator().next()).length);
+    }
+
+    @Test
+    public void testMixedTypesFallBackToPerElementBinding() {
+        // Object[] 无法绑定为有类型的 PostgreSQL 数组，退回展开的 IN 列表
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("code IN (1, 'A')", wrapper, POSTGRESQL);
+        assertTrue(wrapper.getSqlSegment().contains("code IN (#{ew.paramNameValuePairs."), wrapper.getSqlSegment());
+        assertEquals(2, wrapper.getParamNameValuePairs().size());
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("code NOT IN (NULL, NULL)", wrapper, POSTGRESQL);
+        assertTrue(wrapper.getSqlSegment().contains("code NOT IN (#{ew.paramNameValuePairs."), wrapper.getSqlSegment());
+    }
+
+    @Test
+    public void testPreparedInListFollowsBoundTypes() {
+        PreparedCondition prepared = PreparedCondition.prepare("code IN (1, :code)", POSTGRESQL);
+        for (Object code : new Object[]{2, "A"}) {
+            SqlFragment expected = prepared.bind(Map.of("code", code)).toSqlFragment();
+            SqlFragment actual = prepared.toSqlFragment(Map.of("code", code));
+            assertEquals(expected.getSql(), actual.getSql());
+            assertEquals(expected.getParameters().size(), actual.getParameters().size());
+        }
+        assertTrue(prepared.toSqlFragment(Map.of("code", 2)).getSql().contains("= ANY("));
+        assertTrue(prepared.toSqlFragment(Map.of("code", "A")).getSql().contains(" IN ("));
+    }
+
+    @Test
+    public void testPushedDownSysdateFollowsDialect() {
+        ParserOptions pushDown = ParserOptions.defaults().withTimeFunctionPolicy(TimeFunctionPolicy.PUSH_DOWN);
+        String postgres = ConditionParser.parse("created_at > sysdate()", new QueryWrapper<User>(),
+                pushDown.withDbType(DbType.postgresql)).getSqlSegment();
+        assertTrue(postgres.contains("created_at > clock_timestamp()"), postgres);
+        String mysql = ConditionParser.parse("created_at > sysdate()", new QueryWrapper<User>(),
+                pushDown.withDbType(DbType.mysql)).getSqlSegment();
+        assertTrue(mysql.contains("created_at > SYSDATE()"), mysql);
+    }
+
+    @Test
+    public void testMysqlKeepsPerElementBinding() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("id IN (1, 2, 3)", wrapper, ParserOptions.defaults().withDbType(DbType.mysql));
+        assertTrue(wrapper.getSqlSegment().contains("id IN (#{ew.paramNameValuePairs."));
+        assertEquals(3, wrapper.getParamNameValuePairs().size());
+    }
+
+    @Test
+    public void testPostgresParsingOfCondition() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("name = 'John' AND (age > 18 OR id IN (7, 8))", wrapper, POSTGRESQL);
+        String sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("name = #{ew.paramNameValuePairs."));
+        assertTrue(sqlSegment.contains("id = ANY(#{ew.paramNameValuePairs."));
+        assertEquals(3, wrapper.getParamNameValuePairs().size());
+    }
+
+    /**
+     * 基准测试：大 IN 列表下，逐个元素绑定与数组绑定的耗时和结果对比
+     */
+    @Test
+    public void benchmarkLargeInLists() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:dialect;MODE=PostgreSQL")) {
+            JdbcTestSupport.execute(connection,
+                    "CREATE TABLE users (id INT PRIMARY KEY, name VARCHAR(64))",
+                    "INSERT INTO users SELECT X, 'user' || X FROM SYSTEM_RANGE(1, 20000)");
+
+            Random random = new Random(7);
+            String[] conditions = new String[200];
+            for (int i = 0; i < conditions.length; i++) {
+                conditions[i] = inCondition(random.nextInt(19000), 500 + random.nextInt(500));
+            }
+
+            // 预热
+            runAll(connection, conditions, ParserOptions.defaults());
+            runAll(connection, conditions, POSTGRESQL);
+
+            long start = System.nanoTime();
+            long perElementRows = runAll(connection, conditions, ParserOptions.defaults());
+            long perElementMillis = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            long arrayRows = runAll(connection, conditions, POSTGRESQL);
+            long arrayMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println("大 IN 列表基准测试 (200 条查询，每条 500~1000 个值):");
+            System.out.println("  逐个元素绑定: " + perElementMillis + " ms");
+            System.out.println("  数组绑定:     " + arrayMillis + " ms");
+
+            assertEquals(perElementRows, arrayRows);
+        }
+    }
+
+    private long runAll(Connection connection, String[] conditions, ParserOptions options) throws Exception {
+        long rows = 0;
+        for (String condition : conditions) {
+            QueryWrapper<User> wrapper = ConditionParser.parse(condition, new QueryWrapper<>(), options);
+            rows += JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM users", wrapper));
+        }
+        return rows;
+    }
+
+    private static String inCondition(int start, int size) {
+        StringJoiner joiner = new StringJoiner(", ", "id IN (", ")");
+        for (int i = 0; i < size; i++) {
+            joiner.add(String.valueOf(start + i));
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.xdw;
+
+import com.alibaba.druid.DbType;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FullTextIndexesTest {
+
+    static class Article {
+        // 测试用实体类
+    }
+
+    private static JdbcTestSupport.JdbcSql render(String condition, ParserOptions options) {
+        QueryWrapper<Article> wrapper = new QueryWrapper<>();
+        ConditionParser.parse(condition, wrapper, options);
+        return JdbcTestSupport.toJdbcSql("SELECT id FROM article", wrapper);
+    }
+
+    @Test
+    public void testMatchAgainstIsAccepted() {
+        JdbcTestSupport.JdbcSql sql = render("MATCH(title) AGAINST('+mysql -oracle' IN BOOLEAN MODE) AND status = 1", ParserOptions.defaults());
+        assertEquals("SELECT id FROM article WHERE (MATCH (title) AGAINST (? IN BOOLEAN MODE) AND status = ?)", sql.sql);
+        assertEquals(Arrays.asList("+mysql -oracle", 1), sql.params);
+
+        sql = render("MATCH (title, body) AGAINST ('database tuning')", ParserOptions.defaults());
+        assertEquals("SELECT id FROM article WHERE (MATCH (title, body) AGAINST (?))", sql.sql);
+        assertEquals(List.of("database tuning"), sql.params);
+
+        sql = render("MATCH (body) AGAINST ('index' WITH QUERY EXPANSION) OR NOT MATCH (title) AGAINST ('draft' IN NATURAL LANGUAGE MODE)",
+                ParserOptions.defaults());
+        assertTrue(sql.sql.contains("MATCH (body) AGAINST (? WITH QUERY EXPANSION)"), sql.sql);
+        assertTrue(sql.sql.contains("MATCH (title) AGAINST (? IN NATURAL LANGUAGE MODE)"), sql.sql);
+        assertEquals(Arrays.asList("index", "draft"), sql.params);
+
+        // 只有 MySQL 和 MariaDB 支持，其他方言在解析时拒绝，而不是生成执行时才出错的 SQL
+        assertTrue(render("MATCH (title) AGAINST ('mysql')", ParserOptions.defaults().withDbType(DbType.mariadb)).sql.contains("MATCH (title)"));
+        SQLExpr match = ConditionParser.parseToSQLExpr("MATCH (title) AGAINST ('mysql') AND status = 1", ParserOptions.defaults());
+        for (DbType dbType : new DbType[]{DbType.postgresql, DbType.h2, DbType.oracle}) {
+            assertThrows(UnsupportedOperationException.class,
+                    () -> ConditionParser.parseSQLExpr(match, new QueryWrapper<>(), ParserOptions.defaults().withDbType(dbType)), dbType.name());
+        }
+
+        // 检索文本必须是值，字段必须是字段名
+        assertThrows(IllegalArgumentException.class, () -> render("MATCH (title) AGAINST (NULL)", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> render("MATCH ('x') AGAINST ('y')", ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testPreparedMatchAgainst() {
+        PreparedCondition prepared = PreparedCondition.prepare("MATCH (title) AGAINST (:q IN BOOLEAN MODE) AND status = :status", ParserOptions.defaults());
+        for (String q : new String[]{"+alpha", "+beta*"}) {
+            QueryWrapper<Article> wrapper = new QueryWrapper<>();
+            prepared.apply(wrapper, Map.of("q", q, "status", 2));
+            JdbcTestSupport.JdbcSql sql = JdbcTestSupport.toJdbcSql("SELECT id FROM article", wrapper);
+            assertEquals(render("MATCH (title) AGAINST ('" + q + "' IN BOOLEAN MODE) AND status = 2", ParserOptions.defaults()).sql, sql.sql);
+            assertEquals(Arrays.asList(q, 2), sql.params);
+        }
+        // 检索文本只是值，不属于条件形状
+        assertEquals(ConditionFingerprint.of("MATCH (title) AGAINST ('a' IN BOOLEAN MODE)", ParserOptions.defaults()),
+                ConditionFingerprint.of("MATCH (`TITLE`) AGAINST ('b' IN BOOLEAN MODE)", ParserOptions.defaults()));
+        assertNotEquals(ConditionFingerprint.of("MATCH (title) AGAINST ('a' IN BOOLEAN MODE)", ParserOptions.defaults()),
+                ConditionFingerprint.of("MATCH (title) AGAINST ('a')", ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testWordLikeIsRewritten() {
+        ParserOptions options = ParserOptions.defaults().withFullTextIndexes(FullTextIndexes.empty().withIndex("title"));
+        JdbcTestSupport.JdbcSql sql = render("title LIKE '%Postgres%' AND status = 1", options);
+        assertEquals("SELECT id FROM article WHERE (MATCH (title) AGAINST (? IN BOOLEAN MODE) AND status = ?)", sql.sql);
+        assertEquals(Arrays.asList("+Postgres*", 1), sql.params);
+
+        // 不含通配符的值与原来一样按 %value% 匹配
+        assertEquals(List.of("+redis*"), render("title LIKE 'redis'", options).params);
+
+        // 以下情况保持 LIKE
+        String[] unchanged = {
+                "title LIKE 'postgres%'",       // 不是 %word% 的形式
+                "title LIKE '%two words%'",     // 多个单词
+                "title LIKE '%c_d%'",           // 含有通配符
+                "title LIKE '%db%'",            // 短于最小单词长度
+                "title LIKE '%the%'",           // 停用词
+                "title NOT LIKE '%postgres%'",
+                "body LIKE '%postgres%'",       // 字段没有 FULLTEXT 索引
+                "title LIKE '%数据库%'",         // 不是 ASCII 字母和数字
+                "title LIKE '%café%'",
+                // 改写的结果是 LIKE 的子集，在 NOT 下会变为超集；索引也不描述子查询的表
+                "NOT (title LIKE '%postgres%')",
+                "NOT title LIKE '%postgres%' AND status = 1",
+                "title LIKE '%postgres%' OR status = 1"
+        };
+        for (String condition : unchanged) {
+            assertEquals(render(condition, ParserOptions.defaults()).sql, render(condition, options).sql, condition);
+        }
+        SubqueryAllowlist allowlist = SubqueryAllowlist.empty().allow("posts", "id", "title");
+        String subquery = "id IN (SELECT id FROM posts WHERE title LIKE '%postgres%')";
+        assertEquals(render(subquery, ParserOptions.defaults().withSubqueryAllowlist(allowlist)).sql,
+                render(subquery, options.withSubqueryAllowlist(allowlist)).sql);
+        // AND 分支中仍然改写
+        assertEquals(Arrays.asList(1, "+mysql*", 2),
+                render("status = 1 AND (title LIKE '%mysql%' AND status = 2)", options).params);
+        assertEquals(render("title LIKE '%abcd%'", ParserOptions.defaults()).sql,
+                render("title LIKE '%abc%'", options.withFullTextIndexes(FullTextIndexes.empty().withIndex("title").withMinTokenSize(4))).sql);
+        // 只有 MySQL 和 MariaDB 支持
+        ParserOptions postgres = options.withDbType(DbType.postgresql);
+        assertEquals(render("title LIKE '%postgres%'", ParserOptions.defaults().withDbType(DbType.postgresql)).sql,
+                render("title LIKE '%postgres%'", postgres).sql);
+
+        assertThrows(IllegalArgumentException.class, () -> FullTextIndexes.empty().withIndex("title; drop"));
+        assertThrows(IllegalArgumentException.class, () -> FullTextIndexes.empty().withMinTokenSize(0));
+    }
+
+    @Test
+    public void testTrigramIndexTakesPrecedence() {
+        // 三元组索引按 LIKE 原义精确匹配，能回答时优先使用
+        TrigramIndex trigrams = new TrigramIndex("id", true, 100, "title");
+        trigrams.put("title", 7L, "Postgres internals");
+        ParserOptions options = ParserOptions.defaults()
+                .withTrigramIndex(trigrams)
+                .withFullTextIndexes(FullTextIndexes.empty().withIndex("title", "body"));
+        assertEquals("SELECT id FROM article WHERE (id IN (?))", render("title LIKE '%postgres%'", options).sql);
+        assertTrue(render("body LIKE '%postgres%'", options).sql.contains("MATCH (body) AGAINST"));
+    }
+}
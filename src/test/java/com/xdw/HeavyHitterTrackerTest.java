@@ -0,0 +1,165 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeavyHitterTrackerTest {
+
+    @Test
+    public void testSpaceSavingFindsHeavyHitters() {
+        SpaceSaving sketch = new SpaceSaving(50);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        int events = 200000;
+        for (int i = 0; i < events; i++) {
+            // 近似 Zipf 分布：key k 出现的概率约与 1/k 成正比
+            int k = (int) Math.floor(Math.pow(10000, random.nextDouble()));
+            String key = "k" + k;
+            long weight = 1 + (k % 3);
+            sketch.add(key, key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, sketch.total());
+
+        List<HeavyHitterTracker.HeavyHitter> top = sketch.top(100);
+        assertEquals(50, top.size());
+        for (HeavyHitterTracker.HeavyHitter hitter : top) {
+            long actual = exact.get(hitter.getKey());
+            assertTrue(hitter.getEstimate() >= actual, hitter.toString());
+            assertTrue(hitter.getGuaranteed() <= actual, hitter.toString());
+        }
+        // 真实权重超过 总权重 / capacity 的 key 一定被保留
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / 50) {
+                assertTrue(top.stream().anyMatch(h -> h.getKey().equals(entry.getKey())), entry.getKey());
+            }
+        }
+        assertEquals("k1", top.get(0).getKey());
+
+        sketch.clear();
+        assertTrue(sketch.top(10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving(0));
+    }
+
+    @Test
+    public void testParserRecordsShapesColumnsAndOperators() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(16);
+        ParserOptions options = ParserOptions.defaults().withHeavyHitterTracker(tracker);
+        for (int i = 0; i < 300; i++) {
+            ConditionParser.parse("status = 'S" + i + "' AND amount > " + i, new QueryWrapper<>(), options);
+            if (i % 3 == 0) {
+                ConditionParser.parse("id IN (" + i + ", " + (i + 1) + ") OR note IS NULL", new QueryWrapper<>(), options);
+            }
+        }
+        // 空条件和失败的解析不记录
+        ConditionParser.parse("  ", new QueryWrapper<>(), options);
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.parse("amount >", new QueryWrapper<>(), options));
+
+        assertEquals(400, tracker.total(HeavyHitterTracker.Dimension.SHAPE, HeavyHitterTracker.Metric.COUNT));
+        List<HeavyHitterTracker.HeavyHitter> shapes = tracker.top(HeavyHitterTracker.Dimension.SHAPE, HeavyHitterTracker.Metric.COUNT, 5);
+        assertEquals(2, shapes.size());
+        assertEquals(300, shapes.get(0).getEstimate());
+        assertEquals(ConditionFingerprint.of("status = 'x' AND amount > 1", ParserOptions.defaults()), shapes.get(0).getKey());
+        assertEquals("(amount > ? AND status = ?)", shapes.get(0).getLabel());
+        assertEquals(100, shapes.get(1).getEstimate());
+
+        List<HeavyHitterTracker.HeavyHitter> columns = tracker.top(HeavyHitterTracker.Dimension.COLUMN, HeavyHitterTracker.Metric.COUNT, 10);
+        assertEquals(4, columns.size());
+        assertEquals(300, columns.get(0).getEstimate());
+        List<HeavyHitterTracker.HeavyHitter> operators = tracker.top(HeavyHitterTracker.Dimension.OPERATOR, HeavyHitterTracker.Metric.COUNT, 10);
+        assertTrue(operators.stream().anyMatch(h -> h.getKey().equals("IN") && h.getEstimate() == 100), operators.toString());
+        assertTrue(operators.stream().anyMatch(h -> h.getKey().equals("IS NULL")), operators.toString());
+        assertTrue(tracker.total(HeavyHitterTracker.Dimension.SHAPE, HeavyHitterTracker.Metric.TIME) > 0);
+
+        String dump = tracker.dump(3);
+        assertTrue(dump.contains("SHAPE by COUNT (total 400)"), dump);
+        assertTrue(dump.contains("(amount > ? AND status = ?)"), dump);
+        assertFalse(dump.contains("S299"), dump);
+        System.out.println(dump);
+
+        tracker.reset();
+        assertEquals(0, tracker.total(HeavyHitterTracker.Dimension.SHAPE, HeavyHitterTracker.Metric.COUNT));
+    }
+
+    @Test
+    public void testLimiterRecordsCallers() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(8);
+        ParserOptions options = ParserOptions.defaults().withHeavyHitterTracker(tracker);
+        ConditionParseLimiter limiter = new ConditionParseLimiter(2);
+        for (int i = 0; i < 50; i++) {
+            limiter.parse("tenant-a", "status = 'PAID'", new QueryWrapper<>(), options);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> limiter.parse("tenant-b", "status = ", new QueryWrapper<>(), options));
+        }
+        List<HeavyHitterTracker.HeavyHitter> callers = tracker.top(HeavyHitterTracker.Dimension.CALLER, HeavyHitterTracker.Metric.COUNT, 10);
+        assertEquals("tenant-a", callers.get(0).getKey());
+        assertEquals(50, callers.get(0).getEstimate());
+        assertEquals(5, callers.get(1).getEstimate());
+    }
+
+    @Test
+    public void testMemoryIsBoundedByCapacity() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(32);
+        ParserOptions options = ParserOptions.defaults().withHeavyHitterTracker(tracker);
+        for (int i = 0; i < 5000; i++) {
+            ConditionParser.parse("c" + i + " = 1", new QueryWrapper<>(), options);
+            // 一个高频形状混在大量只出现一次的形状中
+            ConditionParser.parse("hot = " + i, new QueryWrapper<>(), options);
+        }
+        for (HeavyHitterTracker.Dimension dimension : HeavyHitterTracker.Dimension.values()) {
+            for (HeavyHitterTracker.Metric metric : HeavyHitterTracker.Metric.values()) {
+                assertTrue(tracker.top(dimension, metric, Integer.MAX_VALUE).size() <= 32);
+            }
+        }
+        HeavyHitterTracker.HeavyHitter hot = tracker.top(HeavyHitterTracker.Dimension.COLUMN, HeavyHitterTracker.Metric.COUNT, 1).get(0);
+        assertEquals("hot", hot.getKey());
+        assertTrue(hot.getGuaranteed() >= 4000, hot.toString());
+    }
+
+    @Test
+    public void testTrackingOverhead() {
+        String condition = "status IN ('PAID', 'NEW') AND amount BETWEEN 10 AND 500 AND (region = 'EU' OR vip = 1)";
+        ParserOptions plain = ParserOptions.defaults();
+        ParserOptions tracked = plain.withHeavyHitterTracker(new HeavyHitterTracker(64));
+        HeavyHitterTracker sampledTracker = new HeavyHitterTracker(64, 16);
+        ParserOptions sampled = plain.withHeavyHitterTracker(sampledTracker);
+        int iterations = 20000;
+        for (int i = 0; i < iterations; i++) {
+            ConditionParser.parse(condition, new QueryWrapper<>(), plain);
+            ConditionParser.parse(condition, new QueryWrapper<>(), tracked);
+            ConditionParser.parse(condition, new QueryWrapper<>(), sampled);
+        }
+        // 抽样记录时按 sampleEvery 放大，总数仍接近真实的解析次数
+        long estimated = sampledTracker.total(HeavyHitterTracker.Dimension.SHAPE, HeavyHitterTracker.Metric.COUNT);
+        assertEquals(0, estimated % 16);
+        assertTrue(Math.abs(estimated - iterations) < iterations / 5, Long.toString(estimated));
+        assertThrows(IllegalArgumentException.class, () -> new HeavyHitterTracker(8, 0));
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParser.parse(condition, new QueryWrapper<>(), plain);
+        }
+        long plainNanos = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParser.parse(condition, new QueryWrapper<>(), tracked);
+        }
+        long trackedNanos = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ConditionParser.parse(condition, new QueryWrapper<>(), sampled);
+        }
+        long sampledNanos = (System.nanoTime() - start) / iterations;
+        System.out.println("解析平均耗时: " + plainNanos + " ns，开启高频统计后: " + trackedNanos
+                + " ns，每 16 次抽样记录一次: " + sampledNanos + " ns");
+    }
+}
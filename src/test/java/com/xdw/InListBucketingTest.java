@@ -0,0 +1,162 @@
+package com.xdw;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InListBucketingTest {
+
+    static class User {
+        // 测试用实体类
+    }
+
+    @Test
+    public void testPowersOfTwoBucketSize() {
+        InListBucketing bucketing = InListBucketing.powersOfTwo();
+        assertEquals(1, bucketing.bucketSize(1));
+        assertEquals(2, bucketing.bucketSize(2));
+        assertEquals(4, bucketing.bucketSize(3));
+        assertEquals(8, bucketing.bucketSize(5));
+        assertEquals(64, bucketing.bucketSize(64));
+        assertEquals(128, bucketing.bucketSize(65));
+    }
+
+    @Test
+    public void testLadderBucketSize() {
+        InListBucketing bucketing = InListBucketing.ladder(32, 8, 128);
+        assertEquals(8, bucketing.bucketSize(3));
+        assertEquals(32, bucketing.bucketSize(9));
+        assertEquals(128, bucketing.bucketSize(100));
+        // 超过最大阶梯时补齐到最大阶梯的整数倍
+        assertEquals(256, bucketing.bucketSize(129));
+        assertThrows(IllegalArgumentException.class, () -> InListBucketing.ladder());
+        assertThrows(IllegalArgumentException.class, () -> InListBucketing.ladder(0, 8));
+    }
+
+    @Test
+    public void testInListIsPaddedWithLastValue() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ParserOptions options = ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo());
+        ConditionParser.parse("id IN (1, 2, 3)", wrapper, options);
+
+        String sqlSegment = wrapper.getSqlSegment();
+        assertEquals(4, wrapper.getParamNameValuePairs().size(), "3 个值应补齐到 4 个: " + sqlSegment);
+        long lastValueCount = wrapper.getParamNameValuePairs().values().stream().filter(v -> v.equals(3)).count();
+        assertEquals(2, lastValueCount, "补齐时应重复最后一个值");
+    }
+
+    @Test
+    public void testNotInListIsPadded() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ParserOptions options = ParserOptions.defaults().withInListBucketing(InListBucketing.ladder(8));
+        ConditionParser.parse("status NOT IN ('A', 'B')", wrapper, options);
+
+        assertTrue(wrapper.getSqlSegment().contains("status NOT IN ("));
+        assertEquals(8, wrapper.getParamNameValuePairs().size());
+    }
+
+    @Test
+    public void testDefaultOptionsDoNotPad() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("id IN (1, 2, 3)", wrapper);
+        assertTrue(wrapper.getSqlSegment().contains("id IN ("));
+        assertEquals(3, wrapper.getParamNameValuePairs().size());
+    }
+
+    @Test
+    public void testBucketingBoundsStatementShapes() {
+        Set<String> plainShapes = new HashSet<>();
+        Set<String> bucketedShapes = new HashSet<>();
+        ParserOptions options = ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo());
+        for (int size = 1; size <= 200; size++) {
+            String condition = inCondition(0, size);
+            plainShapes.add(ConditionParser.parse(condition, new QueryWrapper<User>()).getSqlSegment());
+            bucketedShapes.add(ConditionParser.parse(condition, new QueryWrapper<User>(), options).getSqlSegment());
+        }
+        assertEquals(200, plainShapes.size());
+        // 1, 2, 4, ..., 256 共 9 种形状
+        assertEquals(9, bucketedShapes.size());
+    }
+
+    /**
+     * 基准测试：在 H2 上通过 Druid PSCache 执行随机长度的 IN 查询，比较缓存命中率
+     */
+    @Test
+    public void benchmarkStatementCacheHitRate() throws Exception {
+        BenchmarkResult plain = runStatementCacheBenchmark(ParserOptions.defaults());
+        BenchmarkResult bucketed = runStatementCacheBenchmark(
+                ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo()));
+
+        System.out.println("IN 列表分桶基准测试 (PSCache 每连接 20 条):");
+        System.out.println("  不分桶: 命中率 " + String.format("%.1f%%", plain.hitRate() * 100) + ", 耗时 " + plain.elapsedMillis + " ms");
+        System.out.println("  分桶:   命中率 " + String.format("%.1f%%", bucketed.hitRate() * 100) + ", 耗时 " + bucketed.elapsedMillis + " ms");
+
+        // 补齐不应改变查询结果
+        assertEquals(plain.totalRows, bucketed.totalRows);
+        assertTrue(bucketed.hitRate() > 0.9, "分桶后命中率应超过 90%，实际: " + bucketed.hitRate());
+        assertTrue(plain.hitRate() < bucketed.hitRate());
+    }
+
+    private static final class BenchmarkResult {
+        long hits;
+        long misses;
+        long totalRows;
+        long elapsedMillis;
+
+        double hitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+    }
+
+    private BenchmarkResult runStatementCacheBenchmark(ParserOptions options) throws Exception {
+        DruidDataSource dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:h2:mem:bucketing_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaxActive(1);
+        dataSource.setTestWhileIdle(false);
+        dataSource.setPoolPreparedStatements(true);
+        dataSource.setMaxPoolPreparedStatementPerConnectionSize(20);
+        try {
+            try (Connection connection = dataSource.getConnection()) {
+                JdbcTestSupport.execute(connection,
+                        "CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64))",
+                        "INSERT INTO users SELECT X, 'user' || X FROM SYSTEM_RANGE(1, 2000)");
+            }
+            long baseHits = dataSource.getCachedPreparedStatementHitCount();
+            long baseMisses = dataSource.getCachedPreparedStatementMissCount();
+
+            BenchmarkResult result = new BenchmarkResult();
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                String condition = inCondition(random.nextInt(1800), 1 + random.nextInt(200));
+                QueryWrapper<User> wrapper = ConditionParser.parse(condition, new QueryWrapper<>(), options);
+                try (Connection connection = dataSource.getConnection()) {
+                    result.totalRows += JdbcTestSupport.countRows(connection,
+                            JdbcTestSupport.toJdbcSql("SELECT id FROM users", wrapper));
+                }
+            }
+            result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            result.hits = dataSource.getCachedPreparedStatementHitCount() - baseHits;
+            result.misses = dataSource.getCachedPreparedStatementMissCount() - baseMisses;
+            return result;
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private static String inCondition(int start, int size) {
+        StringJoiner joiner = new StringJoiner(", ", "id IN (", ")");
+        for (int i = 0; i < size; i++) {
+            joiner.add(String.valueOf(start + i));
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,215 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalConditionTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:incremental");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE orders (id INT PRIMARY KEY, amount INT, status VARCHAR(16), note VARCHAR(32))",
+                "INSERT INTO orders SELECT X, MOD(X * 37, 1000), "
+                        + "CASEWHEN(MOD(X, 3) = 0, 'PAID', CASEWHEN(MOD(X, 3) = 1, 'NEW', 'CLOSED')), "
+                        + "CASEWHEN(MOD(X, 7) = 0, NULL, 'note ' || X) FROM SYSTEM_RANGE(1, 500)");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE orders");
+        connection.close();
+    }
+
+    @Test
+    public void testSplitsTopLevelClauses() {
+        IncrementalCondition condition = IncrementalCondition.of(
+                "amount > 100 AND (status = 'PAID' OR status = 'NEW') AND note LIKE 'note 1%'", ParserOptions.defaults());
+        assertFalse(condition.isDisjunction());
+        assertEquals(3, condition.getClauses().size());
+
+        IncrementalCondition disjunction = IncrementalCondition.of("amount < 10 OR amount > 990 OR id = 1", ParserOptions.defaults());
+        assertTrue(disjunction.isDisjunction());
+        assertEquals(3, disjunction.getClauses().size());
+    }
+
+    @Test
+    public void testEditsShareUnchangedClauses() {
+        IncrementalCondition base = IncrementalCondition.of("amount > 100 AND status = 'PAID'", ParserOptions.defaults());
+        IncrementalCondition added = base.add("note IS NOT NULL");
+        assertEquals(2, base.getClauses().size());
+        assertEquals(3, added.getClauses().size());
+        assertSame(base.getClauses().get(0), added.getClauses().get(0));
+        assertSame(base.getClauses().get(1), added.getClauses().get(1));
+
+        IncrementalCondition removed = added.remove("amount > 100");
+        assertEquals(2, removed.getClauses().size());
+        assertSame(added.getClauses().get(2), removed.getClauses().get(1));
+        assertSame(removed, removed.remove("id = 42"));
+
+        IncrementalCondition replaced = added.replace(1, "status IN ('NEW', 'CLOSED')");
+        assertSame(added.getClauses().get(0), replaced.getClauses().get(0));
+        assertEquals("status IN ('NEW', 'CLOSED')", replaced.getClauses().get(1).toString());
+    }
+
+    @Test
+    public void testFragmentMatchesFullParse() throws SQLException {
+        List<String> clauses = Arrays.asList("amount > 100", "status IN ('PAID', 'NEW')", "note LIKE 'note 1%'",
+                "NOT (id BETWEEN 10 AND 20)", "amount < 900 OR note IS NULL");
+        IncrementalCondition conjunction = IncrementalCondition.conjunction(ParserOptions.defaults());
+        IncrementalCondition disjunction = IncrementalCondition.disjunction(ParserOptions.defaults());
+        for (String clause : clauses) {
+            conjunction = conjunction.add(clause);
+            disjunction = disjunction.add(clause);
+            assertSameRows(String.join(" AND ", wrap(conjunction)), conjunction);
+            assertSameRows(String.join(" OR ", wrap(disjunction)), disjunction);
+        }
+        for (int i = 0; i < clauses.size(); i++) {
+            conjunction = conjunction.remove(0);
+            assertSameRows(String.join(" AND ", wrap(conjunction)), conjunction);
+        }
+        assertTrue(conjunction.toSqlFragment().isEmpty());
+    }
+
+    @Test
+    public void testApplyCombinesWithExistingConditions() throws SQLException {
+        IncrementalCondition condition = IncrementalCondition.disjunction(ParserOptions.defaults())
+                .add("amount < 100").add("amount > 900");
+        QueryWrapper<Object> wrapper = ConditionParser.parse("status = 'PAID'", new QueryWrapper<>());
+        condition.apply(wrapper);
+        int rows = JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM orders", wrapper));
+
+        QueryWrapper<Object> expected = ConditionParser.parse("status = 'PAID' AND (amount < 100 OR amount > 900)", new QueryWrapper<>());
+        assertEquals(JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM orders", expected)), rows);
+        assertTrue(rows > 0);
+    }
+
+    @Test
+    public void testJvmClockClausesAreRenderedOnEachUse() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-03-01T00:00:00Z").toEpochMilli());
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneId.of("UTC");
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis.get());
+            }
+        };
+        IncrementalCondition condition = IncrementalCondition.conjunction(ParserOptions.defaults().withClock(clock))
+                .add("status = 'PAID'").add("created_at < NOW()");
+        Object first = condition.toSqlFragment().getParameters().get(1);
+        millis.addAndGet(60_000);
+        Object second = condition.toSqlFragment().getParameters().get(1);
+        assertNotEquals(first, second);
+
+        // 下推策略下 SQL 不含时间参数，片段可以缓存
+        IncrementalCondition pushDown = IncrementalCondition.conjunction(
+                ParserOptions.defaults().withTimeFunctionPolicy(TimeFunctionPolicy.PUSH_DOWN)).add("created_at < NOW()");
+        assertSame(pushDown.toSqlFragment(), pushDown.toSqlFragment());
+        assertTrue(pushDown.toSqlFragment().getParameters().isEmpty());
+    }
+
+    @Test
+    public void testInvalidClauseIsRejected() {
+        IncrementalCondition condition = IncrementalCondition.conjunction(ParserOptions.defaults()).add("amount > 1");
+        assertThrows(IllegalArgumentException.class, () -> condition.add("amount <> 1"));
+        assertThrows(IllegalArgumentException.class, () -> condition.add("amount >"));
+        assertEquals(1, condition.getClauses().size());
+    }
+
+    /**
+     * 基准测试：100 个子句的过滤条件，每次增删一个子句后重新生成 SQL
+     */
+    @Test
+    public void benchmarkSingleClauseEdits() {
+        List<String> clauses = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            clauses.add(i % 3 == 0 ? "amount != " + i : "status_" + i + " IN ('A', 'B', 'C')");
+        }
+        int edits = 400;
+
+        // 每次编辑后重新解析整个条件
+        long start = System.nanoTime();
+        List<String> current = new ArrayList<>(clauses);
+        int fullParams = 0;
+        for (int i = 0; i < edits; i++) {
+            edit(current, i);
+            QueryWrapper<Object> wrapper = ConditionParser.parse(String.join(" AND ", current), new QueryWrapper<>());
+            fullParams = JdbcTestSupport.toJdbcSql("SELECT * FROM orders", wrapper).params.size();
+        }
+        long fullMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 增量：只解析变化的子句，其余片段复用
+        start = System.nanoTime();
+        IncrementalCondition condition = IncrementalCondition.of(String.join(" AND ", clauses), ParserOptions.defaults());
+        current = new ArrayList<>(clauses);
+        int incrementalParams = 0;
+        for (int i = 0; i < edits; i++) {
+            String removed = edit(current, i);
+            condition = condition.remove(removed).add(current.get(current.size() - 1));
+            incrementalParams = condition.toSqlFragment().getParameters().size();
+        }
+        long incrementalMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("增量条件基准测试 (100 个子句，" + edits + " 次单子句编辑):");
+        System.out.println("  整体重新解析: " + fullMillis + " ms");
+        System.out.println("  增量编译:     " + incrementalMillis + " ms");
+
+        assertEquals(fullParams, incrementalParams);
+        assertTrue(incrementalMillis < fullMillis);
+    }
+
+    // 删除第 i 个位置的子句并在末尾追加一个新子句，返回被删除的子句
+    private static String edit(List<String> clauses, int i) {
+        String removed = clauses.remove(i % clauses.size());
+        clauses.add("amount != " + (1000 + i));
+        return removed;
+    }
+
+    private void assertSameRows(String fullCondition, IncrementalCondition condition) throws SQLException {
+        QueryWrapper<Object> expected = ConditionParser.parse(fullCondition, new QueryWrapper<>());
+        int expectedRows = JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM orders", expected));
+
+        SqlFragment fragment = condition.toSqlFragment();
+        String sql = fragment.isEmpty() ? "SELECT * FROM orders" : "SELECT * FROM orders WHERE " + fragment.getSql();
+        assertEquals(expectedRows, JdbcTestSupport.countRows(connection, new JdbcTestSupport.JdbcSql(sql, fragment.getParameters())),
+                fullCondition);
+
+        QueryWrapper<Object> applied = condition.apply(new QueryWrapper<>());
+        assertEquals(expectedRows, JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM orders", applied)),
+                fullCondition);
+    }
+
+    private static List<String> wrap(IncrementalCondition condition) {
+        List<String> texts = new ArrayList<>();
+        for (CompiledCondition clause : condition.getClauses()) {
+            texts.add("(" + clause + ")");
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,108 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 测试辅助类：把 QueryWrapper 生成的 SQL 片段转换成 JDBC 可执行的语句
+ *
+ * MyBatis-Plus 的片段形如 name = #{ew.paramNameValuePairs.MPGENVAL1}，
+ * 这里把参数引用按出现顺序替换为 ?，并按同样的顺序取出参数值。
+ */
+final class JdbcTestSupport {
+
+    private static final Pattern PARAM_PATTERN = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+
+    private JdbcTestSupport() {
+    }
+
+    /**
+     * 转换后的语句：SQL 文本和按顺序排列的参数
+     */
+    static final class JdbcSql {
+        final String sql;
+        final List<Object> params;
+
+        JdbcSql(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    static JdbcSql toJdbcSql(String selectPrefix, QueryWrapper<?> wrapper) {
+        String segment = wrapper.getSqlSegment();
+        Map<String, Object> pairs = wrapper.getParamNameValuePairs();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        Matcher matcher = PARAM_PATTERN.matcher(segment);
+        while (matcher.find()) {
+            params.add(pairs.get(matcher.group(1)));
+            matcher.appendReplacement(sb, "?");
+        }
+        matcher.appendTail(sb);
+        String where = sb.toString().trim();
+        String sql = where.isEmpty() ? selectPrefix : selectPrefix + " WHERE " + where;
+        return new JdbcSql(sql, params);
+    }
+
+    /**
+     * 执行查询并返回结果行数
+     */
+    static int countRows(Connection connection, JdbcSql jdbcSql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(jdbcSql.sql)) {
+            for (int i = 0; i < jdbcSql.params.size(); i++) {
+                ps.setObject(i + 1, jdbcSql.params.get(i));
+            }
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 执行查询并以 列名 -> 值 的形式返回所有行
+     */
+    static List<Map<String, Object>> queryRows(Connection connection, JdbcSql jdbcSql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(jdbcSql.sql)) {
+            for (int i = 0; i < jdbcSql.params.size(); i++) {
+                ps.setObject(i + 1, jdbcSql.params.get(i));
+            }
+            List<Map<String, Object>> rows = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
+                    }
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+    }
+
+    static void execute(Connection connection, String... statements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
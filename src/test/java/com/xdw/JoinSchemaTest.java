@@ -0,0 +1,204 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JoinSchemaTest {
+
+    private static final JoinSchema SCHEMA = JoinSchema.of("orders", "o")
+            .withJoin("customers", "c", "c.id = o.customer_id")
+            .withJoin("regions", "r", "r.code = c.region")
+            .withJoinMany("order_items", "i", "i.order_id = o.id");
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:join");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE regions (code VARCHAR(8) PRIMARY KEY, name VARCHAR(32))",
+                "CREATE TABLE customers (id INT PRIMARY KEY, region VARCHAR(8), status VARCHAR(16))",
+                "CREATE TABLE orders (id INT PRIMARY KEY, customer_id INT, status VARCHAR(16), amount INT)",
+                "CREATE TABLE order_items (id INT PRIMARY KEY, order_id INT, sku VARCHAR(16))",
+                "INSERT INTO regions VALUES ('EU', 'Europe'), ('US', 'America'), ('AP', 'Asia')",
+                "INSERT INTO customers SELECT X, CASEWHEN(MOD(X, 3) = 0, 'EU', CASEWHEN(MOD(X, 3) = 1, 'US', 'AP')), "
+                        + "CASEWHEN(MOD(X, 5) = 0, 'BLOCKED', 'ACTIVE') FROM SYSTEM_RANGE(1, 200)",
+                "INSERT INTO orders SELECT X, MOD(X, 200) + 1, CASEWHEN(MOD(X, 2) = 0, 'PAID', 'NEW'), MOD(X * 7, 1000) "
+                        + "FROM SYSTEM_RANGE(1, 2000)",
+                "INSERT INTO order_items SELECT X, MOD(X, 2000) + 1, 'SKU-' || MOD(X, 13) FROM SYSTEM_RANGE(1, 6000)");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE order_items", "DROP TABLE orders",
+                "DROP TABLE customers", "DROP TABLE regions");
+        connection.close();
+    }
+
+    private List<Integer> ids(JoinedCondition condition) throws SQLException {
+        QueryWrapper<Object> wrapper = condition.apply(new QueryWrapper<>());
+        List<Integer> ids = new ArrayList<>();
+        for (Map<String, Object> row : JdbcTestSupport.queryRows(connection,
+                JdbcTestSupport.toJdbcSql(condition.selectClause("o.id"), wrapper))) {
+            ids.add(((Number) row.get("ID")).intValue());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void testQualifiersAreKeptAndMapped() {
+        JoinedCondition condition = SCHEMA.parse("o.status = 'PAID' AND customers.region = 'EU'", ParserOptions.defaults());
+        String sqlSegment = condition.apply(new QueryWrapper<>()).getSqlSegment();
+        assertTrue(sqlSegment.contains("o.status = #{ew.paramNameValuePairs."), sqlSegment);
+        assertTrue(sqlSegment.contains("c.region = #{ew.paramNameValuePairs."), sqlSegment);
+        assertEquals(Collections.singletonList("c"), condition.getJoinedAliases());
+        assertEquals("orders o LEFT JOIN customers c ON c.id = o.customer_id", condition.getFromClause());
+        assertFalse(condition.isDistinct());
+
+        // 没有限定符的字段属于主表，主表只有自身时不需要关联
+        JoinedCondition own = SCHEMA.parse("amount > 10 AND ORDERS.status IN ('NEW')", ParserOptions.defaults());
+        String ownSegment = own.apply(new QueryWrapper<>()).getSqlSegment();
+        assertTrue(ownSegment.contains("o.amount > #{"), ownSegment);
+        assertTrue(ownSegment.contains("o.status IN (#{"), ownSegment);
+        assertEquals("orders o", own.getFromClause());
+
+        // 不使用 JoinSchema 时保持原来的行为
+        String plain = ConditionParser.parse("o.status = 'PAID'", new QueryWrapper<>()).getSqlSegment();
+        assertTrue(plain.startsWith("(status = #{"), plain);
+    }
+
+    @Test
+    public void testJoinDependenciesAndDistinct() {
+        JoinedCondition region = SCHEMA.parse("r.name = 'Europe'", ParserOptions.defaults());
+        assertEquals(Arrays.asList("c", "r"), region.getJoinedAliases());
+        assertEquals("orders o LEFT JOIN customers c ON c.id = o.customer_id LEFT JOIN regions r ON r.code = c.region",
+                region.getFromClause());
+
+        JoinedCondition items = SCHEMA.parse("i.sku = 'SKU-3' OR NOT (c.status = 'BLOCKED')", ParserOptions.defaults());
+        assertEquals(Arrays.asList("c", "i"), items.getJoinedAliases());
+        assertTrue(items.isDistinct());
+        assertTrue(items.selectClause("o.id").startsWith("SELECT DISTINCT o.id FROM orders o"));
+
+        JoinedCondition empty = SCHEMA.parse("  ", ParserOptions.defaults());
+        assertTrue(empty.getCondition().isEmpty());
+        assertEquals("orders o", empty.getFromClause());
+    }
+
+    @Test
+    public void testRejectsUnknownTables() {
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.parse("x.status = 'PAID'", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.parse("users.password = 'x'", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> JoinSchema.of("orders", "o").withJoin("customers", "O", "1 = 1"));
+        assertThrows(IllegalArgumentException.class, () -> JoinSchema.of("orders", "o").withJoin("customers", "c", "c.id = x.id"));
+        assertThrows(IllegalArgumentException.class, () -> JoinSchema.of("orders; DROP TABLE t", "o"));
+
+        // 同一张表关联两次时只能用别名引用
+        JoinSchema twice = JoinSchema.of("orders", "o")
+                .withJoin("customers", "buyer", "buyer.id = o.customer_id")
+                .withJoin("customers", "payer", "payer.id = o.customer_id");
+        assertThrows(IllegalArgumentException.class, () -> twice.parse("customers.region = 'EU'", ParserOptions.defaults()));
+        assertEquals(Collections.singletonList("payer"),
+                twice.parse("payer.region = 'EU'", ParserOptions.defaults()).getJoinedAliases());
+
+        // 子查询和全文检索的字段同样检查限定符
+        ParserOptions subqueries = ParserOptions.defaults().withSubqueryAllowlist(SubqueryAllowlist.empty().allow("regions", "code", "name"));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.parse("MATCH (zz.title) AGAINST ('x')", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class,
+                () -> SCHEMA.parse("x.region IN (SELECT code FROM regions)", subqueries));
+        assertThrows(IllegalArgumentException.class, () -> SCHEMA.parse("LOWER(c.region) = 'eu'", ParserOptions.defaults()));
+    }
+
+    @Test
+    public void testSubqueryAndMatchColumnsAreQualified() throws SQLException {
+        ParserOptions subqueries = ParserOptions.defaults().withSubqueryAllowlist(SubqueryAllowlist.empty().allow("regions", "code", "name"));
+        JoinedCondition in = SCHEMA.parse("c.region IN (SELECT code FROM regions WHERE name = 'Europe') AND o.id <= 100", subqueries);
+        assertEquals(Collections.singletonList("c"), in.getJoinedAliases());
+        String sqlSegment = in.apply(new QueryWrapper<>()).getSqlSegment();
+        assertTrue(sqlSegment.contains("c.region IN (SELECT code FROM regions"), sqlSegment);
+        assertEquals(ids(SCHEMA.parse("c.region = 'EU' AND o.id <= 100", ParserOptions.defaults())), ids(in));
+
+        JoinedCondition exists = SCHEMA.parse("EXISTS (SELECT 1 FROM regions WHERE code = 'EU')", subqueries);
+        assertEquals("orders o", exists.getFromClause());
+
+        JoinedCondition match = SCHEMA.parse("MATCH (c.status, customers.region) AGAINST ('EU')", ParserOptions.defaults());
+        String matchSegment = match.apply(new QueryWrapper<>()).getSqlSegment();
+        assertTrue(matchSegment.contains("MATCH (c.status, c.region) AGAINST ("), matchSegment);
+        assertEquals(Collections.singletonList("c"), match.getJoinedAliases());
+    }
+
+    @Test
+    public void testOrKeepsRowsWithoutJoinedRow() throws SQLException {
+        // 客户不存在的订单
+        JdbcTestSupport.execute(connection, "INSERT INTO orders VALUES (5001, 9999, 'PAID', 10), (5002, 9999, 'NEW', 10)");
+        List<Integer> ids = ids(SCHEMA.parse("o.status = 'PAID' OR c.region = 'EU'", ParserOptions.defaults()));
+        int expected = JdbcTestSupport.countRows(connection, new JdbcTestSupport.JdbcSql(
+                "SELECT id FROM orders o WHERE o.status = 'PAID' OR EXISTS (SELECT 1 FROM customers c "
+                        + "WHERE c.id = o.customer_id AND c.region = 'EU')", Collections.emptyList()));
+        assertEquals(expected, ids.size());
+        assertTrue(ids.contains(5001));
+        assertFalse(ids.contains(5002));
+
+        // 取反时没有客户的订单不满足 c.status = 'BLOCKED'，NOT 的结果为 UNKNOWN
+        assertFalse(ids(SCHEMA.parse("NOT (c.status = 'BLOCKED')", ParserOptions.defaults())).contains(5002));
+        assertTrue(ids(SCHEMA.parse("c.id IS NULL", ParserOptions.defaults())).contains(5002));
+    }
+
+    @Test
+    public void testSingleStatementMatchesNPlusOneQueries() throws SQLException {
+        JoinedCondition condition = SCHEMA.parse(
+                "o.status = 'PAID' AND o.amount BETWEEN 100 AND 600 AND c.region = 'EU' AND c.status != 'BLOCKED'",
+                ParserOptions.defaults());
+
+        long start = System.nanoTime();
+        List<Integer> joined = ids(condition);
+        long joinedNanos = System.nanoTime() - start;
+
+        // N+1：先按主表条件查订单，再逐个查询客户
+        start = System.nanoTime();
+        QueryWrapper<Object> orderWrapper = ConditionParser.parse(
+                "status = 'PAID' AND amount BETWEEN 100 AND 600", new QueryWrapper<>());
+        List<Map<String, Object>> orders = JdbcTestSupport.queryRows(connection,
+                JdbcTestSupport.toJdbcSql("SELECT id, customer_id FROM orders", orderWrapper));
+        List<Integer> nPlusOne = new ArrayList<>();
+        for (Map<String, Object> order : orders) {
+            QueryWrapper<Object> customerWrapper = ConditionParser.parse(
+                    "id = " + order.get("CUSTOMER_ID") + " AND region = 'EU' AND status != 'BLOCKED'", new QueryWrapper<>());
+            if (JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM customers", customerWrapper)) > 0) {
+                nPlusOne.add(((Number) order.get("ID")).intValue());
+            }
+        }
+        Collections.sort(nPlusOne);
+        long nPlusOneNanos = System.nanoTime() - start;
+
+        assertFalse(joined.isEmpty());
+        assertEquals(nPlusOne, joined);
+        System.out.println("关联查询 1 条语句耗时: " + joinedNanos / 1_000 + " us，N+1 查询 " + (orders.size() + 1)
+                + " 条语句耗时: " + nPlusOneNanos / 1_000 + " us");
+    }
+
+    @Test
+    public void testOneToManyJoinReturnsEachRowOnce() throws SQLException {
+        JoinedCondition condition = SCHEMA.parse("i.sku IN ('SKU-1', 'SKU-2') AND o.id <= 100", ParserOptions.defaults());
+        List<Integer> ids = ids(condition);
+        assertEquals(new TreeSet<>(ids).size(), ids.size());
+        int expected = JdbcTestSupport.countRows(connection, new JdbcTestSupport.JdbcSql(
+                "SELECT id FROM orders o WHERE o.id <= 100 AND EXISTS (SELECT 1 FROM order_items i "
+                        + "WHERE i.order_id = o.id AND i.sku IN ('SKU-1', 'SKU-2'))", Collections.emptyList()));
+        assertEquals(expected, ids.size());
+    }
+}
@@ -0,0 +1,264 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapPlanCacheTest {
+
+    private static String condition(int i) {
+        return "tenant_id = " + (i % 97) + " AND status IN ('PAID', 'NEW', 'S" + i + "') AND amount BETWEEN " + i
+                + " AND " + (i + 500) + " AND (region = 'EU' OR note LIKE 'n" + i + "%')";
+    }
+
+    @Test
+    public void testHitReturnsSamePlan() {
+        try (OffHeapPlanCache cache = new OffHeapPlanCache(ParserOptions.defaults(), 1 << 16, 100)) {
+            byte[] plan = cache.compile("status = 'PAID' AND amount > 100");
+            assertArrayEquals(ConditionCodec.encode("status = 'PAID' AND amount > 100", ParserOptions.defaults()), plan);
+            assertArrayEquals(plan, cache.compile("  status = 'PAID' AND amount > 100 "));
+            assertTrue(cache.contains("status = 'PAID' AND amount > 100"));
+            assertFalse(cache.contains("status = 'PAID'"));
+            assertEquals(1, cache.size());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            QueryWrapper<Object> wrapper = cache.parse("name LIKE 'Jo%' OR id IN (1, 2)", new QueryWrapper<>());
+            QueryWrapper<Object> expected = ConditionParser.parse("name LIKE 'Jo%' OR id IN (1, 2)", new QueryWrapper<>());
+            assertEquals(expected.getSqlSegment(), wrapper.getSqlSegment());
+            assertEquals(expected.getParamNameValuePairs().values().toString(), wrapper.getParamNameValuePairs().values().toString());
+
+            assertThrows(IllegalArgumentException.class, () -> cache.compile("a <> 1"));
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    public void testEvictsOldestWhenFull() {
+        ParserOptions options = ParserOptions.defaults();
+        try (OffHeapPlanCache cache = new OffHeapPlanCache(options, 8 * 1024, 1000)) {
+            // 数据区反复回绕，每个仍在缓存中的条件都必须得到自己的编码
+            for (int i = 0; i < 2000; i++) {
+                cache.compile(condition(i));
+                assertTrue(cache.usedBytes() <= 8 * 1024);
+            }
+            assertTrue(cache.getEvictions() > 1500, cache.toString());
+            assertTrue(cache.contains(condition(1999)));
+            assertFalse(cache.contains(condition(0)));
+            int present = 0;
+            for (int i = 0; i < 2000; i++) {
+                if (cache.contains(condition(i))) {
+                    present++;
+                    assertArrayEquals(ConditionCodec.encode(condition(i), options), cache.compile(condition(i)));
+                }
+            }
+            assertEquals(cache.size(), present);
+            // FIFO：留下的是最近写入的一段
+            for (int i = 2000 - present; i < 2000; i++) {
+                assertTrue(cache.contains(condition(i)), "missing " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testEntryLimit() {
+        try (OffHeapPlanCache cache = new OffHeapPlanCache(ParserOptions.defaults(), 1 << 20, 50)) {
+            for (int i = 0; i < 500; i++) {
+                cache.compile("id = " + i);
+                assertTrue(cache.size() <= 50);
+            }
+            assertEquals(50, cache.size());
+            assertEquals(450, cache.getEvictions());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i >= 450, cache.contains("id = " + i), "id = " + i);
+            }
+        }
+    }
+
+    /**
+     * 记录在数据区中占用的字节数，与 OffHeapPlanCache 的记录格式一致
+     */
+    private static long recordLength(String condition, ParserOptions options) {
+        int keyLength = (options.getDbType().name() + ':' + condition.trim()).getBytes(StandardCharsets.UTF_8).length;
+        return (24 + keyLength + ConditionCodec.encode(condition, options).length + 7L) & ~7L;
+    }
+
+    @Test
+    public void testWrapWhenOnlyRecordMustBeEvicted() {
+        // 唯一的记录被淘汰后数据区清空，新记录从头写入，不能去淘汰已经不存在的记录
+        ParserOptions options = ParserOptions.defaults();
+        String small = "name = '" + "x".repeat(50) + "' AND id = 1";
+        // 两条记录放不下，末尾的空间也放不下较大的记录
+        int n = 0;
+        while (recordLength("name = '" + "y".repeat(n + 1) + "' AND id = 2", options) <= 352) {
+            n++;
+        }
+        String large = "name = '" + "y".repeat(n) + "' AND id = 2";
+        assertTrue(recordLength(small, options) + recordLength(large, options) > 352);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            try (OffHeapPlanCache cache = new OffHeapPlanCache(options, 356, 14)) {
+                cache.compile(small);
+                assertEquals(recordLength(small, options), cache.usedBytes());
+                cache.compile(large);
+                assertEquals(1, cache.size());
+                assertTrue(cache.contains(large));
+                assertEquals(recordLength(large, options), cache.usedBytes());
+                cache.compile(small);
+                assertEquals(1, cache.size());
+                assertTrue(cache.contains(small));
+                assertEquals(recordLength(small, options), cache.usedBytes());
+            }
+        });
+    }
+
+    @Test
+    public void testRandomInsertAndEvict() {
+        ParserOptions options = ParserOptions.defaults();
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            long capacity = 128 + random.nextInt(2048);
+            int maxEntries = 1 + random.nextInt(20);
+            List<String> inserted = new ArrayList<>();
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                try (OffHeapPlanCache cache = new OffHeapPlanCache(options, capacity, maxEntries)) {
+                    for (int i = 0; i < 300; i++) {
+                        String condition = random.nextInt(4) == 0 && !inserted.isEmpty()
+                                ? inserted.get(random.nextInt(inserted.size()))
+                                : "name = '" + "x".repeat(random.nextInt(300)) + "' AND id = " + i;
+                        boolean present = cache.contains(condition);
+                        cache.compile(condition);
+                        long length = recordLength(condition, options);
+                        if (!present && length <= (capacity & ~7L)) {
+                            // 被淘汰后重新写入的条件移到最新的位置
+                            inserted.remove(condition);
+                            inserted.add(condition);
+                        }
+                        checkInvariants(cache, inserted, options, capacity & ~7L, maxEntries);
+                    }
+                }
+            }, "capacity=" + capacity + ", maxEntries=" + maxEntries);
+        }
+    }
+
+    /**
+     * 缓存中留下的是最近写入的一段；已使用的字节数等于这些记录的长度之和，
+     * 加上回绕时末尾未使用的空间，后者小于一条记录的长度
+     */
+    private static void checkInvariants(OffHeapPlanCache cache, List<String> inserted, ParserOptions options,
+                                        long capacity, int maxEntries) {
+        int size = cache.size();
+        assertTrue(size <= maxEntries, cache.toString());
+        long live = 0;
+        long maxLive = 0;
+        for (int i = 0; i < inserted.size(); i++) {
+            boolean expected = i >= inserted.size() - size;
+            assertEquals(expected, cache.contains(inserted.get(i)), "entry " + i + " of " + inserted.size() + ": " + cache);
+            if (expected) {
+                long length = recordLength(inserted.get(i), options);
+                live += length;
+                maxLive = Math.max(maxLive, length);
+            }
+        }
+        long used = cache.usedBytes();
+        assertTrue(used <= capacity, cache.toString());
+        assertTrue(used >= live && used < live + Math.max(maxLive, 8), "used=" + used + ", live=" + live + ", " + cache);
+        if (!inserted.isEmpty()) {
+            assertTrue(size > 0);
+        }
+    }
+
+    @Test
+    public void testOversizedPlanAndClose() {
+        OffHeapPlanCache cache = new OffHeapPlanCache(ParserOptions.defaults(), 64, 10);
+        byte[] plan = cache.compile(condition(1));
+        assertArrayEquals(ConditionCodec.encode(condition(1), ParserOptions.defaults()), plan);
+        assertEquals(0, cache.size());
+        cache.close();
+        cache.close();
+        assertThrows(IllegalStateException.class, () -> cache.compile("id = 1"));
+        assertThrows(IllegalStateException.class, () -> cache.contains("id = 1"));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapPlanCache(ParserOptions.defaults(), 1 << 20, 0));
+    }
+
+    @Test
+    public void testHeapAndGcImpactComparedWithOnHeapCache() {
+        ParserOptions options = ParserOptions.defaults();
+        int entries = 20000;
+        long baseline = usedHeap();
+
+        Map<String, CompiledCondition> onHeap = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            onHeap.put(condition(i), CompiledCondition.compile(condition(i), options));
+        }
+        long onHeapRetained = usedHeap() - baseline;
+        long onHeapGc = fullGcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            onHeap.get(condition(i)).apply(new QueryWrapper<>());
+        }
+        long onHeapHitNanos = (System.nanoTime() - start) / entries;
+        onHeap = null;
+        baseline = usedHeap();
+
+        try (OffHeapPlanCache cache = new OffHeapPlanCache(options, 64L << 20, entries)) {
+            for (int i = 0; i < entries; i++) {
+                cache.compile(condition(i));
+            }
+            assertEquals(entries, cache.size());
+            long offHeapRetained = usedHeap() - baseline;
+            long offHeapGc = fullGcMillis();
+            start = System.nanoTime();
+            for (int i = 0; i < entries; i++) {
+                cache.parse(condition(i), new QueryWrapper<>());
+            }
+            long offHeapHitNanos = (System.nanoTime() - start) / entries;
+            assertEquals(entries, cache.getHits());
+
+            System.out.println("缓存 " + entries + " 个条件：堆上缓存占用堆 " + onHeapRetained / 1024 + " KB，堆外缓存占用堆 "
+                    + Math.max(0, offHeapRetained) / 1024 + " KB、堆外 " + cache.usedBytes() / 1024 + " KB");
+            System.out.println("三次完整 GC 耗时：堆上缓存 " + onHeapGc + " ms，堆外缓存 " + offHeapGc + " ms");
+            System.out.println("命中后应用到 QueryWrapper 平均耗时：堆上缓存 " + onHeapHitNanos + " ns，堆外缓存（含解码） "
+                    + offHeapHitNanos + " ns");
+            assertTrue(offHeapRetained < onHeapRetained / 10, offHeapRetained + " / " + onHeapRetained);
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * 完整 GC 需要标记所有存活对象，耗时随常驻的对象数增长
+     */
+    private static long fullGcMillis() {
+        long before = gcMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        return Math.max(elapsed, gcMillis() - before);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+}
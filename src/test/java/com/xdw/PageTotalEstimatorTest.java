@@ -0,0 +1,197 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageTotalEstimatorTest {
+
+    private static final int ROWS = 200000;
+
+    private Connection connection;
+    private PageTotalEstimator.RowCounter counter;
+
+    /**
+     * 可以手动推进的时钟
+     */
+    private static final class ManualClock extends Clock {
+        private long millis = 1_000_000;
+
+        void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        // 关闭 H2 对相同查询结果的复用，否则重复的 COUNT 不会真正执行
+        connection = DriverManager.getConnection("jdbc:h2:mem:pagetotal;OPTIMIZE_REUSE_RESULTS=FALSE");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE orders (id INT PRIMARY KEY, amount INT, status VARCHAR(16))",
+                "INSERT INTO orders SELECT X, MOD(X * 37, 1000), "
+                        + "CASEWHEN(MOD(X, 3) = 0, 'PAID', CASEWHEN(MOD(X, 3) = 1, 'NEW', 'CLOSED')) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        counter = new PageTotalEstimator.RowCounter() {
+            @Override
+            public long count(QueryWrapper<Object> wrapper) {
+                return scalar(JdbcTestSupport.toJdbcSql("SELECT COUNT(*) AS C FROM orders", wrapper));
+            }
+
+            @Override
+            public long countUpTo(QueryWrapper<Object> wrapper, long limit) {
+                JdbcTestSupport.JdbcSql inner = JdbcTestSupport.toJdbcSql("SELECT 1 FROM orders", wrapper);
+                return scalar(new JdbcTestSupport.JdbcSql(
+                        "SELECT COUNT(*) AS C FROM (" + inner.sql + " LIMIT " + limit + ") t", inner.params));
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE orders");
+        connection.close();
+    }
+
+    private long scalar(JdbcTestSupport.JdbcSql sql) {
+        try {
+            return ((Number) JdbcTestSupport.queryRows(connection, sql).get(0).get("C")).longValue();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long actual(String condition) {
+        return counter.count(ConditionParser.parse(condition, new QueryWrapper<>()));
+    }
+
+    @Test
+    public void testExactAndEstimatedTotals() throws SQLException {
+        PageTotalEstimator exact = PageTotalEstimator.exact(counter, ParserOptions.defaults());
+        PageTotalEstimator.PageTotal total = exact.total("amount < 100 AND status = 'PAID'");
+        assertTrue(total.isExact());
+        assertEquals(actual("amount < 100 AND status = 'PAID'"), total.getTotal());
+
+        CostEstimator estimator = new CostEstimator(TableStatistics.collect(connection, "orders", 100), ParserOptions.defaults());
+        PageTotalEstimator estimated = PageTotalEstimator.estimated(estimator, ParserOptions.defaults());
+        for (String condition : new String[]{"amount < 100", "status = 'PAID'", "amount BETWEEN 10 AND 500 AND status != 'NEW'"}) {
+            PageTotalEstimator.PageTotal estimate = estimated.total(condition);
+            assertFalse(estimate.isExact());
+            assertEquals(PageTotalEstimator.Mode.ESTIMATED, estimate.getMode());
+            long expected = actual(condition);
+            assertEquals(expected, estimate.getTotal(), Math.max(expected * 0.2, ROWS * 0.01), condition);
+        }
+        assertEquals(0, estimated.getCountQueries());
+    }
+
+    @Test
+    public void testCachedTotalsExpire() throws SQLException {
+        ManualClock clock = new ManualClock();
+        PageTotalEstimator cached = PageTotalEstimator.cached(counter, ParserOptions.defaults(), Duration.ofMinutes(5), 2, clock);
+
+        PageTotalEstimator.PageTotal first = cached.total("status = 'PAID'");
+        assertTrue(first.isExact());
+        PageTotalEstimator.PageTotal second = cached.total("status  =  'PAID'");
+        assertFalse(second.isExact());
+        assertEquals(first.getTotal(), second.getTotal());
+        assertEquals(1, cached.getCountQueries());
+
+        // 参数不同的条件分别计数
+        assertTrue(cached.total("status = 'NEW'").isExact());
+        assertEquals(2, cached.getCountQueries());
+
+        // 缓存期内数据变化不会反映出来，过期后重新计数
+        JdbcTestSupport.execute(connection, "DELETE FROM orders WHERE id <= 3000");
+        assertEquals(first.getTotal(), cached.total("status = 'PAID'").getTotal());
+        clock.advance(Duration.ofMinutes(6));
+        PageTotalEstimator.PageTotal expired = cached.total("status = 'PAID'");
+        assertTrue(expired.isExact());
+        assertEquals(first.getTotal() - 1000, expired.getTotal());
+
+        // 超出条目数时淘汰最久未访问的条件
+        cached.total("status = 'CLOSED'");
+        cached.total("status = 'NEW'");
+        long queries = cached.getCountQueries();
+        cached.total("status = 'PAID'");
+        assertEquals(queries + 1, cached.getCountQueries());
+
+        cached.invalidate();
+        assertTrue(cached.total("status = 'PAID'").isExact());
+    }
+
+    @Test
+    public void testCappedTotals() {
+        PageTotalEstimator capped = PageTotalEstimator.capped(counter, ParserOptions.defaults(), 1000);
+        PageTotalEstimator.PageTotal small = capped.total("amount = 7 AND status = 'PAID'");
+        assertTrue(small.isExact());
+        assertEquals(actual("amount = 7 AND status = 'PAID'"), small.getTotal());
+
+        PageTotalEstimator.PageTotal large = capped.total("status = 'PAID'");
+        assertFalse(large.isExact());
+        assertEquals(1000, large.getTotal());
+        assertEquals("~1000 (CAPPED)", large.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> PageTotalEstimator.capped(counter, ParserOptions.defaults(), 0));
+    }
+
+    @Test
+    public void testAppliesTotalToPage() {
+        PageTotalEstimator.PageTotal total = PageTotalEstimator.capped(counter, ParserOptions.defaults(), 500).total("amount < 900");
+        Page<Object> page = PageTotalEstimator.applyTo(new Page<>(3, 20), total);
+        assertFalse(page.searchCount());
+        assertEquals(500, page.getTotal());
+        assertEquals(25, page.getPages());
+    }
+
+    @Test
+    public void testCostOfEachMode() throws SQLException {
+        String condition = "amount >= 100 AND status != 'CLOSED'";
+        CostEstimator estimator = new CostEstimator(TableStatistics.collect(connection, "orders", 100), ParserOptions.defaults());
+        PageTotalEstimator[] modes = {
+                PageTotalEstimator.exact(counter, ParserOptions.defaults()),
+                PageTotalEstimator.estimated(estimator, ParserOptions.defaults()),
+                PageTotalEstimator.cached(counter, ParserOptions.defaults(), Duration.ofMinutes(1), 100, Clock.systemUTC()),
+                PageTotalEstimator.capped(counter, ParserOptions.defaults(), 1000),
+        };
+        for (PageTotalEstimator mode : modes) {
+            mode.total(condition);
+        }
+        int pages = 20;
+        for (PageTotalEstimator mode : modes) {
+            long start = System.nanoTime();
+            PageTotalEstimator.PageTotal total = null;
+            for (int i = 0; i < pages; i++) {
+                total = mode.total(condition);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("%-9s 每页取总数平均耗时 %8d us，总数 %s", mode.getMode(),
+                    nanos / pages / 1_000, total));
+        }
+    }
+}
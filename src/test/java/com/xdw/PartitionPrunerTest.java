@@ -0,0 +1,119 @@
+package com.xdw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionPrunerTest {
+
+    // 按月分区：p202401 存放 2024-01 之前及当月的数据，pmax 存放 2024-04 之后的数据
+    private final PartitionPruner pruner = new PartitionPruner("created_at", Arrays.asList(
+            PartitionPruner.RangePartition.lessThan("p202401", "2024-02-01"),
+            PartitionPruner.RangePartition.lessThan("p202402", "2024-03-01"),
+            PartitionPruner.RangePartition.lessThan("p202403", "2024-04-01"),
+            PartitionPruner.RangePartition.maxValue("pmax")
+    ), ParserOptions.defaults());
+
+    @Test
+    public void testRangeSelectsPartitions() {
+        PartitionPruner.PruneResult result = pruner.prune("created_at >= '2024-02-10' AND created_at < '2024-03-05' AND status = 'PAID'");
+        assertEquals(Arrays.asList("p202402", "p202403"), result.getPartitions());
+        assertEquals("PARTITION (p202402, p202403)", result.partitionClause());
+        assertEquals("events PARTITION (p202402, p202403)", result.tableWithPartitions("events"));
+    }
+
+    @Test
+    public void testBoundaryIsExclusive() {
+        assertEquals(Collections.singletonList("p202402"), pruner.prune("created_at = '2024-02-01'").getPartitions());
+        assertEquals(Collections.singletonList("p202401"), pruner.prune("created_at < '2024-02-01'").getPartitions());
+    }
+
+    @Test
+    public void testInListAndOr() {
+        assertEquals(Arrays.asList("p202401", "pmax"),
+                pruner.prune("created_at IN ('2024-01-05', '2024-06-01')").getPartitions());
+        assertEquals(Arrays.asList("p202401", "p202403"),
+                pruner.prune("created_at BETWEEN '2024-01-01' AND '2024-01-31' OR created_at BETWEEN '2024-03-01' AND '2024-03-31'").getPartitions());
+    }
+
+    @Test
+    public void testNotExcludesPartitions() {
+        assertEquals(Arrays.asList("p202403", "pmax"),
+                pruner.prune("NOT (created_at < '2024-03-01')").getPartitions());
+    }
+
+    @Test
+    public void testUnconstrainedConditionKeepsAllPartitions() {
+        PartitionPruner.PruneResult result = pruner.prune("status = 'PAID' OR created_at > '2024-03-01'");
+        assertFalse(result.isPruned());
+        assertEquals(4, result.getPartitions().size());
+        assertEquals("", result.partitionClause());
+        assertEquals("events", result.tableWithPartitions("events"));
+
+        // 子查询和全文检索不约束分区字段，其余条件照常裁剪
+        assertEquals(Collections.singletonList("p202402"),
+                pruner.prune("created_at = '2024-02-05' AND customer_id IN (SELECT id FROM customers)").getPartitions());
+        assertFalse(pruner.prune("MATCH (title) AGAINST ('mysql')").isPruned());
+    }
+
+    @Test
+    public void testEmptyRangeIsRejected() {
+        String condition = "created_at > '2024-03-01' AND created_at < '2024-02-01'";
+        assertTrue(pruner.prune(condition).isEmpty());
+        assertThrows(IllegalStateException.class, () -> pruner.prune(condition).partitionClause());
+        assertThrows(IllegalArgumentException.class, () -> pruner.pruneOrReject(condition));
+        // 与 NULL 比较的一侧不成立，另一侧照常裁剪
+        assertEquals(Arrays.asList("p202403", "pmax"),
+                pruner.pruneOrReject("created_at NOT BETWEEN NULL AND '2024-03-01'").getPartitions());
+    }
+
+    @Test
+    public void testNumericPartitions() {
+        PartitionPruner byId = new PartitionPruner("id", Arrays.asList(
+                PartitionPruner.RangePartition.lessThan("p0", 1000),
+                PartitionPruner.RangePartition.lessThan("p1", 2000),
+                PartitionPruner.RangePartition.maxValue("p2")
+        ), ParserOptions.defaults());
+        List<String> partitions = byId.prune("id BETWEEN 1500 AND 2500").getPartitions();
+        assertEquals(Arrays.asList("p1", "p2"), partitions);
+    }
+
+    @Test
+    public void testIgnoreCasePartitions() {
+        List<PartitionPruner.RangePartition> byName = Arrays.asList(
+                PartitionPruner.RangePartition.lessThan("p_ab", "C"),
+                PartitionPruner.RangePartition.lessThan("p_cl", "m"),
+                PartitionPruner.RangePartition.maxValue("p_mz"));
+        // *_ci 排序规则下 'B' >= 'a'，p_ab 可能包含匹配的行
+        PartitionPruner ci = new PartitionPruner("name", byName, ParserOptions.defaults(), true);
+        assertEquals(Arrays.asList("p_ab", "p_cl", "p_mz"), ci.prune("name >= 'a'").getPartitions());
+        assertEquals(Arrays.asList("p_ab", "p_cl"), ci.prune("name BETWEEN 'b' AND 'K'").getPartitions());
+        assertEquals(Collections.singletonList("p_mz"), ci.prune("name = 'Zoe'").getPartitions());
+
+        // 区分大小写时按字符编码比较，'a' 大于 'C'
+        PartitionPruner cs = new PartitionPruner("name", byName, ParserOptions.defaults());
+        assertEquals(Arrays.asList("p_cl", "p_mz"), cs.prune("name >= 'a'").getPartitions());
+
+        // 忽略大小写后上界不再递增
+        assertThrows(IllegalArgumentException.class, () -> new PartitionPruner("name", Arrays.asList(
+                PartitionPruner.RangePartition.lessThan("p0", "B"),
+                PartitionPruner.RangePartition.lessThan("p1", "a")
+        ), ParserOptions.defaults(), true));
+    }
+
+    @Test
+    public void testInvalidPartitionDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionPruner("id", Arrays.asList(
+                PartitionPruner.RangePartition.lessThan("p0", 2000),
+                PartitionPruner.RangePartition.lessThan("p1", 1000)
+        ), ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionPruner("id", Arrays.asList(
+                PartitionPruner.RangePartition.maxValue("p0"),
+                PartitionPruner.RangePartition.lessThan("p1", 1000)
+        ), ParserOptions.defaults()));
+    }
+}
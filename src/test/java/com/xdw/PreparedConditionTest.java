@@ -0,0 +1,184 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedConditionTest {
+
+    @Test
+    public void testNamedPlaceholders() {
+        PreparedCondition condition = ConditionParser.prepare(
+                "age >= :minAge AND (name = :name OR nickname = :name)", ParserOptions.defaults());
+        assertEquals(Arrays.asList("minAge", "name"), condition.getParameterNames());
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("minAge", 18);
+        params.put("name", "John");
+        assertSameAsLiteral("age >= 18 AND (name = 'John' OR nickname = 'John')", condition.apply(new QueryWrapper<>(), params));
+    }
+
+    @Test
+    public void testPositionalPlaceholders() {
+        PreparedCondition condition = ConditionParser.prepare("age BETWEEN ? AND ? AND name LIKE ?", ParserOptions.defaults());
+        assertEquals(3, condition.getParameterCount());
+        assertSameAsLiteral("age BETWEEN 18 AND 60 AND name LIKE 'Jo%'",
+                condition.apply(new QueryWrapper<>(), 18, 60, "Jo%"));
+        // 不含通配符的 LIKE 与字面量一样按包含匹配
+        assertSameAsLiteral("age BETWEEN 1 AND 2 AND name LIKE 'oh'",
+                condition.apply(new QueryWrapper<>(), 1, 2, "oh"));
+    }
+
+    @Test
+    public void testInListPlaceholderExpandsToCollectionSize() {
+        PreparedCondition condition = ConditionParser.prepare("status IN (:statuses) AND id NOT IN (:ids, 0)", ParserOptions.defaults());
+        Map<String, Object> params = new HashMap<>();
+        params.put("statuses", Arrays.asList("NEW", "PAID", "CLOSED"));
+        params.put("ids", new int[]{7, 8});
+        assertSameAsLiteral("status IN ('NEW', 'PAID', 'CLOSED') AND id NOT IN (7, 8, 0)", condition.apply(new QueryWrapper<>(), params));
+
+        params.put("statuses", "NEW");
+        assertSameAsLiteral("status IN ('NEW') AND id NOT IN (7, 8, 0)", condition.apply(new QueryWrapper<>(), params));
+
+        params.put("statuses", Collections.emptyList());
+        assertThrows(IllegalArgumentException.class, () -> condition.apply(new QueryWrapper<>(), params));
+    }
+
+    @Test
+    public void testLongArrayIsBoundWithoutBoxingElements() {
+        PreparedCondition prepared = ConditionParser.prepare("id IN (:ids) AND tenant_id = :tenant", ParserOptions.defaults());
+        long[] ids = {1, 3000000000L, 5};
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("ids", ids);
+        parameters.put("tenant", 42L);
+        CompiledCondition bound = prepared.bind(parameters);
+        // 绑定后修改数组不影响已绑定的条件
+        ids[0] = 99;
+        assertEquals(Arrays.asList(1, 3000000000L, 5, 42L), bound.toSqlFragment().getParameters());
+        String sql = bound.toSqlFragment().getSql();
+        assertTrue(sql.contains("id IN (?,?,?)"), sql);
+
+        parameters.put("ids", new long[0]);
+        assertThrows(IllegalArgumentException.class, () -> prepared.bind(parameters));
+    }
+
+    @Test
+    public void testFragmentMatchesBoundCondition() {
+        ParserOptions bucketed = ParserOptions.defaults().withInListBucketing(InListBucketing.powersOfTwo());
+        Object[][] cases = {
+                {"age >= ? AND status IN (?, ?) AND score BETWEEN ? AND ?", ParserOptions.defaults(), new Object[]{18, "NEW", "PAID", 1.5, null}},
+                {"id IN (?, ?, ?) OR owner = ?", bucketed, new Object[]{1L, 2L, 3L, "me"}},
+                {"name LIKE ? AND code = ?", ParserOptions.defaults(), new Object[]{"Jo", 7}},
+                {"label = CONCAT(?, '-x') AND id = ?", ParserOptions.defaults(), new Object[]{"a", 1}},
+                {"status IN (?) AND id = ?", ParserOptions.defaults(), new Object[]{Arrays.asList("NEW", "PAID"), 1}},
+        };
+        for (Object[] c : cases) {
+            PreparedCondition prepared = ConditionParser.prepare((String) c[0], (ParserOptions) c[1]);
+            SqlFragment expected = prepared.bind((Object[]) c[2]).toSqlFragment();
+            SqlFragment actual = prepared.toSqlFragment((Object[]) c[2]);
+            assertEquals(expected.getSql(), actual.getSql(), (String) c[0]);
+            assertEquals(expected.getParameters(), actual.getParameters(), (String) c[0]);
+        }
+
+        PreparedCondition named = ConditionParser.prepare("a = :x AND (b = :y OR c = :x)", ParserOptions.defaults());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("x", 1);
+        parameters.put("y", "two");
+        assertEquals(Arrays.asList(1, "two", 1), named.toSqlFragment(parameters).getParameters());
+        parameters.remove("y");
+        assertThrows(IllegalArgumentException.class, () -> named.toSqlFragment(parameters));
+    }
+
+    @Test
+    public void testValuesAreBoundAsParameters() {
+        PreparedCondition condition = ConditionParser.prepare("name = :name AND amount > :amount", ParserOptions.defaults());
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", "x' OR '1' = '1");
+        params.put("amount", new BigDecimal("10.50"));
+        QueryWrapper<Object> wrapper = condition.apply(new QueryWrapper<>(), params);
+        assertFalse(wrapper.getSqlSegment().contains("OR"), wrapper.getSqlSegment());
+        assertEquals(Arrays.asList("x' OR '1' = '1", new BigDecimal("10.50")),
+                JdbcTestSupport.toJdbcSql("SELECT * FROM users", wrapper).params);
+    }
+
+    @Test
+    public void testBindComposesWithCompiledConditions() {
+        CompiledCondition tenant = CompiledCondition.compile("tenant_id = 7", ParserOptions.defaults());
+        PreparedCondition user = ConditionParser.prepare("age >= ?", ParserOptions.defaults());
+        SqlFragment fragment = tenant.and(user.bind(21)).toSqlFragment();
+        assertEquals(Arrays.asList(7, 21), fragment.getParameters());
+    }
+
+    @Test
+    public void testBindingErrors() {
+        PreparedCondition named = ConditionParser.prepare("age >= :minAge", ParserOptions.defaults());
+        assertThrows(IllegalArgumentException.class, () -> named.apply(new QueryWrapper<>(), Collections.emptyMap()));
+        assertThrows(IllegalArgumentException.class, () -> named.apply(new QueryWrapper<>(), 18));
+        assertThrows(IllegalArgumentException.class,
+                () -> named.apply(new QueryWrapper<>(), Collections.singletonMap("minAge", Arrays.asList(1, 2))));
+
+        PreparedCondition positional = ConditionParser.prepare("age >= ? AND age < ?", ParserOptions.defaults());
+        assertThrows(IllegalArgumentException.class, () -> positional.apply(new QueryWrapper<>(), 18));
+        assertThrows(IllegalArgumentException.class, () -> positional.apply(new QueryWrapper<>(), Collections.singletonMap("x", 1)));
+
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.prepare("a = :a AND b = ?", ParserOptions.defaults()));
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.prepare("a <> :a", ParserOptions.defaults()));
+    }
+
+    /**
+     * 基准测试：每个请求拼接字符串并解析，与预编译一次后绑定参数的耗时对比
+     */
+    @Test
+    public void benchmarkAgainstPerRequestParsing() {
+        int requests = 5000;
+        // 两条路径先各预热一轮，避免前面的测试已经让解析路径完成 JIT 编译而绑定路径仍在解释执行
+        PreparedCondition warmup = ConditionParser.prepare("age >= ? AND status IN (?) AND name LIKE ?", ParserOptions.defaults());
+        for (int i = 0; i < requests; i++) {
+            ConditionParser.parse("age >= " + i + " AND status IN ('NEW', 'PAID') AND name LIKE 'user" + i + "%'", new QueryWrapper<>());
+            warmup.apply(new QueryWrapper<>(), i, Arrays.asList("NEW", "PAID"), "user" + i + "%");
+        }
+        long start = System.nanoTime();
+        int parsed = 0;
+        for (int i = 0; i < requests; i++) {
+            String condition = "age >= " + i + " AND status IN ('NEW', 'PAID') AND name LIKE 'user" + i + "%'";
+            parsed += ConditionParser.parse(condition, new QueryWrapper<>()).getSqlSegment().length();
+        }
+        long parseMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        PreparedCondition prepared = ConditionParser.prepare("age >= ? AND status IN (?) AND name LIKE ?", ParserOptions.defaults());
+        List<String> statuses = Arrays.asList("NEW", "PAID");
+        int bound = 0;
+        for (int i = 0; i < requests; i++) {
+            bound += prepared.apply(new QueryWrapper<>(), i, statuses, "user" + i + "%").getSqlSegment().length();
+        }
+        long boundMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("预编译条件基准测试 (" + requests + " 个请求):");
+        System.out.println("  每次拼接并解析: " + parseMillis + " ms");
+        System.out.println("  预编译后绑定:   " + boundMillis + " ms");
+
+        // 耗时只作为输出；断言绑定的结果与每次解析的结果一致
+        assertEquals(parsed, bound);
+        for (int i = 0; i < requests; i += 500) {
+            assertSameAsLiteral("age >= " + i + " AND status IN ('NEW', 'PAID') AND name LIKE 'user" + i + "%'",
+                    prepared.apply(new QueryWrapper<>(), i, statuses, "user" + i + "%"));
+        }
+    }
+
+    private static void assertSameAsLiteral(String literalCondition, QueryWrapper<Object> actual) {
+        QueryWrapper<Object> expected = ConditionParser.parse(literalCondition, new QueryWrapper<>());
+        assertEquals(expected.getSqlSegment(), actual.getSqlSegment(), literalCondition);
+        assertEquals(new ArrayList<>(expected.getParamNameValuePairs().values()),
+                new ArrayList<>(actual.getParamNameValuePairs().values()), literalCondition);
+    }
+}
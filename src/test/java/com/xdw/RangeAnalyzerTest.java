@@ -0,0 +1,121 @@
+package com.xdw;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangeAnalyzerTest {
+
+    private final RangeAnalyzer analyzer = new RangeAnalyzer(ParserOptions.defaults());
+
+    @Test
+    public void testComparisonsProduceIntervals() {
+        assertEquals("(18, +∞)", analyzer.analyze("age > 18").get("age").toString());
+        assertEquals("[18, +∞)", analyzer.analyze("age >= 18").get("age").toString());
+        assertEquals("(-∞, 18)", analyzer.analyze("age < 18").get("age").toString());
+        assertEquals("[18, 18]", analyzer.analyze("age = 18").get("age").toString());
+        assertEquals("(-∞, 18) ∪ (18, +∞)", analyzer.analyze("age != 18").get("age").toString());
+    }
+
+    @Test
+    public void testAndIntersectsAndOrUnions() {
+        ColumnRanges ranges = analyzer.analyze("age > 18 AND age <= 60 AND status = 'PAID'");
+        assertEquals("(18, 60]", ranges.get("age").toString());
+        assertEquals("[PAID, PAID]", ranges.get("status").toString());
+
+        ranges = analyzer.analyze("age < 10 OR age > 60 OR age = 30");
+        assertEquals("(-∞, 10) ∪ [30, 30] ∪ (60, +∞)", ranges.get("age").toString());
+
+        // OR 两侧约束不同字段时，每个字段都不受约束
+        ranges = analyzer.analyze("age > 18 OR status = 'PAID'");
+        assertTrue(ranges.get("age").isAll());
+        assertTrue(ranges.get("status").isAll());
+    }
+
+    @Test
+    public void testBetweenInAndNot() {
+        assertEquals("[10, 20]", analyzer.analyze("amount BETWEEN 10 AND 20").get("amount").toString());
+        assertEquals("(-∞, 10) ∪ (20, +∞)", analyzer.analyze("amount NOT BETWEEN 10 AND 20").get("amount").toString());
+        assertEquals("[1, 1] ∪ [3, 3]", analyzer.analyze("id IN (3, 1, 3)").get("id").toString());
+        assertEquals("(-∞, 1) ∪ (1, 3) ∪ (3, +∞)", analyzer.analyze("id NOT IN (1, 3)").get("id").toString());
+        assertEquals("(-∞, 5]", analyzer.analyze("NOT (id > 5)").get("id").toString());
+        // NOT (a AND b) = NOT a OR NOT b
+        assertEquals("(-∞, 5] ∪ [10, +∞)", analyzer.analyze("NOT (id > 5 AND id < 10)").get("id").toString());
+    }
+
+    @Test
+    public void testMixedNumericTypesCompareByValue() {
+        ColumnRanges ranges = analyzer.analyze("amount >= 10 AND amount <= 10.0");
+        assertEquals(1, ranges.get("amount").getIntervals().size());
+        assertTrue(ranges.get("amount").contains(10));
+        assertFalse(ranges.get("amount").contains(10.5));
+    }
+
+    @Test
+    public void testUnsatisfiableConditions() {
+        assertTrue(analyzer.analyze("age > 60 AND age < 18").isUnsatisfiable());
+        assertTrue(analyzer.analyze("id IN (1, 2) AND id = 3").isUnsatisfiable());
+        assertTrue(analyzer.analyze("id = NULL").isUnsatisfiable());
+        assertTrue(analyzer.analyze("id NOT IN (1, NULL)").isUnsatisfiable());
+        assertTrue(analyzer.analyze("amount BETWEEN 20 AND 10").isUnsatisfiable());
+        assertTrue(analyzer.analyze("id BETWEEN NULL AND 5").isUnsatisfiable());
+        assertTrue(analyzer.analyze("id NOT BETWEEN NULL AND NULL").isUnsatisfiable());
+        // NOT BETWEEN NULL AND 5 即 id < NULL OR id > 5，后一半仍然成立
+        assertEquals("(5, +∞)", analyzer.analyze("id NOT BETWEEN NULL AND 5").get("id").toString());
+        assertEquals("(-∞, 5)", analyzer.analyze("NOT (id BETWEEN 5 AND NULL)").get("id").toString());
+        assertTrue(analyzer.analyze("NOT (id NOT BETWEEN NULL AND 5)").isUnsatisfiable());
+        // 不可满足的一侧对 OR 没有贡献
+        ColumnRanges ranges = analyzer.analyze("(age > 60 AND age < 18) OR age = 30");
+        assertFalse(ranges.isUnsatisfiable());
+        assertEquals("[30, 30]", ranges.get("age").toString());
+    }
+
+    @Test
+    public void testUnrepresentablePredicatesAreUnconstrained() {
+        assertTrue(analyzer.analyze("name LIKE '%a%'").asMap().isEmpty());
+        assertTrue(analyzer.analyze("name IS NULL").asMap().isEmpty());
+        ColumnRanges ranges = new RangeAnalyzer(ParserOptions.defaults().withTimeFunctionPolicy(TimeFunctionPolicy.PUSH_DOWN))
+                .analyze("created_at > NOW()");
+        assertTrue(ranges.get("created_at").isAll());
+
+        // 子查询和全文检索不约束字段，取反后也一样
+        ranges = analyzer.analyze("id = 5 AND customer_id IN (SELECT id FROM customers WHERE region = 'EU')");
+        assertEquals("[5, 5]", ranges.get("id").toString());
+        assertTrue(ranges.get("customer_id").isAll());
+        assertFalse(ranges.isExact());
+        assertTrue(analyzer.analyze("NOT EXISTS (SELECT 1 FROM customers)").asMap().isEmpty());
+        assertTrue(analyzer.analyze("NOT MATCH (title) AGAINST ('mysql')").asMap().isEmpty());
+    }
+
+    @Test
+    public void testDateStringsCompareAsDates() {
+        ColumnRanges ranges = analyzer.analyze("created_at >= '2024-01-01' AND created_at < '2024-02-01'");
+        assertTrue(ranges.get("created_at").contains(java.sql.Date.valueOf("2024-01-15")));
+        assertFalse(ranges.get("created_at").contains(java.sql.Date.valueOf("2024-02-01")));
+    }
+
+    @Test
+    public void testExactnessAndImplication() {
+        assertTrue(analyzer.analyze("amount > 100 AND status IN ('PAID', 'NEW')").isExact());
+        assertTrue(analyzer.analyze("amount < 10 OR amount > 100").isExact());
+        assertFalse(analyzer.analyze("amount > 100 OR status = 'PAID'").isExact());
+        assertFalse(analyzer.analyze("amount > 100 AND name LIKE 'a%'").isExact());
+
+        ColumnRanges broad = analyzer.analyze("amount > 100");
+        assertTrue(analyzer.analyze("amount > 500 AND status = 'PAID'").implies(broad));
+        assertTrue(analyzer.analyze("amount BETWEEN 200 AND 300 AND name LIKE 'a%'").implies(broad));
+        assertFalse(analyzer.analyze("amount > 50").implies(broad));
+        assertFalse(analyzer.analyze("status = 'PAID'").implies(broad));
+        // 被蕴含的一方不精确时无法判断
+        assertFalse(analyzer.analyze("amount > 500").implies(analyzer.analyze("amount > 100 OR status = 'PAID'")));
+    }
+
+    @Test
+    public void testRangeSetSubset() {
+        assertTrue(RangeSet.greaterThan(500).isSubsetOf(RangeSet.greaterThan(100)));
+        assertFalse(RangeSet.greaterThan(100).isSubsetOf(RangeSet.greaterThan(500)));
+        assertTrue(RangeSet.point(5).isSubsetOf(RangeSet.closed(1, 10)));
+        assertTrue(RangeSet.empty().isSubsetOf(RangeSet.point(1)));
+        assertEquals(RangeSet.all().toString(), RangeSet.empty().complement().toString());
+    }
+}
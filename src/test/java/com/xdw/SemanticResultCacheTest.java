@@ -0,0 +1,290 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SemanticResultCacheTest {
+
+    static class Order {
+        // 测试用实体类
+    }
+
+    private Connection connection;
+    private int databaseQueries;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:semantic_cache");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE orders (id INT PRIMARY KEY, amount INT, status VARCHAR(16), note VARCHAR(32))",
+                "INSERT INTO orders SELECT X, MOD(X * 37, 1000), "
+                        + "CASEWHEN(MOD(X, 3) = 0, 'PAID', CASEWHEN(MOD(X, 3) = 1, 'NEW', 'CLOSED')), "
+                        + "CASEWHEN(MOD(X, 7) = 0, NULL, 'note ' || X) FROM SYSTEM_RANGE(1, 2000)");
+        databaseQueries = 0;
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE orders");
+        connection.close();
+    }
+
+    private Supplier<List<Map<String, Object>>> loader(String condition) {
+        return () -> {
+            databaseQueries++;
+            return query(condition);
+        };
+    }
+
+    private List<Map<String, Object>> query(String condition) {
+        QueryWrapper<Order> wrapper = ConditionParser.parse(condition, new QueryWrapper<>());
+        try {
+            return JdbcTestSupport.queryRows(connection, JdbcTestSupport.toJdbcSql("SELECT * FROM orders", wrapper));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> row.get("ID")).sorted(Comparator.comparing(Object::toString)).collect(Collectors.toList());
+    }
+
+    private SemanticResultCache newCache() {
+        return new SemanticResultCache(100, 100_000, ParserOptions.defaults(), false);
+    }
+
+    @Test
+    public void testExactHit() {
+        SemanticResultCache cache = newCache();
+        List<Map<String, Object>> first = cache.get("orders", "amount > 100", loader("amount > 100"));
+        List<Map<String, Object>> second = cache.get("orders", " amount > 100 ", loader("amount > 100"));
+        assertSame(first, second);
+        assertEquals(1, databaseQueries);
+        assertEquals(1, cache.stats().getExactHits());
+    }
+
+    @Test
+    public void testNarrowerConditionIsAnsweredFromCache() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+
+        String refined = "amount > 500 AND status = 'PAID'";
+        List<Map<String, Object>> rows = cache.get("orders", refined, loader(refined));
+
+        assertEquals(1, databaseQueries, "细化后的条件应由缓存回答");
+        assertEquals(1, cache.stats().getContainmentHits());
+        assertEquals(ids(query(refined)), ids(rows));
+    }
+
+    @Test
+    public void testContainmentWithLikeAndNullChecks() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "status IN ('PAID', 'NEW')", loader("status IN ('PAID', 'NEW')"));
+
+        // 新条件中无法表示为区间的部分在内存中求值
+        String refined = "status = 'NEW' AND note LIKE '%1%' AND note IS NOT NULL";
+        List<Map<String, Object>> rows = cache.get("orders", refined, loader(refined));
+        assertEquals(1, databaseQueries);
+        assertEquals(ids(query(refined)), ids(rows));
+    }
+
+    @Test
+    public void testWiderConditionGoesToDatabase() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+        cache.get("orders", "amount > 50", loader("amount > 50"));
+        cache.get("orders", "status = 'PAID'", loader("status = 'PAID'"));
+        assertEquals(3, databaseQueries);
+        assertEquals(0, cache.stats().getContainmentHits());
+    }
+
+    @Test
+    public void testInexactCachedConditionIsNotUsedForContainment() {
+        SemanticResultCache cache = newCache();
+        // OR 约束了两个字段，无法精确表示为区间合取
+        cache.get("orders", "status = 'PAID' OR amount > 100", loader("status = 'PAID' OR amount > 100"));
+        cache.get("orders", "status = 'PAID'", loader("status = 'PAID'"));
+        // LIKE 不能表示为区间
+        cache.get("orders", "note LIKE '%1%'", loader("note LIKE '%1%'"));
+        cache.get("orders", "note LIKE '%11%'", loader("note LIKE '%11%'"));
+        assertEquals(4, databaseQueries);
+    }
+
+    @Test
+    public void testEmptyConditionContainsEverything() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "", loader(""));
+        String refined = "amount BETWEEN 10 AND 20 OR id IN (5, 6)";
+        assertEquals(ids(query(refined)), ids(cache.get("orders", refined, loader(refined))));
+        assertEquals(1, databaseQueries);
+    }
+
+    @Test
+    public void testInvalidationIsPerTable() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+        cache.get("customers", "amount > 100", () -> List.of());
+
+        cache.invalidate("orders");
+        assertEquals(1, cache.size());
+        cache.get("orders", "amount > 500", loader("amount > 500"));
+        assertEquals(2, databaseQueries);
+        // 其它表的缓存不受影响
+        cache.get("customers", "amount > 100", () -> fail("customers 缓存不应失效"));
+    }
+
+    @Test
+    public void testSizeBounds() {
+        SemanticResultCache cache = new SemanticResultCache(2, 100_000, ParserOptions.defaults(), false);
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+        cache.get("orders", "amount > 200", loader("amount > 200"));
+        cache.get("orders", "amount < 10", loader("amount < 10"));
+        assertEquals(2, cache.size());
+
+        SemanticResultCache small = new SemanticResultCache(10, 500, ParserOptions.defaults(), false);
+        small.get("orders", "amount > 900", loader("amount > 900"));
+        small.get("orders", "amount < 100", loader("amount < 100"));
+        small.get("orders", "amount < 200", loader("amount < 200"));
+        assertTrue(small.cachedRows() <= 500, "总行数不应超过上限: " + small.cachedRows());
+        // 超过总行数上限的结果集不缓存
+        small.get("orders", "amount > 0", loader("amount > 0"));
+        assertTrue(small.cachedRows() <= 500);
+    }
+
+    @Test
+    public void testIgnoreCaseMatchesCaseInsensitiveCollation() {
+        SemanticResultCache cache = new SemanticResultCache(10, 100_000, ParserOptions.defaults(), true);
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+        List<Map<String, Object>> rows = cache.get("orders", "amount > 500 AND status = 'paid'", () -> fail("应由缓存回答"));
+        assertFalse(rows.isEmpty());
+    }
+
+    @Test
+    public void testSubqueriesBypassTheCache() {
+        SemanticResultCache cache = newCache();
+        cache.get("orders", "amount > 100", loader("amount > 100"));
+        // 结果取决于 refunds 表，每次都访问数据库
+        String subquery = "amount > 500 AND id IN (SELECT order_id FROM refunds)";
+        for (int i = 0; i < 2; i++) {
+            assertEquals(List.of(), cache.get("orders", subquery, List::of));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.stats().getMisses());
+
+        // 全文检索不能在内存中求值，只能精确命中
+        String match = "amount > 500 AND MATCH (note) AGAINST ('mysql')";
+        List<Map<String, Object>> rows = cache.get("orders", match, () -> query("amount > 900"));
+        assertSame(rows, cache.get("orders", match, () -> fail("应精确命中")));
+        assertEquals(1, cache.stats().getExactHits());
+        assertEquals(0, cache.stats().getContainmentHits());
+    }
+
+    @Test
+    public void testTimeFunctionsBypassTheCache() {
+        SemanticResultCache cache = newCache();
+        // now() 每次求值的结果不同，精确匹配也不能返回旧的结果
+        String condition = "amount > 100 AND created_at < now()";
+        for (int i = 0; i < 2; i++) {
+            cache.get("orders", condition, List::of);
+            cache.get("orders", "created_at >= CURRENT_DATE", List::of);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.stats().getExactHits());
+        assertEquals(4, cache.stats().getMisses());
+    }
+
+    @Test
+    public void testLocalDateTimeRowsCompareAsTimestamps() {
+        // MySQL Connector/J 8 对 DATETIME 返回 LocalDateTime
+        List<Map<String, Object>> table = new ArrayList<>();
+        for (int hour = 8; hour <= 12; hour++) {
+            table.add(Map.of("id", hour, "created_at", LocalDateTime.of(2024, 7, 1, hour, 0)));
+        }
+        ConditionEvaluator evaluator = new ConditionEvaluator(ParserOptions.defaults(), false);
+        List<Map<String, Object>> rows = evaluator.filter(
+                ConditionParser.parseToSQLExpr("created_at > '2024-07-01 10:00:00'", ParserOptions.defaults()), table);
+        assertEquals(List.of(11, 12), rows.stream().map(row -> row.get("id")).collect(Collectors.toList()));
+
+        SemanticResultCache cache = newCache();
+        cache.get("events", "created_at >= '2024-07-01 09:00:00'", () -> table.subList(1, table.size()));
+        rows = cache.get("events", "created_at BETWEEN '2024-07-01 09:30:00' AND '2024-07-01 11:00:00'", () -> fail("应由缓存回答"));
+        assertEquals(List.of(10, 11), rows.stream().map(row -> row.get("id")).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testIgnoreCaseContainmentUsesCaseInsensitiveOrder() {
+        List<Map<String, Object>> table = new ArrayList<>();
+        for (String name : new String[]{"Apple", "apple", "Mango", "zebra", "banana"}) {
+            table.add(Map.of("name", name));
+        }
+        // 模拟 *_ci 排序规则的数据库
+        ConditionEvaluator database = new ConditionEvaluator(ParserOptions.defaults(), true);
+        SemanticResultCache cache = new SemanticResultCache(10, 100_000, ParserOptions.defaults(), true);
+        String[] conditions = {"name >= 'M'", "name >= 'a'", "name >= 'm'", "name > 'B' AND name < 'n'",
+                "name BETWEEN 'apple' AND 'BANANA'", "name IN ('APPLE', 'Zebra')", "name = 'apple'"};
+        for (String condition : conditions) {
+            List<Map<String, Object>> expected = database.filter(ConditionParser.parseToSQLExpr(condition, ParserOptions.defaults()), table);
+            assertEquals(names(expected), names(cache.get("fruits", condition, () -> expected)), condition);
+        }
+        assertTrue(cache.stats().getContainmentHits() > 0);
+    }
+
+    private static List<String> names(List<Map<String, Object>> rows) {
+        List<String> names = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            names.add((String) row.get("name"));
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * 随机细化条件，验证包含命中的结果与数据库完全一致，并统计命中率
+     */
+    @Test
+    public void testRandomRefinementsMatchDatabase() {
+        SemanticResultCache cache = newCache();
+        Random random = new Random(11);
+        String[] statuses = {"PAID", "NEW", "CLOSED"};
+        for (int i = 0; i < 200; i++) {
+            int low = random.nextInt(900);
+            String condition;
+            switch (random.nextInt(4)) {
+                case 0:
+                    condition = "amount > " + low;
+                    break;
+                case 1:
+                    condition = "amount BETWEEN " + low + " AND " + (low + random.nextInt(200)) + " AND status = '" + statuses[random.nextInt(3)] + "'";
+                    break;
+                case 2:
+                    condition = "amount > " + low + " AND NOT (status = '" + statuses[random.nextInt(3)] + "') AND note LIKE '%" + random.nextInt(10) + "'";
+                    break;
+                default:
+                    condition = "(status = 'PAID' OR status = 'NEW') AND amount <= " + low;
+                    break;
+            }
+            List<Map<String, Object>> rows = cache.get("orders", condition, loader(condition));
+            assertEquals(ids(query(condition)), ids(rows), condition);
+        }
+        SemanticResultCache.Stats stats = cache.stats();
+        System.out.println("语义缓存: " + stats + String.format(", 精确命中率 %.1f%%, 包含命中率 %.1f%%",
+                stats.exactHitRatio() * 100, stats.containmentHitRatio() * 100));
+        assertTrue(stats.getContainmentHits() > 0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    static class Order {
+        // 测试用实体类
+    }
+
+    private static final int SHARD_COUNT = 3;
+    private static final Connection[] SHARDS = new Connection[SHARD_COUNT];
+    private static final ShardRouter ROUTER = ShardRouter.modulo("tenant_id", SHARD_COUNT, ParserOptions.defaults());
+
+    /**
+     * 用 3 个独立的 H2 内存库模拟分片，tenant_id % 3 决定数据所在的分片
+     */
+    @BeforeAll
+    public static void setUpShards() throws Exception {
+        for (int shard = 0; shard < SHARD_COUNT; shard++) {
+            SHARDS[shard] = DriverManager.getConnection("jdbc:h2:mem:shard_" + shard);
+            JdbcTestSupport.execute(SHARDS[shard],
+                    "CREATE TABLE orders (id INT PRIMARY KEY, tenant_id INT, status VARCHAR(16))",
+                    "INSERT INTO orders SELECT X, MOD(X, 12), CASEWHEN(MOD(X, 5) = 0, 'PAID', 'NEW') "
+                            + "FROM SYSTEM_RANGE(1, 600) WHERE MOD(MOD(X, 12), 3) = " + shard);
+        }
+    }
+
+    @AfterAll
+    public static void closeShards() throws Exception {
+        for (Connection connection : SHARDS) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testEqualityRoutesToSingleShard() {
+        assertEquals(Set.of(1), ROUTER.targetShards("tenant_id = 4 AND status = 'PAID'"));
+        assertEquals(Set.of(2), ROUTER.targetShards("`tenant_id` = 5"));
+    }
+
+    @Test
+    public void testNumericStringsRouteLikeNumbers() {
+        // 数据库把 '5' 转换为 5 后比较，两种写法必须路由到同一个分片
+        assertEquals(ROUTER.targetShards("tenant_id = 5"), ROUTER.targetShards("tenant_id = '5'"));
+        assertEquals(ROUTER.targetShards("tenant_id = -7"), ROUTER.targetShards("tenant_id = '-7'"));
+        assertEquals(ROUTER.targetShards("tenant_id IN (3, 7)"), ROUTER.targetShards("tenant_id IN ('3', ' 7', '7.0')"));
+        assertEquals(Set.of(Math.floorMod("abc".hashCode(), SHARD_COUNT)), ROUTER.targetShards("tenant_id = 'abc'"));
+    }
+
+    @Test
+    public void testInListRoutesToValueShards() {
+        assertEquals(Set.of(0, 1), ROUTER.targetShards("tenant_id IN (3, 6, 7)"));
+    }
+
+    @Test
+    public void testOrUnionsAndAndIntersects() {
+        assertEquals(Set.of(1, 2), ROUTER.targetShards("tenant_id = 1 OR tenant_id = 2"));
+        assertEquals(Set.of(1), ROUTER.targetShards("tenant_id IN (1, 2) AND tenant_id IN (4, 9)"));
+        assertEquals(Set.of(0, 1), ROUTER.targetShards("(tenant_id = 3 AND status = 'PAID') OR (tenant_id = 4 AND status = 'NEW')"));
+    }
+
+    @Test
+    public void testUnconstrainedConditionsBroadcast() {
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards("status = 'PAID'"));
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards("tenant_id = 1 OR status = 'PAID'"));
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards("tenant_id NOT IN (1, 2)"));
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards("NOT (tenant_id = 1)"));
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards("tenant_id > 1"));
+        assertEquals(Set.of(0, 1, 2), ROUTER.targetShards(""));
+    }
+
+    @Test
+    public void testContradictionRoutesNowhere() {
+        assertTrue(ROUTER.targetShards("tenant_id = 1 AND tenant_id = 2").isEmpty());
+        assertTrue(ROUTER.targetShards("tenant_id = NULL").isEmpty());
+        assertTrue(ROUTER.route("tenant_id = 1 AND tenant_id = 2", QueryWrapper<Order>::new).isEmpty());
+    }
+
+    @Test
+    public void testInvalidShardFunctionIsRejected() {
+        ShardRouter router = new ShardRouter("tenant_id", 2, value -> 5, ParserOptions.defaults());
+        assertThrows(IllegalStateException.class, () -> router.targetShards("tenant_id = 1"));
+    }
+
+    @Test
+    public void testRoutedQueriesMatchBroadcast() throws Exception {
+        String[] conditions = {
+                "tenant_id = 4 AND status = 'PAID'",
+                "tenant_id IN (1, 2, 9) AND id > 100",
+                "(tenant_id = 3 OR tenant_id = 10) AND status = 'NEW'",
+                "status = 'PAID'",
+                "tenant_id = '5' OR tenant_id IN ('7', 8)",
+        };
+        for (String condition : conditions) {
+            int broadcastRows = 0;
+            for (Connection shard : SHARDS) {
+                QueryWrapper<Order> wrapper = ConditionParser.parse(condition, new QueryWrapper<>());
+                broadcastRows += JdbcTestSupport.countRows(shard, JdbcTestSupport.toJdbcSql("SELECT id FROM orders", wrapper));
+            }
+
+            Map<Integer, QueryWrapper<Order>> routed = ROUTER.route(condition, QueryWrapper::new);
+            int routedRows = 0;
+            for (Map.Entry<Integer, QueryWrapper<Order>> entry : routed.entrySet()) {
+                routedRows += JdbcTestSupport.countRows(SHARDS[entry.getKey()],
+                        JdbcTestSupport.toJdbcSql("SELECT id FROM orders", entry.getValue()));
+            }
+
+            assertEquals(broadcastRows, routedRows, "路由后的结果应与广播一致: " + condition);
+            assertEquals(ROUTER.targetShards(condition), routed.keySet());
+        }
+    }
+}
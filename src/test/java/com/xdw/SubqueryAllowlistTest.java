@@ -0,0 +1,159 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubqueryAllowlistTest {
+
+    private static final ParserOptions OPTIONS = ParserOptions.defaults().withSubqueryAllowlist(SubqueryAllowlist.empty()
+            .allow("customers", "id", "region", "status")
+            .allow("order_items", "order_id", "sku")
+            .allow("orders", "id", "amount"));
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:subquery");
+        JdbcTestSupport.execute(connection,
+                "CREATE TABLE customers (id INT PRIMARY KEY, region VARCHAR(8), status VARCHAR(16), password VARCHAR(32))",
+                "CREATE TABLE orders (id INT PRIMARY KEY, customer_id INT, status VARCHAR(16), amount INT)",
+                "CREATE TABLE order_items (id INT PRIMARY KEY, order_id INT, sku VARCHAR(16))",
+                "CREATE INDEX idx_orders_customer ON orders (customer_id)",
+                "CREATE INDEX idx_items_order ON order_items (order_id)",
+                "INSERT INTO customers SELECT X, CASEWHEN(MOD(X, 3) = 0, 'EU', CASEWHEN(MOD(X, 3) = 1, 'US', 'AP')), "
+                        + "CASEWHEN(MOD(X, 5) = 0, 'BLOCKED', 'ACTIVE'), 'secret' FROM SYSTEM_RANGE(1, 10000)",
+                "INSERT INTO orders SELECT X, MOD(X * 7, 10000) + 1, CASEWHEN(MOD(X, 2) = 0, 'PAID', 'NEW'), MOD(X * 13, 1000) "
+                        + "FROM SYSTEM_RANGE(1, 50000)",
+                "INSERT INTO order_items SELECT X, MOD(X, 50000) + 1, 'SKU-' || MOD(X, 17) FROM SYSTEM_RANGE(1, 100000)");
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        JdbcTestSupport.execute(connection, "DROP TABLE order_items", "DROP TABLE orders", "DROP TABLE customers");
+        connection.close();
+    }
+
+    private int count(String condition) throws SQLException {
+        QueryWrapper<Object> wrapper = ConditionParser.parse(condition, new QueryWrapper<>(), OPTIONS);
+        return JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM orders o", wrapper));
+    }
+
+    private int countSql(String where) throws SQLException {
+        return JdbcTestSupport.countRows(connection,
+                new JdbcTestSupport.JdbcSql("SELECT id FROM orders o WHERE " + where, Collections.emptyList()));
+    }
+
+    @Test
+    public void testSubqueriesAreRejectedByDefault() {
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.parse(
+                "customer_id IN (SELECT id FROM customers)", new QueryWrapper<>()));
+        assertThrows(IllegalArgumentException.class, () -> ConditionParser.parse(
+                "EXISTS (SELECT 1 FROM customers)", new QueryWrapper<>()));
+    }
+
+    @Test
+    public void testInSubqueryIsRenderedWithParameters() throws SQLException {
+        String condition = "status = 'PAID' AND customer_id IN (SELECT id FROM customers WHERE region = 'EU' AND status != 'BLOCKED')";
+        String sqlSegment = ConditionParser.parse(condition, new QueryWrapper<>(), OPTIONS).getSqlSegment();
+        assertTrue(sqlSegment.contains("customer_id IN (SELECT id FROM customers WHERE (((region = #{ew.paramNameValuePairs."),
+                sqlSegment);
+        assertFalse(sqlSegment.contains("'EU'"), sqlSegment);
+
+        assertEquals(countSql("status = 'PAID' AND customer_id IN (SELECT id FROM customers WHERE region = 'EU' AND status <> 'BLOCKED')"),
+                count(condition));
+        assertEquals(countSql("customer_id NOT IN (SELECT id FROM customers WHERE region IN ('EU', 'US'))"),
+                count("customer_id NOT IN (SELECT c.id FROM customers c WHERE c.region IN ('EU', 'US'))"));
+    }
+
+    @Test
+    public void testCorrelatedExists() throws SQLException {
+        int exists = count("amount < 100 AND EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id AND i.sku = 'SKU-3')");
+        assertEquals(countSql("amount < 100 AND EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id AND i.sku = 'SKU-3')"),
+                exists);
+        assertTrue(exists > 0);
+        int notExists = count("amount < 100 AND NOT EXISTS (SELECT * FROM order_items WHERE order_items.order_id = o.id "
+                + "AND order_items.sku = 'SKU-3')");
+        assertEquals(countSql("amount < 100") - exists, notExists);
+
+        // 子查询中可以再嵌套子查询
+        assertEquals(countSql("EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id AND i.sku = 'SKU-1') "
+                        + "AND amount < 50"),
+                count("EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = o.id AND i.sku = 'SKU-1' "
+                        + "AND i.order_id IN (SELECT id FROM orders WHERE amount < 50))"));
+    }
+
+    @Test
+    public void testAllowlistIsEnforced() {
+        String[] rejected = {
+                "customer_id IN (SELECT id FROM users)",
+                "customer_id IN (SELECT id FROM customers WHERE password = 'secret')",
+                "customer_id IN (SELECT password FROM customers)",
+                "customer_id IN (SELECT id, region FROM customers)",
+                "customer_id IN (SELECT id FROM customers GROUP BY id)",
+                "customer_id IN (SELECT id FROM customers ORDER BY id LIMIT 10)",
+                "customer_id IN (SELECT id FROM customers UNION SELECT order_id FROM order_items)",
+                "customer_id IN (SELECT c.id FROM customers c, order_items i)",
+                "EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = id)",
+                "EXISTS (SELECT 1 FROM order_items i WHERE x.password = o.id)",
+                "EXISTS (SELECT 1 FROM order_items i WHERE i.order_id = i.sku)",
+                "EXISTS (SELECT 1 FROM order_items i WHERE o.customer_id IN (SELECT id FROM customers))",
+                "EXISTS (SELECT 1 FROM customers c WHERE MATCH(secret) AGAINST('x'))",
+                "EXISTS (SELECT 1 FROM customers c WHERE region = 'EU' OR MATCH(c.region, c.secret) AGAINST('x'))",
+                "customer_id IN (SELECT id FROM customers WHERE NOT MATCH(password) AGAINST('x' IN BOOLEAN MODE))",
+        };
+        for (String condition : rejected) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ConditionParser.parse(condition, new QueryWrapper<>(), OPTIONS), condition);
+        }
+        assertThrows(IllegalArgumentException.class, () -> SubqueryAllowlist.empty().allow("customers; DROP", "id"));
+        assertThrows(IllegalArgumentException.class, () -> SubqueryAllowlist.empty().allow("customers"));
+        assertTrue(OPTIONS.getSubqueryAllowlist().isColumnAllowed("CUSTOMERS", "`Region`"));
+
+        // 白名单中的字段可以用于全文检索
+        QueryWrapper<Object> wrapper = ConditionParser.parse(
+                "EXISTS (SELECT 1 FROM customers c WHERE MATCH(c.region) AGAINST('north'))", new QueryWrapper<>(), OPTIONS);
+        assertTrue(wrapper.getSqlSegment().contains("MATCH (region) AGAINST ("), wrapper.getSqlSegment());
+    }
+
+    @Test
+    public void testSemiJoinAgainstTwoStepQuery() throws SQLException {
+        String condition = "status = 'PAID' AND customer_id IN (SELECT id FROM customers WHERE region = 'EU' AND status = 'ACTIVE')";
+        // 预热
+        count(condition);
+
+        long start = System.nanoTime();
+        int semiJoin = count(condition);
+        long semiJoinNanos = System.nanoTime() - start;
+
+        // 两步：先查出客户 id，再拼成 IN 列表
+        start = System.nanoTime();
+        QueryWrapper<Object> customerWrapper = ConditionParser.parse("region = 'EU' AND status = 'ACTIVE'", new QueryWrapper<>());
+        List<Map<String, Object>> customers = JdbcTestSupport.queryRows(connection,
+                JdbcTestSupport.toJdbcSql("SELECT id FROM customers", customerWrapper));
+        List<Object> ids = new ArrayList<>(customers.size());
+        for (Map<String, Object> row : customers) {
+            ids.add(row.get("ID"));
+        }
+        QueryWrapper<Object> orderWrapper = new QueryWrapper<>();
+        orderWrapper.eq("status", "PAID").in("customer_id", ids);
+        int twoStep = JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM orders", orderWrapper));
+        long twoStepNanos = System.nanoTime() - start;
+
+        assertEquals(twoStep, semiJoin);
+        System.out.println("子查询 1 条语句耗时: " + semiJoinNanos / 1_000 + " us，两步查询（IN 列表 " + ids.size()
+                + " 个 id）耗时: " + twoStepNanos / 1_000 + " us");
+    }
+}
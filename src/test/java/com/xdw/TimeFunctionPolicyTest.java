@@ -0,0 +1,127 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeFunctionPolicyTest {
+
+    static class User {
+        // 测试用实体类
+    }
+
+    private static final ParserOptions PUSH_DOWN = ParserOptions.defaults()
+            .withTimeFunctionPolicy(TimeFunctionPolicy.PUSH_DOWN);
+
+    @Test
+    public void testPushDownComparison() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at > NOW()", wrapper, PUSH_DOWN);
+
+        String sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("created_at > NOW()"), "SQL should push NOW() down, but got: " + sqlSegment);
+        assertTrue(wrapper.getParamNameValuePairs().isEmpty());
+    }
+
+    @Test
+    public void testPushDownKeepsSqlStable() {
+        String condition = "status = 'PAID' AND updated_at <= sysdate()";
+        QueryWrapper<User> first = ConditionParser.parse(condition, new QueryWrapper<>(), PUSH_DOWN);
+        QueryWrapper<User> second = ConditionParser.parse(condition, new QueryWrapper<>(), PUSH_DOWN);
+
+        assertEquals(first.getSqlSegment(), second.getSqlSegment());
+        assertEquals(first.getParamNameValuePairs(), second.getParamNameValuePairs());
+        assertTrue(first.getSqlSegment().contains("updated_at <= SYSDATE()"));
+        assertEquals(1, first.getParamNameValuePairs().size());
+    }
+
+    @Test
+    public void testPushDownInBetweenAndInList() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at BETWEEN '2024-01-01' AND current_timestamp()", wrapper, PUSH_DOWN);
+        String sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("created_at BETWEEN #{ew.paramNameValuePairs."), sqlSegment);
+        assertTrue(sqlSegment.contains("AND CURRENT_TIMESTAMP"), sqlSegment);
+        assertEquals(1, wrapper.getParamNameValuePairs().size());
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("biz_date IN ('2024-01-01', current_date())", wrapper, PUSH_DOWN);
+        sqlSegment = wrapper.getSqlSegment();
+        assertTrue(sqlSegment.contains("biz_date IN (#{ew.paramNameValuePairs."), sqlSegment);
+        assertTrue(sqlSegment.contains(", CURRENT_DATE)"), sqlSegment);
+        assertEquals(1, wrapper.getParamNameValuePairs().size());
+    }
+
+    @Test
+    public void testKeywordFormIsSupported() {
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at < CURRENT_TIMESTAMP", wrapper, PUSH_DOWN);
+        assertTrue(wrapper.getSqlSegment().contains("created_at < CURRENT_TIMESTAMP"));
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at < CURRENT_DATE", wrapper);
+        wrapper.getSqlSegment();
+        assertTrue(wrapper.getParamNameValuePairs().values().iterator().next() instanceof java.sql.Date);
+    }
+
+    @Test
+    public void testJvmClockUsesInjectedClock() {
+        Instant instant = Instant.parse("2024-06-01T08:00:00Z");
+        ParserOptions options = ParserOptions.defaults().withClock(Clock.fixed(instant, ZoneOffset.UTC));
+
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at > NOW()", wrapper, options);
+        wrapper.getSqlSegment();
+        assertEquals(new Date(instant.toEpochMilli()), wrapper.getParamNameValuePairs().values().iterator().next());
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("created_at > current_timestamp()", wrapper, options);
+        wrapper.getSqlSegment();
+        assertEquals(new java.sql.Timestamp(instant.toEpochMilli()), wrapper.getParamNameValuePairs().values().iterator().next());
+    }
+
+    @Test
+    public void testConcatEvaluatesTimeFunctionsInJvm() {
+        Instant instant = Instant.parse("2024-06-01T08:00:00Z");
+        ParserOptions options = PUSH_DOWN.withClock(Clock.fixed(instant, ZoneOffset.UTC));
+
+        QueryWrapper<User> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("tag = concat('t-', now())", wrapper, options);
+        wrapper.getSqlSegment();
+        assertEquals("t-" + new Date(instant.toEpochMilli()), wrapper.getParamNameValuePairs().values().iterator().next());
+
+        // 不带括号的关键字形式同样按 JVM 时钟求值，而不是拼接关键字文本
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("tag = concat('d-', CURRENT_DATE)", wrapper, options);
+        wrapper.getSqlSegment();
+        assertEquals("d-" + new java.sql.Date(instant.toEpochMilli()), wrapper.getParamNameValuePairs().values().iterator().next());
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("tag = concat('ts-', CURRENT_TIMESTAMP)", wrapper, options);
+        wrapper.getSqlSegment();
+        assertEquals("ts-" + new java.sql.Timestamp(instant.toEpochMilli()), wrapper.getParamNameValuePairs().values().iterator().next());
+    }
+
+    @Test
+    public void testPushedDownSqlRunsOnDatabase() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:time_functions")) {
+            JdbcTestSupport.execute(connection,
+                    "CREATE TABLE events (id INT PRIMARY KEY, created_at TIMESTAMP)",
+                    "INSERT INTO events VALUES (1, DATEADD('DAY', -1, CURRENT_TIMESTAMP)), (2, DATEADD('DAY', 1, CURRENT_TIMESTAMP))");
+
+            QueryWrapper<User> wrapper = ConditionParser.parse("created_at > NOW()", new QueryWrapper<>(), PUSH_DOWN);
+            assertEquals(1, JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM events", wrapper)));
+
+            wrapper = ConditionParser.parse("created_at BETWEEN '2000-01-01' AND CURRENT_TIMESTAMP", new QueryWrapper<>(), PUSH_DOWN);
+            assertEquals(1, JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql("SELECT id FROM events", wrapper)));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.xdw;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    static class Article {
+        // 测试用实体类
+    }
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ren", "tor", "ux", "bel", "sa", "qi", "don", "ve", "pha"};
+
+    private static String randomTitle(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = 2 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sb.append(' ');
+            }
+            int syllables = 1 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                String syllable = SYLLABLES[random.nextInt(SYLLABLES.length)];
+                sb.append(random.nextInt(8) == 0 ? syllable.toUpperCase() : syllable);
+            }
+        }
+        if (random.nextInt(20) == 0) {
+            sb.append(random.nextBoolean() ? " 100%" : " a_b");
+        }
+        return sb.toString();
+    }
+
+    private static long[] bruteForce(Map<Long, String> rows, String pattern, boolean ignoreCase) {
+        return rows.entrySet().stream()
+                .filter(e -> ignoreCase
+                        ? TrigramIndex.like(e.getValue().toLowerCase(), pattern.toLowerCase())
+                        : TrigramIndex.like(e.getValue(), pattern))
+                .mapToLong(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+    }
+
+    @Test
+    public void testLikeMatcher() {
+        assertTrue(TrigramIndex.like("hello world", "%lo w%"));
+        assertTrue(TrigramIndex.like("hello", "h_llo"));
+        assertTrue(TrigramIndex.like("hello", "%"));
+        assertTrue(TrigramIndex.like("", "%"));
+        assertFalse(TrigramIndex.like("hello", "h_lo"));
+        assertFalse(TrigramIndex.like("hello", "%world%"));
+        assertTrue(TrigramIndex.like("aaab", "%a%ab"));
+        assertTrue(TrigramIndex.like("50% off", "%0\\% o%"));
+        assertFalse(TrigramIndex.like("500 off", "%0\\% o%"));
+        assertTrue(TrigramIndex.like("a_b", "a\\_b"));
+        assertFalse(TrigramIndex.like("axb", "a\\_b"));
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(7);
+        Map<Long, String> rows = new LinkedHashMap<>();
+        for (long id = 1; id <= 5000; id++) {
+            rows.put(id, randomTitle(random));
+        }
+        TrigramIndex exact = new TrigramIndex("id", false, Integer.MAX_VALUE, "title");
+        TrigramIndex folded = new TrigramIndex("id", true, Integer.MAX_VALUE, "title");
+        exact.load("title", rows);
+        folded.load("title", rows);
+        assertEquals(5000, exact.size("title"));
+
+        String[] patterns = {"%renka%", "%tor lo%", "%Ren%", "%REN%", "kalo%mi%", "%bel_sa%", "%pha%don%ve%",
+                "%100\\%%", "%a\\_b%", "%xyz%", "kalo%", "%uxuxux%"};
+        for (String pattern : patterns) {
+            assertArrayEquals(bruteForce(rows, pattern, false), exact.search("title", pattern), pattern);
+            assertArrayEquals(bruteForce(rows, pattern, true), folded.search("title", pattern), pattern);
+        }
+        // 没有长度不少于 3 的字面量时无法回答
+        assertNull(exact.search("title", "%ka%"));
+        assertNull(exact.search("title", "%k_a%"));
+        assertNull(exact.search("title", "ka%mi%"));
+        assertNull(exact.search("body", "%renka%"));
+    }
+
+    @Test
+    public void testIncrementalUpdates() {
+        TrigramIndex index = new TrigramIndex("id", true, 100, "title", "body");
+        Map<Long, String> rows = new LinkedHashMap<>();
+        rows.put(3L, "Blue Whale");
+        rows.put(1L, "Blue Jay");
+        rows.put(2L, "Red Fox");
+        index.load("title", rows);
+        assertArrayEquals(new long[]{1, 3}, index.search("title", "%blue%"));
+
+        index.put("title", 2L, "Blue Fox");
+        assertArrayEquals(new long[]{1, 2, 3}, index.search("title", "%blue%"));
+        assertArrayEquals(new long[0], index.search("title", "%red%"));
+
+        index.put("title", 3L, null);
+        assertArrayEquals(new long[]{1, 2}, index.search("title", "%blue%"));
+        assertEquals(2, index.size("title"));
+
+        index.put("body", 1L, "blue body");
+        index.remove(1L);
+        assertArrayEquals(new long[]{2}, index.search("title", "%blue%"));
+        assertArrayEquals(new long[0], index.search("body", "%blue%"));
+
+        index.remove("title", 2L);
+        assertArrayEquals(new long[0], index.search("title", "%blue%"));
+        assertThrows(IllegalArgumentException.class, () -> index.put("missing", 1L, "x"));
+        assertThrows(IllegalArgumentException.class, () -> new TrigramIndex("id; drop", true, 10, "title"));
+        assertThrows(IllegalArgumentException.class, () -> new TrigramIndex("id", true, 0, "title"));
+    }
+
+    @Test
+    public void testParserRewritesIndexedLike() {
+        TrigramIndex index = new TrigramIndex("id", true, 3, "title");
+        index.put("title", 10L, "Blue Whale");
+        index.put("title", 20L, "Blue Jay");
+        index.put("title", 30L, "Red Fox");
+        index.put("title", 40L, "red panda");
+        index.put("title", 50L, "Red Deer");
+        index.put("title", 60L, "Red Kite");
+        ParserOptions options = ParserOptions.defaults().withTrigramIndex(index);
+
+        QueryWrapper<Article> wrapper = new QueryWrapper<>();
+        ConditionParser.parse("title LIKE '%blue%' AND status = 1", wrapper, options);
+        assertTrue(wrapper.getSqlSegment().contains("id IN ("), wrapper.getSqlSegment());
+        assertFalse(wrapper.getSqlSegment().contains("LIKE"));
+        assertEquals(Arrays.asList(10, 20, 1), JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+
+        // 不含通配符的值与原来一样按 %value% 匹配
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("`title` LIKE 'whale'", wrapper, options);
+        assertEquals(List.of(10), JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("title LIKE '%zebra%'", wrapper, options);
+        assertEquals("(1 = 0)", wrapper.getSqlSegment());
+
+        // 以下情况保持 LIKE：匹配行数超过上限、字面量太短、NOT LIKE、未索引的字段
+        for (String condition : new String[]{"title LIKE '%red%'", "title LIKE '%ox'", "title NOT LIKE '%blue%'", "name LIKE '%blue%'"}) {
+            wrapper = new QueryWrapper<>();
+            ConditionParser.parse(condition, wrapper, options);
+            QueryWrapper<Article> plain = new QueryWrapper<>();
+            ConditionParser.parse(condition, plain);
+            assertEquals(plain.getSqlSegment(), wrapper.getSqlSegment(), condition);
+        }
+
+        // 位于 NOT、OR 分支或子查询中的 LIKE 不改写：NOT (id IN ...) 会包含字段为 NULL 的行，索引也不描述子查询的表
+        ParserOptions withSubqueries = options.withSubqueryAllowlist(SubqueryAllowlist.empty().allow("customers", "id", "title"));
+        for (String condition : new String[]{
+                "NOT (title LIKE '%blue%')",
+                "NOT title LIKE '%blue%' AND status = 1",
+                "title LIKE '%blue%' OR status = 1",
+                "status = 1 AND (title LIKE '%blue%' OR title LIKE '%jay%')",
+                "customer_id IN (SELECT id FROM customers WHERE title LIKE '%blue%')",
+                "EXISTS (SELECT 1 FROM customers WHERE title LIKE '%blue%')"}) {
+            QueryWrapper<Article> rewritten = new QueryWrapper<>();
+            ConditionParser.parse(condition, rewritten, withSubqueries);
+            assertFalse(rewritten.getSqlSegment().contains("id IN (?"), condition);
+            QueryWrapper<Article> plain = new QueryWrapper<>();
+            ConditionParser.parse(condition, plain, ParserOptions.defaults().withSubqueryAllowlist(withSubqueries.getSubqueryAllowlist()));
+            assertEquals(JdbcTestSupport.toJdbcSql("SELECT 1", plain).sql, JdbcTestSupport.toJdbcSql("SELECT 1", rewritten).sql, condition);
+        }
+        // 与 AND 组合时仍然改写
+        wrapper = new QueryWrapper<>();
+        ConditionParser.parse("status = 1 AND (title LIKE '%jay%' AND status = 2)", wrapper, options);
+        assertEquals(Arrays.asList(1, 20, 2), JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+
+        // 编译后的条件组合时遵循相同的规则
+        CompiledCondition blue = CompiledCondition.compile("title LIKE '%blue%'", options);
+        assertEquals(Arrays.asList(10, 20), params(blue));
+        assertEquals(List.of("%blue%"), params(blue.not()));
+        assertEquals(Arrays.asList("%blue%", 1), params(blue.or(CompiledCondition.compile("status = 1", options))));
+        assertEquals(Arrays.asList(10, 20, 1), params(blue.and(CompiledCondition.compile("status = 1", options))));
+        assertEquals(Arrays.asList(10, 20), params(blue.not().not()));
+
+        // PreparedCondition 每次绑定时按当前的值查询索引
+        PreparedCondition prepared = PreparedCondition.prepare("title LIKE ?", options);
+        wrapper = new QueryWrapper<>();
+        prepared.apply(wrapper, "%jay%");
+        assertEquals(List.of(20), JdbcTestSupport.toJdbcSql("SELECT 1", wrapper).params);
+    }
+
+    /**
+     * 基准测试：H2 中 20 万行数据，前导通配符 LIKE 全表扫描与三元组索引改写为主键 IN 的对比
+     */
+    @Test
+    public void benchmarkAgainstFullScanLike() throws Exception {
+        int rows = 200_000;
+        Random random = new Random(42);
+        Map<Long, String> titles = new LinkedHashMap<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:trigram_" + System.nanoTime())) {
+            JdbcTestSupport.execute(connection,
+                    "CREATE TABLE article (id BIGINT PRIMARY KEY, title VARCHAR(200), status INT)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO article VALUES (?, ?, ?)")) {
+                for (long id = 1; id <= rows; id++) {
+                    String title = randomTitle(random);
+                    titles.put(id, title);
+                    insert.setLong(1, id);
+                    insert.setString(2, title);
+                    insert.setInt(3, (int) (id % 4));
+                    insert.addBatch();
+                    if (id % 5000 == 0) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+
+            // H2 的 LIKE 区分大小写
+            long start = System.nanoTime();
+            TrigramIndex index = new TrigramIndex("id", false, 2000, "title");
+            index.load("title", titles);
+            long loadMillis = (System.nanoTime() - start) / 1_000_000;
+            ParserOptions indexed = ParserOptions.defaults().withTrigramIndex(index);
+
+            String[] conditions = {
+                    "title LIKE '%tortorren%'",
+                    "title LIKE '%phaQI%' AND status = 1",
+                    "title LIKE '%bel_sadon%'",
+                    "title LIKE '%zzz%'"
+            };
+            String select = "SELECT id FROM article";
+            int iterations = 20;
+            System.out.println("H2 " + rows + " 行，建立三元组索引 " + loadMillis + " ms：");
+            for (String condition : conditions) {
+                QueryWrapper<Article> scanWrapper = new QueryWrapper<>();
+                ConditionParser.parse(condition, scanWrapper);
+                QueryWrapper<Article> indexWrapper = new QueryWrapper<>();
+                ConditionParser.parse(condition, indexWrapper, indexed);
+                JdbcTestSupport.JdbcSql scanSql = JdbcTestSupport.toJdbcSql(select, scanWrapper);
+                JdbcTestSupport.JdbcSql indexSql = JdbcTestSupport.toJdbcSql(select, indexWrapper);
+                assertFalse(indexSql.sql.contains("LIKE"), indexSql.sql);
+
+                List<Map<String, Object>> expected = JdbcTestSupport.queryRows(connection, scanSql);
+                List<Map<String, Object>> actual = JdbcTestSupport.queryRows(connection, indexSql);
+                assertEquals(ids(expected), ids(actual), condition);
+
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    QueryWrapper<Article> wrapper = new QueryWrapper<>();
+                    ConditionParser.parse(condition, wrapper);
+                    JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql(select, wrapper));
+                }
+                long scan = (System.nanoTime() - start) / iterations;
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    QueryWrapper<Article> wrapper = new QueryWrapper<>();
+                    ConditionParser.parse(condition, wrapper, indexed);
+                    JdbcTestSupport.countRows(connection, JdbcTestSupport.toJdbcSql(select, wrapper));
+                }
+                long viaIndex = (System.nanoTime() - start) / iterations;
+                System.out.println("  " + condition + "（" + expected.size() + " 行）：全表扫描 LIKE " + scan / 1000
+                        + " µs，索引改写 " + viaIndex / 1000 + " µs");
+            }
+        }
+    }
+
+    private static List<Object> params(CompiledCondition condition) {
+        return JdbcTestSupport.toJdbcSql("SELECT 1", condition.apply(new QueryWrapper<Article>())).params;
+    }
+
+    private static List<Long> ids(List<Map<String, Object>> rows) {
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            ids.add(((Number) row.get("ID")).longValue());
+        }
+        ids.sort(null);
+        return ids;
+    }
+}